@@ -0,0 +1,221 @@
+package mx.unam.ciencias.icc;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Interfaz para motores de almacenamiento de registros. Una {@link
+ * BaseDeDatos} guarda sus registros en un almacén, que decide cómo
+ * representarlos en memoria; la base de datos se encarga de todo lo demás
+ * (índices, entrada y salida, etc.).
+ *
+ * Los almacenes mantienen los registros en el orden en que se agregaron, y se
+ * pueden recorrer en ese orden usando la estructura de control
+ * <em>for-each</em>.
+ */
+public interface Almacen extends Iterable<Registro> {
+
+    /**
+     * Regresa el número de registros en el almacén.
+     * @return el número de registros en el almacén.
+     */
+    public int getLongitud();
+
+    /**
+     * Agrega un registro al final del almacén y regresa su identificador. Los
+     * identificadores son únicos mientras exista el almacén: no se reutilizan
+     * aunque el registro se elimine o el almacén se limpie.
+     * @param registro el registro a agregar.
+     * @return el identificador del registro en el almacén.
+     */
+    public long agrega(Registro registro);
+
+    /**
+     * Elimina el primer registro del almacén igual al recibido. Si no hay
+     * ninguno, el método no modifica al almacén.
+     * @param registro el registro a eliminar.
+     * @return el identificador del registro eliminado, o -1 si no había
+     *         ninguno igual al recibido.
+     */
+    public long elimina(Registro registro);
+
+    /**
+     * Elimina el registro con el identificador recibido. Si no hay ninguno, el
+     * método no modifica al almacén.
+     * @param id el identificador del registro a eliminar.
+     * @return el registro eliminado, o <code>null</code> si no había ninguno
+     *         con el identificador.
+     */
+    public Registro elimina(long id);
+
+    /**
+     * Regresa el registro con el identificador recibido.
+     * @param id el identificador del registro.
+     * @return el registro con el identificador, o <code>null</code> si no hay
+     *         ninguno.
+     */
+    public Registro get(long id);
+
+    /**
+     * Actualiza el registro con el identificador recibido con los valores de
+     * otro registro, sin cambiar su lugar en el almacén. El almacén puede
+     * guardar el registro recibido en lugar del anterior, pero no debe
+     * modificar al anterior, que puede estar en una instantánea (ver {@link
+     * #instantanea}).
+     * @param id el identificador del registro a actualizar.
+     * @param registro el registro con el cual actualizar los valores.
+     * @throws NoSuchElementException si no hay un registro con el
+     *         identificador.
+     */
+    public void actualiza(long id, Registro registro);
+
+    /**
+     * Regresa los identificadores de los registros del almacén, en orden.
+     * @return un arreglo con los identificadores de los registros.
+     */
+    public long[] ids();
+
+    /**
+     * Limpia el almacén, dejándolo vacío.
+     */
+    public void limpia();
+
+    /**
+     * Regresa una lista con los registros del almacén. Modificar esta lista no
+     * cambia al almacén.
+     * @return una lista con los registros del almacén.
+     */
+    public Lista copia();
+
+    /**
+     * Regresa una instantánea de los registros del almacén: una lista que,
+     * como la copia, no cambia cuando se modifica el almacén ni lo cambia a él
+     * cuando se modifica. Por omisión es la copia; los almacenes que puedan
+     * deben regresarla en tiempo constante.
+     * @return una instantánea de los registros del almacén.
+     */
+    public default Lista instantanea() {
+        return copia();
+    }
+
+    /**
+     * Regresa un flujo perezoso que recorre una instantánea de los registros
+     * del almacén, en orden: el flujo no ve las modificaciones posteriores del
+     * almacén. La instantánea se libera cuando el flujo termina de recorrerla
+     * o cuando se cierra. Por omisión el flujo recorre {@link #instantanea};
+     * los almacenes cuya instantánea no sea de tiempo constante deben
+     * sobrecargar el método para no copiar los registros.
+     * @return un flujo con los registros del almacén.
+     */
+    public default Stream<Registro> streamInstantanea() {
+        Lista lista = instantanea();
+        return StreamSupport.stream(BaseDeDatos.divisor(lista), false)
+            .onClose(lista::limpia);
+    }
+
+    /**
+     * Regresa un arreglo con los registros del almacén, en orden. Modificar el
+     * arreglo no cambia al almacén.
+     * @return un arreglo con los registros del almacén.
+     */
+    public default Registro[] arreglo() {
+        Registro[] arreglo = new Registro[getLongitud()];
+        int i = 0;
+        for (Registro registro : this)
+            arreglo[i++] = registro;
+        return arreglo;
+    }
+
+    /**
+     * Nos dice si el almacén codifica por su cuenta los campos de texto de
+     * los registros, guardando una sola vez cada valor distinto; en ese caso
+     * la base de datos no los canoniza al cargarlos (ver {@link
+     * BaseDeDatos#getDiccionario}). Por omisión regresa <code>false</code>.
+     * @return <code>true</code> si el almacén codifica los campos de texto,
+     *         <code>false</code> en otro caso.
+     */
+    public default boolean codificaCampos() {
+        return false;
+    }
+
+    /**
+     * Busca los registros que cazan el valor dado en el campo especificado,
+     * recorriendo todo el almacén.
+     * @param campo el campo del registro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @return una lista con los registros tales que cazan el campo especificado
+     *         con el valor dado, en el orden del almacén.
+     * @throws IllegalArgumentException si el campo no es de la enumeración
+     *         correcta.
+     */
+    public Lista busca(Enum campo, Object valor);
+
+    /**
+     * Busca los registros que cumplen una condición, recorriendo todo el
+     * almacén.
+     * @param condicion la condición que deben cumplir los registros.
+     * @return una lista con los registros que cumplen la condición, en el orden
+     *         del almacén.
+     */
+    public Lista busca(Predicate<Registro> condicion);
+
+    /**
+     * Busca en paralelo los registros que cazan el valor dado en el campo
+     * especificado, recorriendo todo el almacén. Por omisión es {@link
+     * #buscaEnParalelo(Predicate, ForkJoinPool)} con {@link Registro#caza};
+     * los almacenes que tengan una búsqueda por campo más eficiente pueden
+     * sobrecargarlo.
+     * @param campo el campo del registro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @param ejecutor el ejecutor donde se recorrerán los registros.
+     * @return una lista con los registros tales que cazan el campo especificado
+     *         con el valor dado, en el orden del almacén.
+     * @throws IllegalArgumentException si el campo no es de la enumeración
+     *         correcta.
+     */
+    public default Lista buscaEnParalelo(Enum campo, Object valor,
+                                         ForkJoinPool ejecutor) {
+        return buscaEnParalelo(r -> r.caza(campo, valor), ejecutor);
+    }
+
+    /**
+     * Busca en paralelo los registros que cumplen una condición, recorriendo
+     * todo el almacén; la condición debe poder evaluarse concurrentemente. Por
+     * omisión los registros se copian a un arreglo (ver {@link #arreglo}) que
+     * se parte en bloques; los almacenes con acceso aleatorio pueden
+     * sobrecargar el método para partirlos sin copiarlos.
+     * @param condicion la condición que deben cumplir los registros.
+     * @param ejecutor el ejecutor donde se recorrerán los registros.
+     * @return una lista con los registros que cumplen la condición, en el orden
+     *         del almacén.
+     */
+    public default Lista buscaEnParalelo(Predicate<Registro> condicion,
+                                         ForkJoinPool ejecutor) {
+        return BusquedaParalela.busca(arreglo(), condicion, ejecutor);
+    }
+
+    /**
+     * Regresa un iterador para recorrer los registros del almacén en orden.
+     * @return un iterador para recorrer los registros del almacén.
+     */
+    @Override public Iterator<Registro> iterator();
+
+    /**
+     * Regresa un divisor para recorrer los registros del almacén en orden,
+     * posiblemente en paralelo. Por omisión el divisor usa el iterador del
+     * almacén y parte los registros en lotes; los almacenes con acceso
+     * aleatorio pueden sobrecargar el método para partirlos por índices.
+     * @return un divisor para recorrer los registros del almacén.
+     */
+    @Override public default Spliterator<Registro> spliterator() {
+        return Spliterators.spliterator(iterator(), getLongitud(),
+                                        Spliterator.ORDERED |
+                                        Spliterator.NONNULL);
+    }
+}
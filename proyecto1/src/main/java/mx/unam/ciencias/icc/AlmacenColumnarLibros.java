@@ -0,0 +1,683 @@
+package mx.unam.ciencias.icc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Clase para almacenes columnares de libros.</p>
+ *
+ * <p>En lugar de guardar un objeto {@link Libro} por registro, el almacén
+ * guarda cada campo en una columna: el año, la edición y las páginas en
+ * arreglos de <code>int</code>, el precio en un arreglo de
+ * <code>double</code>, y el título, el autor y la editorial en columnas
+ * codificadas por diccionario, donde cada cadena distinta se guarda una sola
+ * vez y cada registro sólo guarda su identificador.</p>
+ *
+ * <p>Los libros que regresa el almacén son vistas que se crean cuando alguien
+ * las pide; modificarlas no cambia al almacén. Las búsquedas recorren las
+ * columnas directamente y sólo crean vistas de los libros que cazan; en las
+ * columnas de texto, cada cadena distinta se revisa una sola vez por
+ * búsqueda. Las búsquedas en paralelo parten las columnas por índices, sin
+ * copiarlas.</p>
+ *
+ * <p>Los flujos de instantáneas (ver {@link #streamInstantanea}) comparten
+ * las columnas en lugar de copiarlas: agregar libros no toca los lugares que
+ * ve la instantánea, y la primera eliminación o actualización mientras haya
+ * instantáneas copia las columnas, como en {@link Lista#instantanea}.</p>
+ *
+ * <p>Eliminar un libro sólo lo marca como borrado, sin recorrer las columnas;
+ * los lugares borrados se recogen todos juntos cuando son más que los
+ * libros, así que cada eliminación cuesta tiempo constante amortizado además
+ * de la búsqueda de su identificador.</p>
+ */
+public class AlmacenColumnarLibros implements Almacen {
+
+    /* Clase interna privada para columnas de texto codificadas por
+       diccionario. */
+    private static class ColumnaTexto {
+        /* Las cadenas distintas de la columna. */
+        private String[] diccionario;
+        /* El número de cadenas en el diccionario. */
+        private int distintas;
+        /* Los identificadores de las cadenas en el diccionario. */
+        private HashMap<String, Integer> identificadores;
+        /* El identificador de la cadena de cada registro, o -1 si es nula. */
+        private int[] valores;
+
+        /* Construye una columna vacía. */
+        private ColumnaTexto() {
+            diccionario = new String[16];
+            identificadores = new HashMap<String, Integer>();
+            valores = new int[16];
+        }
+
+        /* Construye una columna de sólo lectura que comparte los arreglos de
+           la columna recibida. */
+        private ColumnaTexto(ColumnaTexto columna) {
+            diccionario = columna.diccionario;
+            distintas = columna.distintas;
+            valores = columna.valores;
+        }
+
+        /* Regresa el identificador de una cadena, agregándola al diccionario
+           si no estaba. */
+        private int codifica(String s) {
+            if (s == null)
+                return -1;
+            Integer id = identificadores.get(s);
+            if (id != null)
+                return id;
+            if (distintas == diccionario.length)
+                diccionario = Arrays.copyOf(diccionario, 2 * distintas);
+            diccionario[distintas] = s;
+            identificadores.put(s, distintas);
+            return distintas++;
+        }
+
+        /* Regresa el identificador de una cadena sin agregarla; -1 si es
+           nula y -2 si no está en el diccionario. */
+        private int busca(String s) {
+            if (s == null)
+                return -1;
+            Integer id = identificadores.get(s);
+            return id == null ? -2 : id;
+        }
+
+        /* Regresa la cadena del i-ésimo registro. */
+        private String get(int i) {
+            int id = valores[i];
+            return id == -1 ? null : diccionario[id];
+        }
+
+        /* Limpia la columna y su diccionario. */
+        private void limpia() {
+            diccionario = new String[16];
+            distintas = 0;
+            identificadores.clear();
+        }
+    }
+
+    /* Clase interna privada para iteradores. */
+    private class Iterador implements Iterator<Registro> {
+        /* El índice del registro siguiente. */
+        private int siguiente;
+
+        /* Nos dice si hay un elemento siguiente. */
+        @Override public boolean hasNext() {
+            while (siguiente < n && borrados[siguiente])
+                siguiente++;
+            return siguiente < n;
+        }
+
+        /* Nos da el elemento siguiente. */
+        @Override public Registro next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return vista(siguiente++);
+        }
+    }
+
+    /* Clase interna privada para divisores, que recorren un intervalo de
+       índices y lo parten a la mitad. */
+    private class Divisor implements Spliterator<Registro> {
+        /* El índice del registro siguiente. */
+        private int siguiente;
+        /* El índice siguiente al último registro del intervalo. */
+        private int fin;
+        /* La acción a ejecutar al terminar el recorrido, o null. */
+        private Runnable alTerminar;
+
+        /* Construye un divisor para el intervalo [siguiente, fin). */
+        private Divisor(int siguiente, int fin) {
+            this.siguiente = siguiente;
+            this.fin = fin;
+        }
+
+        /* Recorre el registro siguiente, si lo hay. */
+        @Override public boolean tryAdvance(Consumer<? super Registro> accion) {
+            while (siguiente < fin && borrados[siguiente])
+                siguiente++;
+            if (siguiente >= fin) {
+                termina();
+                return false;
+            }
+            accion.accept(vista(siguiente++));
+            return true;
+        }
+
+        /* Recorre los registros restantes. */
+        @Override public void forEachRemaining(
+            Consumer<? super Registro> accion) {
+            int f = fin;
+            for (int i = siguiente; i < f; i++)
+                if (!borrados[i])
+                    accion.accept(vista(i));
+            siguiente = f;
+            termina();
+        }
+
+        /* Ejecuta la acción de terminar, si la hay, una sola vez. */
+        private void termina() {
+            Runnable r = alTerminar;
+            alTerminar = null;
+            if (r != null)
+                r.run();
+        }
+
+        /* Parte el intervalo a la mitad. Un divisor partido ya no recorre
+           todo el intervalo original, así que deja de tener acción de
+           terminar. */
+        @Override public Spliterator<Registro> trySplit() {
+            int mitad = (siguiente + fin) >>> 1;
+            if (mitad <= siguiente)
+                return null;
+            Divisor izquierdo = new Divisor(siguiente, mitad);
+            siguiente = mitad;
+            alTerminar = null;
+            return izquierdo;
+        }
+
+        /* Regresa el número de registros restantes, que es exacto si no hay
+           lugares borrados. */
+        @Override public long estimateSize() {
+            return fin - siguiente;
+        }
+
+        /* Regresa las características del divisor. */
+        @Override public int characteristics() {
+            return vacios == 0 ? ORDERED | SIZED | SUBSIZED | NONNULL :
+                ORDERED | NONNULL;
+        }
+    }
+
+    /* El número de lugares ocupados de las columnas, contando los borrados. */
+    private int n;
+    /* El número de lugares borrados. */
+    private int vacios;
+    /* La columna de títulos. */
+    private ColumnaTexto titulos;
+    /* La columna de autores. */
+    private ColumnaTexto autores;
+    /* La columna de editoriales. */
+    private ColumnaTexto editoriales;
+    /* La columna de años de publicación. */
+    private int[] años;
+    /* La columna de números de edición. */
+    private int[] ediciones;
+    /* La columna de números de páginas. */
+    private int[] paginas;
+    /* La columna de precios. */
+    private double[] precios;
+    /* La columna de identificadores, en orden creciente. */
+    private long[] ids;
+    /* La columna de marcas de borrado. */
+    private boolean[] borrados;
+    /* El identificador del siguiente libro. */
+    private long siguienteId;
+    /* El número de almacenes que comparten las columnas, contando a éste, o
+       null si no las comparte. */
+    private AtomicInteger compartidas;
+
+    /**
+     * Construye un almacén vacío.
+     */
+    public AlmacenColumnarLibros() {
+        titulos = new ColumnaTexto();
+        autores = new ColumnaTexto();
+        editoriales = new ColumnaTexto();
+        años = new int[16];
+        ediciones = new int[16];
+        paginas = new int[16];
+        precios = new double[16];
+        ids = new long[16];
+        borrados = new boolean[16];
+    }
+
+    /* Construye una instantánea de sólo lectura que comparte las columnas
+       del almacén recibido. */
+    private AlmacenColumnarLibros(AlmacenColumnarLibros almacen) {
+        titulos = new ColumnaTexto(almacen.titulos);
+        autores = new ColumnaTexto(almacen.autores);
+        editoriales = new ColumnaTexto(almacen.editoriales);
+        años = almacen.años;
+        ediciones = almacen.ediciones;
+        paginas = almacen.paginas;
+        precios = almacen.precios;
+        ids = almacen.ids;
+        borrados = almacen.borrados;
+        n = almacen.n;
+        vacios = almacen.vacios;
+    }
+
+    /**
+     * Regresa el número de libros en el almacén.
+     * @return el número de libros en el almacén.
+     */
+    @Override public int getLongitud() {
+        return n - vacios;
+    }
+
+    /**
+     * Nos dice si el almacén codifica los campos de texto; siempre regresa
+     * <code>true</code>, porque las columnas de texto tienen sus propios
+     * diccionarios.
+     * @return <code>true</code>.
+     */
+    @Override public boolean codificaCampos() {
+        return true;
+    }
+
+    /**
+     * Agrega un libro al final del almacén y regresa su identificador.
+     * @param registro el libro a agregar.
+     * @return el identificador del libro en el almacén.
+     * @throws IllegalArgumentException si el registro no es instancia de {@link
+     *         Libro}.
+     */
+    @Override public long agrega(Registro registro) {
+        if (!(registro instanceof Libro))
+            throw new IllegalArgumentException("El registro debe ser " +
+                                               "Libro");
+        if (n == años.length)
+            crece();
+        escribe(n, (Libro) registro);
+        ids[n] = siguienteId++;
+        borrados[n] = false;
+        n++;
+        return ids[n - 1];
+    }
+
+    /* Escribe los campos del libro en el i-ésimo lugar de las columnas. */
+    private void escribe(int i, Libro libro) {
+        titulos.valores[i] = titulos.codifica(libro.getTitulo());
+        autores.valores[i] = autores.codifica(libro.getAutor());
+        editoriales.valores[i] = editoriales.codifica(libro.getEditorial());
+        años[i] = libro.getAño();
+        ediciones[i] = libro.getEdicion();
+        paginas[i] = libro.getPaginas();
+        precios[i] = libro.getPrecio();
+    }
+
+    /* Duplica la capacidad de las columnas. */
+    private void crece() {
+        int c = 2 * años.length;
+        titulos.valores = Arrays.copyOf(titulos.valores, c);
+        autores.valores = Arrays.copyOf(autores.valores, c);
+        editoriales.valores = Arrays.copyOf(editoriales.valores, c);
+        años = Arrays.copyOf(años, c);
+        ediciones = Arrays.copyOf(ediciones, c);
+        paginas = Arrays.copyOf(paginas, c);
+        precios = Arrays.copyOf(precios, c);
+        ids = Arrays.copyOf(ids, c);
+        borrados = Arrays.copyOf(borrados, c);
+    }
+
+    /**
+     * Elimina el primer libro del almacén igual al recibido.
+     * @param registro el libro a eliminar.
+     * @return el identificador del libro eliminado, o -1 si no había ninguno
+     *         igual al recibido.
+     */
+    @Override public long elimina(Registro registro) {
+        if (!(registro instanceof Libro))
+            return -1;
+        Libro libro = (Libro) registro;
+        int titulo = titulos.busca(libro.getTitulo());
+        int autor = autores.busca(libro.getAutor());
+        int editorial = editoriales.busca(libro.getEditorial());
+        if (titulo == -2 || autor == -2 || editorial == -2)
+            return -1;
+        for (int i = 0; i < n; i++) {
+            if (!borrados[i] && años[i] == libro.getAño() &&
+                ediciones[i] == libro.getEdicion() &&
+                paginas[i] == libro.getPaginas() &&
+                precios[i] == libro.getPrecio() &&
+                titulos.valores[i] == titulo &&
+                autores.valores[i] == autor &&
+                editoriales.valores[i] == editorial) {
+                long id = ids[i];
+                elimina(i);
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Elimina el libro con el identificador recibido. Como los identificadores
+     * crecen con el orden de los libros, el libro se encuentra con búsqueda
+     * binaria, sin comparar sus campos, y sólo se marca como borrado.
+     * @param id el identificador del libro a eliminar.
+     * @return el libro eliminado, o <code>null</code> si no había ninguno con
+     *         el identificador.
+     */
+    @Override public Registro elimina(long id) {
+        int i = busca(id);
+        if (i < 0)
+            return null;
+        Libro libro = vista(i);
+        elimina(i);
+        return libro;
+    }
+
+    /**
+     * Regresa una vista del libro con el identificador recibido.
+     * @param id el identificador del libro.
+     * @return una vista del libro con el identificador, o <code>null</code> si
+     *         no hay ninguno.
+     */
+    @Override public Registro get(long id) {
+        int i = busca(id);
+        return i < 0 ? null : vista(i);
+    }
+
+    /**
+     * Actualiza el libro con el identificador recibido, reescribiendo sus
+     * columnas.
+     * @param id el identificador del libro a actualizar.
+     * @param registro el libro con el cual actualizar los valores.
+     * @throws NoSuchElementException si no hay un libro con el identificador.
+     * @throws IllegalArgumentException si el registro no es instancia de {@link
+     *         Libro}.
+     */
+    @Override public void actualiza(long id, Registro registro) {
+        if (!(registro instanceof Libro))
+            throw new IllegalArgumentException("El registro debe ser " +
+                                               "Libro");
+        int i = busca(id);
+        if (i < 0)
+            throw new NoSuchElementException();
+        separa();
+        escribe(i, (Libro) registro);
+    }
+
+    /**
+     * Regresa los identificadores de los libros del almacén, en orden.
+     * @return un arreglo con los identificadores de los libros.
+     */
+    @Override public long[] ids() {
+        long[] arreglo = new long[n - vacios];
+        int k = 0;
+        for (int i = 0; i < n; i++)
+            if (!borrados[i])
+                arreglo[k++] = ids[i];
+        return arreglo;
+    }
+
+    /* Regresa el lugar del libro con el identificador, o -1 si no hay. */
+    private int busca(long id) {
+        int i = Arrays.binarySearch(ids, 0, n, id);
+        return i < 0 || borrados[i] ? -1 : i;
+    }
+
+    /* Marca como borrado el i-ésimo registro, y recoge los lugares borrados
+       si son más que los registros. */
+    private void elimina(int i) {
+        separa();
+        borrados[i] = true;
+        vacios++;
+        if (vacios > n - vacios)
+            compacta();
+    }
+
+    /* Recoge los lugares borrados, recorriendo los registros. */
+    private void compacta() {
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (borrados[i])
+                continue;
+            titulos.valores[m] = titulos.valores[i];
+            autores.valores[m] = autores.valores[i];
+            editoriales.valores[m] = editoriales.valores[i];
+            años[m] = años[i];
+            ediciones[m] = ediciones[i];
+            paginas[m] = paginas[i];
+            precios[m] = precios[i];
+            ids[m] = ids[i];
+            borrados[m++] = false;
+        }
+        n = m;
+        vacios = 0;
+    }
+
+    /**
+     * Limpia el almacén.
+     */
+    @Override public void limpia() {
+        separa();
+        n = 0;
+        vacios = 0;
+        titulos.limpia();
+        autores.limpia();
+        editoriales.limpia();
+    }
+
+    /* Copia las columnas antes de modificar un lugar que pueden ver las
+       instantáneas, si alguna las comparte todavía. Los diccionarios no se
+       copian, porque sólo se les agregan cadenas al final. */
+    private void separa() {
+        if (compartidas == null)
+            return;
+        AtomicInteger c = compartidas;
+        compartidas = null;
+        if (c.get() == 1)
+            return;
+        titulos.valores = titulos.valores.clone();
+        autores.valores = autores.valores.clone();
+        editoriales.valores = editoriales.valores.clone();
+        años = años.clone();
+        ediciones = ediciones.clone();
+        paginas = paginas.clone();
+        precios = precios.clone();
+        ids = ids.clone();
+        borrados = borrados.clone();
+        c.decrementAndGet();
+    }
+
+    /**
+     * Regresa un flujo perezoso que recorre una instantánea de los libros del
+     * almacén, en tiempo constante: la instantánea comparte las columnas, y
+     * el flujo crea las vistas de los libros conforme los recorre. El flujo
+     * se parte por índices para recorrerse en paralelo.
+     * @return un flujo con vistas de los libros del almacén.
+     */
+    @Override public synchronized Stream<Registro> streamInstantanea() {
+        if (compartidas == null)
+            compartidas = new AtomicInteger(1);
+        AtomicInteger c = compartidas;
+        c.incrementAndGet();
+        AtomicBoolean liberada = new AtomicBoolean();
+        Runnable libera = () -> {
+            if (liberada.compareAndSet(false, true))
+                c.decrementAndGet();
+        };
+        AlmacenColumnarLibros instantanea = new AlmacenColumnarLibros(this);
+        Divisor divisor = instantanea.new Divisor(0, instantanea.n);
+        divisor.alTerminar = libera;
+        return StreamSupport.stream(divisor, false).onClose(libera);
+    }
+
+    /* Regresa una vista del i-ésimo libro. */
+    private Libro vista(int i) {
+        return new Libro(titulos.get(i), autores.get(i), editoriales.get(i),
+                         años[i], ediciones[i], paginas[i], precios[i]);
+    }
+
+    /**
+     * Regresa una lista con vistas de los libros del almacén.
+     * @return una lista con los libros del almacén.
+     */
+    @Override public Lista copia() {
+        Lista lista = new Lista();
+        for (int i = 0; i < n; i++)
+            if (!borrados[i])
+                lista.agregaFinal(vista(i));
+        return lista;
+    }
+
+    /**
+     * Busca los libros que cazan el valor dado en el campo especificado. La
+     * búsqueda usa {@link Libro#caza} sobre un libro de prueba, así que caza
+     * exactamente lo mismo que un recorrido sobre los libros.
+     * @param campo el campo del libro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @return una lista con vistas de los libros tales que cazan el campo
+     *         especificado con el valor dado.
+     * @throws IllegalArgumentException si el campo no es instancia de {@link
+     *         CampoLibro}.
+     */
+    @Override public Lista busca(Enum campo, Object valor) {
+        if (!(campo instanceof CampoLibro))
+            throw new IllegalArgumentException();
+        return busca((CampoLibro) campo, valor, 0, n);
+    }
+
+    /**
+     * Busca en paralelo los libros que cazan el valor dado en el campo
+     * especificado, como {@link #busca(Enum, Object)}. Las columnas se parten
+     * en bloques de índices contiguos; en las columnas de texto, cada bloque
+     * revisa una sola vez cada cadena distinta que contiene.
+     * @param campo el campo del libro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @param ejecutor el ejecutor donde se recorrerán los bloques.
+     * @return una lista con vistas de los libros tales que cazan el campo
+     *         especificado con el valor dado.
+     * @throws IllegalArgumentException si el campo no es instancia de {@link
+     *         CampoLibro}.
+     */
+    @Override public Lista buscaEnParalelo(Enum campo, Object valor,
+                                           ForkJoinPool ejecutor) {
+        if (!(campo instanceof CampoLibro))
+            throw new IllegalArgumentException();
+        CampoLibro c = (CampoLibro) campo;
+        return BusquedaParalela.busca(n, (a, b) -> busca(c, valor, a, b),
+                                      ejecutor);
+    }
+
+    /* Busca los libros en [inicio, fin) que cazan el valor en el campo. */
+    private Lista busca(CampoLibro campo, Object valor, int inicio, int fin) {
+        Lista lista = new Lista();
+        if (inicio >= fin)
+            return lista;
+        Libro sonda = new Libro(null, null, null, 0, 0, 0, 0.0);
+        switch (campo) {
+        case TITULO:
+        case AUTOR:
+        case EDITORIAL:
+            ColumnaTexto columna = campo == CampoLibro.TITULO ? titulos :
+                campo == CampoLibro.AUTOR ? autores : editoriales;
+            byte[] cazan = new byte[columna.distintas + 1];
+            for (int i = inicio; i < fin; i++) {
+                if (borrados[i])
+                    continue;
+                int id = columna.valores[i] + 1;
+                if (cazan[id] == 0) {
+                    String s = columna.get(i);
+                    if (campo == CampoLibro.TITULO)
+                        sonda.setTitulo(s);
+                    else if (campo == CampoLibro.AUTOR)
+                        sonda.setAutor(s);
+                    else
+                        sonda.setEditorial(s);
+                    cazan[id] = sonda.caza(campo, valor) ? (byte) 1 : (byte) 2;
+                }
+                if (cazan[id] == 1)
+                    lista.agregaFinal(vista(i));
+            }
+            break;
+        case AÑO:
+            for (int i = inicio; i < fin; i++) {
+                sonda.setAño(años[i]);
+                if (!borrados[i] && sonda.caza(campo, valor))
+                    lista.agregaFinal(vista(i));
+            }
+            break;
+        case EDICION:
+            for (int i = inicio; i < fin; i++) {
+                sonda.setEdicion(ediciones[i]);
+                if (!borrados[i] && sonda.caza(campo, valor))
+                    lista.agregaFinal(vista(i));
+            }
+            break;
+        case PAGINAS:
+            for (int i = inicio; i < fin; i++) {
+                sonda.setPaginas(paginas[i]);
+                if (!borrados[i] && sonda.caza(campo, valor))
+                    lista.agregaFinal(vista(i));
+            }
+            break;
+        case PRECIO:
+            for (int i = inicio; i < fin; i++) {
+                sonda.setPrecio(precios[i]);
+                if (!borrados[i] && sonda.caza(campo, valor))
+                    lista.agregaFinal(vista(i));
+            }
+            break;
+        }
+        return lista;
+    }
+
+    /**
+     * Busca los libros que cumplen una condición. Para evaluarla, el método
+     * crea una vista de cada libro.
+     * @param condicion la condición que deben cumplir los libros.
+     * @return una lista con vistas de los libros que cumplen la condición.
+     */
+    @Override public Lista busca(Predicate<Registro> condicion) {
+        return busca(condicion, 0, n);
+    }
+
+    /**
+     * Busca en paralelo los libros que cumplen una condición, como {@link
+     * #busca(Predicate)}. Las columnas se parten en bloques de índices
+     * contiguos, sin copiarlas.
+     * @param condicion la condición que deben cumplir los libros.
+     * @param ejecutor el ejecutor donde se recorrerán los bloques.
+     * @return una lista con vistas de los libros que cumplen la condición.
+     */
+    @Override public Lista buscaEnParalelo(Predicate<Registro> condicion,
+                                           ForkJoinPool ejecutor) {
+        return BusquedaParalela.busca(n, (a, b) -> busca(condicion, a, b),
+                                      ejecutor);
+    }
+
+    /* Busca los libros en [inicio, fin) que cumplen la condición. */
+    private Lista busca(Predicate<Registro> condicion, int inicio, int fin) {
+        Lista lista = new Lista();
+        for (int i = inicio; i < fin; i++) {
+            if (borrados[i])
+                continue;
+            Libro libro = vista(i);
+            if (condicion.test(libro))
+                lista.agregaFinal(libro);
+        }
+        return lista;
+    }
+
+    /**
+     * Regresa un iterador que recorre vistas de los libros del almacén.
+     * @return un iterador para recorrer los libros del almacén.
+     */
+    @Override public Iterator<Registro> iterator() {
+        return new Iterador();
+    }
+
+    /**
+     * Regresa un divisor que recorre vistas de los libros del almacén, y que
+     * se parte por índices para recorrerlos en paralelo.
+     * @return un divisor para recorrer los libros del almacén.
+     */
+    @Override public Spliterator<Registro> spliterator() {
+        return new Divisor(0, n);
+    }
+}
@@ -0,0 +1,264 @@
+package mx.unam.ciencias.icc;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Clase para almacenes de registros en una {@link Lista}. Es el almacén que
+ * usan por omisión las bases de datos.
+ *
+ * El almacén recuerda la ubicación de cada identificador, por lo que eliminar
+ * un registro por su identificador toma tiempo constante. Cuando la lista
+ * copia sus nodos porque los compartía con una instantánea, las ubicaciones
+ * no se descartan: la siguiente operación por identificador recorre la lista
+ * junto con la de ubicaciones, que nunca se comparte, y sólo les cambia el
+ * nodo; el recorrido cuesta lo mismo que la copia que lo provocó.
+ */
+public class AlmacenLista implements Almacen {
+
+    /* Clase interna privada para iteradores. */
+    private class Iterador implements Iterator<Registro> {
+        /* El nodo siguiente. */
+        private Lista.Nodo siguiente;
+
+        /* Construye un nuevo iterador. */
+        private Iterador() {
+            siguiente = registros.getCabeza();
+        }
+
+        /* Nos dice si hay un elemento siguiente. */
+        @Override public boolean hasNext() {
+            return siguiente != null;
+        }
+
+        /* Nos da el elemento siguiente. */
+        @Override public Registro next() {
+            if (siguiente == null)
+                throw new NoSuchElementException();
+            Registro registro = (Registro) siguiente.get();
+            siguiente = siguiente.getSiguiente();
+            return registro;
+        }
+    }
+
+    /* Clase interna privada para ubicaciones de registros. */
+    private static class Ubicacion {
+        /* El identificador del registro. */
+        private long id;
+        /* El nodo del registro. */
+        private Lista.Nodo nodo;
+        /* El nodo de la ubicación en la lista de ubicaciones. */
+        private Lista.Nodo nodoUbicacion;
+
+        /* Construye una nueva ubicación. */
+        private Ubicacion(long id, Lista.Nodo nodo) {
+            this.id = id;
+            this.nodo = nodo;
+        }
+    }
+
+    /* Lista de registros. */
+    private Lista registros;
+    /* Lista de ubicaciones, en el mismo orden que los registros. */
+    private Lista orden;
+    /* Las ubicaciones de los registros por su identificador. */
+    private HashMap<Long, Ubicacion> ubicaciones;
+    /* La generación de la lista de registros de las ubicaciones. */
+    private int generacion;
+    /* El identificador del siguiente registro. */
+    private long siguienteId;
+
+    /**
+     * Construye un almacén vacío.
+     */
+    public AlmacenLista() {
+        registros = new Lista();
+        orden = new Lista();
+        ubicaciones = new HashMap<Long, Ubicacion>();
+    }
+
+    /**
+     * Regresa el número de registros en el almacén.
+     * @return el número de registros en el almacén.
+     */
+    @Override public int getLongitud() {
+        return registros.getLongitud();
+    }
+
+    /**
+     * Agrega un registro al final del almacén y regresa su identificador.
+     * @param registro el registro a agregar.
+     * @return el identificador del registro en el almacén.
+     */
+    @Override public long agrega(Registro registro) {
+        long id = siguienteId++;
+        registros.agregaFinal(registro);
+        Ubicacion ubicacion = new Ubicacion(id, registros.getRabo());
+        orden.agregaFinal(ubicacion);
+        ubicacion.nodoUbicacion = orden.getRabo();
+        ubicaciones.put(id, ubicacion);
+        return id;
+    }
+
+    /**
+     * Elimina el primer registro del almacén igual al recibido.
+     * @param registro el registro a eliminar.
+     * @return el identificador del registro eliminado, o -1 si no había
+     *         ninguno igual al recibido.
+     */
+    @Override public long elimina(Registro registro) {
+        Lista.Nodo n = registros.getCabeza();
+        Lista.Nodo m = orden.getCabeza();
+        while (n != null && !n.get().equals(registro)) {
+            n = n.getSiguiente();
+            m = m.getSiguiente();
+        }
+        if (n == null)
+            return -1;
+        registros.eliminaNodo(n);
+        Ubicacion ubicacion = (Ubicacion) orden.eliminaNodo(m);
+        ubicaciones.remove(ubicacion.id);
+        return ubicacion.id;
+    }
+
+    /**
+     * Elimina el registro con el identificador recibido, en tiempo constante.
+     * @param id el identificador del registro a eliminar.
+     * @return el registro eliminado, o <code>null</code> si no había ninguno
+     *         con el identificador.
+     */
+    @Override public Registro elimina(long id) {
+        if (registros.getGeneracion() != generacion)
+            reubica();
+        Ubicacion ubicacion = ubicaciones.remove(id);
+        if (ubicacion == null)
+            return null;
+        orden.eliminaNodo(ubicacion.nodoUbicacion);
+        return (Registro) registros.eliminaNodo(ubicacion.nodo);
+    }
+
+    /**
+     * Regresa el registro con el identificador recibido, en tiempo constante.
+     * @param id el identificador del registro.
+     * @return el registro con el identificador, o <code>null</code> si no hay
+     *         ninguno.
+     */
+    @Override public Registro get(long id) {
+        Ubicacion ubicacion = ubicacion(id);
+        return ubicacion == null ? null : (Registro) ubicacion.nodo.get();
+    }
+
+    /**
+     * Actualiza el registro con el identificador recibido, en tiempo
+     * constante. El registro recibido ocupa el lugar del anterior, que no se
+     * modifica; así, las instantáneas y las listas que contengan al anterior
+     * no ven el cambio (ver {@link Lista#reemplazaNodo}).
+     * @param id el identificador del registro a actualizar.
+     * @param registro el registro con el cual actualizar los valores.
+     * @throws NoSuchElementException si no hay un registro con el
+     *         identificador.
+     */
+    @Override public void actualiza(long id, Registro registro) {
+        Ubicacion ubicacion = ubicacion(id);
+        if (ubicacion == null)
+            throw new NoSuchElementException();
+        registros.reemplazaNodo(ubicacion.nodo, registro);
+    }
+
+    /**
+     * Regresa los identificadores de los registros del almacén, en orden.
+     * @return un arreglo con los identificadores de los registros.
+     */
+    @Override public long[] ids() {
+        long[] arreglo = new long[orden.getLongitud()];
+        int i = 0;
+        for (Lista.Nodo n = orden.getCabeza(); n != null; n = n.getSiguiente())
+            arreglo[i++] = ((Ubicacion) n.get()).id;
+        return arreglo;
+    }
+
+    /* Regresa la ubicación del registro con el identificador recibido. */
+    private Ubicacion ubicacion(long id) {
+        if (registros.getGeneracion() != generacion)
+            reubica();
+        return ubicaciones.get(id);
+    }
+
+    /* Actualiza los nodos de las ubicaciones después de que la lista de
+       registros copió los suyos. */
+    private void reubica() {
+        Lista.Nodo n = registros.getCabeza();
+        Lista.Nodo m = orden.getCabeza();
+        while (n != null) {
+            ((Ubicacion) m.get()).nodo = n;
+            n = n.getSiguiente();
+            m = m.getSiguiente();
+        }
+        generacion = registros.getGeneracion();
+    }
+
+    /**
+     * Limpia el almacén.
+     */
+    @Override public void limpia() {
+        registros.limpia();
+        orden.limpia();
+        ubicaciones.clear();
+        generacion = registros.getGeneracion();
+    }
+
+    /**
+     * Regresa una copia de la lista de registros del almacén.
+     * @return una lista con los registros del almacén.
+     */
+    @Override public Lista copia() {
+        return registros.copia();
+    }
+
+    /**
+     * Regresa una instantánea de la lista de registros del almacén, en tiempo
+     * constante (ver {@link Lista#instantanea}).
+     * @return una instantánea de los registros del almacén.
+     */
+    @Override public Lista instantanea() {
+        return registros.instantanea();
+    }
+
+    /**
+     * Busca los registros que cazan el valor dado en el campo especificado.
+     * @param campo el campo del registro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @return una lista con los registros tales que cazan el campo especificado
+     *         con el valor dado.
+     */
+    @Override public Lista busca(Enum campo, Object valor) {
+        return busca(r -> r.caza(campo, valor));
+    }
+
+    /**
+     * Busca los registros que cumplen una condición.
+     * @param condicion la condición que deben cumplir los registros.
+     * @return una lista con los registros que cumplen la condición.
+     */
+    @Override public Lista busca(Predicate<Registro> condicion) {
+        Lista lista = new Lista();
+        Lista.Nodo n = registros.getCabeza();
+        while (n != null) {
+            Registro registro = (Registro) n.get();
+            if (condicion.test(registro))
+                lista.agregaFinal(registro);
+            n = n.getSiguiente();
+        }
+        return lista;
+    }
+
+    /**
+     * Regresa un iterador para recorrer los registros del almacén.
+     * @return un iterador para recorrer los registros del almacén.
+     */
+    @Override public Iterator<Registro> iterator() {
+        return new Iterador();
+    }
+}
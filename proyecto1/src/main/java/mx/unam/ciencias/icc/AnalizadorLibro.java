@@ -0,0 +1,333 @@
+package mx.unam.ciencias.icc;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Clase para analizar líneas de texto con la serialización de un {@link
+ * Libro}.</p>
+ *
+ * <p>Una línea válida tiene siete campos separados por tabuladores: título,
+ * autor, editorial, año, edición, páginas y precio. Los tres primeros no
+ * pueden ser vacíos, los tres siguientes deben ser enteros, y el último un
+ * doble. Los saltos de línea en la línea se ignoran, igual que los
+ * tabuladores al final de la misma.</p>
+ *
+ * <p>El análisis recorre la línea una sola vez buscando los tabuladores, y
+ * convierte los números directamente de los caracteres de la línea; sólo crea
+ * las tres cadenas de texto del libro. Los números con una forma poco común
+ * (dígitos que no son ASCII, exponentes, espacios, etc.) se convierten con
+ * {@link Integer#parseInt} y {@link Double#parseDouble}, por lo que la clase
+ * acepta exactamente las mismas líneas que ellos.</p>
+ *
+ * <p>La clase también puede analizar líneas codificadas en UTF-8 dentro de un
+ * arreglo de bytes; en ese caso sólo se decodifican los campos de texto.
+ * Con un diccionario de campos (ver {@link DiccionarioCampos}), el autor y la
+ * editorial que ya estén en él se toman del diccionario sin crear
+ * cadenas.</p>
+ */
+public class AnalizadorLibro {
+
+    /** El número de campos de un libro. */
+    public static final int CAMPOS = 7;
+
+    /* Potencias exactas de diez en doble precisión. */
+    private static final double[] POTENCIAS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /* Constructor privado para evitar instanciación. */
+    private AnalizadorLibro() {}
+
+    /**
+     * Analiza una línea de texto y asigna sus valores al libro recibido. Si la
+     * línea es inválida, el libro no se modifica.
+     * @param libro el libro al que se le asignarán los valores.
+     * @param linea la línea a analizar.
+     * @throws ExcepcionLineaInvalida si la línea recibida es nula, vacía o no
+     *         es una serialización válida de un libro.
+     */
+    public static void analiza(Libro libro, CharSequence linea) {
+        analiza(libro, linea, null);
+    }
+
+    /**
+     * Analiza una línea de texto y asigna sus valores al libro recibido,
+     * tomando el autor y la editorial del diccionario recibido (ver {@link
+     * DiccionarioCampos#canoniza(Enum, CharSequence, int, int)}). Si la línea
+     * es inválida, el libro no se modifica.
+     * @param libro el libro al que se le asignarán los valores.
+     * @param linea la línea a analizar.
+     * @param diccionario el diccionario de valores; si es <code>null</code>,
+     *        se crean cadenas nuevas.
+     * @throws ExcepcionLineaInvalida si la línea recibida es nula, vacía o no
+     *         es una serialización válida de un libro.
+     */
+    public static void analiza(Libro libro, CharSequence linea,
+                               DiccionarioCampos diccionario) {
+        if (linea == null)
+            throw new ExcepcionLineaInvalida("La línea es nula");
+        for (int i = 0; i < linea.length(); i++) {
+            if (linea.charAt(i) == '\n') {
+                linea = linea.toString().replace("\n", "");
+                break;
+            }
+        }
+        int fin = linea.length();
+        while (fin > 0 && linea.charAt(fin - 1) == '\t')
+            fin--;
+        int[] inicios = new int[CAMPOS + 1];
+        int c = 0;
+        for (int i = 0; i < fin; i++) {
+            if (linea.charAt(i) == '\t') {
+                if (++c == CAMPOS)
+                    throw new ExcepcionLineaInvalida("La línea tiene más de " +
+                                                     CAMPOS + " campos");
+                inicios[c] = i + 1;
+            }
+        }
+        if (c != CAMPOS - 1)
+            throw new ExcepcionLineaInvalida("La línea tiene menos de " +
+                                             CAMPOS + " campos");
+        inicios[CAMPOS] = fin + 1;
+        for (int i = 0; i < 3; i++)
+            if (inicios[i + 1] - 1 == inicios[i])
+                throw new ExcepcionLineaInvalida("El campo " + (i + 1) +
+                                                 " es vacío");
+        int año = entero(linea, inicios[3], inicios[4] - 1, "año");
+        int edicion = entero(linea, inicios[4], inicios[5] - 1, "edición");
+        int paginas = entero(linea, inicios[5], inicios[6] - 1, "páginas");
+        double precio = doble(linea, inicios[6], fin, "precio");
+        libro.setTitulo(linea.subSequence(0, inicios[1] - 1).toString());
+        libro.setAutor(texto(linea, inicios[1], inicios[2] - 1,
+                             CampoLibro.AUTOR, diccionario));
+        libro.setEditorial(texto(linea, inicios[2], inicios[3] - 1,
+                                 CampoLibro.EDITORIAL, diccionario));
+        libro.setAño(año);
+        libro.setEdicion(edicion);
+        libro.setPaginas(paginas);
+        libro.setPrecio(precio);
+    }
+
+    /**
+     * Analiza una línea codificada en UTF-8 y asigna sus valores al libro
+     * recibido. La línea es el segmento del arreglo entre los índices
+     * recibidos, y no debe incluir el fin de línea. Si la línea es inválida,
+     * el libro no se modifica.
+     * @param libro el libro al que se le asignarán los valores.
+     * @param bytes el arreglo con la línea.
+     * @param inicio el índice del primer byte de la línea.
+     * @param fin el índice siguiente al último byte de la línea.
+     * @throws ExcepcionLineaInvalida si la línea no es una serialización
+     *         válida de un libro.
+     */
+    public static void analiza(Libro libro, byte[] bytes, int inicio,
+                               int fin) {
+        analiza(libro, bytes, inicio, fin, null);
+    }
+
+    /**
+     * Analiza una línea codificada en UTF-8 y asigna sus valores al libro
+     * recibido, como {@link #analiza(Libro, byte[], int, int)}, tomando el
+     * autor y la editorial del diccionario recibido (ver {@link
+     * DiccionarioCampos#canoniza(Enum, byte[], int, int)}).
+     * @param libro el libro al que se le asignarán los valores.
+     * @param bytes el arreglo con la línea.
+     * @param inicio el índice del primer byte de la línea.
+     * @param fin el índice siguiente al último byte de la línea.
+     * @param diccionario el diccionario de valores; si es <code>null</code>,
+     *        se crean cadenas nuevas.
+     * @throws ExcepcionLineaInvalida si la línea no es una serialización
+     *         válida de un libro.
+     */
+    public static void analiza(Libro libro, byte[] bytes, int inicio,
+                               int fin, DiccionarioCampos diccionario) {
+        for (int i = inicio; i < fin; i++)
+            if (bytes[i] == '\n')
+                throw new ExcepcionLineaInvalida("La línea tiene un salto " +
+                                                 "de línea");
+        while (fin > inicio && bytes[fin - 1] == '\t')
+            fin--;
+        int[] inicios = new int[CAMPOS + 1];
+        inicios[0] = inicio;
+        int c = 0;
+        for (int i = inicio; i < fin; i++) {
+            if (bytes[i] == '\t') {
+                if (++c == CAMPOS)
+                    throw new ExcepcionLineaInvalida("La línea tiene más de " +
+                                                     CAMPOS + " campos");
+                inicios[c] = i + 1;
+            }
+        }
+        if (c != CAMPOS - 1)
+            throw new ExcepcionLineaInvalida("La línea tiene menos de " +
+                                             CAMPOS + " campos");
+        inicios[CAMPOS] = fin + 1;
+        for (int i = 0; i < 3; i++)
+            if (inicios[i + 1] - 1 == inicios[i])
+                throw new ExcepcionLineaInvalida("El campo " + (i + 1) +
+                                                 " es vacío");
+        int año = entero(bytes, inicios[3], inicios[4] - 1, "año");
+        int edicion = entero(bytes, inicios[4], inicios[5] - 1, "edición");
+        int paginas = entero(bytes, inicios[5], inicios[6] - 1, "páginas");
+        double precio = doble(bytes, inicios[6], fin, "precio");
+        libro.setTitulo(texto(bytes, inicios[0], inicios[1] - 1));
+        libro.setAutor(texto(bytes, inicios[1], inicios[2] - 1,
+                             CampoLibro.AUTOR, diccionario));
+        libro.setEditorial(texto(bytes, inicios[2], inicios[3] - 1,
+                                 CampoLibro.EDITORIAL, diccionario));
+        libro.setAño(año);
+        libro.setEdicion(edicion);
+        libro.setPaginas(paginas);
+        libro.setPrecio(precio);
+    }
+
+    /* Decodifica el segmento [a, b) del arreglo. */
+    private static String texto(byte[] bytes, int a, int b) {
+        return new String(bytes, a, b - a, StandardCharsets.UTF_8);
+    }
+
+    /* Regresa el segmento [a, b) del arreglo, canonizado en el diccionario
+       si hay. */
+    private static String texto(byte[] bytes, int a, int b, Enum campo,
+                                DiccionarioCampos diccionario) {
+        if (diccionario == null)
+            return texto(bytes, a, b);
+        return diccionario.canoniza(campo, bytes, a, b);
+    }
+
+    /* Regresa el segmento [a, b) de la línea, canonizado en el diccionario
+       si hay. */
+    private static String texto(CharSequence linea, int a, int b, Enum campo,
+                                DiccionarioCampos diccionario) {
+        if (diccionario == null)
+            return linea.subSequence(a, b).toString();
+        return diccionario.canoniza(campo, linea, a, b);
+    }
+
+    /* Convierte a entero el segmento [a, b) de la línea. */
+    private static int entero(CharSequence linea, int a, int b,
+                              String campo) {
+        int i = a;
+        boolean negativo = i < b && linea.charAt(i) == '-';
+        if (negativo)
+            i++;
+        if (i < b && b - i <= 9) {
+            int r = 0;
+            for (; i < b; i++) {
+                char d = linea.charAt(i);
+                if (d < '0' || d > '9')
+                    break;
+                r = 10 * r + (d - '0');
+            }
+            if (i == b)
+                return negativo ? -r : r;
+        }
+        return entero(linea.subSequence(a, b).toString(), campo);
+    }
+
+    /* Convierte a entero el segmento [a, b) del arreglo. */
+    private static int entero(byte[] bytes, int a, int b, String campo) {
+        int i = a;
+        boolean negativo = i < b && bytes[i] == '-';
+        if (negativo)
+            i++;
+        if (i < b && b - i <= 9) {
+            int r = 0;
+            for (; i < b; i++) {
+                byte d = bytes[i];
+                if (d < '0' || d > '9')
+                    break;
+                r = 10 * r + (d - '0');
+            }
+            if (i == b)
+                return negativo ? -r : r;
+        }
+        return entero(texto(bytes, a, b), campo);
+    }
+
+    /* Convierte a entero la cadena con Integer.parseInt. */
+    private static int entero(String s, String campo) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException nfe) {
+            throw new ExcepcionLineaInvalida("Número de " + campo +
+                                             " inválido");
+        }
+    }
+
+    /* Convierte a doble el segmento [a, b) de la línea. Si el número tiene a
+       lo más quince dígitos, el cociente de la mantisa entre una potencia de
+       diez es exacto antes de redondear, y da el mismo doble que {@link
+       Double#parseDouble}. */
+    private static double doble(CharSequence linea, int a, int b,
+                                String campo) {
+        int i = a;
+        boolean negativo = i < b && linea.charAt(i) == '-';
+        if (negativo)
+            i++;
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = -1;
+        for (; i < b; i++) {
+            char d = linea.charAt(i);
+            if (d == '.' && decimales < 0) {
+                decimales = 0;
+                continue;
+            }
+            if (d < '0' || d > '9')
+                break;
+            mantisa = 10 * mantisa + (d - '0');
+            digitos++;
+            if (decimales >= 0)
+                decimales++;
+        }
+        if (i == b && digitos > 0 && digitos <= 15 && decimales != 0 &&
+            (decimales < 0 || digitos > decimales)) {
+            double r = decimales > 0 ? mantisa / POTENCIAS[decimales] : mantisa;
+            return negativo ? -r : r;
+        }
+        return doble(linea.subSequence(a, b).toString(), campo);
+    }
+
+    /* Convierte a doble el segmento [a, b) del arreglo, de la misma manera
+       que el segmento de una línea. */
+    private static double doble(byte[] bytes, int a, int b, String campo) {
+        int i = a;
+        boolean negativo = i < b && bytes[i] == '-';
+        if (negativo)
+            i++;
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = -1;
+        for (; i < b; i++) {
+            byte d = bytes[i];
+            if (d == '.' && decimales < 0) {
+                decimales = 0;
+                continue;
+            }
+            if (d < '0' || d > '9')
+                break;
+            mantisa = 10 * mantisa + (d - '0');
+            digitos++;
+            if (decimales >= 0)
+                decimales++;
+        }
+        if (i == b && digitos > 0 && digitos <= 15 && decimales != 0 &&
+            (decimales < 0 || digitos > decimales)) {
+            double r = decimales > 0 ? mantisa / POTENCIAS[decimales] : mantisa;
+            return negativo ? -r : r;
+        }
+        return doble(texto(bytes, a, b), campo);
+    }
+
+    /* Convierte a doble la cadena con Double.parseDouble. */
+    private static double doble(String s, String campo) {
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException nfe) {
+            throw new ExcepcionLineaInvalida("Número de " + campo +
+                                             " inválido");
+        }
+    }
+}
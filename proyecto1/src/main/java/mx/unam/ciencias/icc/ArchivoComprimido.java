@@ -0,0 +1,320 @@
+package mx.unam.ciencias.icc;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>Clase para archivos de registros comprimidos por bloques. Los registros
+ * se codifican en binario (ver {@link Registro#codifica}), se agrupan en
+ * bloques de un número fijo de registros, y cada bloque se comprime por
+ * separado con {@link Deflater}. Al final del archivo hay un índice con la
+ * posición, las longitudes y el número de registros de cada bloque, así que
+ * cualquier bloque se puede leer sin descomprimir los demás, y varios bloques
+ * se pueden descomprimir en paralelo.</p>
+ *
+ * <p>El archivo empieza con los cuatro bytes mágicos <code>ICCZ</code> y un
+ * byte con la versión. Cada entrada del índice tiene la posición del bloque
+ * en ocho bytes, y su longitud comprimida, su longitud original y su número de
+ * registros en cuatro bytes cada uno. El archivo termina con la posición del
+ * índice en ocho bytes, el número de bloques en cuatro, el número de
+ * registros en ocho, y los bytes mágicos <code>ZCCI</code>.</p>
+ *
+ * <p>Los métodos de lectura pueden llamarse desde varios hilos a la vez.</p>
+ */
+public class ArchivoComprimido implements Closeable {
+
+    /** Versión del formato. */
+    public static final int VERSION = 1;
+    /** Número de registros por bloque por omisión. */
+    public static final int REGISTROS_POR_BLOQUE = 4096;
+
+    /* Bytes mágicos del encabezado. */
+    private static final int MAGIA = 0x4943435A;
+    /* Bytes mágicos del pie. */
+    private static final int MAGIA_PIE = 0x5A434349;
+    /* Longitud del encabezado. */
+    private static final int ENCABEZADO = 5;
+    /* Longitud de cada entrada del índice. */
+    private static final int ENTRADA = 20;
+    /* Longitud del pie. */
+    private static final int PIE = 24;
+
+    /* El canal del archivo. */
+    private FileChannel canal;
+    /* La fábrica de registros en blanco. */
+    private Supplier<Registro> fabrica;
+    /* La posición de cada bloque. */
+    private long[] posiciones;
+    /* La longitud comprimida de cada bloque. */
+    private int[] comprimidas;
+    /* La longitud original de cada bloque. */
+    private int[] originales;
+    /* El índice del primer registro de cada bloque, más el total al final. */
+    private long[] primeros;
+
+    /**
+     * Abre el archivo comprimido en la ruta recibida y lee su índice.
+     * @param ruta la ruta del archivo.
+     * @param fabrica la fábrica de registros en blanco donde se decodifican
+     *        los registros.
+     * @throws IOException si ocurre un error de entrada/salida o el archivo
+     *         no es un archivo comprimido válido.
+     */
+    public ArchivoComprimido(Path ruta, Supplier<Registro> fabrica)
+        throws IOException {
+        this.fabrica = fabrica;
+        canal = FileChannel.open(ruta);
+        try {
+            leeIndice(ruta);
+        } catch (IOException ioe) {
+            canal.close();
+            throw ioe;
+        }
+    }
+
+    /* Lee y valida el encabezado, el pie y el índice. */
+    private void leeIndice(Path ruta) throws IOException {
+        long tamaño = canal.size();
+        if (tamaño < ENCABEZADO + PIE)
+            throw new IOException("No es un archivo comprimido: " + ruta);
+        ByteBuffer encabezado = lee(0, ENCABEZADO);
+        if (encabezado.getInt() != MAGIA)
+            throw new IOException("No es un archivo comprimido: " + ruta);
+        int version = encabezado.get() & 0xFF;
+        if (version != VERSION)
+            throw new IOException("Versión desconocida: " + version);
+        ByteBuffer pie = lee(tamaño - PIE, PIE);
+        long indice = pie.getLong();
+        int bloques = pie.getInt();
+        long total = pie.getLong();
+        if (pie.getInt() != MAGIA_PIE || bloques < 0 || total < 0 ||
+            indice < ENCABEZADO ||
+            indice + (long) bloques * ENTRADA != tamaño - PIE)
+            throw new IOException("Índice inválido en " + ruta);
+        posiciones = new long[bloques];
+        comprimidas = new int[bloques];
+        originales = new int[bloques];
+        primeros = new long[bloques + 1];
+        ByteBuffer entradas = lee(indice, bloques * ENTRADA);
+        long fin = ENCABEZADO;
+        for (int i = 0; i < bloques; i++) {
+            posiciones[i] = entradas.getLong();
+            comprimidas[i] = entradas.getInt();
+            originales[i] = entradas.getInt();
+            int registros = entradas.getInt();
+            if (posiciones[i] != fin || comprimidas[i] < 0 ||
+                originales[i] < 0 || registros <= 0)
+                throw new IOException("Índice inválido en " + ruta);
+            fin += comprimidas[i];
+            primeros[i + 1] = primeros[i] + registros;
+        }
+        if (fin != indice || primeros[bloques] != total)
+            throw new IOException("Índice inválido en " + ruta);
+    }
+
+    /* Lee n bytes del archivo a partir de la posición recibida. */
+    private ByteBuffer lee(long posicion, int n) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(n);
+        while (buffer.hasRemaining()) {
+            int leidos = canal.read(buffer, posicion + buffer.position());
+            if (leidos < 0)
+                throw new EOFException("Archivo comprimido truncado");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Regresa el número de bloques del archivo.
+     * @return el número de bloques del archivo.
+     */
+    public int getNumBloques() {
+        return posiciones.length;
+    }
+
+    /**
+     * Regresa el número de registros del archivo.
+     * @return el número de registros del archivo.
+     */
+    public long getNumRegistros() {
+        return primeros[posiciones.length];
+    }
+
+    /**
+     * Lee y descomprime el bloque recibido.
+     * @param bloque el índice del bloque.
+     * @return una lista con los registros del bloque, en orden.
+     * @throws IOException si ocurre un error de entrada/salida o el bloque es
+     *         inválido.
+     * @throws ExcepcionIndiceInvalido si el índice no es válido.
+     */
+    public Lista leeBloque(int bloque) throws IOException {
+        return leeBloque(bloque, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Lee y descomprime el bloque recibido, canonizando los registros en el
+     * diccionario recibido (ver {@link Registro#decodifica(EntradaBinaria,
+     * DiccionarioCampos)}).
+     * @param bloque el índice del bloque.
+     * @param diccionario el diccionario de valores; puede ser
+     *        <code>null</code>.
+     * @return una lista con los registros del bloque, en orden.
+     * @throws IOException si ocurre un error de entrada/salida o el bloque es
+     *         inválido.
+     * @throws ExcepcionIndiceInvalido si el índice no es válido.
+     */
+    Lista leeBloque(int bloque, DiccionarioCampos diccionario)
+        throws IOException {
+        return leeBloque(bloque, Integer.MAX_VALUE, diccionario);
+    }
+
+    /**
+     * Lee el registro con el índice recibido. Sólo se descomprime el bloque
+     * que lo contiene.
+     * @param indice el índice del registro, empezando en cero.
+     * @return el registro con el índice recibido.
+     * @throws IOException si ocurre un error de entrada/salida o el bloque es
+     *         inválido.
+     * @throws ExcepcionIndiceInvalido si el índice no es válido.
+     */
+    public Registro lee(long indice) throws IOException {
+        if (indice < 0 || indice >= getNumRegistros())
+            throw new ExcepcionIndiceInvalido("Índice inválido: " + indice);
+        int bloque = Arrays.binarySearch(primeros, indice);
+        if (bloque < 0)
+            bloque = -bloque - 2;
+        while (primeros[bloque + 1] == indice)
+            bloque++;
+        return (Registro) leeBloque(bloque, indice - primeros[bloque], null)
+            .getUltimo();
+    }
+
+    /* Descomprime el bloque y decodifica sus registros hasta el último
+       índice recibido, relativo al bloque, canonizándolos en el diccionario
+       si hay. */
+    private Lista leeBloque(int bloque, long ultimo,
+                            DiccionarioCampos diccionario) throws IOException {
+        if (bloque < 0 || bloque >= posiciones.length)
+            throw new ExcepcionIndiceInvalido("Índice inválido: " + bloque);
+        ByteBuffer comprimido = lee(posiciones[bloque], comprimidas[bloque]);
+        byte[] datos = new byte[originales[bloque]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(comprimido.array(), 0, comprimidas[bloque]);
+            int m = 0;
+            while (!inflater.finished()) {
+                int k = inflater.inflate(datos, m, datos.length - m);
+                if (k == 0 && (inflater.needsInput() ||
+                               inflater.needsDictionary() ||
+                               m == datos.length))
+                    break;
+                m += k;
+            }
+            if (!inflater.finished() || m != datos.length)
+                throw new IOException("Bloque corrupto: " + bloque);
+        } catch (DataFormatException dfe) {
+            throw new IOException("Bloque corrupto: " + bloque, dfe);
+        } finally {
+            inflater.end();
+        }
+        long registros = primeros[bloque + 1] - primeros[bloque];
+        EntradaBinaria entrada = new EntradaBinaria(datos);
+        Lista lista = new Lista();
+        for (long i = 0; i < registros && i <= ultimo; i++) {
+            Registro registro = fabrica.get();
+            registro.decodifica(entrada, diccionario);
+            lista.agregaFinal(registro);
+        }
+        if (ultimo >= registros && !entrada.esFin())
+            throw new IOException("Bloque corrupto: " + bloque);
+        return lista;
+    }
+
+    /**
+     * Cierra el archivo.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    @Override public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Escribe los registros en el canal recibido, comprimidos por bloques.
+     * @param canal el canal donde hay que escribir, al inicio del archivo.
+     * @param registros un iterador sobre los registros.
+     * @param registrosPorBloque el número de registros por bloque.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    static void escribe(FileChannel canal, Iterator<Registro> registros,
+                        int registrosPorBloque) throws IOException {
+        ByteBuffer encabezado = ByteBuffer.allocate(ENCABEZADO);
+        encabezado.putInt(MAGIA).put((byte) VERSION).flip();
+        escribe(canal, encabezado);
+        long posicion = ENCABEZADO;
+        long total = 0;
+        ByteBuffer indice = ByteBuffer.allocate(16 * ENTRADA);
+        int bloques = 0;
+        SalidaBinaria salida = new SalidaBinaria(1 << 16);
+        Deflater deflater = new Deflater();
+        byte[] comprimido = new byte[1 << 16];
+        try {
+            while (registros.hasNext()) {
+                salida.limpia();
+                int n = 0;
+                while (n < registrosPorBloque && registros.hasNext()) {
+                    registros.next().codifica(salida);
+                    n++;
+                }
+                byte[] datos = salida.getBytes();
+                deflater.reset();
+                deflater.setInput(datos);
+                deflater.finish();
+                int m = 0;
+                while (!deflater.finished()) {
+                    if (m == comprimido.length)
+                        comprimido = Arrays.copyOf(comprimido, 2 * m);
+                    m += deflater.deflate(comprimido, m,
+                                          comprimido.length - m);
+                }
+                escribe(canal, ByteBuffer.wrap(comprimido, 0, m));
+                if (!indice.hasRemaining()) {
+                    ByteBuffer nuevo =
+                        ByteBuffer.allocate(2 * indice.capacity());
+                    indice.flip();
+                    indice = nuevo.put(indice);
+                }
+                indice.putLong(posicion).putInt(m).putInt(datos.length)
+                    .putInt(n);
+                posicion += m;
+                total += n;
+                bloques++;
+            }
+        } finally {
+            deflater.end();
+        }
+        indice.flip();
+        escribe(canal, indice);
+        ByteBuffer pie = ByteBuffer.allocate(PIE);
+        pie.putLong(posicion).putInt(bloques).putLong(total).putInt(MAGIA_PIE)
+            .flip();
+        escribe(canal, pie);
+    }
+
+    /* Escribe todo el buffer en el canal. */
+    private static void escribe(FileChannel canal, ByteBuffer buffer)
+        throws IOException {
+        while (buffer.hasRemaining())
+            canal.write(buffer);
+    }
+}
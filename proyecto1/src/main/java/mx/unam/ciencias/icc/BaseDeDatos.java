@@ -3,6 +3,40 @@ package mx.unam.ciencias.icc;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Clase abstracta para bases de datos. Provee métodos para agregar y eliminar
@@ -12,17 +46,143 @@ import java.io.IOException;
  *
  * Las clases que extiendan a BaseDeDatos deben implementar el método {@link
  * #creaRegistro}, que crea un registro en blanco. 
+ *
+ * Los registros se guardan en un {@link Almacen}; por omisión es un {@link
+ * AlmacenLista}, pero las clases que extiendan a BaseDeDatos pueden usar otro
+ * motor de almacenamiento.
+ *
+ * La base de datos puede usarse desde varios hilos a la vez. Sus métodos
+ * públicos toman un {@link StampedLock}: las búsquedas y consultas lo toman
+ * para lectura, así que pueden ejecutarse simultáneamente, y las
+ * modificaciones y cargas lo toman para escritura; {@link #getNumRegistros}
+ * hace una lectura optimista. Como el candado no es reentrante, los métodos
+ * protegidos no lo toman, y las clases que extiendan a BaseDeDatos deben
+ * llamarlos dentro de {@link #conLectura} o {@link #conEscritura}.
+ *
+ * Además de guardarse completa, la base de datos puede llevar una bitácora de
+ * escritura anticipada (ver {@link #abreBitacora}): cada modificación agrega
+ * una entrada corta al final de la bitácora, en lugar de reescribir todos los
+ * registros, y de vez en cuando la bitácora se compacta en una instantánea en
+ * el formato de {@link #guarda}.
  */
 public abstract class BaseDeDatos {
 
-    /* Lista de registros en la base de datos. */
-    private Lista registros;
+    /* Número de caracteres que se acumulan antes de escribirlos al guardar. */
+    private static final int TAMAÑO_BLOQUE = 8192;
+    /* Número máximo de bytes que se mapean a la vez al cargar un archivo. */
+    private static final long TAMAÑO_VENTANA = 1L << 30;
+    /* Tamaño mínimo en bytes de los bloques de la carga paralela. */
+    private static final long TAMAÑO_MINIMO_BLOQUE = 1L << 20;
+
+    /**
+     * Número de registros a partir del cual, por omisión, los recorridos de
+     * búsqueda se hacen en paralelo.
+     */
+    public static final int UMBRAL_PARALELO = 1 << 16;
+
+    /**
+     * Número de entradas en la bitácora a partir del cual, por omisión, se
+     * compacta en segundo plano.
+     */
+    public static final int UMBRAL_COMPACTACION = 1 << 16;
+
+    /** Versión del formato binario que escribe {@link #guardaBinario}. */
+    public static final int VERSION_BINARIA = 1;
+
+    /* Número mágico con el que empiezan los archivos binarios. */
+    private static final int MAGIA_BINARIA = 0x49434342;
+    /* Número de bytes que se acumulan antes de escribirlos en binario. */
+    private static final int TAMAÑO_BLOQUE_BINARIO = 1 << 16;
 
     /**
-     * Constructor único.
+     * Inicio de la línea con la que terminan los archivos que escribe {@link
+     * #guarda(Path)}, seguido de la suma CRC32 de los bytes anteriores en
+     * ocho dígitos hexadecimales.
+     */
+    public static final String MARCA_CRC = "#CRC32 ";
+
+    /* Longitud en bytes de la línea de verificación. */
+    private static final int LONGITUD_PIE = MARCA_CRC.length() + 9;
+    /* Tamaño del buffer directo con el que se guardan los archivos. */
+    private static final int TAMAÑO_BUFFER_DIRECTO = 1 << 20;
+
+    /* Almacén de registros en la base de datos. */
+    private Almacen registros;
+    /* Lista de índices que se mantienen al día con los registros. */
+    private Lista indices;
+    /* Número de registros a partir del cual se busca en paralelo. */
+    private volatile int umbralParalelo;
+    /* El ejecutor para las búsquedas y cargas en paralelo. */
+    private volatile ForkJoinPool ejecutor;
+    /* El candado de la base de datos. */
+    private final StampedLock candado;
+    /* La función que calcula la llave natural de los registros. */
+    private Function<Registro, Object> llaveNatural;
+    /* El diccionario de los campos de los registros. */
+    private final DiccionarioCampos diccionario;
+    /* Los identificadores de los registros por llave natural, o null si
+       todavía no se han calculado. */
+    private HashMap<Object, Lista> llaves;
+    /* La bitácora, o null si no hay. */
+    private Bitacora bitacora;
+    /* La ruta de la instantánea de la bitácora. */
+    private Path instantanea;
+    /* Los registros que había antes de la carga en curso, si hay bitácora,
+       para recuperarlos si la carga falla. */
+    private Lista anteriores;
+    /* El número de veces que se ha reemplazado la instantánea sin pasar por
+       una compactación en segundo plano; una compactación que empezó antes no
+       debe reemplazarla. */
+    private long cortes;
+    /* Número de entradas a partir del cual se compacta la bitácora. */
+    private volatile int umbralCompactacion;
+    /* Si hay una compactación en segundo plano pendiente. */
+    private volatile boolean compactando;
+    /* Candado para que sólo haya una compactación a la vez. */
+    private final Object compactacion;
+
+    /**
+     * Constructor que guarda los registros en un {@link AlmacenLista}.
      */
     public BaseDeDatos() {
-        registros = new Lista();
+        this(new AlmacenLista());
+    }
+
+    /**
+     * Constructor que guarda los registros en el almacén recibido.
+     * @param almacen el almacén donde se guardarán los registros.
+     * @throws IllegalArgumentException si el almacén es <code>null</code>.
+     */
+    protected BaseDeDatos(Almacen almacen) {
+        if (almacen == null)
+            throw new IllegalArgumentException();
+        registros = almacen;
+        indices = new Lista();
+        candado = new StampedLock();
+        umbralParalelo = UMBRAL_PARALELO;
+        ejecutor = ForkJoinPool.commonPool();
+        llaveNatural = r -> r;
+        umbralCompactacion = UMBRAL_COMPACTACION;
+        compactacion = new Object();
+        diccionario = new DiccionarioCampos();
+    }
+
+    /**
+     * Regresa el diccionario de los campos de los registros. Los registros
+     * que se cargan en la base de datos (de un archivo, de la instantánea o
+     * de la bitácora) toman sus campos muy repetidos del diccionario al
+     * deserializarse (ver {@link Registro#deserializa(String,
+     * DiccionarioCampos)}), así que comparten sus instancias canónicas, que
+     * tienen además un identificador; las cargas en paralelo canonizan desde
+     * varios hilos a la vez. Los registros que se agregan uno por uno no se
+     * canonizan, ni los de un almacén que codifica sus propios campos (ver
+     * {@link Almacen#codificaCampos}). El diccionario se limpia cada vez que
+     * la base de datos se vacía; mientras tanto conserva los valores de los
+     * registros eliminados.
+     * @return el diccionario de los campos de los registros.
+     */
+    public DiccionarioCampos getDiccionario() {
+        return diccionario;
     }
 
     /**
@@ -30,24 +190,169 @@ public abstract class BaseDeDatos {
      * @return el número de registros en la base de datos.
      */
     public int getNumRegistros() {
-        return registros.getLongitud();
+        long estampa = candado.tryOptimisticRead();
+        int n = registros.getLongitud();
+        if (candado.validate(estampa))
+            return n;
+        estampa = candado.readLock();
+        try {
+            return registros.getLongitud();
+        } finally {
+            candado.unlockRead(estampa);
+        }
     }
 
     /**
      * Regresa una lista con los registros en la base de datos. Modificar esta
-     * lista no cambia a la información en la base de datos.
+     * lista no cambia a la información en la base de datos, y modificar la
+     * base de datos no cambia a la lista. Si el almacén lo permite, la lista
+     * es una instantánea que se obtiene en tiempo constante (ver {@link
+     * Almacen#instantanea}); limpiarla cuando ya no se use evita que la
+     * siguiente modificación de la base de datos tenga que copiar todos los
+     * registros (ver {@link Lista#instantanea}).
      * @return una lista con los registros en la base de datos.
      */
     public Lista getRegistros() {
-        return registros.copia();
+        return conLectura(registros::instantanea);
     }
 
     /**
-     * Agrega el registro recibido a la base de datos.
+     * Agrega el registro recibido a la base de datos y regresa su
+     * identificador, con el que puede eliminarse después sin buscarlo (ver
+     * {@link #eliminaRegistro(long)}).
      * @param registro el registro que hay que agregar a la base de datos.
+     * @return el identificador del registro en la base de datos.
+     */
+    public long agregaRegistro(Registro registro) {
+        long estampa = candado.writeLock();
+        try {
+            registra(Bitacora.AGREGA, registro);
+            return agrega(registro);
+        } finally {
+            candado.unlockWrite(estampa);
+        }
+    }
+
+    /* Agrega el registro al almacén, a los índices y a las llaves. */
+    private long agrega(Registro registro) {
+        long id = registros.agrega(registro);
+        agregaAIndices(registro, id);
+        if (llaves != null)
+            anota(registro, id);
+        return id;
+    }
+
+    /* Regresa el diccionario donde se canonizan los registros al cargarlos,
+       o null si el almacén codifica sus propios campos. */
+    private DiccionarioCampos diccionarioDeCarga() {
+        return registros.codificaCampos() ? null : diccionario;
+    }
+
+    /* Agrega el registro con su identificador a los índices. */
+    private void agregaAIndices(Registro registro, long id) {
+        Lista.Nodo n = indices.getCabeza();
+        while (n != null) {
+            ((Indice) n.get()).agrega(registro, id);
+            n = n.getSiguiente();
+        }
+    }
+
+    /**
+     * Agrega el registro recibido a la base de datos, o actualiza el que ya
+     * tenga su misma llave natural (ver {@link #setLlaveNatural}). Si varios
+     * registros tienen la llave, se actualiza el más antiguo; si la llave del
+     * registro es <code>null</code>, el registro siempre se agrega. El
+     * registro existente se encuentra en tiempo constante en promedio, y se
+     * actualiza sin cambiar su lugar (ver {@link Almacen#actualiza}); las
+     * listas que ya se hayan obtenido de la base de datos no ven el cambio.
+     * @param registro el registro que hay que agregar o con el que hay que
+     *        actualizar.
+     * @return el identificador del registro agregado o actualizado.
+     */
+    public long agregaOActualiza(Registro registro) {
+        long estampa = candado.writeLock();
+        try {
+            registra(Bitacora.ACTUALIZA, registro);
+            return fusiona(registro);
+        } finally {
+            candado.unlockWrite(estampa);
+        }
+    }
+
+    /* Agrega el registro, o actualiza el que tenga su llave natural. */
+    private long fusiona(Registro registro) {
+        if (llaves == null)
+            anotaLlaves();
+        Object llave = llaveNatural.apply(registro);
+        Lista ids = llave == null ? null : llaves.get(llave);
+        if (ids == null)
+            return agrega(registro);
+        long id = (Long) ids.getPrimero();
+        eliminaDeIndices(registros.get(id), id);
+        registros.actualiza(id, registro);
+        agregaAIndices(registros.get(id), id);
+        return id;
+    }
+
+    /**
+     * Regresa la función que calcula la llave natural de los registros.
+     * @return la función que calcula la llave natural de los registros.
      */
-    public void agregaRegistro(Registro registro) {
-        registros.agregaFinal(registro);
+    public Function<Registro, Object> getLlaveNatural() {
+        return llaveNatural;
+    }
+
+    /**
+     * Define la función que calcula la llave natural de los registros, con la
+     * que {@link #agregaOActualiza} decide si un registro ya está en la base
+     * de datos. Las llaves se comparan con <code>equals</code> y
+     * <code>hashCode</code>, y la llave de un registro debe depender sólo de
+     * los valores que <code>equals</code> compara. Por omisión la llave es
+     * el registro mismo; las clases que extiendan a BaseDeDatos pueden
+     * definir otra.
+     * @param llaveNatural la función que calcula la llave natural.
+     * @throws IllegalArgumentException si la función es <code>null</code>.
+     */
+    public void setLlaveNatural(Function<Registro, Object> llaveNatural) {
+        if (llaveNatural == null)
+            throw new IllegalArgumentException();
+        conEscritura(() -> {
+                this.llaveNatural = llaveNatural;
+                llaves = null;
+            });
+    }
+
+    /* Calcula las llaves de todos los registros. */
+    private void anotaLlaves() {
+        llaves = new HashMap<Object, Lista>();
+        long[] ids = registros.ids();
+        int i = 0;
+        for (Registro registro : registros)
+            anota(registro, ids[i++]);
+    }
+
+    /* Anota el identificador del registro bajo su llave. */
+    private void anota(Registro registro, long id) {
+        Object llave = llaveNatural.apply(registro);
+        if (llave == null)
+            return;
+        Lista ids = llaves.get(llave);
+        if (ids == null) {
+            ids = new Lista();
+            llaves.put(llave, ids);
+        }
+        ids.agregaFinal(id);
+    }
+
+    /* Borra el identificador del registro de su llave. */
+    private void desanota(Registro registro, long id) {
+        Object llave = llaveNatural.apply(registro);
+        Lista ids = llave == null ? null : llaves.get(llave);
+        if (ids == null)
+            return;
+        ids.elimina(id);
+        if (ids.esVacia())
+            llaves.remove(llave);
     }
 
     /**
@@ -55,30 +360,553 @@ public abstract class BaseDeDatos {
      * @param registro el registro que hay que eliminar de la base de datos.
      */
     public void eliminaRegistro(Registro registro) {
-        registros.elimina(registro);
+        conEscritura(() -> {
+                registra(Bitacora.ELIMINA, registro);
+                elimina(registro);
+            });
+    }
+
+    /**
+     * Elimina el registro con el identificador recibido de la base de datos.
+     * A diferencia de {@link #eliminaRegistro(Registro)}, el registro no se
+     * busca comparando sus campos: en el almacén por omisión la eliminación
+     * toma tiempo constante. Los identificadores de los registros eliminados
+     * no se reutilizan. Si hay una bitácora abierta, la eliminación se
+     * registra con el número del registro entre los que son iguales a él, para
+     * que al reproducirla se elimine el mismo aunque haya otros iguales;
+     * contarlos toma tiempo proporcional al número de registros con su misma
+     * llave natural (ver {@link #setLlaveNatural}).
+     * @param id el identificador del registro que hay que eliminar.
+     * @return <code>true</code> si había un registro con el identificador,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean eliminaRegistro(long id) {
+        long estampa = candado.writeLock();
+        try {
+            Registro registro = registros.get(id);
+            if (registro == null)
+                return false;
+            if (bitacora != null)
+                registra(Bitacora.BORRA, numero(registro, id), registro);
+            elimina(id, registro);
+            return true;
+        } finally {
+            candado.unlockWrite(estampa);
+        }
+    }
+
+    /* Elimina el registro del almacén, de los índices y de las llaves. */
+    private void elimina(Registro registro) {
+        long id = registros.elimina(registro);
+        if (id < 0)
+            return;
+        eliminaDeIndices(registro, id);
+        if (llaves != null)
+            desanota(registro, id);
+    }
+
+    /* Elimina el registro con el identificador del almacén, de los índices y
+       de las llaves. */
+    private void elimina(long id, Registro registro) {
+        registros.elimina(id);
+        eliminaDeIndices(registro, id);
+        if (llaves != null)
+            desanota(registro, id);
+    }
+
+    /* Regresa los identificadores, en orden, de los registros que pueden ser
+       iguales al recibido: los que tienen su llave natural, o todos si su
+       llave es null. */
+    private Lista candidatos(Registro registro) {
+        Object llave = llaveNatural.apply(registro);
+        Lista ids = new Lista();
+        if (llave == null) {
+            for (long id : registros.ids())
+                ids.agregaFinal(id);
+            return ids;
+        }
+        if (llaves == null)
+            anotaLlaves();
+        Lista anotados = llaves.get(llave);
+        return anotados == null ? ids : anotados;
+    }
+
+    /* Regresa el número del registro con el identificador entre los
+       registros iguales a él, en el orden de la base de datos. */
+    private int numero(Registro registro, long id) {
+        int numero = 0;
+        for (Lista.Nodo n = candidatos(registro).getCabeza(); n != null;
+             n = n.getSiguiente()) {
+            long otro = (Long) n.get();
+            if (otro == id)
+                break;
+            if (registro.equals(registros.get(otro)))
+                numero++;
+        }
+        return numero;
+    }
+
+    /* Regresa el identificador del registro igual al recibido con el número
+       recibido entre los iguales, o -1 si no hay. */
+    private long identificador(Registro registro, int numero) {
+        for (Lista.Nodo n = candidatos(registro).getCabeza(); n != null;
+             n = n.getSiguiente()) {
+            long id = (Long) n.get();
+            if (registro.equals(registros.get(id)) && numero-- == 0)
+                return id;
+        }
+        return -1;
+    }
+
+    /* Elimina el registro con el identificador de los índices. */
+    private void eliminaDeIndices(Registro registro, long id) {
+        Lista.Nodo n = indices.getCabeza();
+        while (n != null) {
+            ((Indice) n.get()).elimina(registro, id);
+            n = n.getSiguiente();
+        }
     }
 
     /**
      * Limpia la base de datos.
      */
     public void limpia() {
+        conEscritura(() -> {
+                registra(Bitacora.LIMPIA, null);
+                vacia();
+            });
+    }
+
+    /* Vacía el almacén, los índices, las llaves y el diccionario. */
+    private void vacia() {
         registros.limpia();
+        Lista.Nodo n = indices.getCabeza();
+        while (n != null) {
+            ((Indice) n.get()).limpia();
+            n = n.getSiguiente();
+        }
+        if (llaves != null)
+            llaves.clear();
+        diccionario.limpia();
     }
 
     /**
-     * Guarda todos los registros en la base de datos en la salida recibida.
-     * @param out la salida donde hay que guardar los registos.
-     * @param n el nodo que contiene el registro a guardar.
+     * Abre una bitácora de escritura anticipada. La base de datos se vacía, se
+     * carga de la instantánea (si existe) y reproduce las entradas de la
+     * bitácora (si existe) que la instantánea no incluye; a partir de
+     * entonces cada modificación agrega una entrada a la bitácora antes de
+     * aplicarse, y cada carga que termina reemplaza a la instantánea y vacía
+     * la bitácora; si una carga falla, la base de datos regresa a los registros
+     * que tenía antes y la instantánea y la bitácora no cambian.
+     * Las entradas se escriben al sistema operativo en cuanto se agregan, así
+     * que sobreviven a que el programa termine; la instantánea se escribe con
+     * {@link java.nio.channels.FileChannel#force}. Cuando la bitácora tiene
+     * más entradas que el umbral de compactación, se compacta en segundo plano
+     * en el ejecutor de la base de datos (ver {@link #compacta}). Las entradas
+     * de {@link #agregaOActualiza} se reproducen con la llave natural vigente,
+     * que debe ser la misma con la que se escribieron.
+     * @param instantanea la ruta de la instantánea.
+     * @param bitacora la ruta de la bitácora.
      * @throws IOException si ocurre un error de entrada/salida.
+     * @throws IllegalStateException si ya hay una bitácora abierta.
      */
-    private void guarda(BufferedWriter out, Lista.Nodo n) throws IOException {
-	if (n == null)
-	    return;
-        if (n.get() instanceof Registro) {
-	     Registro r = (Registro) n.get();
-	     out.write(r.serializa());
-	}
-        guarda(out, n.getSiguiente());
+    public void abreBitacora(Path instantanea, Path bitacora)
+        throws IOException {
+        long estampa = candado.writeLock();
+        try {
+            if (this.bitacora != null)
+                throw new IllegalStateException("Ya hay una bitácora abierta");
+            vacia();
+            long marca = 0;
+            if (Files.exists(instantanea))
+                marca = cargaInstantanea(instantanea);
+            this.bitacora = new Bitacora(bitacora, marca, this::creaRegistro,
+                                         diccionarioDeCarga(),
+                                         this::aplica);
+            this.instantanea = instantanea;
+        } finally {
+            candado.unlockWrite(estampa);
+        }
+    }
+
+    /* Carga los registros de la instantánea y regresa su marca. */
+    private long cargaInstantanea(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta)) {
+            verificaPie(canal, ruta);
+        }
+        try (BufferedReader in =
+             Files.newBufferedReader(ruta, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = in.readLine()) != null) {
+                if (linea.startsWith(Bitacora.MARCA))
+                    return Long.parseLong(linea.substring(
+                                              Bitacora.MARCA.length()));
+                Registro registro = creaRegistro();
+                registro.deserializa(linea, diccionarioDeCarga());
+                agrega(registro);
+            }
+        } catch (ExcepcionLineaInvalida | NumberFormatException e) {}
+        return 0;
+    }
+
+    /* Aplica una entrada de la bitácora. */
+    private void aplica(char operacion, int numero, Registro registro) {
+        switch (operacion) {
+        case Bitacora.AGREGA:    agrega(registro);  break;
+        case Bitacora.ELIMINA:   elimina(registro); break;
+        case Bitacora.BORRA:     borra(registro, numero); break;
+        case Bitacora.ACTUALIZA: fusiona(registro); break;
+        default:                 vacia();
+        }
+    }
+
+    /* Elimina el registro igual al recibido con el número recibido. */
+    private void borra(Registro registro, int numero) {
+        long id = identificador(registro, numero);
+        if (id >= 0)
+            elimina(id, registros.get(id));
+    }
+
+    /* Registra la operación en la bitácora, si hay, y programa una
+       compactación si la bitácora rebasa el umbral. */
+    private void registra(char operacion, Registro registro) {
+        registra(operacion, 0, registro);
+    }
+
+    /* Registra la operación con el número del registro entre los iguales,
+       que sólo se usa si la operación es Bitacora.BORRA. */
+    private void registra(char operacion, int numero, Registro registro) {
+        if (bitacora == null)
+            return;
+        try {
+            if (operacion == Bitacora.BORRA)
+                bitacora.escribeBorrado(numero, registro);
+            else
+                bitacora.escribe(operacion, registro);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        if (bitacora.getEntradas() >= umbralCompactacion && !compactando) {
+            compactando = true;
+            ejecutor.execute(() -> {
+                    try {
+                        compacta();
+                    } catch (IOException | IllegalStateException e) {
+                        /* La bitácora sigue completa; la siguiente
+                           compactación lo vuelve a intentar. */
+                    } finally {
+                        compactando = false;
+                    }
+                });
+        }
+    }
+
+    /**
+     * Compacta la bitácora: escribe una instantánea con los registros de la
+     * base de datos, la pone en lugar de la anterior de forma atómica, y
+     * recorta de la bitácora las entradas que la instantánea incluye. La base
+     * de datos sólo se bloquea para tomar una instantánea de los registros y
+     * para recortar la bitácora; mientras se escribe la instantánea se puede
+     * seguir leyendo y modificando. Si el proceso se interrumpe, la bitácora
+     * sigue completa.
+     * @throws IOException si ocurre un error de entrada/salida.
+     * @throws IllegalStateException si no hay una bitácora abierta.
+     */
+    public void compacta() throws IOException {
+        synchronized (compactacion) {
+            Lista lista;
+            Bitacora b;
+            Path ruta;
+            long marca, corte, inicio;
+            int entradas;
+            long estampa = candado.readLock();
+            try {
+                if (bitacora == null)
+                    throw new IllegalStateException("No hay una bitácora " +
+                                                    "abierta");
+                lista = registros.instantanea();
+                b = bitacora;
+                ruta = instantanea;
+                marca = b.getSecuencia();
+                corte = b.getLongitud();
+                entradas = b.getEntradas();
+                inicio = cortes;
+            } finally {
+                candado.unlockRead(estampa);
+            }
+            Path temporal;
+            try {
+                temporal = escribeTemporal(ruta, lista, Bitacora.MARCA + marca);
+            } finally {
+                lista.limpia();
+            }
+            estampa = candado.writeLock();
+            try {
+                if (b != bitacora || inicio != cortes) {
+                    Files.deleteIfExists(temporal);
+                    return;
+                }
+                reemplaza(temporal, ruta);
+                b.recorta(corte, entradas);
+            } finally {
+                candado.unlockWrite(estampa);
+            }
+        }
+    }
+
+    /* Reemplaza la instantánea con los registros actuales y vacía la
+       bitácora; se llama con el candado tomado para escritura. */
+    private void vuelca() throws IOException {
+        cortes++;
+        Lista lista = registros.instantanea();
+        Path temporal;
+        try {
+            temporal = escribeTemporal(instantanea, lista, Bitacora.MARCA +
+                                       bitacora.getSecuencia());
+        } finally {
+            lista.limpia();
+        }
+        reemplaza(temporal, instantanea);
+        bitacora.recorta(bitacora.getLongitud(), bitacora.getEntradas());
+    }
+
+    /* Vacía la base de datos para una carga; se llama con el candado tomado
+       para escritura. Si hay bitácora, guarda antes una instantánea de los
+       registros, que son los de la instantánea y la bitácora en disco. */
+    private void iniciaCarga() {
+        if (bitacora != null)
+            anteriores = registros.instantanea();
+        vacia();
+    }
+
+    /* Libera el candado después de una carga. Si hay bitácora y la carga
+       terminó, reemplaza antes la instantánea; si falló, deja la instantánea
+       y la bitácora como estaban y regresa la base de datos a los registros
+       que tenía antes de la carga, para que sigan coincidiendo. Los registros
+       recuperados se canonizan otra vez en el diccionario, que se vació. */
+    private void liberaCarga(long estampa, boolean exito) throws IOException {
+        try {
+            if (bitacora != null && exito) {
+                vuelca();
+            } else if (bitacora != null) {
+                vacia();
+                DiccionarioCampos diccionario = diccionarioDeCarga();
+                for (Lista.Nodo n = anteriores.getCabeza(); n != null;
+                     n = n.getSiguiente()) {
+                    Registro registro = (Registro)n.get();
+                    if (diccionario != null)
+                        registro.canoniza(diccionario);
+                    agrega(registro);
+                }
+            }
+        } finally {
+            if (anteriores != null)
+                anteriores.limpia();
+            anteriores = null;
+            candado.unlockWrite(estampa);
+        }
+    }
+
+    /* Escribe los registros de la lista en un archivo temporal junto a la
+       ruta, seguidos de la línea extra (si no es null) y de la línea de
+       verificación, lo sincroniza con el disco y regresa el temporal. */
+    private static Path escribeTemporal(Path ruta, Lista lista, String extra)
+        throws IOException {
+        Path temporal = creaTemporal(ruta);
+        try (FileChannel canal = FileChannel.open(temporal,
+                                                  StandardOpenOption.WRITE)) {
+            ByteBuffer buffer =
+                ByteBuffer.allocateDirect(TAMAÑO_BUFFER_DIRECTO);
+            CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CRC32 crc = new CRC32();
+            StringBuilder sb = new StringBuilder(TAMAÑO_BLOQUE + 256);
+            for (Lista.Nodo n = lista.getCabeza(); n != null;
+                 n = n.getSiguiente()) {
+                ((Registro) n.get()).serializa(sb);
+                if (sb.length() >= TAMAÑO_BLOQUE)
+                    codifica(sb, codificador, buffer, canal, crc);
+            }
+            if (extra != null)
+                sb.append(extra).append('\n');
+            codifica(sb, codificador, buffer, canal, crc);
+            descarga(buffer, canal, crc);
+            sb.append(MARCA_CRC)
+                .append(String.format("%08x", crc.getValue())).append('\n');
+            codifica(sb, codificador, buffer, canal, crc);
+            descarga(buffer, canal, crc);
+            canal.force(true);
+        } catch (IOException ioe) {
+            Files.deleteIfExists(temporal);
+            throw ioe;
+        }
+        return temporal;
+    }
+
+    /* Crea un archivo temporal vacío junto a la ruta. Si el archivo de la
+       ruta existe, el temporal recibe sus permisos, para que el reemplazo no
+       los cambie; si no, tiene los de cualquier archivo nuevo. */
+    static Path creaTemporal(Path ruta) throws IOException {
+        Path directorio = ruta.toAbsolutePath().getParent();
+        String nombre = ruta.getFileName().toString() + ".";
+        Path temporal = null;
+        while (temporal == null) {
+            long n = ThreadLocalRandom.current().nextLong();
+            temporal = directorio.resolve(nombre + Long.toUnsignedString(n) +
+                                          ".tmp");
+            try {
+                Files.createFile(temporal);
+            } catch (FileAlreadyExistsException faee) {
+                temporal = null;
+            }
+        }
+        try {
+            if (Files.exists(ruta) &&
+                Files.getFileAttributeView(
+                    ruta, PosixFileAttributeView.class) != null)
+                Files.setPosixFilePermissions(
+                    temporal, Files.getPosixFilePermissions(ruta));
+        } catch (IOException ioe) {
+            Files.deleteIfExists(temporal);
+            throw ioe;
+        }
+        return temporal;
+    }
+
+    /* Reemplaza de forma atómica el archivo de la ruta con el temporal y
+       sincroniza el directorio con el disco, para que el cambio de nombre
+       sobreviva a una caída. Si el reemplazo falla, borra el temporal. */
+    static void reemplaza(Path temporal, Path ruta) throws IOException {
+        try {
+            Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            Files.deleteIfExists(temporal);
+            throw ioe;
+        }
+        sincronizaDirectorio(ruta);
+    }
+
+    /* Sincroniza con el disco el directorio de la ruta. En los sistemas
+       donde un directorio no puede abrirse como archivo no hace nada. */
+    static void sincronizaDirectorio(Path ruta) throws IOException {
+        FileChannel canal;
+        try {
+            canal = FileChannel.open(ruta.toAbsolutePath().getParent(),
+                                     StandardOpenOption.READ);
+        } catch (IOException ioe) {
+            return;
+        }
+        try (FileChannel directorio = canal) {
+            directorio.force(true);
+        }
+    }
+
+    /* Codifica en UTF-8 el contenido del constructor de cadenas en el buffer,
+       descargándolo en el canal cada vez que se llena, y vacía el
+       constructor. */
+    private static void codifica(StringBuilder sb, CharsetEncoder codificador,
+                                 ByteBuffer buffer, FileChannel canal,
+                                 CRC32 crc) throws IOException {
+        CharBuffer caracteres = CharBuffer.wrap(sb);
+        codificador.reset();
+        CoderResult resultado;
+        while ((resultado = codificador.encode(caracteres, buffer, true))
+               .isOverflow())
+            descarga(buffer, canal, crc);
+        if (resultado.isError())
+            resultado.throwException();
+        while (codificador.flush(buffer).isOverflow())
+            descarga(buffer, canal, crc);
+        sb.setLength(0);
+    }
+
+    /* Escribe el contenido del buffer en el canal, acumulándolo en la suma de
+       verificación, y vacía el buffer. */
+    private static void descarga(ByteBuffer buffer, FileChannel canal,
+                                 CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining())
+            canal.write(buffer);
+        buffer.clear();
+    }
+
+    /* Regresa el número de bytes del archivo antes de su línea de
+       verificación, o su tamaño si no tiene. Si la tiene y la suma no
+       coincide, lanza una excepción. */
+    private static long verificaPie(FileChannel canal, Path ruta)
+        throws IOException {
+        long tamaño = canal.size();
+        if (tamaño < LONGITUD_PIE)
+            return tamaño;
+        ByteBuffer pie = ByteBuffer.allocate(LONGITUD_PIE);
+        while (pie.hasRemaining())
+            if (canal.read(pie, tamaño - LONGITUD_PIE + pie.position()) < 0)
+                throw new IOException("No pude leer " + ruta);
+        String linea = new String(pie.array(), StandardCharsets.ISO_8859_1);
+        if (!linea.startsWith(MARCA_CRC) || !linea.endsWith("\n"))
+            return tamaño;
+        long suma;
+        try {
+            suma = Long.parseLong(linea.substring(MARCA_CRC.length(),
+                                                  LONGITUD_PIE - 1), 16);
+        } catch (NumberFormatException nfe) {
+            return tamaño;
+        }
+        long datos = tamaño - LONGITUD_PIE;
+        CRC32 crc = new CRC32();
+        for (long posicion = 0; posicion < datos;) {
+            long n = Math.min(datos - posicion, TAMAÑO_VENTANA);
+            crc.update(canal.map(FileChannel.MapMode.READ_ONLY, posicion, n));
+            posicion += n;
+        }
+        if (crc.getValue() != suma)
+            throw new IOException("La suma de verificación no coincide en " +
+                                  ruta);
+        return datos;
+    }
+
+    /**
+     * Cierra la bitácora, si hay una abierta. La base de datos conserva sus
+     * registros, pero sus modificaciones dejan de registrarse.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    public void cierraBitacora() throws IOException {
+        long estampa = candado.writeLock();
+        try {
+            if (bitacora == null)
+                return;
+            Bitacora b = bitacora;
+            bitacora = null;
+            instantanea = null;
+            cortes++;
+            b.cierra();
+        } finally {
+            candado.unlockWrite(estampa);
+        }
+    }
+
+    /**
+     * Regresa el número de entradas en la bitácora a partir del cual se
+     * compacta en segundo plano.
+     * @return el umbral de compactación.
+     */
+    public int getUmbralCompactacion() {
+        return umbralCompactacion;
+    }
+
+    /**
+     * Define el número de entradas en la bitácora a partir del cual se
+     * compacta en segundo plano. Un umbral de {@link Integer#MAX_VALUE} hace
+     * que la bitácora sólo se compacte al llamar {@link #compacta}.
+     * @param umbralCompactacion el nuevo umbral de compactación.
+     * @throws IllegalArgumentException si el umbral no es positivo.
+     */
+    public void setUmbralCompactacion(int umbralCompactacion) {
+        if (umbralCompactacion <= 0)
+            throw new IllegalArgumentException("El umbral debe ser positivo");
+        this.umbralCompactacion = umbralCompactacion;
     }
 
     /**
@@ -87,7 +915,250 @@ public abstract class BaseDeDatos {
      * @throws IOException si ocurre un error de entrada/salida.
      */
     public void guarda(BufferedWriter out) throws IOException {
-	guarda(out, registros.getCabeza());
+        StringBuilder sb = new StringBuilder(TAMAÑO_BLOQUE + 256);
+        char[] bloque = new char[TAMAÑO_BLOQUE + 256];
+        long estampa = candado.readLock();
+        try {
+            for (Registro registro : registros) {
+                registro.serializa(sb);
+                if (sb.length() >= TAMAÑO_BLOQUE)
+                    bloque = escribe(out, sb, bloque);
+            }
+        } finally {
+            candado.unlockRead(estampa);
+        }
+        escribe(out, sb, bloque);
+    }
+
+    /**
+     * Guarda todos los registros en la base de datos en el archivo recibido,
+     * sin dejarlo nunca a medias. Los registros se escriben en un archivo
+     * temporal en el mismo directorio, a través de un buffer directo grande,
+     * seguidos de una línea de verificación con su suma CRC32 (ver {@link
+     * #MARCA_CRC}); el temporal se sincroniza con el disco y reemplaza al
+     * archivo de forma atómica, conservando sus permisos, y después se
+     * sincroniza el directorio. Si algo falla, el archivo anterior se queda
+     * intacto. Los registros se toman de una instantánea, por lo que la
+     * escritura no bloquea a otros hilos.
+     * @param ruta la ruta del archivo donde hay que guardar los registros.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    public void guarda(Path ruta) throws IOException {
+        Lista lista = getRegistros();
+        Path temporal;
+        try {
+            temporal = escribeTemporal(ruta, lista, null);
+        } finally {
+            lista.limpia();
+        }
+        reemplaza(temporal, ruta);
+    }
+
+    /* Escribe el contenido del constructor de cadenas en la salida, usando el
+     * arreglo como intermediario, y vacía el constructor. Regresa el arreglo,
+     * que se crece si no era suficiente. */
+    private static char[] escribe(BufferedWriter out, StringBuilder sb,
+                                  char[] bloque) throws IOException {
+        int n = sb.length();
+        if (n > bloque.length)
+            bloque = new char[n];
+        sb.getChars(0, n, bloque, 0);
+        out.write(bloque, 0, n);
+        sb.setLength(0);
+        return bloque;
+    }
+
+    /**
+     * Guarda todos los registros en la base de datos en el archivo recibido,
+     * en formato binario (ver {@link Registro#codifica}). El archivo empieza
+     * con un encabezado de cuatro bytes mágicos (<code>ICCB</code>), un byte
+     * con la versión del formato y el número de registros en ocho bytes.
+     * @param ruta la ruta del archivo donde hay que guardar los registros.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    public void guardaBinario(Path ruta) throws IOException {
+        SalidaBinaria salida = new SalidaBinaria(TAMAÑO_BLOQUE_BINARIO + 256);
+        try (FileChannel canal =
+             FileChannel.open(ruta, StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            long estampa = candado.readLock();
+            try {
+                for (int i = 24; i >= 0; i -= 8)
+                    salida.escribeByte(MAGIA_BINARIA >>> i);
+                salida.escribeByte(VERSION_BINARIA);
+                salida.escribeLargo(registros.getLongitud());
+                for (Registro registro : registros) {
+                    registro.codifica(salida);
+                    if (salida.getLongitud() >= TAMAÑO_BLOQUE_BINARIO)
+                        salida.vuelca(canal);
+                }
+            } finally {
+                candado.unlockRead(estampa);
+            }
+            salida.vuelca(canal);
+        }
+    }
+
+    /**
+     * Carga los registros del archivo binario recibido en la base de datos
+     * (ver {@link #guardaBinario}). Si antes de llamar el método había
+     * registros en la base de datos, estos son eliminados, a menos que el
+     * encabezado del archivo sea inválido. Si el archivo se termina antes de
+     * tiempo o tiene un registro inválido, se lanza una excepción y los
+     * registros anteriores se quedan en la base de datos, a menos que haya una
+     * bitácora abierta (ver {@link #abreBitacora}): entonces la base de datos
+     * regresa a los registros que tenía antes de la carga.
+     * @param ruta la ruta del archivo de donde hay que cargar los registros.
+     * @throws IOException si ocurre un error de entrada/salida, o el archivo
+     *         no es un archivo binario válido.
+     */
+    public void cargaBinaria(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta)) {
+            EntradaBinaria entrada = new EntradaBinaria(canal);
+            int magia = 0;
+            for (int i = 0; i < 4; i++)
+                magia = (magia << 8) | entrada.leeByte();
+            if (magia != MAGIA_BINARIA)
+                throw new IOException("No es un archivo binario: " + ruta);
+            int version = entrada.leeByte();
+            if (version != VERSION_BINARIA)
+                throw new IOException("Versión binaria desconocida: " +
+                                      version);
+            long n = entrada.leeLargo();
+            if (n < 0)
+                throw new IOException("Número de registros inválido: " + n);
+            long estampa = candado.writeLock();
+            boolean exito = false;
+            try {
+                iniciaCarga();
+                for (long i = 0; i < n; i++) {
+                    Registro registro = creaRegistro();
+                    registro.decodifica(entrada, diccionarioDeCarga());
+                    agrega(registro);
+                }
+                if (!entrada.esFin())
+                    throw new IOException("Bytes de más al final de " + ruta);
+                exito = true;
+            } finally {
+                liberaCarga(estampa, exito);
+            }
+        }
+    }
+
+    /**
+     * Guarda todos los registros en la base de datos en el archivo recibido,
+     * comprimidos por bloques de {@link
+     * ArchivoComprimido#REGISTROS_POR_BLOQUE} registros (ver {@link
+     * ArchivoComprimido}).
+     * @param ruta la ruta del archivo donde hay que guardar los registros.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    public void guardaComprimido(Path ruta) throws IOException {
+        guardaComprimido(ruta, ArchivoComprimido.REGISTROS_POR_BLOQUE);
+    }
+
+    /**
+     * Guarda todos los registros en la base de datos en el archivo recibido,
+     * comprimidos por bloques del número de registros recibido (ver {@link
+     * ArchivoComprimido}). Bloques más grandes comprimen mejor; bloques más
+     * pequeños hacen más baratas las lecturas de un solo registro.
+     * @param ruta la ruta del archivo donde hay que guardar los registros.
+     * @param registrosPorBloque el número de registros por bloque.
+     * @throws IOException si ocurre un error de entrada/salida.
+     * @throws IllegalArgumentException si el número de registros por bloque
+     *         no es positivo.
+     */
+    public void guardaComprimido(Path ruta, int registrosPorBloque)
+        throws IOException {
+        if (registrosPorBloque <= 0)
+            throw new IllegalArgumentException("El número de registros por " +
+                                               "bloque debe ser positivo");
+        try (FileChannel canal =
+             FileChannel.open(ruta, StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            long estampa = candado.readLock();
+            try {
+                ArchivoComprimido.escribe(canal, registros.iterator(),
+                                          registrosPorBloque);
+            } finally {
+                candado.unlockRead(estampa);
+            }
+        }
+    }
+
+    /**
+     * Abre el archivo comprimido recibido para leer sus registros o bloques
+     * sin cargarlo completo (ver {@link #guardaComprimido}). Los registros se
+     * crean con {@link #creaRegistro}.
+     * @param ruta la ruta del archivo comprimido.
+     * @return el archivo comprimido abierto; hay que cerrarlo.
+     * @throws IOException si ocurre un error de entrada/salida, o el archivo
+     *         no es un archivo comprimido válido.
+     */
+    public ArchivoComprimido abreComprimido(Path ruta) throws IOException {
+        return new ArchivoComprimido(ruta, this::creaRegistro);
+    }
+
+    /**
+     * Carga los registros del archivo comprimido recibido en la base de datos
+     * (ver {@link #guardaComprimido}). Los bloques se descomprimen en paralelo
+     * en el ejecutor de la base de datos (ver {@link #setEjecutor}) y se
+     * agregan en el orden del archivo. Si antes de llamar el método había
+     * registros en la base de datos, estos son eliminados, a menos que el
+     * índice del archivo sea inválido. Si un bloque es inválido, se lanza una
+     * excepción y la base de datos se queda con los registros de los bloques
+     * anteriores, a menos que haya una bitácora abierta (ver {@link
+     * #abreBitacora}): entonces regresa a los registros que tenía antes de la
+     * carga, y la instantánea y la bitácora no cambian. Como los registros se
+     * crean en los hilos del ejecutor, {@link #creaRegistro} y {@link
+     * Registro#decodifica(EntradaBinaria, DiccionarioCampos)} deben poder
+     * llamarse concurrentemente.
+     * @param ruta la ruta del archivo de donde hay que cargar los registros.
+     * @throws IOException si ocurre un error de entrada/salida, o el archivo
+     *         no es un archivo comprimido válido.
+     */
+    public void cargaComprimida(Path ruta) throws IOException {
+        try (ArchivoComprimido archivo = abreComprimido(ruta)) {
+            long estampa = candado.writeLock();
+            boolean exito = false;
+            try {
+                iniciaCarga();
+                DiccionarioCampos diccionario = diccionarioDeCarga();
+                Lista tareas = new Lista();
+                for (int i = 0; i < archivo.getNumBloques(); i++) {
+                    final int bloque = i;
+                    tareas.agregaFinal(ejecutor.submit(() -> {
+                        try {
+                            return archivo.leeBloque(bloque, diccionario);
+                        } catch (IOException ioe) {
+                            throw new UncheckedIOException(ioe);
+                        }
+                    }));
+                }
+                for (Lista.Nodo n = tareas.getCabeza(); n != null;
+                     n = n.getSiguiente()) {
+                    Lista bloque;
+                    try {
+                        bloque = (Lista)((ForkJoinTask<?>)n.get()).join();
+                    } catch (RuntimeException re) {
+                        for (Lista.Nodo m = n.getSiguiente(); m != null;
+                             m = m.getSiguiente())
+                            ((ForkJoinTask<?>)m.get()).cancel(false);
+                        if (re instanceof UncheckedIOException)
+                            throw ((UncheckedIOException) re).getCause();
+                        throw re;
+                    }
+                    for (Lista.Nodo m = bloque.getCabeza(); m != null;
+                         m = m.getSiguiente())
+                        agrega((Registro)m.get());
+                }
+                exito = true;
+            } finally {
+                liberaCarga(estampa, exito);
+            }
+        }
     }
 
     /**
@@ -98,51 +1169,784 @@ public abstract class BaseDeDatos {
      * @throws IOException si ocurre un error de entrada/salida.
      */
     public void carga(BufferedReader in) throws IOException {
-        if (!(registros.esVacia()))
-	    registros.limpia();
-	String linea;
-	try {
-	    while ((linea = in.readLine()) != null) {
-	        Registro registro = creaRegistro();
-		registro.deserializa(linea);
-		agregaRegistro(registro);
-	    }
-	} catch (ExcepcionLineaInvalida e) {}
+        long estampa = candado.writeLock();
+        boolean exito = false;
+        try {
+            iniciaCarga();
+            String linea;
+            while ((linea = in.readLine()) != null) {
+                Registro registro = creaRegistro();
+                registro.deserializa(linea, diccionarioDeCarga());
+                agrega(registro);
+            }
+            exito = true;
+        } catch (ExcepcionLineaInvalida e) {
+            exito = true;
+        } finally {
+            liberaCarga(estampa, exito);
+        }
+    }
+
+    /**
+     * Carga los registros del archivo recibido en la base de datos. El archivo
+     * se mapea a memoria y las líneas se separan directamente en sus bytes,
+     * que se suponen codificados en UTF-8; los fines de línea pueden ser
+     * <code>'\n'</code>, <code>'\r'</code> o <code>"\r\n"</code>, como con
+     * {@link BufferedReader#readLine}. Si antes de llamar el método había
+     * registros en la base de datos, estos son eliminados. La carga se detiene
+     * en la primera línea inválida. Si el archivo termina con una línea de
+     * verificación (ver {@link #guarda(Path)}), antes de cargarlo se revisa su
+     * suma; si no coincide, se lanza una excepción y la base de datos se queda
+     * como estaba.
+     * @param ruta la ruta del archivo de donde hay que cargar los registros.
+     * @throws IOException si ocurre un error de entrada/salida, o la suma de
+     *         verificación del archivo no coincide.
+     */
+    public void carga(Path ruta) throws IOException {
+        carga(ruta, null);
+    }
+
+    /**
+     * Carga los registros de la entrada recibida en la base de datos, saltando
+     * las líneas inválidas en lugar de detenerse en la primera. Si antes de
+     * llamar el método había registros en la base de datos, estos son
+     * eliminados. La carga se interrumpe si el número de líneas inválidas
+     * excede el máximo recibido; los registros anteriores a la línea que lo
+     * excede se quedan en la base de datos. Las líneas de verificación (ver
+     * {@link #MARCA_CRC}) se saltan sin contarse como inválidas.
+     * @param in la entrada de donde hay que cargar los registos.
+     * @param maxErrores el número máximo de líneas inválidas que se toleran.
+     * @return el reporte de la carga.
+     * @throws IOException si ocurre un error de entrada/salida.
+     * @throws IllegalArgumentException si el número máximo es negativo.
+     */
+    public ReporteCarga cargaTolerante(BufferedReader in, int maxErrores)
+        throws IOException {
+        ReporteCarga reporte = new ReporteCarga(maxErrores);
+        long estampa = candado.writeLock();
+        boolean exito = false;
+        try {
+            iniciaCarga();
+            String linea;
+            while ((linea = in.readLine()) != null) {
+                if (linea.startsWith(MARCA_CRC))
+                    continue;
+                Registro registro = creaRegistro();
+                try {
+                    registro.deserializa(linea, diccionarioDeCarga());
+                } catch (ExcepcionLineaInvalida eli) {
+                    if (!reporte.registraRechazada(eli.getMessage()))
+                        break;
+                    continue;
+                }
+                agrega(registro);
+                reporte.registraCargada();
+            }
+            exito = true;
+        } finally {
+            liberaCarga(estampa, exito);
+        }
+        return reporte;
+    }
+
+    /**
+     * Carga los registros del archivo recibido en la base de datos, saltando
+     * las líneas inválidas como {@link #cargaTolerante(BufferedReader, int)}.
+     * El archivo se lee como en {@link #carga(Path)}.
+     * @param ruta la ruta del archivo de donde hay que cargar los registros.
+     * @param maxErrores el número máximo de líneas inválidas que se toleran.
+     * @return el reporte de la carga.
+     * @throws IOException si ocurre un error de entrada/salida.
+     * @throws IllegalArgumentException si el número máximo es negativo.
+     */
+    public ReporteCarga cargaTolerante(Path ruta, int maxErrores)
+        throws IOException {
+        ReporteCarga reporte = new ReporteCarga(maxErrores);
+        carga(ruta, reporte);
+        return reporte;
+    }
+
+    /* Carga el archivo; si el reporte es null se detiene en la primera línea
+     * inválida. */
+    private void carga(Path ruta, ReporteCarga reporte) throws IOException {
+        try (FileChannel canal =
+             FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamaño = verificaPie(canal, ruta);
+            long estampa = candado.writeLock();
+            boolean exito = false;
+            try {
+                iniciaCarga();
+                long posicion = 0;
+                while (posicion < tamaño) {
+                    int n = (int)Math.min(tamaño - posicion, TAMAÑO_VENTANA);
+                    MappedByteBuffer mapa =
+                        canal.map(FileChannel.MapMode.READ_ONLY, posicion, n);
+                    int leidos = cargaLineas(mapa, posicion + n == tamaño,
+                                             this::agrega, reporte);
+                    if (leidos < 0)
+                        break;
+                    if (leidos == 0)
+                        throw new IOException("Línea demasiado larga en " +
+                                              ruta);
+                    posicion += leidos;
+                }
+                exito = true;
+            } finally {
+                liberaCarga(estampa, exito);
+            }
+        }
+    }
+
+    /**
+     * Carga en paralelo los registros del archivo recibido en la base de
+     * datos, usando el ejecutor de la base de datos (ver {@link
+     * #setEjecutor}). Es equivalente a {@link #carga(Path)}.
+     * @param ruta la ruta del archivo de donde hay que cargar los registros.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    public void cargaParalela(Path ruta) throws IOException {
+        cargaParalela(ruta, ejecutor, TAMAÑO_MINIMO_BLOQUE);
+    }
+
+    /**
+     * Carga en paralelo los registros del archivo recibido en la base de
+     * datos. El archivo se divide en bloques de bytes que terminan en un fin
+     * de línea; cada bloque se analiza en un hilo del ejecutor en un lote
+     * local, y los lotes se agregan a la base de datos en el orden del
+     * archivo. El resultado es el mismo que el de {@link #carga(Path)}: si hay
+     * una línea inválida, la base de datos se queda con los registros
+     * anteriores a ella. Como los registros se crean en los hilos del
+     * ejecutor, {@link #creaRegistro} y {@link Registro#deserializa(byte[],
+     * int, int, DiccionarioCampos)} deben poder llamarse concurrentemente.
+     * La línea de verificación se revisa como en {@link #carga(Path)}.
+     * @param ruta la ruta del archivo de donde hay que cargar los registros.
+     * @param ejecutor el ejecutor donde se analizarán los bloques.
+     * @param tamañoBloque el tamaño mínimo en bytes de cada bloque.
+     * @throws IOException si ocurre un error de entrada/salida, o la suma de
+     *         verificación del archivo no coincide.
+     * @throws IllegalArgumentException si el ejecutor es <code>null</code> o
+     *         el tamaño de bloque no es positivo.
+     */
+    public void cargaParalela(Path ruta, ForkJoinPool ejecutor,
+                              long tamañoBloque) throws IOException {
+        if (ejecutor == null || tamañoBloque <= 0)
+            throw new IllegalArgumentException();
+        try (FileChannel canal =
+             FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamaño = verificaPie(canal, ruta);
+            long estampa = candado.writeLock();
+            boolean exito = false;
+            try {
+                iniciaCarga();
+                long bloque =
+                    Math.max(tamañoBloque,
+                             tamaño / (4 * ejecutor.getParallelism()));
+                bloque = Math.min(bloque, TAMAÑO_VENTANA);
+                Lista tareas = new Lista();
+                long inicio = 0;
+                while (inicio < tamaño) {
+                    long fin = finDeBloque(canal, inicio + bloque, tamaño);
+                    if (fin - inicio > Integer.MAX_VALUE)
+                        throw new IOException("Línea demasiado larga en " +
+                                              ruta);
+                    final long a = inicio, b = fin;
+                    tareas.agregaFinal(ejecutor.submit(
+                        () -> cargaBloque(canal, a, b)));
+                    inicio = fin;
+                }
+                boolean invalida = false;
+                for (Lista.Nodo n = tareas.getCabeza(); n != null;
+                     n = n.getSiguiente()) {
+                    ForkJoinTask<?> tarea = (ForkJoinTask<?>)n.get();
+                    if (invalida) {
+                        tarea.cancel(false);
+                        continue;
+                    }
+                    Lote lote;
+                    try {
+                        lote = (Lote)tarea.join();
+                    } catch (UncheckedIOException uioe) {
+                        throw uioe.getCause();
+                    }
+                    for (Lista.Nodo m = lote.registros.getCabeza(); m != null;
+                         m = m.getSiguiente())
+                        agrega((Registro)m.get());
+                    invalida = lote.invalido;
+                }
+                exito = true;
+            } finally {
+                liberaCarga(estampa, exito);
+            }
+        }
+    }
+
+    /* Lote de registros analizados de un bloque del archivo. */
+    private static class Lote {
+        /* Los registros del bloque. */
+        private Lista registros = new Lista();
+        /* Si el bloque tiene una línea inválida. */
+        private boolean invalido;
+    }
+
+    /* Analiza el bloque [inicio, fin) del archivo en un lote. */
+    private Lote cargaBloque(FileChannel canal, long inicio, long fin) {
+        Lote lote = new Lote();
+        try {
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY,
+                                              inicio, fin - inicio);
+            lote.invalido = cargaLineas(mapa, true,
+                                        r -> lote.registros.agregaFinal(r),
+                                        null) < 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        return lote;
+    }
+
+    /* Regresa la posición siguiente al primer fin de línea que esté en o
+     * después de la posición recibida, o el tamaño del archivo si no hay. */
+    private static long finDeBloque(FileChannel canal, long posicion,
+                                    long tamaño) throws IOException {
+        if (posicion >= tamaño)
+            return tamaño;
+        /* Si la posición cae en medio de un "\r\n", el '\r' anterior ya
+           termina la línea; se empieza a buscar en él. */
+        posicion--;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (posicion < tamaño) {
+            buffer.clear();
+            int n = canal.read(buffer, posicion);
+            if (n <= 0)
+                break;
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b != '\n' && b != '\r')
+                    continue;
+                long fin = posicion + i + 1;
+                if (b == '\r' && fin < tamaño) {
+                    ByteBuffer siguiente = ByteBuffer.allocate(1);
+                    canal.read(siguiente, fin);
+                    if (siguiente.get(0) == '\n')
+                        fin++;
+                }
+                return fin;
+            }
+            posicion += n;
+        }
+        return tamaño;
+    }
+
+    /* Analiza las líneas completas en el mapa y entrega los registros al
+     * consumidor. Si el mapa llega al fin del archivo, su última línea está
+     * completa aunque no tenga fin de línea. Las líneas inválidas se
+     * registran en el reporte y se saltan; si no hay reporte, o si el reporte
+     * ya no tolera más errores, la carga se detiene. Regresa el número de
+     * bytes consumidos, o -1 si la carga se detuvo. */
+    private int cargaLineas(MappedByteBuffer mapa, boolean ultima,
+                            Consumer<Registro> consumidor,
+                            ReporteCarga reporte) {
+        int n = mapa.limit();
+        byte[] linea = new byte[256];
+        int inicio = 0;
+        while (inicio < n) {
+            int fin = inicio;
+            byte b = 0;
+            while (fin < n && (b = mapa.get(fin)) != '\n' && b != '\r')
+                fin++;
+            /* Sin el resto del archivo no se sabe dónde termina la línea, ni
+               si a un '\r' le sigue un '\n'. */
+            if (!ultima && (fin == n || (fin == n - 1 && b == '\r')))
+                break;
+            int longitud = fin - inicio;
+            if (longitud > linea.length)
+                linea = new byte[Math.max(longitud, 2 * linea.length)];
+            mapa.position(inicio);
+            mapa.get(linea, 0, longitud);
+            inicio = fin + 1;
+            if (b == '\r' && inicio < n && mapa.get(inicio) == '\n')
+                inicio++;
+            Registro registro = creaRegistro();
+            try {
+                registro.deserializa(linea, 0, longitud,
+                                     diccionarioDeCarga());
+            } catch (ExcepcionLineaInvalida eli) {
+                if (reporte == null ||
+                    !reporte.registraRechazada(eli.getMessage()))
+                    return -1;
+                continue;
+            }
+            consumidor.accept(registro);
+            if (reporte != null)
+                reporte.registraCargada();
+        }
+        return Math.min(inicio, n);
     }
 
     /**
      * Busca registros por un campo específico.
      * @param campo el campo del registro por el cuál buscar.
      * @param valor el valor a buscar.
-     * @param n el nodo donde se buscará el registro.
-     * @param lista la lista con los registros encontrados.
      * @return una lista con los registros tales que cazan el campo especificado
      *         con el valor dado.
      * @throws IllegalArgumentException si el campo no es de la enumeración
      *         correcta.
      */
-    private Lista buscaRegistros
-	(Enum campo, Object valor, Lista.Nodo n, Lista lista) {
-	if (n == null)
-	    return lista;
-	Registro registro = (Registro) n.get();
-	if (registro.caza(campo, valor))
-	    lista.agregaFinal(registro);
-	buscaRegistros(campo, valor, n.getSiguiente(), lista);
-	return lista;
+    public Lista buscaRegistros(Enum campo, Object valor) {
+        return conLectura(() -> {
+                Lista lista = buscaRegistrosIndexados(campo, valor);
+                if (lista != null)
+                    return lista;
+                if (recorreEnParalelo())
+                    return registros.buscaEnParalelo(campo, valor, ejecutor);
+                return registros.busca(campo, valor);
+            });
     }
 
     /**
-     * Busca registros por un campo específico.
+     * Busca los registros que cumplen una consulta compuesta. Si la consulta
+     * (o alguna de las condiciones de una conjunción) puede responderse con
+     * los índices de la base de datos, sólo se evalúa el resto de la consulta
+     * sobre esos registros; si no, se recorren todos los registros una sola
+     * vez.
+     * @param consulta la consulta que deben cumplir los registros.
+     * @return una lista con los registros que cumplen la consulta, en el orden
+     *         en que están en la base de datos.
+     * @throws IllegalArgumentException si la consulta es <code>null</code> o
+     *         algún campo de la consulta no es de la enumeración correcta.
+     */
+    public Lista buscaRegistros(Consulta consulta) {
+        if (consulta == null)
+            throw new IllegalArgumentException("La consulta no puede ser " +
+                                               "nula");
+        return conLectura(() -> {
+                Lista lista = consulta.buscaIndexados(this);
+                if (lista != null)
+                    return lista;
+                return buscaRegistros(consulta::evalua);
+            });
+    }
+
+    /**
+     * Busca los primeros registros, según el orden recibido, que cazan el
+     * valor dado en el campo especificado. Sólo se conservan a lo más
+     * <code>limite</code> registros durante la búsqueda, en un montículo
+     * acotado; los registros que el orden considera iguales se regresan en el
+     * orden en que están en la base de datos.
      * @param campo el campo del registro por el cuál buscar.
      * @param valor el valor a buscar.
-     * @return una lista con los registros tales que cazan el campo especificado
+     * @param orden el orden de los registros.
+     * @param limite el número máximo de registros a regresar.
+     * @return una lista con los primeros registros, según el orden, que cazan
+     *         el campo especificado con el valor dado.
+     * @throws IllegalArgumentException si el campo no es de la enumeración
+     *         correcta, el orden es <code>null</code> o el límite es
+     *         negativo.
+     */
+    public Lista buscaRegistros(Enum campo, Object valor,
+                                Comparator<Registro> orden, int limite) {
+        return buscaRegistros(Consulta.caza(campo, valor), orden, limite);
+    }
+
+    /**
+     * Busca los primeros registros, según el orden recibido, que cumplen una
+     * consulta compuesta. Los candidatos se obtienen como en {@link
+     * #buscaRegistros(Consulta)}, pero los índices los entregan uno por uno
+     * sin crear una lista, y sólo se conservan a lo más <code>limite</code>
+     * registros durante la búsqueda, en un montículo acotado; los registros
+     * que el orden considera iguales se regresan en el orden en que están en
+     * la base de datos.
+     * @param consulta la consulta que deben cumplir los registros.
+     * @param orden el orden de los registros.
+     * @param limite el número máximo de registros a regresar.
+     * @return una lista con los primeros registros, según el orden, que cumplen
+     *         la consulta.
+     * @throws IllegalArgumentException si la consulta o el orden son
+     *         <code>null</code>, el límite es negativo o algún campo de la
+     *         consulta no es de la enumeración correcta.
+     */
+    public Lista buscaRegistros(Consulta consulta, Comparator<Registro> orden,
+                                int limite) {
+        if (consulta == null || orden == null || limite < 0)
+            throw new IllegalArgumentException();
+        Seleccion seleccion = new Seleccion(orden, limite);
+        if (limite == 0)
+            return seleccion.lista();
+        long estampa = candado.readLock();
+        try {
+            if (!consulta.recorreIndexados(this, seleccion::agrega))
+                for (Registro registro : registros)
+                    if (consulta.evalua(registro))
+                        seleccion.agrega(registro);
+        } finally {
+            candado.unlockRead(estampa);
+        }
+        return seleccion.lista();
+    }
+
+    /**
+     * Regresa los primeros registros de la base de datos según el orden
+     * recibido, conservando a lo más <code>limite</code> registros durante el
+     * recorrido.
+     * @param orden el orden de los registros.
+     * @param limite el número máximo de registros a regresar.
+     * @return una lista con los primeros registros según el orden.
+     * @throws IllegalArgumentException si el orden es <code>null</code> o el
+     *         límite es negativo.
+     */
+    public Lista getRegistros(Comparator<Registro> orden, int limite) {
+        if (orden == null || limite < 0)
+            throw new IllegalArgumentException();
+        Seleccion seleccion = new Seleccion(orden, limite);
+        if (limite == 0)
+            return seleccion.lista();
+        long estampa = candado.readLock();
+        try {
+            for (Registro registro : registros)
+                seleccion.agrega(registro);
+        } finally {
+            candado.unlockRead(estampa);
+        }
+        return seleccion.lista();
+    }
+
+    /* Clase interna privada para seleccionar los primeros registros según un
+       orden con un montículo acotado. */
+    private static class Seleccion {
+
+        /* Un registro con su posición de llegada. */
+        private static class Entrada {
+            /* El registro. */
+            private Registro registro;
+            /* La posición en que llegó el registro. */
+            private long posicion;
+            /* Construye una entrada. */
+            private Entrada(Registro registro, long posicion) {
+                this.registro = registro;
+                this.posicion = posicion;
+            }
+        }
+
+        /* El orden de los registros. */
+        private Comparator<Registro> orden;
+        /* El número máximo de registros. */
+        private int limite;
+        /* El número de registros que han llegado. */
+        private long llegados;
+        /* El montículo, con el peor de los registros en la cabeza. */
+        private PriorityQueue<Entrada> monticulo;
+
+        /* Construye una selección vacía. */
+        private Seleccion(Comparator<Registro> orden, int limite) {
+            this.orden = orden;
+            this.limite = limite;
+            monticulo = new PriorityQueue<Entrada>(Math.min(limite, 1024) + 1,
+                                                   (a, b) -> compara(b, a));
+        }
+
+        /* Compara dos entradas por el orden y luego por su llegada. */
+        private int compara(Entrada a, Entrada b) {
+            int c = orden.compare(a.registro, b.registro);
+            return c != 0 ? c : Long.compare(a.posicion, b.posicion);
+        }
+
+        /* Ofrece un registro a la selección. Los registros llegan en el
+           orden de la base de datos, así que uno que empata con el peor de
+           la selección llegó después y no entra. */
+        private void agrega(Registro registro) {
+            long posicion = llegados++;
+            if (monticulo.size() < limite) {
+                monticulo.add(new Entrada(registro, posicion));
+            } else if (orden.compare(registro,
+                                     monticulo.peek().registro) < 0) {
+                monticulo.poll();
+                monticulo.add(new Entrada(registro, posicion));
+            }
+        }
+
+        /* Regresa la selección en orden. */
+        private Lista lista() {
+            Entrada[] entradas = monticulo.toArray(new Entrada[0]);
+            Arrays.sort(entradas, this::compara);
+            Lista lista = new Lista();
+            for (Entrada entrada : entradas)
+                lista.agregaFinal(entrada.registro);
+            return lista;
+        }
+    }
+
+    /**
+     * Regresa un flujo perezoso con los registros de la base de datos, en
+     * orden. El flujo recorre una instantánea de los registros (ver {@link
+     * Almacen#streamInstantanea}), así que la base de datos puede modificarse mientras
+     * se consume sin que el flujo lo vea; puede terminarse antes de recorrer
+     * todos los registros o recorrerse en paralelo con {@link
+     * Stream#parallel}. La instantánea se libera cuando el flujo termina de
+     * recorrerla o cuando se cierra.
+     * @return un flujo con los registros de la base de datos.
+     */
+    public Stream<Registro> streamRegistros() {
+        return conLectura(registros::streamInstantanea);
+    }
+
+    /**
+     * Regresa un flujo perezoso con los registros que cazan el valor dado en
+     * el campo especificado, en orden. Si un índice puede responder la
+     * búsqueda, el flujo recorre su resultado; si no, filtra los registros
+     * conforme se consumen, así que terminar el flujo antes detiene el
+     * recorrido. Como en {@link #streamRegistros}, el flujo no ve las
+     * modificaciones posteriores a la base de datos.
+     * @param campo el campo del registro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @return un flujo con los registros tales que cazan el campo especificado
      *         con el valor dado.
      * @throws IllegalArgumentException si el campo no es de la enumeración
-     *         correcta.
+     *         correcta (cuando se consume el flujo).
      */
-    public Lista buscaRegistros(Enum campo, Object valor) {
-	return buscaRegistros(campo, valor, registros.getCabeza(), new Lista());
+    public Stream<Registro> streamBusqueda(Enum campo, Object valor) {
+        return streamBusqueda(Consulta.caza(campo, valor));
+    }
+
+    /**
+     * Regresa un flujo perezoso con los registros que cumplen una consulta
+     * compuesta, en orden. Los candidatos se obtienen como en {@link
+     * #buscaRegistros(Consulta)}, pero si hay que recorrer todos los registros
+     * se filtran conforme se consumen. El flujo no ve las modificaciones
+     * posteriores a la base de datos.
+     * @param consulta la consulta que deben cumplir los registros.
+     * @return un flujo con los registros que cumplen la consulta.
+     * @throws IllegalArgumentException si la consulta es <code>null</code>.
+     */
+    public Stream<Registro> streamBusqueda(Consulta consulta) {
+        if (consulta == null)
+            throw new IllegalArgumentException("La consulta no puede ser " +
+                                               "nula");
+        Lista indexados;
+        Stream<Registro> todos = null;
+        long estampa = candado.readLock();
+        try {
+            indexados = consulta.buscaIndexados(this);
+            if (indexados == null)
+                todos = registros.streamInstantanea();
+        } finally {
+            candado.unlockRead(estampa);
+        }
+        if (indexados != null)
+            return StreamSupport.stream(divisor(indexados), false);
+        return todos.filter(consulta::evalua);
+    }
+
+    /* Regresa un divisor que recorre los registros de la lista; al terminar
+       de recorrerla la limpia, para liberarla si es una instantánea. */
+    static Spliterator<Registro> divisor(Lista lista) {
+        Iterator<Registro> iterador = new Iterator<Registro>() {
+                private Lista.Nodo siguiente = lista.getCabeza();
+                @Override public boolean hasNext() {
+                    if (siguiente != null)
+                        return true;
+                    lista.limpia();
+                    return false;
+                }
+                @Override public Registro next() {
+                    if (siguiente == null)
+                        throw new NoSuchElementException();
+                    Registro registro = (Registro) siguiente.get();
+                    siguiente = siguiente.getSiguiente();
+                    return registro;
+                }
+            };
+        return Spliterators.spliterator(iterador, lista.getLongitud(),
+                                        Spliterator.ORDERED |
+                                        Spliterator.NONNULL);
+    }
+
+    /**
+     * Regresa el número de registros a partir del cual los recorridos de
+     * búsqueda se hacen en paralelo.
+     * @return el número de registros a partir del cual se busca en paralelo.
+     */
+    public int getUmbralParalelo() {
+        return umbralParalelo;
+    }
+
+    /**
+     * Define el número de registros a partir del cual los recorridos de
+     * búsqueda se hacen en paralelo. Un umbral de {@link Integer#MAX_VALUE}
+     * desactiva las búsquedas en paralelo.
+     * @param umbralParalelo el número de registros a partir del cual se busca
+     *        en paralelo.
+     * @throws IllegalArgumentException si el umbral no es positivo.
+     */
+    public void setUmbralParalelo(int umbralParalelo) {
+        if (umbralParalelo <= 0)
+            throw new IllegalArgumentException("El umbral debe ser positivo");
+        this.umbralParalelo = umbralParalelo;
+    }
+
+    /**
+     * Regresa el ejecutor de las búsquedas y cargas en paralelo.
+     * @return el ejecutor de las búsquedas y cargas en paralelo.
+     */
+    public ForkJoinPool getEjecutor() {
+        return ejecutor;
+    }
+
+    /**
+     * Define el ejecutor de las búsquedas y cargas en paralelo. Por omisión es
+     * el {@link ForkJoinPool} común.
+     * @param ejecutor el ejecutor de las búsquedas y cargas en paralelo.
+     * @throws IllegalArgumentException si el ejecutor es <code>null</code>.
+     */
+    public void setEjecutor(ForkJoinPool ejecutor) {
+        if (ejecutor == null)
+            throw new IllegalArgumentException("El ejecutor no puede ser " +
+                                               "nulo");
+        this.ejecutor = ejecutor;
+    }
+
+    /* Nos dice si los recorridos de búsqueda deben hacerse en paralelo. */
+    private boolean recorreEnParalelo() {
+        return registros.getLongitud() >= umbralParalelo &&
+            ejecutor.getParallelism() > 1;
+    }
+
+    /**
+     * Busca registros por un campo específico usando los índices de la base de
+     * datos. Las clases que extiendan a BaseDeDatos pueden sobrecargar este
+     * método para responder con sus índices las búsquedas que puedan; el
+     * resultado debe ser el mismo que regresaría el recorrido completo, en el
+     * mismo orden. La base de datos llama este método con el candado tomado
+     * para lectura, así que no debe modificar nada.
+     * @param campo el campo del registro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @return una lista con los registros tales que cazan el campo especificado
+     *         con el valor dado, o <code>null</code> si ningún índice puede
+     *         responder la búsqueda.
+     */
+    protected Lista buscaRegistrosIndexados(Enum campo, Object valor) {
+        return null;
+    }
+
+    /**
+     * Entrega a la acción recibida los registros que regresaría {@link
+     * #buscaRegistrosIndexados}, en el mismo orden. Por omisión recorre la
+     * lista de {@link #buscaRegistrosIndexados}; las clases cuyos índices
+     * puedan recorrer sus registros deben sobrecargar el método para no crear
+     * la lista, como cuando sólo se conservan los primeros registros según un
+     * orden (ver {@link #buscaRegistros(Consulta, Comparator, int)}). La base
+     * de datos lo llama con el candado tomado para lectura.
+     * @param campo el campo del registro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @param accion la acción que recibe los registros.
+     * @return <code>true</code> si se recorrieron los registros, o
+     *         <code>false</code> si ningún índice puede responder la
+     *         búsqueda.
+     */
+    protected boolean recorreRegistrosIndexados(Enum campo, Object valor,
+                                                Consumer<Registro> accion) {
+        Lista lista = buscaRegistrosIndexados(campo, valor);
+        if (lista == null)
+            return false;
+        for (Lista.Nodo n = lista.getCabeza(); n != null; n = n.getSiguiente())
+            accion.accept((Registro) n.get());
+        return true;
+    }
+
+    /**
+     * Estima con los índices de la base de datos el número de registros que
+     * revisaría {@link #buscaRegistrosIndexados} para una búsqueda, sin
+     * hacerla; las consultas compuestas lo usan para elegir la condición más
+     * selectiva de una conjunción. La estimación debe ser una cota superior
+     * del número de registros que regresa la búsqueda, y puede dejar de
+     * contar en cuanto pasa del límite. Las clases que sobrecarguen {@link
+     * #buscaRegistrosIndexados} deben sobrecargar también este método. La
+     * base de datos lo llama con el candado tomado para lectura.
+     * @param campo el campo del registro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @param limite el número a partir del cual la estimación puede ser
+     *        cualquier número mayor que él.
+     * @return la estimación, o -1 si ningún índice puede responder la
+     *         búsqueda.
+     */
+    protected int estimaRegistrosIndexados(Enum campo, Object valor,
+                                           int limite) {
+        return -1;
+    }
+
+    /**
+     * Busca los registros que cumplen una condición, recorriendo todos los
+     * registros de la base de datos. Si la base de datos tiene al menos
+     * {@link #getUmbralParalelo} registros, el recorrido se hace en paralelo,
+     * por lo que la condición debe poder evaluarse concurrentemente. Debe
+     * llamarse con el candado tomado (ver {@link #conLectura}).
+     * @param condicion la condición que deben cumplir los registros.
+     * @return una lista con los registros que cumplen la condición, en el orden
+     *         en que están en la base de datos.
+     */
+    protected Lista buscaRegistros(Predicate<Registro> condicion) {
+        if (recorreEnParalelo())
+            return registros.buscaEnParalelo(condicion, ejecutor);
+        return registros.busca(condicion);
+    }
+
+    /**
+     * Ejecuta una lectura con el candado de la base de datos tomado para
+     * lectura, y regresa su resultado. Las clases que extiendan a BaseDeDatos
+     * deben usar este método para leer sus índices o llamar los métodos
+     * protegidos de búsqueda.
+     * @param <T> el tipo del resultado de la lectura.
+     * @param lectura la lectura a ejecutar.
+     * @return el resultado de la lectura.
+     */
+    protected <T> T conLectura(Supplier<T> lectura) {
+        long estampa = candado.readLock();
+        try {
+            return lectura.get();
+        } finally {
+            candado.unlockRead(estampa);
+        }
+    }
+
+    /**
+     * Ejecuta una escritura con el candado de la base de datos tomado para
+     * escritura. Las clases que extiendan a BaseDeDatos deben usar este método
+     * para modificar sus índices o llamar {@link #agregaIndice} y {@link
+     * #eliminaIndice}. La escritura no debe llamar métodos públicos de la base
+     * de datos, porque el candado no es reentrante.
+     * @param escritura la escritura a ejecutar.
+     */
+    protected void conEscritura(Runnable escritura) {
+        long estampa = candado.writeLock();
+        try {
+            escritura.run();
+        } finally {
+            candado.unlockWrite(estampa);
+        }
+    }
+
+    /**
+     * Agrega un índice a la base de datos. El índice se llena con los registros
+     * que ya están en la base de datos, y a partir de entonces la base de
+     * datos lo mantiene al día cuando se agregan o eliminan registros, cuando
+     * se limpia y cuando se carga. Debe llamarse con el candado tomado para
+     * escritura (ver {@link #conEscritura}).
+     * @param indice el índice a agregar.
+     */
+    protected void agregaIndice(Indice indice) {
+        indices.agregaFinal(indice);
+        long[] ids = registros.ids();
+        int i = 0;
+        for (Registro registro : registros)
+            indice.agrega(registro, ids[i++]);
+    }
+
+    /**
+     * Elimina un índice de la base de datos, que deja de mantenerse al día.
+     * Debe llamarse con el candado tomado para escritura (ver {@link
+     * #conEscritura}).
+     * @param indice el índice a eliminar.
+     */
+    protected void eliminaIndice(Indice indice) {
+        indices.elimina(indice);
     }
 
     /**
@@ -1,10 +1,65 @@
 package mx.unam.ciencias.icc;
 
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.function.Consumer;
+
 /**
  * Clase para bases de datos de libros.
+ *
+ * Opcionalmente, la base de datos puede mantener índices exactos por campo
+ * (ver {@link #indexa}), con los que {@link #buscaRegistrosExactos} encuentra
+ * los libros cuyo campo es igual a un valor dado en tiempo constante en
+ * promedio, en lugar de recorrer toda la base de datos.
+ *
+ * Para los campos numéricos también puede mantener índices de rangos (ver
+ * {@link #indexaRango}), con los que {@link #buscaRegistros} responde en
+ * tiempo <em>O(k log(n/k) + log n)</em> las búsquedas de los <em>k</em>
+ * libros cuyo campo es mayor o igual que un valor dado, sin ordenarlos.
+ *
+ * Para los campos de texto puede mantener índices de subcadenas (ver {@link
+ * #indexaSubcadenas}), con los que {@link #buscaRegistros} sólo revisa los
+ * libros que pueden contener la subcadena buscada.
+ *
+ * Por omisión los libros se guardan en un {@link AlmacenLista}; para catálogos
+ * grandes se puede usar un {@link AlmacenColumnarLibros}, que ocupa mucha menos
+ * memoria por libro.
+ *
+ * La llave natural de los libros, con la que {@link #agregaOActualiza} decide
+ * si un libro ya está en la base de datos, es por omisión su título, su autor y
+ * su edición; los títulos y autores se comparan como en los índices exactos.
  */
 public class BaseDeDatosLibros extends BaseDeDatos {
 
+    /* Los índices exactos por campo. */
+    private EnumMap<CampoLibro, IndiceHash> indicesExactos;
+    /* Los índices de rangos por campo numérico. */
+    private EnumMap<CampoLibro, IndiceRango> indicesRango;
+    /* Los índices de subcadenas por campo de texto. */
+    private EnumMap<CampoLibro, IndiceSubcadenas> indicesSubcadenas;
+
+    /**
+     * Constructor que guarda los libros en un {@link AlmacenLista}.
+     */
+    public BaseDeDatosLibros() {
+        this(new AlmacenLista());
+    }
+
+    /**
+     * Constructor que guarda los libros en el almacén recibido.
+     * @param almacen el almacén donde se guardarán los libros.
+     * @throws IllegalArgumentException si el almacén es <code>null</code>.
+     */
+    public BaseDeDatosLibros(Almacen almacen) {
+        super(almacen);
+        indicesExactos = new EnumMap<CampoLibro, IndiceHash>(CampoLibro.class);
+        indicesRango = new EnumMap<CampoLibro, IndiceRango>(CampoLibro.class);
+        indicesSubcadenas =
+            new EnumMap<CampoLibro, IndiceSubcadenas>(CampoLibro.class);
+        setLlaveNatural(BaseDeDatosLibros::llaveNatural);
+    }
+
     /**
      * Crea un libro en blanco.
      * @return un libro en blanco.
@@ -12,4 +67,302 @@ public class BaseDeDatosLibros extends BaseDeDatos {
     @Override public Registro creaRegistro() {
         return (Registro) new Libro(null, null, null, 0, 0, 0, 0.0);
     }
+
+    /**
+     * Crea un índice exacto para el campo recibido, si no existía ya. A partir
+     * de entonces, las búsquedas exactas sobre el campo usan el índice.
+     * @param campo el campo a indexar.
+     * @throws IllegalArgumentException si el campo es <code>null</code>.
+     */
+    public void indexa(CampoLibro campo) {
+        if (campo == null)
+            throw new IllegalArgumentException();
+        conEscritura(() -> {
+                if (indicesExactos.containsKey(campo))
+                    return;
+                IndiceHash indice = new IndiceHash(r -> llave(campo, r));
+                indicesExactos.put(campo, indice);
+                agregaIndice(indice);
+            });
+    }
+
+    /**
+     * Elimina el índice exacto del campo recibido, si existía.
+     * @param campo el campo del que hay que eliminar el índice.
+     */
+    public void desindexa(CampoLibro campo) {
+        conEscritura(() -> {
+                IndiceHash indice = indicesExactos.remove(campo);
+                if (indice != null)
+                    eliminaIndice(indice);
+            });
+    }
+
+    /**
+     * Nos dice si el campo recibido tiene un índice exacto.
+     * @param campo el campo del que queremos saber si tiene índice.
+     * @return <code>true</code> si el campo tiene un índice exacto,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean estaIndexado(CampoLibro campo) {
+        return conLectura(() -> indicesExactos.containsKey(campo));
+    }
+
+    /**
+     * Busca los libros cuyo campo es exactamente igual al valor recibido. Los
+     * campos de texto se comparan normalizados: sin espacios al inicio ni al
+     * final y sin distinguir mayúsculas de minúsculas. Si el campo tiene un
+     * índice exacto, la búsqueda lo usa; si no, recorre toda la base de datos.
+     * @param campo el campo del libro por el cuál buscar.
+     * @param valor el valor a buscar; debe ser instancia de {@link String}
+     *        para los campos de texto, de {@link Integer} para {@link
+     *        CampoLibro#AÑO}, {@link CampoLibro#EDICION} y {@link
+     *        CampoLibro#PAGINAS}, y de {@link Double} para {@link
+     *        CampoLibro#PRECIO}.
+     * @return una lista con los libros cuyo campo es igual al valor dado, en
+     *         el orden en que están en la base de datos.
+     * @throws IllegalArgumentException si el campo es <code>null</code>.
+     */
+    public Lista buscaRegistrosExactos(CampoLibro campo, Object valor) {
+        if (campo == null)
+            throw new IllegalArgumentException();
+        Object l = normaliza(campo, valor);
+        if (l == null)
+            return new Lista();
+        return conLectura(() -> {
+                IndiceHash indice = indicesExactos.get(campo);
+                if (indice != null)
+                    return indice.busca(l);
+                return buscaRegistros(r -> l.equals(llave(campo, r)));
+            });
+    }
+
+    /**
+     * Crea un índice de rangos para el campo numérico recibido, si no existía
+     * ya. A partir de entonces, {@link #buscaRegistros} usa el índice para las
+     * búsquedas sobre el campo.
+     * @param campo el campo a indexar; debe ser {@link CampoLibro#AÑO}, {@link
+     *        CampoLibro#EDICION}, {@link CampoLibro#PAGINAS} o {@link
+     *        CampoLibro#PRECIO}.
+     * @throws IllegalArgumentException si el campo es <code>null</code> o no
+     *         es numérico.
+     */
+    public void indexaRango(CampoLibro campo) {
+        if (!esNumerico(campo))
+            throw new IllegalArgumentException();
+        conEscritura(() -> {
+                if (indicesRango.containsKey(campo))
+                    return;
+                IndiceRango indice = new IndiceRango(r -> valor(campo, r));
+                indicesRango.put(campo, indice);
+                agregaIndice(indice);
+            });
+    }
+
+    /**
+     * Elimina el índice de rangos del campo recibido, si existía.
+     * @param campo el campo del que hay que eliminar el índice.
+     */
+    public void desindexaRango(CampoLibro campo) {
+        conEscritura(() -> {
+                IndiceRango indice = indicesRango.remove(campo);
+                if (indice != null)
+                    eliminaIndice(indice);
+            });
+    }
+
+    /**
+     * Nos dice si el campo recibido tiene un índice de rangos.
+     * @param campo el campo del que queremos saber si tiene índice.
+     * @return <code>true</code> si el campo tiene un índice de rangos,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean estaIndexadoPorRango(CampoLibro campo) {
+        return conLectura(() -> indicesRango.containsKey(campo));
+    }
+
+    /**
+     * Crea un índice de subcadenas para el campo de texto recibido, si no
+     * existía ya. A partir de entonces, {@link #buscaRegistros} usa el índice
+     * para las búsquedas sobre el campo de al menos {@link IndiceSubcadenas#N}
+     * caracteres.
+     * @param campo el campo a indexar; debe ser {@link CampoLibro#TITULO},
+     *        {@link CampoLibro#AUTOR} o {@link CampoLibro#EDITORIAL}.
+     * @throws IllegalArgumentException si el campo es <code>null</code> o no
+     *         es de texto.
+     */
+    public void indexaSubcadenas(CampoLibro campo) {
+        if (campo == null || esNumerico(campo))
+            throw new IllegalArgumentException();
+        conEscritura(() -> {
+                if (indicesSubcadenas.containsKey(campo))
+                    return;
+                IndiceSubcadenas indice =
+                    new IndiceSubcadenas(r -> texto(campo, r));
+                indicesSubcadenas.put(campo, indice);
+                agregaIndice(indice);
+            });
+    }
+
+    /**
+     * Elimina el índice de subcadenas del campo recibido, si existía.
+     * @param campo el campo del que hay que eliminar el índice.
+     */
+    public void desindexaSubcadenas(CampoLibro campo) {
+        conEscritura(() -> {
+                IndiceSubcadenas indice = indicesSubcadenas.remove(campo);
+                if (indice != null)
+                    eliminaIndice(indice);
+            });
+    }
+
+    /**
+     * Nos dice si el campo recibido tiene un índice de subcadenas.
+     * @param campo el campo del que queremos saber si tiene índice.
+     * @return <code>true</code> si el campo tiene un índice de subcadenas,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean estaIndexadoPorSubcadenas(CampoLibro campo) {
+        return conLectura(() -> indicesSubcadenas.containsKey(campo));
+    }
+
+    /**
+     * Busca libros usando los índices de rangos o de subcadenas, si el campo
+     * tiene uno que pueda responder la búsqueda.
+     * @param campo el campo del libro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @return una lista con los libros tales que cazan el campo especificado
+     *         con el valor dado, o <code>null</code> si el campo no tiene
+     *         índice.
+     */
+    @Override protected Lista buscaRegistrosIndexados(Enum campo,
+                                                      Object valor) {
+        Lista lista = new Lista();
+        return recorreRegistrosIndexados(campo, valor, lista::agregaFinal) ?
+            lista : null;
+    }
+
+    /**
+     * Entrega a la acción recibida los libros que regresaría {@link
+     * #buscaRegistrosIndexados}, en orden, recorriendo directamente el índice
+     * de subcadenas o el árbol del índice de rangos sin crear una lista.
+     * @param campo el campo del libro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @param accion la acción que recibe los libros.
+     * @return <code>true</code> si se recorrieron los libros, o
+     *         <code>false</code> si el campo no tiene índice.
+     */
+    @Override protected boolean recorreRegistrosIndexados(
+        Enum campo, Object valor, Consumer<Registro> accion) {
+        if (!(campo instanceof CampoLibro))
+            return false;
+        IndiceSubcadenas subcadenas = indicesSubcadenas.get(campo);
+        if (subcadenas != null)
+            return valor instanceof String &&
+                subcadenas.recorre((String) valor, r -> r.caza(campo, valor),
+                                   accion);
+        IndiceRango indice = indicesRango.get(campo);
+        if (indice == null)
+            return false;
+        if (campo == CampoLibro.PRECIO && valor instanceof Double)
+            indice.recorreMayoresOIguales((Double) valor, accion);
+        else if (campo != CampoLibro.PRECIO && valor instanceof Integer)
+            indice.recorreMayoresOIguales((Integer) valor, accion);
+        return true;
+    }
+
+    /**
+     * Estima con los índices de rangos o de subcadenas el número de libros que
+     * revisaría {@link #buscaRegistrosIndexados}: el número de libros del
+     * trigrama menos frecuente de la subcadena, o el de libros en el rango,
+     * que se cuentan hasta pasar del límite.
+     * @param campo el campo del libro por el cuál buscar.
+     * @param valor el valor a buscar.
+     * @param limite el número a partir del cual la estimación puede ser
+     *        cualquier número mayor que él.
+     * @return la estimación, o -1 si el campo no tiene índice.
+     */
+    @Override protected int estimaRegistrosIndexados(Enum campo, Object valor,
+                                                     int limite) {
+        if (!(campo instanceof CampoLibro))
+            return -1;
+        IndiceSubcadenas subcadenas = indicesSubcadenas.get(campo);
+        if (subcadenas != null)
+            return valor instanceof String ?
+                subcadenas.estima((String) valor) : -1;
+        IndiceRango indice = indicesRango.get(campo);
+        if (indice == null)
+            return -1;
+        if (campo == CampoLibro.PRECIO)
+            return valor instanceof Double ?
+                indice.cuentaMayoresOIguales((Double) valor, limite) : 0;
+        return valor instanceof Integer ?
+            indice.cuentaMayoresOIguales((Integer) valor, limite) : 0;
+    }
+
+    /* Nos dice si el campo es numérico. */
+    private static boolean esNumerico(CampoLibro campo) {
+        return campo == CampoLibro.AÑO || campo == CampoLibro.EDICION ||
+            campo == CampoLibro.PAGINAS || campo == CampoLibro.PRECIO;
+    }
+
+    /* Regresa el texto de un libro en el campo recibido. */
+    private static String texto(CampoLibro campo, Registro registro) {
+        Libro libro = (Libro) registro;
+        switch (campo) {
+        case TITULO: return libro.getTitulo();
+        case AUTOR:  return libro.getAutor();
+        default:     return libro.getEditorial();
+        }
+    }
+
+    /* Regresa el valor numérico de un libro en el campo recibido. */
+    private static double valor(CampoLibro campo, Registro registro) {
+        Libro libro = (Libro) registro;
+        switch (campo) {
+        case AÑO:     return libro.getAño();
+        case EDICION: return libro.getEdicion();
+        case PAGINAS: return libro.getPaginas();
+        default:      return libro.getPrecio();
+        }
+    }
+
+    /* Regresa la llave de un libro en el campo recibido. */
+    private static Object llave(CampoLibro campo, Registro registro) {
+        Libro libro = (Libro) registro;
+        switch (campo) {
+        case TITULO:    return normaliza(campo, libro.getTitulo());
+        case AUTOR:     return normaliza(campo, libro.getAutor());
+        case EDITORIAL: return normaliza(campo, libro.getEditorial());
+        case AÑO:       return Integer.valueOf(libro.getAño());
+        case EDICION:   return Integer.valueOf(libro.getEdicion());
+        case PAGINAS:   return Integer.valueOf(libro.getPaginas());
+        default:        return Double.valueOf(libro.getPrecio());
+        }
+    }
+
+    /* Regresa la llave natural de un libro: su título, autor y edición. */
+    private static Object llaveNatural(Registro registro) {
+        return Arrays.asList(llave(CampoLibro.TITULO, registro),
+                             llave(CampoLibro.AUTOR, registro),
+                             llave(CampoLibro.EDICION, registro));
+    }
+
+    /* Normaliza un valor para compararlo con las llaves del campo recibido;
+       regresa null si el valor no es del tipo del campo. */
+    private static Object normaliza(CampoLibro campo, Object valor) {
+        switch (campo) {
+        case TITULO:
+        case AUTOR:
+        case EDITORIAL:
+            return valor instanceof String ?
+                ((String) valor).trim().toLowerCase(Locale.ROOT) : null;
+        case AÑO:
+        case EDICION:
+        case PAGINAS:
+            return valor instanceof Integer ? valor : null;
+        default:
+            return valor instanceof Double ? valor : null;
+        }
+    }
 }
@@ -0,0 +1,299 @@
+package mx.unam.ciencias.icc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+/**
+ * Clase para bitácoras de escritura anticipada. Cada modificación de una
+ * {@link BaseDeDatos} se agrega al final de la bitácora como una línea con la
+ * operación, un número de secuencia y, si la operación lo necesita, el
+ * registro serializado, separados por tabuladores:
+ *
+ * <pre>
+ *   A  secuencia     registro    agrega el registro
+ *   E  secuencia     registro    elimina el primer registro igual
+ *   B  secuencia  k  registro    elimina el registro igual número k
+ *   U  secuencia     registro    agrega o actualiza por llave natural
+ *   L  secuencia                 limpia la base de datos
+ * </pre>
+ *
+ * Los registros iguales se numeran desde cero en el orden de la base de
+ * datos; como reproducir las entradas anteriores deja a los registros en el
+ * mismo orden, la entrada <code>B</code> elimina el mismo registro que se
+ * eliminó al escribirla, aunque haya otros iguales.
+ *
+ * Los números de secuencia crecen con cada entrada. Al compactar, la base de
+ * datos escribe una instantánea que termina con la línea {@link #MARCA}
+ * seguida de la última secuencia que incluye; al reproducir la bitácora se
+ * saltan las entradas que la instantánea ya incluye, por lo que da lo mismo si
+ * la compactación se interrumpió antes o después de recortar la bitácora. Una
+ * entrada incompleta o inválida al final de la bitácora (por ejemplo, porque
+ * el programa terminó a la mitad de escribirla) se descarta junto con las que
+ * la siguen.
+ */
+class Bitacora {
+
+    /** Operación para agregar un registro. */
+    public static final char AGREGA = 'A';
+    /** Operación para eliminar un registro. */
+    public static final char ELIMINA = 'E';
+    /** Operación para eliminar un registro por su número entre los
+        iguales. */
+    public static final char BORRA = 'B';
+    /** Operación para agregar o actualizar un registro. */
+    public static final char ACTUALIZA = 'U';
+    /** Operación para limpiar la base de datos. */
+    public static final char LIMPIA = 'L';
+    /** Inicio de la línea con la que termina una instantánea. */
+    public static final String MARCA = "#BITACORA ";
+
+    /**
+     * Interfaz para aplicar las entradas de la bitácora al reproducirla.
+     */
+    interface Aplicador {
+        /**
+         * Aplica una operación.
+         * @param operacion la operación.
+         * @param numero el número del registro entre los iguales, si la
+         *        operación es {@link #BORRA}; cero en otro caso.
+         * @param registro el registro de la operación, o <code>null</code> si
+         *        la operación es {@link #LIMPIA}.
+         */
+        void aplica(char operacion, int numero, Registro registro);
+    }
+
+    /* La ruta de la bitácora. */
+    private final Path ruta;
+    /* El canal donde se escriben las entradas. */
+    private FileChannel canal;
+    /* La secuencia de la última entrada. */
+    private long secuencia;
+    /* El número de bytes válidos en la bitácora. */
+    private long longitud;
+    /* El número de entradas en la bitácora. */
+    private int entradas;
+    /* Constructor de cadenas para las entradas. */
+    private StringBuilder sb;
+
+    /**
+     * Abre la bitácora en la ruta recibida, reproduciendo las entradas
+     * posteriores a la marca. Si la ruta no existe, la bitácora empieza vacía.
+     * @param ruta la ruta de la bitácora.
+     * @param marca la última secuencia que incluye la instantánea.
+     * @param fabrica la fábrica de registros en blanco.
+     * @param diccionario el diccionario donde se canonizan los registros
+     *        reproducidos; puede ser <code>null</code>.
+     * @param aplicador el que aplica las entradas.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    Bitacora(Path ruta, long marca, Supplier<Registro> fabrica,
+             DiccionarioCampos diccionario, Aplicador aplicador)
+        throws IOException {
+        this.ruta = ruta;
+        secuencia = marca;
+        sb = new StringBuilder(256);
+        if (Files.exists(ruta))
+            reproduce(Files.readAllBytes(ruta), marca, fabrica, diccionario,
+                      aplicador);
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+        canal.truncate(longitud);
+        canal.position(longitud);
+    }
+
+    /* Reproduce las entradas completas y válidas de la bitácora. */
+    private void reproduce(byte[] bytes, long marca, Supplier<Registro> fabrica,
+                           DiccionarioCampos diccionario,
+                           Aplicador aplicador) {
+        long ultima = Long.MIN_VALUE;
+        int inicio = 0;
+        while (inicio < bytes.length) {
+            int fin = inicio;
+            while (fin < bytes.length && bytes[fin] != '\n')
+                fin++;
+            if (fin == bytes.length || fin - inicio < 3 ||
+                bytes[inicio + 1] != '\t')
+                return;
+            char operacion = (char) bytes[inicio];
+            int p = inicio + 2;
+            long s = 0;
+            int digitos = 0;
+            while (p < fin && bytes[p] >= '0' && bytes[p] <= '9' &&
+                   digitos < 18) {
+                s = 10 * s + (bytes[p++] - '0');
+                digitos++;
+            }
+            if (digitos == 0 || s <= ultima)
+                return;
+            Registro registro = null;
+            int numero = 0;
+            if (operacion == BORRA) {
+                if (p == fin || bytes[p++] != '\t')
+                    return;
+                digitos = 0;
+                while (p < fin && bytes[p] >= '0' && bytes[p] <= '9' &&
+                       digitos < 9) {
+                    numero = 10 * numero + (bytes[p++] - '0');
+                    digitos++;
+                }
+                if (digitos == 0)
+                    return;
+            }
+            if (operacion == LIMPIA) {
+                if (p != fin)
+                    return;
+            } else if (operacion == AGREGA || operacion == ELIMINA ||
+                       operacion == BORRA || operacion == ACTUALIZA) {
+                if (p == fin || bytes[p] != '\t')
+                    return;
+                if (s > marca) {
+                    registro = fabrica.get();
+                    try {
+                        registro.deserializa(bytes, p + 1, fin,
+                                             diccionario);
+                    } catch (ExcepcionLineaInvalida eli) {
+                        return;
+                    }
+                }
+            } else {
+                return;
+            }
+            if (s > marca)
+                aplicador.aplica(operacion, numero, registro);
+            ultima = s;
+            secuencia = Math.max(secuencia, s);
+            inicio = fin + 1;
+            longitud = inicio;
+            entradas++;
+        }
+    }
+
+    /**
+     * Agrega una entrada al final de la bitácora. Si la escritura falla, la
+     * bitácora se recorta a la última entrada completa.
+     * @param operacion la operación.
+     * @param registro el registro de la operación, o <code>null</code> si la
+     *        operación es {@link #LIMPIA}.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    void escribe(char operacion, Registro registro) throws IOException {
+        escribe(operacion, -1, registro);
+    }
+
+    /**
+     * Agrega una entrada {@link #BORRA} al final de la bitácora, como {@link
+     * #escribe(char, Registro)}.
+     * @param numero el número del registro entre los iguales.
+     * @param registro el registro.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    void escribeBorrado(int numero, Registro registro) throws IOException {
+        escribe(BORRA, numero, registro);
+    }
+
+    /* Agrega la entrada; el número se omite si es negativo. */
+    private void escribe(char operacion, int numero, Registro registro)
+        throws IOException {
+        sb.setLength(0);
+        sb.append(operacion).append('\t').append(secuencia + 1);
+        if (numero >= 0)
+            sb.append('\t').append(numero);
+        if (registro == null) {
+            sb.append('\n');
+        } else {
+            sb.append('\t');
+            registro.serializa(sb);
+        }
+        ByteBuffer bytes =
+            ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (bytes.hasRemaining())
+                canal.write(bytes);
+        } catch (IOException ioe) {
+            canal.truncate(longitud);
+            canal.position(longitud);
+            throw ioe;
+        }
+        secuencia++;
+        longitud += bytes.limit();
+        entradas++;
+    }
+
+    /**
+     * Descarta el inicio de la bitácora, hasta el byte recibido. El resto se
+     * copia a un archivo nuevo que reemplaza a la bitácora de forma atómica.
+     * @param corte el número de bytes a descartar; debe ser el final de una
+     *        entrada.
+     * @param descartadas el número de entradas que se descartan.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    void recorta(long corte, int descartadas) throws IOException {
+        Path temporal = BaseDeDatos.creaTemporal(ruta);
+        try (FileChannel nuevo = FileChannel.open(temporal,
+                                                  StandardOpenOption.WRITE)) {
+            long p = corte;
+            while (p < longitud)
+                p += canal.transferTo(p, longitud - p, nuevo);
+            nuevo.force(true);
+        } catch (IOException ioe) {
+            Files.deleteIfExists(temporal);
+            throw ioe;
+        }
+        canal.close();
+        boolean movido = false;
+        try {
+            Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE);
+            movido = true;
+            BaseDeDatos.sincronizaDirectorio(ruta);
+        } finally {
+            canal = FileChannel.open(ruta, StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE);
+            longitud = canal.size();
+            canal.position(longitud);
+            if (movido)
+                entradas -= descartadas;
+            else
+                Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Regresa la secuencia de la última entrada.
+     * @return la secuencia de la última entrada.
+     */
+    long getSecuencia() {
+        return secuencia;
+    }
+
+    /**
+     * Regresa el número de bytes en la bitácora.
+     * @return el número de bytes en la bitácora.
+     */
+    long getLongitud() {
+        return longitud;
+    }
+
+    /**
+     * Regresa el número de entradas en la bitácora.
+     * @return el número de entradas en la bitácora.
+     */
+    int getEntradas() {
+        return entradas;
+    }
+
+    /**
+     * Cierra la bitácora.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    void cierra() throws IOException {
+        canal.close();
+    }
+}
@@ -0,0 +1,88 @@
+package mx.unam.ciencias.icc;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * Clase para búsquedas en paralelo. Los registros se parten en bloques
+ * contiguos, cada bloque se recorre en un hilo de un {@link ForkJoinPool}, y
+ * los resultados de los bloques se juntan en el orden original.
+ */
+class BusquedaParalela {
+
+    /**
+     * Interfaz para recorridos de un intervalo de registros.
+     */
+    interface Recorrido {
+        /**
+         * Recorre los registros en el intervalo [inicio, fin).
+         * @param inicio el índice del primer registro del intervalo.
+         * @param fin el índice siguiente al último registro del intervalo.
+         * @return una lista con los registros del intervalo que cazan, en
+         *         orden.
+         */
+        Lista recorre(int inicio, int fin);
+    }
+
+    /** Número mínimo de registros de cada bloque. */
+    public static final int TAMAÑO_MINIMO_BLOQUE = 1024;
+
+    /* Constructor privado para evitar instanciación. */
+    private BusquedaParalela() {}
+
+    /**
+     * Busca en paralelo los registros que cumplen una condición. La condición
+     * debe poder evaluarse concurrentemente.
+     * @param registros los registros en los que hay que buscar.
+     * @param condicion la condición que deben cumplir los registros.
+     * @param ejecutor el ejecutor donde se recorrerán los bloques.
+     * @return una lista con los registros que cumplen la condición, en el orden
+     *         del arreglo.
+     */
+    public static Lista busca(Registro[] registros,
+                              Predicate<Registro> condicion,
+                              ForkJoinPool ejecutor) {
+        return busca(registros.length,
+                     (a, b) -> busca(registros, condicion, a, b), ejecutor);
+    }
+
+    /**
+     * Parte los índices [0, n) en bloques contiguos, los recorre en paralelo y
+     * junta los resultados en orden. Los resultados se concatenan sin
+     * copiarse (ver {@link Lista#concatena}).
+     * @param n el número de registros.
+     * @param recorrido el recorrido de cada bloque; debe poder llamarse
+     *        concurrentemente.
+     * @param ejecutor el ejecutor donde se recorrerán los bloques.
+     * @return una lista con los resultados de los bloques, en orden.
+     */
+    public static Lista busca(int n, Recorrido recorrido,
+                              ForkJoinPool ejecutor) {
+        int bloques = Math.min(n / TAMAÑO_MINIMO_BLOQUE,
+                               4 * ejecutor.getParallelism());
+        if (bloques <= 1)
+            return recorrido.recorre(0, n);
+        @SuppressWarnings("unchecked") ForkJoinTask<Lista>[] tareas =
+            (ForkJoinTask<Lista>[])new ForkJoinTask[bloques];
+        for (int i = 0; i < bloques; i++) {
+            int a = (int)((long)n * i / bloques);
+            int b = (int)((long)n * (i + 1) / bloques);
+            tareas[i] = ejecutor.submit(() -> recorrido.recorre(a, b));
+        }
+        Lista lista = new Lista();
+        for (ForkJoinTask<Lista> tarea : tareas)
+            lista.concatena(tarea.join());
+        return lista;
+    }
+
+    /* Busca los registros en [a, b) que cumplen la condición. */
+    private static Lista busca(Registro[] registros,
+                               Predicate<Registro> condicion, int a, int b) {
+        Lista lista = new Lista();
+        for (int i = a; i < b; i++)
+            if (condicion.test(registros[i]))
+                lista.agregaFinal(registros[i]);
+        return lista;
+    }
+}
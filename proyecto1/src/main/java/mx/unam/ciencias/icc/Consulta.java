@@ -0,0 +1,294 @@
+package mx.unam.ciencias.icc;
+
+import java.util.function.Consumer;
+
+/**
+ * <p>Clase para consultas compuestas. Una consulta combina condiciones sobre
+ * campos de los registros con conjunciones, disyunciones y negaciones; cada
+ * condición es un par (campo, valor) que se evalúa con {@link Registro#caza},
+ * igual que en {@link BaseDeDatos#buscaRegistros(Enum, Object)}.</p>
+ *
+ * <p>Las consultas se construyen con los métodos estáticos {@link #caza},
+ * {@link #y}, {@link #o} y {@link #no}. Por ejemplo, los libros cuyo autor
+ * contiene <code>"Borges"</code>, publicados en 1950 o después y con precio
+ * menor que 300 son:</p>
+ *
+ * <pre>
+ *     Consulta.y(Consulta.caza(CampoLibro.AUTOR, "Borges"),
+ *                Consulta.caza(CampoLibro.AÑO, 1950),
+ *                Consulta.no(Consulta.caza(CampoLibro.PRECIO, 300.0)))
+ * </pre>
+ *
+ * <p>{@link BaseDeDatos#buscaRegistros(Consulta)} evalúa la consulta en un
+ * solo recorrido; en una conjunción, estima con los índices cuántos registros
+ * revisaría cada condición indexada, hace la búsqueda indexada sólo con la
+ * más selectiva para obtener los candidatos, y evalúa las demás sobre
+ * ellos.</p>
+ */
+public abstract class Consulta {
+
+    /* Clase interna privada para condiciones sobre un campo. */
+    private static class Condicion extends Consulta {
+        /* El campo. */
+        private Enum campo;
+        /* El valor. */
+        private Object valor;
+
+        /* Construye una condición. */
+        private Condicion(Enum campo, Object valor) {
+            this.campo = campo;
+            this.valor = valor;
+        }
+
+        /* Evalúa la condición. */
+        @Override public boolean evalua(Registro registro) {
+            return registro.caza(campo, valor);
+        }
+
+        /* Busca con el índice del campo, si lo hay. */
+        @Override Lista buscaIndexados(BaseDeDatos bdd) {
+            return bdd.buscaRegistrosIndexados(campo, valor);
+        }
+
+        /* Recorre con el índice del campo, si lo hay. */
+        @Override boolean recorreIndexados(BaseDeDatos bdd,
+                                           Consumer<Registro> accion) {
+            return bdd.recorreRegistrosIndexados(campo, valor, accion);
+        }
+
+        /* Estima con el índice del campo, si lo hay. */
+        @Override int estimaIndexados(BaseDeDatos bdd, int limite) {
+            return bdd.estimaRegistrosIndexados(campo, valor, limite);
+        }
+    }
+
+    /* Clase interna privada para conjunciones. */
+    private static class Conjuncion extends Consulta {
+        /* La cota de la primera ronda de estimaciones. */
+        private static final int COTA_INICIAL = 16;
+        /* El factor por el que crece la cota en cada ronda. */
+        private static final int CRECIMIENTO = 16;
+        /* Las consultas de la conjunción. */
+        private Consulta[] consultas;
+
+        /* Construye una conjunción. */
+        private Conjuncion(Consulta[] consultas) {
+            this.consultas = consultas;
+        }
+
+        /* Evalúa la conjunción; se detiene en la primera consulta falsa. */
+        @Override public boolean evalua(Registro registro) {
+            for (Consulta consulta : consultas)
+                if (!consulta.evalua(registro))
+                    return false;
+            return true;
+        }
+
+        /* Recorre con el índice de la consulta con la menor estimación, y
+         * evalúa las demás consultas sólo sobre sus candidatos. */
+        @Override boolean recorreIndexados(BaseDeDatos bdd,
+                                           Consumer<Registro> accion) {
+            int k = indiceMasSelectivo(bdd, Integer.MAX_VALUE);
+            if (k == -1)
+                return false;
+            return consultas[k].recorreIndexados(bdd, registro -> {
+                    for (int i = 0; i < consultas.length; i++)
+                        if (i != k && !consultas[i].evalua(registro))
+                            return;
+                    accion.accept(registro);
+                });
+        }
+
+        /* Una conjunción no regresa más registros que su consulta más
+         * selectiva. */
+        @Override int estimaIndexados(BaseDeDatos bdd, int limite) {
+            int k = indiceMasSelectivo(bdd, limite);
+            return k == -1 ? -1 : consultas[k].estimaIndexados(bdd, limite);
+        }
+
+        /* Regresa el índice de la consulta indexada con la menor estimación,
+         * o -1 si ninguna tiene índice. Las estimaciones se hacen por rondas,
+         * con una cota que crece de ronda en ronda y sin contar más allá de
+         * la menor estimación de la ronda, así que estimar las consultas poco
+         * selectivas no cuesta mucho más que estimar la más selectiva. */
+        private int indiceMasSelectivo(BaseDeDatos bdd, int limite) {
+            int cota = Math.min(COTA_INICIAL, limite);
+            while (true) {
+                int k = -1;
+                int primera = -1;
+                int menor = cota;
+                for (int i = 0; i < consultas.length; i++) {
+                    int e = consultas[i].estimaIndexados(bdd,
+                                                         k == -1 ? menor :
+                                                         menor - 1);
+                    if (e < 0)
+                        continue;
+                    if (primera == -1)
+                        primera = i;
+                    if (k == -1 ? e <= menor : e < menor) {
+                        k = i;
+                        menor = e;
+                    }
+                }
+                if (k != -1 || primera == -1 || cota == limite)
+                    return k != -1 ? k : primera;
+                cota = cota > limite / CRECIMIENTO ? limite :
+                    CRECIMIENTO * cota;
+            }
+        }
+    }
+
+    /* Clase interna privada para disyunciones. */
+    private static class Disyuncion extends Consulta {
+        /* Las consultas de la disyunción. */
+        private Consulta[] consultas;
+
+        /* Construye una disyunción. */
+        private Disyuncion(Consulta[] consultas) {
+            this.consultas = consultas;
+        }
+
+        /* Evalúa la disyunción; se detiene en la primera consulta verdadera. */
+        @Override public boolean evalua(Registro registro) {
+            for (Consulta consulta : consultas)
+                if (consulta.evalua(registro))
+                    return true;
+            return false;
+        }
+    }
+
+    /* Clase interna privada para negaciones. */
+    private static class Negacion extends Consulta {
+        /* La consulta negada. */
+        private Consulta consulta;
+
+        /* Construye una negación. */
+        private Negacion(Consulta consulta) {
+            this.consulta = consulta;
+        }
+
+        /* Evalúa la negación. */
+        @Override public boolean evalua(Registro registro) {
+            return !consulta.evalua(registro);
+        }
+    }
+
+    /* Constructor privado para que sólo haya las consultas de esta clase. */
+    private Consulta() {}
+
+    /**
+     * Regresa la consulta de los registros que cazan el valor dado en el campo
+     * especificado.
+     * @param campo el campo del registro.
+     * @param valor el valor que debe cazar el campo.
+     * @return la consulta de los registros que cazan el valor en el campo.
+     * @throws IllegalArgumentException si el campo es <code>null</code>.
+     */
+    public static Consulta caza(Enum campo, Object valor) {
+        if (campo == null)
+            throw new IllegalArgumentException("El campo no puede ser nulo");
+        return new Condicion(campo, valor);
+    }
+
+    /**
+     * Regresa la conjunción de las consultas recibidas. Las conjunciones
+     * anidadas se aplanan.
+     * @param consultas las consultas que deben cumplirse todas.
+     * @return la conjunción de las consultas.
+     * @throws IllegalArgumentException si no hay consultas o alguna es
+     *         <code>null</code>.
+     */
+    public static Consulta y(Consulta... consultas) {
+        verifica(consultas);
+        Lista planas = new Lista();
+        for (Consulta consulta : consultas) {
+            if (consulta instanceof Conjuncion)
+                for (Consulta c : ((Conjuncion) consulta).consultas)
+                    planas.agregaFinal(c);
+            else
+                planas.agregaFinal(consulta);
+        }
+        if (planas.getLongitud() == 1)
+            return consultas[0];
+        return new Conjuncion(arreglo(planas));
+    }
+
+    /**
+     * Regresa la disyunción de las consultas recibidas.
+     * @param consultas las consultas de las que debe cumplirse alguna.
+     * @return la disyunción de las consultas.
+     * @throws IllegalArgumentException si no hay consultas o alguna es
+     *         <code>null</code>.
+     */
+    public static Consulta o(Consulta... consultas) {
+        verifica(consultas);
+        if (consultas.length == 1)
+            return consultas[0];
+        return new Disyuncion(consultas.clone());
+    }
+
+    /**
+     * Regresa la negación de la consulta recibida. Como los campos numéricos
+     * cazan los valores mayores o iguales, la negación sirve para buscar
+     * valores menores.
+     * @param consulta la consulta que no debe cumplirse.
+     * @return la negación de la consulta.
+     * @throws IllegalArgumentException si la consulta es <code>null</code>.
+     */
+    public static Consulta no(Consulta consulta) {
+        if (consulta == null)
+            throw new IllegalArgumentException("La consulta no puede ser " +
+                                               "nula");
+        return new Negacion(consulta);
+    }
+
+    /**
+     * Nos dice si el registro cumple la consulta.
+     * @param registro el registro a evaluar.
+     * @return <code>true</code> si el registro cumple la consulta,
+     *         <code>false</code> en otro caso.
+     * @throws IllegalArgumentException si algún campo de la consulta no es de
+     *         la enumeración correcta para el registro.
+     */
+    public abstract boolean evalua(Registro registro);
+
+    /* Busca los registros que cumplen la consulta usando los índices de la
+     * base de datos; regresa null si hay que recorrer todos los registros. */
+    Lista buscaIndexados(BaseDeDatos bdd) {
+        Lista lista = new Lista();
+        return recorreIndexados(bdd, lista::agregaFinal) ? lista : null;
+    }
+
+    /* Entrega a la acción, en orden, los registros que regresaría
+     * buscaIndexados, sin crear una lista; regresa false si hay que recorrer
+     * todos los registros. */
+    boolean recorreIndexados(BaseDeDatos bdd, Consumer<Registro> accion) {
+        return false;
+    }
+
+    /* Estima el número de registros que revisaría buscaIndexados, contando
+     * a lo más hasta pasar del límite; regresa -1 si no hay índice. */
+    int estimaIndexados(BaseDeDatos bdd, int limite) {
+        return -1;
+    }
+
+    /* Verifica que haya consultas y que ninguna sea nula. */
+    private static void verifica(Consulta[] consultas) {
+        if (consultas == null || consultas.length == 0)
+            throw new IllegalArgumentException("Se necesita al menos una " +
+                                               "consulta");
+        for (Consulta consulta : consultas)
+            if (consulta == null)
+                throw new IllegalArgumentException("La consulta no puede " +
+                                                   "ser nula");
+    }
+
+    /* Regresa un arreglo con las consultas de la lista. */
+    private static Consulta[] arreglo(Lista lista) {
+        Consulta[] arreglo = new Consulta[lista.getLongitud()];
+        int i = 0;
+        for (Lista.Nodo n = lista.getCabeza(); n != null; n = n.getSiguiente())
+            arreglo[i++] = (Consulta) n.get();
+        return arreglo;
+    }
+}
@@ -0,0 +1,282 @@
+package mx.unam.ciencias.icc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Clase para diccionarios de valores de campos. Para cada campo, el
+ * diccionario guarda una sola instancia de cada cadena distinta y le asigna un
+ * identificador, empezando en cero y en el orden en que aparecen. Los
+ * registros con valores muy repetidos (como los autores y las editoriales de
+ * un catálogo de libros) pueden compartir la instancia del diccionario en
+ * lugar de guardar cada uno su propia copia (ver {@link
+ * Registro#canoniza}); dos valores canónicos del mismo campo son iguales si y
+ * sólo si son la misma instancia, o tienen el mismo identificador.</p>
+ *
+ * <p>Un valor puede canonizarse también a partir de un segmento de una línea
+ * de texto o de un arreglo de bytes, como al deserializar un registro; si el
+ * valor ya está en el diccionario, se regresa su instancia canónica sin crear
+ * una cadena nueva.</p>
+ *
+ * <p>Los valores no se eliminan del diccionario hasta que se limpia. Consultar
+ * el diccionario es seguro mientras otro hilo le agrega valores, y varios
+ * hilos pueden canonizar valores a la vez.</p>
+ */
+public class DiccionarioCampos {
+
+    /* Clase interna privada para valores canónicos. */
+    private static class Valor {
+        /* La instancia canónica. */
+        private final String cadena;
+        /* El identificador del valor. */
+        private final int id;
+
+        /* Construye un valor con su instancia y su identificador. */
+        private Valor(String cadena, int id) {
+            this.cadena = cadena;
+            this.id = id;
+        }
+    }
+
+    /* Clase interna privada para los valores de un campo. */
+    private static class Diccionario {
+        /* Los valores, por cadena. */
+        private ConcurrentHashMap<String, Valor> valores;
+        /* Las instancias canónicas, por identificador. */
+        private volatile String[] cadenas;
+        /* El número de valores. */
+        private volatile int n;
+        /* Las instancias canónicas, en una tabla de direccionamiento abierto
+           para buscarlas por segmentos sin crear cadenas. Sólo se le agregan
+           valores en nuevo(), y se reemplaza al crecer; quien la consulta a
+           la vez ve el valor o no lo encuentra. */
+        private volatile String[] tabla;
+
+        /* Construye un diccionario vacío. */
+        private Diccionario() {
+            valores = new ConcurrentHashMap<String, Valor>();
+            cadenas = new String[16];
+            tabla = new String[32];
+        }
+
+        /* Regresa el valor de la cadena, agregándolo si no estaba. */
+        private Valor canoniza(String s) {
+            return valores.computeIfAbsent(s, this::nuevo);
+        }
+
+        /* Crea el valor de una cadena nueva; se llama con la cubeta de la
+           cadena tomada, así que se sincroniza para asignar el
+           identificador. */
+        private synchronized Valor nuevo(String s) {
+            String[] c = cadenas;
+            if (n == c.length)
+                c = Arrays.copyOf(c, 2 * n);
+            c[n] = s;
+            cadenas = c;
+            String[] t = tabla;
+            if (2 * (n + 1) > t.length) {
+                t = new String[2 * t.length];
+                for (int i = 0; i < n; i++)
+                    guarda(t, c[i]);
+            }
+            guarda(t, s);
+            tabla = t;
+            return new Valor(s, n++);
+        }
+
+        /* Guarda la cadena en la tabla. */
+        private static void guarda(String[] t, String s) {
+            int i = dispersa(s.hashCode()) & (t.length - 1);
+            while (t[i] != null)
+                i = (i + 1) & (t.length - 1);
+            t[i] = s;
+        }
+
+        /* Busca en la tabla la cadena igual al segmento [a, b) del texto; el
+           código de dispersión es el de String. */
+        private String busca(CharSequence texto, int a, int b) {
+            int h = 0;
+            for (int i = a; i < b; i++)
+                h = 31 * h + texto.charAt(i);
+            String[] t = tabla;
+            for (int i = dispersa(h) & (t.length - 1); t[i] != null;
+                 i = (i + 1) & (t.length - 1))
+                if (igual(t[i], texto, a, b))
+                    return t[i];
+            return null;
+        }
+
+        /* Busca en la tabla la cadena igual al segmento [a, b) del arreglo,
+           si el segmento es ASCII; en otro caso regresa null. */
+        private String busca(byte[] bytes, int a, int b) {
+            int h = 0;
+            for (int i = a; i < b; i++) {
+                if (bytes[i] < 0)
+                    return null;
+                h = 31 * h + bytes[i];
+            }
+            String[] t = tabla;
+            for (int i = dispersa(h) & (t.length - 1); t[i] != null;
+                 i = (i + 1) & (t.length - 1))
+                if (igual(t[i], bytes, a, b))
+                    return t[i];
+            return null;
+        }
+
+        /* Mezcla los bits altos del código de dispersión con los bajos. */
+        private static int dispersa(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        /* Nos dice si la cadena es igual al segmento [a, b) del texto. */
+        private static boolean igual(String s, CharSequence texto,
+                                     int a, int b) {
+            if (s.length() != b - a)
+                return false;
+            for (int i = a; i < b; i++)
+                if (s.charAt(i - a) != texto.charAt(i))
+                    return false;
+            return true;
+        }
+
+        /* Nos dice si la cadena es igual al segmento ASCII [a, b) del
+           arreglo. */
+        private static boolean igual(String s, byte[] bytes, int a, int b) {
+            if (s.length() != b - a)
+                return false;
+            for (int i = a; i < b; i++)
+                if (s.charAt(i - a) != bytes[i])
+                    return false;
+            return true;
+        }
+    }
+
+    /* Los diccionarios, por campo. */
+    private ConcurrentHashMap<Enum, Diccionario> diccionarios;
+
+    /**
+     * Construye un diccionario vacío.
+     */
+    public DiccionarioCampos() {
+        diccionarios = new ConcurrentHashMap<Enum, Diccionario>();
+    }
+
+    /**
+     * Regresa la instancia canónica del valor recibido para el campo
+     * recibido, agregándolo al diccionario si no estaba.
+     * @param campo el campo del valor.
+     * @param valor el valor a canonizar; puede ser <code>null</code>.
+     * @return la instancia canónica, igual al valor recibido, o
+     *         <code>null</code> si el valor es <code>null</code>.
+     * @throws IllegalArgumentException si el campo es <code>null</code>.
+     */
+    public String canoniza(Enum campo, String valor) {
+        if (campo == null)
+            throw new IllegalArgumentException();
+        if (valor == null)
+            return null;
+        return diccionario(campo).canoniza(valor).cadena;
+    }
+
+    /**
+     * Regresa la instancia canónica del segmento del texto recibido para el
+     * campo recibido, agregándolo al diccionario si no estaba. Sólo se crea
+     * una cadena si el valor no estaba en el diccionario.
+     * @param campo el campo del valor.
+     * @param texto el texto con el valor.
+     * @param inicio el índice del primer carácter del valor.
+     * @param fin el índice siguiente al último carácter del valor.
+     * @return la instancia canónica, igual al segmento del texto.
+     * @throws IllegalArgumentException si el campo es <code>null</code>.
+     */
+    public String canoniza(Enum campo, CharSequence texto, int inicio,
+                           int fin) {
+        if (campo == null)
+            throw new IllegalArgumentException();
+        Diccionario diccionario = diccionario(campo);
+        String s = diccionario.busca(texto, inicio, fin);
+        if (s != null)
+            return s;
+        return diccionario.canoniza(texto.subSequence(inicio, fin)
+                                    .toString()).cadena;
+    }
+
+    /**
+     * Regresa la instancia canónica del segmento codificado en UTF-8 del
+     * arreglo recibido para el campo recibido, agregándolo al diccionario si
+     * no estaba. Si el segmento es ASCII, sólo se crea una cadena si el valor
+     * no estaba en el diccionario.
+     * @param campo el campo del valor.
+     * @param bytes el arreglo con el valor.
+     * @param inicio el índice del primer byte del valor.
+     * @param fin el índice siguiente al último byte del valor.
+     * @return la instancia canónica, igual al segmento decodificado.
+     * @throws IllegalArgumentException si el campo es <code>null</code>.
+     */
+    public String canoniza(Enum campo, byte[] bytes, int inicio, int fin) {
+        if (campo == null)
+            throw new IllegalArgumentException();
+        Diccionario diccionario = diccionario(campo);
+        String s = diccionario.busca(bytes, inicio, fin);
+        if (s != null)
+            return s;
+        return diccionario.canoniza(new String(bytes, inicio, fin - inicio,
+                                               StandardCharsets.UTF_8))
+            .cadena;
+    }
+
+    /* Regresa el diccionario del campo, creándolo si no existe. */
+    private Diccionario diccionario(Enum campo) {
+        return diccionarios.computeIfAbsent(campo, c -> new Diccionario());
+    }
+
+    /**
+     * Regresa el identificador del valor recibido para el campo recibido.
+     * @param campo el campo del valor.
+     * @param valor el valor.
+     * @return el identificador del valor, o -1 si no está en el diccionario.
+     */
+    public int getIdentificador(Enum campo, String valor) {
+        Diccionario diccionario = campo == null ? null :
+            diccionarios.get(campo);
+        if (diccionario == null || valor == null)
+            return -1;
+        Valor v = diccionario.valores.get(valor);
+        return v == null ? -1 : v.id;
+    }
+
+    /**
+     * Regresa el valor con el identificador recibido para el campo recibido.
+     * @param campo el campo del valor.
+     * @param id el identificador del valor.
+     * @return la instancia canónica del valor.
+     * @throws ExcepcionIndiceInvalido si el identificador no es válido.
+     */
+    public String getValor(Enum campo, int id) {
+        Diccionario diccionario = campo == null ? null :
+            diccionarios.get(campo);
+        if (diccionario == null || id < 0 || id >= diccionario.n)
+            throw new ExcepcionIndiceInvalido("Identificador inválido: " + id);
+        return diccionario.cadenas[id];
+    }
+
+    /**
+     * Regresa el número de valores distintos del campo recibido.
+     * @param campo el campo.
+     * @return el número de valores distintos del campo.
+     */
+    public int getNumValores(Enum campo) {
+        Diccionario diccionario = campo == null ? null :
+            diccionarios.get(campo);
+        return diccionario == null ? 0 : diccionario.n;
+    }
+
+    /**
+     * Limpia el diccionario. Los valores que se canonicen después reciben
+     * instancias e identificadores nuevos.
+     */
+    public void limpia() {
+        diccionarios.clear();
+    }
+}
@@ -0,0 +1,196 @@
+package mx.unam.ciencias.icc;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Clase para entradas binarias. La entrada lee lo que escribe {@link
+ * SalidaBinaria}, de un arreglo de bytes o de un canal; en el segundo caso lee
+ * el canal por bloques, que crecen si una cadena no cabe en uno.
+ */
+public class EntradaBinaria {
+
+    /* Tamaño inicial del bloque para leer de un canal. */
+    private static final int TAMAÑO_BLOQUE = 1 << 16;
+    /* Longitud máxima de una cadena en bytes. */
+    private static final int LONGITUD_MAXIMA = 1 << 30;
+
+    /* Los bytes que faltan por leer. */
+    private ByteBuffer buffer;
+    /* El canal de donde se leen más bytes, o null si no hay. */
+    private ReadableByteChannel canal;
+
+    /**
+     * Construye una entrada que lee del arreglo recibido.
+     * @param bytes el arreglo de donde hay que leer.
+     */
+    public EntradaBinaria(byte[] bytes) {
+        buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Construye una entrada que lee del canal recibido. La entrada puede leer
+     * del canal más bytes de los que consume.
+     * @param canal el canal de donde hay que leer.
+     */
+    public EntradaBinaria(ReadableByteChannel canal) {
+        this.canal = canal;
+        buffer = ByteBuffer.allocate(TAMAÑO_BLOQUE);
+        buffer.flip();
+    }
+
+    /* Se asegura de que haya m bytes por leer. */
+    private void asegura(int m) throws IOException {
+        if (buffer.remaining() >= m)
+            return;
+        if (canal == null)
+            throw new EOFException("Entrada binaria truncada");
+        if (m > buffer.capacity()) {
+            ByteBuffer nuevo =
+                ByteBuffer.allocate(Math.max(m, 2 * buffer.capacity()));
+            nuevo.put(buffer);
+            buffer = nuevo;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < m) {
+            if (canal.read(buffer) < 0) {
+                buffer.flip();
+                throw new EOFException("Entrada binaria truncada");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Lee un byte.
+     * @return el byte leído, sin signo.
+     * @throws IOException si ocurre un error de entrada/salida o la entrada
+     *         se termina.
+     */
+    public int leeByte() throws IOException {
+        asegura(1);
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Lee un entero variable sin signo.
+     * @return el entero leído.
+     * @throws IOException si ocurre un error de entrada/salida, la entrada se
+     *         termina o el entero tiene más de diez bytes.
+     */
+    public long leeVarint() throws IOException {
+        long v = 0;
+        for (int corrimiento = 0; corrimiento < 64; corrimiento += 7) {
+            asegura(1);
+            byte b = buffer.get();
+            v |= (long) (b & 0x7F) << corrimiento;
+            if (b >= 0)
+                return v;
+        }
+        throw new IOException("Entero variable inválido");
+    }
+
+    /**
+     * Lee un entero con signo codificado en zigzag.
+     * @return el entero leído.
+     * @throws IOException si ocurre un error de entrada/salida, la entrada se
+     *         termina o el entero no cabe en un <code>int</code>.
+     */
+    public int leeEntero() throws IOException {
+        long v = leeVarint();
+        if ((v >>> 32) != 0)
+            throw new IOException("Entero inválido");
+        int z = (int) v;
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    /**
+     * Lee un entero largo de ocho bytes.
+     * @return el entero largo leído.
+     * @throws IOException si ocurre un error de entrada/salida o la entrada
+     *         se termina.
+     */
+    public long leeLargo() throws IOException {
+        asegura(8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Lee un doble de ocho bytes.
+     * @return el doble leído.
+     * @throws IOException si ocurre un error de entrada/salida o la entrada
+     *         se termina.
+     */
+    public double leeDouble() throws IOException {
+        return Double.longBitsToDouble(leeLargo());
+    }
+
+    /**
+     * Lee una cadena precedida de su longitud.
+     * @return la cadena leída; puede ser <code>null</code>.
+     * @throws IOException si ocurre un error de entrada/salida, la entrada se
+     *         termina o la longitud es inválida.
+     */
+    public String leeCadena() throws IOException {
+        long m = leeVarint();
+        if (m == 0)
+            return null;
+        if (m - 1 > LONGITUD_MAXIMA)
+            throw new IOException("Cadena demasiado larga");
+        int n = (int) (m - 1);
+        asegura(n);
+        int p = buffer.position();
+        String s = new String(buffer.array(), buffer.arrayOffset() + p, n,
+                              StandardCharsets.UTF_8);
+        buffer.position(p + n);
+        return s;
+    }
+
+    /**
+     * Lee una cadena y regresa su instancia canónica en el diccionario
+     * recibido para el campo recibido (ver {@link DiccionarioCampos}); si el
+     * valor ya está en el diccionario, no se crea una cadena nueva.
+     * @param campo el campo de la cadena.
+     * @param diccionario el diccionario de valores; si es <code>null</code>
+     *        la cadena se lee como en {@link #leeCadena()}.
+     * @return la cadena leída; puede ser <code>null</code>.
+     * @throws IOException si ocurre un error de entrada/salida, la entrada se
+     *         termina o la longitud es inválida.
+     */
+    public String leeCadena(Enum campo, DiccionarioCampos diccionario)
+        throws IOException {
+        if (diccionario == null)
+            return leeCadena();
+        long m = leeVarint();
+        if (m == 0)
+            return null;
+        if (m - 1 > LONGITUD_MAXIMA)
+            throw new IOException("Cadena demasiado larga");
+        int n = (int) (m - 1);
+        asegura(n);
+        int p = buffer.position();
+        int a = buffer.arrayOffset() + p;
+        String s = diccionario.canoniza(campo, buffer.array(), a, a + n);
+        buffer.position(p + n);
+        return s;
+    }
+
+    /**
+     * Nos dice si ya no hay bytes por leer.
+     * @return <code>true</code> si ya no hay bytes por leer,
+     *         <code>false</code> en otro caso.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    public boolean esFin() throws IOException {
+        if (buffer.hasRemaining() || canal == null)
+            return !buffer.hasRemaining();
+        buffer.clear();
+        int leidos = canal.read(buffer);
+        buffer.flip();
+        return leidos < 0;
+    }
+}
@@ -0,0 +1,156 @@
+package mx.unam.ciencias.icc;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * <p>Clase para conjuntos de registros de un índice, ordenados por su
+ * identificador en la base de datos. Como los identificadores crecen con el
+ * orden de los registros en la base de datos, el conjunto los tiene en ese
+ * mismo orden.</p>
+ *
+ * <p>Agregar un registro con un identificador mayor que los demás toma tiempo
+ * constante amortizado, y eliminar uno es una búsqueda binaria de su
+ * identificador que deja vacío su lugar; si el registro se vuelve a agregar
+ * con el mismo identificador (como cuando la base de datos lo actualiza),
+ * ocupa otra vez ese lugar. Los lugares vacíos se recogen al agregar cuando
+ * son más que los ocupados.</p>
+ */
+class Entradas {
+
+    /* Los identificadores, en orden creciente. */
+    private long[] ids;
+    /* Los registros de cada identificador, o null si se eliminaron. */
+    private Registro[] registros;
+    /* El número de lugares. */
+    private int n;
+    /* El número de lugares vacíos. */
+    private int vacios;
+
+    /**
+     * Construye un conjunto vacío.
+     */
+    Entradas() {
+        ids = new long[4];
+        registros = new Registro[4];
+    }
+
+    /**
+     * Regresa el número de registros del conjunto.
+     * @return el número de registros del conjunto.
+     */
+    int getLongitud() {
+        return n - vacios;
+    }
+
+    /**
+     * Nos dice si el conjunto es vacío.
+     * @return <code>true</code> si el conjunto es vacío, <code>false</code>
+     *         en otro caso.
+     */
+    boolean esVacio() {
+        return n == vacios;
+    }
+
+    /**
+     * Agrega un registro con su identificador. Si ya había un registro con el
+     * identificador, lo reemplaza.
+     * @param id el identificador del registro.
+     * @param registro el registro a agregar.
+     */
+    void agrega(long id, Registro registro) {
+        if (n > 0 && id <= ids[n - 1]) {
+            int i = Arrays.binarySearch(ids, 0, n, id);
+            if (i < 0) {
+                inserta(-i - 1, id, registro);
+            } else {
+                if (registros[i] == null)
+                    vacios--;
+                registros[i] = registro;
+            }
+            return;
+        }
+        if (vacios > n - vacios)
+            compacta();
+        if (n == ids.length)
+            crece();
+        ids[n] = id;
+        registros[n++] = registro;
+    }
+
+    /* Inserta un registro en medio, recorriendo los siguientes. */
+    private void inserta(int i, long id, Registro registro) {
+        if (n == ids.length)
+            crece();
+        System.arraycopy(ids, i, ids, i + 1, n - i);
+        System.arraycopy(registros, i, registros, i + 1, n - i);
+        ids[i] = id;
+        registros[i] = registro;
+        n++;
+    }
+
+    /* Duplica la capacidad de los arreglos. */
+    private void crece() {
+        ids = Arrays.copyOf(ids, 2 * ids.length);
+        registros = Arrays.copyOf(registros, 2 * registros.length);
+    }
+
+    /* Recoge los lugares vacíos. */
+    private void compacta() {
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (registros[i] == null)
+                continue;
+            ids[m] = ids[i];
+            registros[m++] = registros[i];
+        }
+        Arrays.fill(registros, m, n, null);
+        n = m;
+        vacios = 0;
+    }
+
+    /**
+     * Elimina el registro con el identificador recibido.
+     * @param id el identificador del registro a eliminar.
+     * @return el registro eliminado, o <code>null</code> si no había ninguno
+     *         con el identificador.
+     */
+    Registro elimina(long id) {
+        int i = Arrays.binarySearch(ids, 0, n, id);
+        if (i < 0 || registros[i] == null)
+            return null;
+        Registro registro = registros[i];
+        registros[i] = null;
+        vacios++;
+        while (n > 0 && registros[n - 1] == null) {
+            n--;
+            vacios--;
+        }
+        return registro;
+    }
+
+    /**
+     * Regresa una lista con los registros que cumplen la condición recibida,
+     * en orden.
+     * @param condicion la condición que deben cumplir los registros.
+     * @return una lista con los registros que cumplen la condición.
+     */
+    Lista busca(Predicate<Registro> condicion) {
+        Lista lista = new Lista();
+        recorre(condicion, lista::agregaFinal);
+        return lista;
+    }
+
+    /**
+     * Entrega en orden a la acción recibida los registros que cumplen la
+     * condición, sin crear una lista.
+     * @param condicion la condición que deben cumplir los registros.
+     * @param accion la acción que recibe los registros.
+     */
+    void recorre(Predicate<Registro> condicion, Consumer<Registro> accion) {
+        for (int i = 0; i < n; i++)
+            if (registros[i] != null && condicion.test(registros[i]))
+                accion.accept(registros[i]);
+    }
+}
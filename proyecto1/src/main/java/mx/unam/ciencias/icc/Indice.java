@@ -0,0 +1,36 @@
+package mx.unam.ciencias.icc;
+
+/**
+ * Interfaz para índices de bases de datos. Un índice se mantiene al día con
+ * los registros de una {@link BaseDeDatos}: la base de datos le avisa cada vez
+ * que agrega o elimina un registro, y cuando se limpia.
+ *
+ * Cada registro llega con su identificador en el almacén de la base de datos
+ * (ver {@link Almacen#agrega}); los identificadores crecen con el orden de
+ * los registros, así que el índice puede usarlos para mantener ese orden, y
+ * para eliminar un registro sin compararlo con los demás.
+ */
+public interface Indice {
+
+    /**
+     * Agrega un registro al índice.
+     * @param registro el registro que se agregó a la base de datos.
+     * @param id el identificador del registro.
+     */
+    public void agrega(Registro registro, long id);
+
+    /**
+     * Elimina del índice el registro con el identificador recibido. Si no hay
+     * ninguno, el método no modifica al índice.
+     * @param registro el registro que se eliminó de la base de datos; tiene los
+     *        mismos valores que cuando se agregó al índice, pero puede ser
+     *        otra instancia.
+     * @param id el identificador del registro.
+     */
+    public void elimina(Registro registro, long id);
+
+    /**
+     * Limpia el índice, dejándolo vacío.
+     */
+    public void limpia();
+}
@@ -0,0 +1,82 @@
+package mx.unam.ciencias.icc;
+
+import java.util.HashMap;
+import java.util.function.Function;
+
+/**
+ * Clase para índices por dispersión. El índice agrupa los registros por una
+ * llave que calcula a partir de cada registro, de manera que encontrar todos
+ * los registros con una llave dada toma tiempo constante en promedio. Los
+ * registros con la misma llave se mantienen ordenados por su identificador
+ * (ver {@link Entradas}), que es su orden en la base de datos, y se eliminan
+ * por su identificador sin recorrer a los demás.
+ */
+public class IndiceHash implements Indice {
+
+    /* La función que calcula la llave de un registro. */
+    private Function<Registro, Object> llave;
+    /* Los registros, por llave. */
+    private HashMap<Object, Entradas> cubetas;
+
+    /**
+     * Construye un índice vacío con la función de llave recibida. Los registros
+     * para los que la función regrese <code>null</code> no se indexan.
+     * @param llave la función que calcula la llave de un registro.
+     */
+    public IndiceHash(Function<Registro, Object> llave) {
+        this.llave = llave;
+        cubetas = new HashMap<Object, Entradas>();
+    }
+
+    /**
+     * Agrega un registro al índice.
+     * @param registro el registro a agregar.
+     * @param id el identificador del registro.
+     */
+    @Override public void agrega(Registro registro, long id) {
+        Object l = llave.apply(registro);
+        if (l == null)
+            return;
+        Entradas cubeta = cubetas.get(l);
+        if (cubeta == null) {
+            cubeta = new Entradas();
+            cubetas.put(l, cubeta);
+        }
+        cubeta.agrega(id, registro);
+    }
+
+    /**
+     * Elimina del índice el registro con el identificador recibido.
+     * @param registro el registro a eliminar.
+     * @param id el identificador del registro.
+     */
+    @Override public void elimina(Registro registro, long id) {
+        Object l = llave.apply(registro);
+        if (l == null)
+            return;
+        Entradas cubeta = cubetas.get(l);
+        if (cubeta == null)
+            return;
+        cubeta.elimina(id);
+        if (cubeta.esVacio())
+            cubetas.remove(l);
+    }
+
+    /**
+     * Limpia el índice.
+     */
+    @Override public void limpia() {
+        cubetas.clear();
+    }
+
+    /**
+     * Regresa una lista con los registros que tienen la llave recibida,
+     * ordenados por su identificador.
+     * @param l la llave a buscar.
+     * @return una lista con los registros que tienen la llave recibida.
+     */
+    public Lista busca(Object l) {
+        Entradas cubeta = l == null ? null : cubetas.get(l);
+        return cubeta == null ? new Lista() : cubeta.busca(r -> true);
+    }
+}
@@ -0,0 +1,254 @@
+package mx.unam.ciencias.icc;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Clase para índices de rangos sobre un valor numérico de los registros. El
+ * índice guarda los registros y sus valores en arreglos ordenados por el
+ * identificador de los registros, que es su orden en la base de datos, y
+ * encima un árbol de segmentos con el máximo de los valores de cada
+ * intervalo. Para encontrar los registros cuyo valor es mayor o igual que uno
+ * dado, la consulta baja por el árbol descartando los intervalos cuyo máximo
+ * es menor; así recorre <em>O(k log(n/k) + log n)</em> nodos para
+ * <em>k</em> resultados, y los encuentra ya en orden, sin ordenarlos.
+ *
+ * Agregar un registro al final o eliminar uno actualiza un camino del árbol en
+ * tiempo <em>O(log n)</em>. Un registro eliminado deja vacío su lugar, que
+ * ocupa otra vez si se vuelve a agregar con el mismo identificador (como
+ * cuando la base de datos lo actualiza); los lugares vacíos se recogen al
+ * agregar cuando son más que los ocupados.
+ */
+public class IndiceRango implements Indice {
+
+    /* La función que calcula el valor de un registro. */
+    private ToDoubleFunction<Registro> valor;
+    /* Los identificadores de los registros, en orden creciente. */
+    private long[] ids;
+    /* Los registros, ordenados por su identificador; null si se
+       eliminaron. */
+    private Registro[] registros;
+    /* Los valores de los registros, ordenados por su identificador. */
+    private double[] valores;
+    /* El número de lugares. */
+    private int n;
+    /* El número de lugares vacíos. */
+    private int vacios;
+    /* El árbol de segmentos: el nodo k tiene a sus hijos en 2k y 2k+1, y
+       las hojas empiezan en registros.length. Los lugares vacíos y los
+       valores NaN tienen -∞ en su hoja. */
+    private double[] maximos;
+
+    /**
+     * Construye un índice vacío con la función de valor recibida.
+     * @param valor la función que calcula el valor de un registro.
+     */
+    public IndiceRango(ToDoubleFunction<Registro> valor) {
+        this.valor = valor;
+        ids = new long[16];
+        registros = new Registro[16];
+        valores = new double[16];
+        maximos = new double[32];
+        Arrays.fill(maximos, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Agrega un registro al índice.
+     * @param registro el registro a agregar.
+     * @param id el identificador del registro.
+     */
+    @Override public void agrega(Registro registro, long id) {
+        if (n > 0 && id <= ids[n - 1]) {
+            int i = Arrays.binarySearch(ids, 0, n, id);
+            if (i < 0) {
+                inserta(-i - 1, id, registro);
+                return;
+            }
+            if (registros[i] == null)
+                vacios--;
+            registros[i] = registro;
+            valores[i] = valor.applyAsDouble(registro);
+            actualiza(i);
+            return;
+        }
+        if (vacios > n - vacios)
+            compacta();
+        if (n == registros.length)
+            crece();
+        ids[n] = id;
+        registros[n] = registro;
+        valores[n] = valor.applyAsDouble(registro);
+        actualiza(n++);
+    }
+
+    /* Inserta un registro en medio, recorriendo los siguientes y
+       reconstruyendo el árbol. */
+    private void inserta(int i, long id, Registro registro) {
+        if (n == registros.length)
+            crece();
+        System.arraycopy(ids, i, ids, i + 1, n - i);
+        System.arraycopy(registros, i, registros, i + 1, n - i);
+        System.arraycopy(valores, i, valores, i + 1, n - i);
+        ids[i] = id;
+        registros[i] = registro;
+        valores[i] = valor.applyAsDouble(registro);
+        n++;
+        construye();
+    }
+
+    /* Duplica la capacidad de los arreglos y reconstruye el árbol. */
+    private void crece() {
+        int c = 2 * registros.length;
+        ids = Arrays.copyOf(ids, c);
+        registros = Arrays.copyOf(registros, c);
+        valores = Arrays.copyOf(valores, c);
+        maximos = new double[2 * c];
+        construye();
+    }
+
+    /* Recoge los lugares vacíos y reconstruye el árbol. */
+    private void compacta() {
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (registros[i] == null)
+                continue;
+            ids[m] = ids[i];
+            valores[m] = valores[i];
+            registros[m++] = registros[i];
+        }
+        Arrays.fill(registros, m, n, null);
+        n = m;
+        vacios = 0;
+        construye();
+    }
+
+    /* Regresa el valor de la hoja del i-ésimo lugar. */
+    private double hoja(int i) {
+        if (i >= n || registros[i] == null || Double.isNaN(valores[i]))
+            return Double.NEGATIVE_INFINITY;
+        return valores[i];
+    }
+
+    /* Actualiza la hoja del i-ésimo lugar y el camino a la raíz. */
+    private void actualiza(int i) {
+        int k = registros.length + i;
+        maximos[k] = hoja(i);
+        for (k >>= 1; k >= 1; k >>= 1)
+            maximos[k] = Math.max(maximos[2 * k], maximos[2 * k + 1]);
+    }
+
+    /* Reconstruye todo el árbol. */
+    private void construye() {
+        int c = registros.length;
+        for (int i = 0; i < c; i++)
+            maximos[c + i] = hoja(i);
+        for (int k = c - 1; k >= 1; k--)
+            maximos[k] = Math.max(maximos[2 * k], maximos[2 * k + 1]);
+    }
+
+    /**
+     * Elimina del índice el registro con el identificador recibido.
+     * @param registro el registro a eliminar.
+     * @param id el identificador del registro.
+     */
+    @Override public void elimina(Registro registro, long id) {
+        int i = Arrays.binarySearch(ids, 0, n, id);
+        if (i < 0 || registros[i] == null)
+            return;
+        registros[i] = null;
+        vacios++;
+        actualiza(i);
+        while (n > 0 && registros[n - 1] == null) {
+            n--;
+            vacios--;
+        }
+    }
+
+    /**
+     * Limpia el índice.
+     */
+    @Override public void limpia() {
+        Arrays.fill(registros, 0, n, null);
+        Arrays.fill(maximos, Double.NEGATIVE_INFINITY);
+        n = 0;
+        vacios = 0;
+    }
+
+    /**
+     * Regresa una lista con los registros cuyo valor es mayor o igual que el
+     * recibido, ordenados por su identificador. Si el valor recibido es NaN,
+     * o el valor de un registro es NaN, la comparación es falsa, igual que con
+     * los operadores de Java. Varias consultas pueden hacerse a la vez,
+     * siempre que no se modifique el índice mientras.
+     * @param minimo el valor mínimo de los registros a regresar.
+     * @return una lista con los registros cuyo valor es mayor o igual que
+     *         <code>minimo</code>.
+     */
+    public Lista buscaMayoresOIguales(double minimo) {
+        Lista lista = new Lista();
+        recorreMayoresOIguales(minimo, lista::agregaFinal);
+        return lista;
+    }
+
+    /**
+     * Entrega a la acción recibida, ordenados por su identificador, los
+     * registros cuyo valor es mayor o igual que el recibido, como {@link
+     * #buscaMayoresOIguales}, sin crear una lista.
+     * @param minimo el valor mínimo de los registros a entregar.
+     * @param accion la acción que recibe los registros.
+     */
+    public void recorreMayoresOIguales(double minimo,
+                                       Consumer<Registro> accion) {
+        if (!Double.isNaN(minimo))
+            busca(1, 0, registros.length, minimo, accion);
+    }
+
+    /**
+     * Cuenta los registros cuyo valor es mayor o igual que el recibido, como
+     * los que regresa {@link #buscaMayoresOIguales}, sin crear la lista. La
+     * cuenta se detiene en cuanto pasa del límite, así que cuesta a lo más lo
+     * mismo que una búsqueda de <code>limite + 1</code> registros.
+     * @param minimo el valor mínimo de los registros a contar.
+     * @param limite el número de registros a partir del cual se deja de
+     *        contar.
+     * @return el número de registros cuyo valor es mayor o igual que
+     *         <code>minimo</code>, o un número mayor que <code>limite</code>
+     *         si hay más de <code>limite</code>.
+     */
+    public int cuentaMayoresOIguales(double minimo, int limite) {
+        if (Double.isNaN(minimo) || limite < 0)
+            return 0;
+        return cuenta(1, 0, registros.length, minimo, limite);
+    }
+
+    /* Cuenta los registros del intervalo [a, b) del nodo cuyo valor es mayor
+       o igual que el mínimo, hasta pasar del límite. */
+    private int cuenta(int nodo, int a, int b, double minimo, int limite) {
+        if (a >= n || maximos[nodo] < minimo)
+            return 0;
+        if (b - a == 1)
+            return registros[a] != null && valores[a] >= minimo ? 1 : 0;
+        int m = (a + b) >>> 1;
+        int c = cuenta(2 * nodo, a, m, minimo, limite);
+        if (c > limite)
+            return c;
+        return c + cuenta(2 * nodo + 1, m, b, minimo, limite - c);
+    }
+
+    /* Entrega a la acción, en orden, los registros del intervalo [a, b) del
+       nodo cuyo valor es mayor o igual que el mínimo. */
+    private void busca(int nodo, int a, int b, double minimo,
+                       Consumer<Registro> accion) {
+        if (a >= n || maximos[nodo] < minimo)
+            return;
+        if (b - a == 1) {
+            if (registros[a] != null && valores[a] >= minimo)
+                accion.accept(registros[a]);
+            return;
+        }
+        int m = (a + b) >>> 1;
+        busca(2 * nodo, a, m, minimo, accion);
+        busca(2 * nodo + 1, m, b, minimo, accion);
+    }
+}
@@ -0,0 +1,157 @@
+package mx.unam.ciencias.icc;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Clase para índices de subcadenas sobre un texto de los registros. El índice
+ * es invertido por trigramas: para cada subcadena de tres caracteres guarda los
+ * registros cuyo texto la contiene, ordenados por su identificador (ver
+ * {@link Entradas}). Una subcadena de tres o más caracteres sólo puede estar
+ * en los textos que contienen todos sus trigramas, así que basta revisar los
+ * registros del trigrama con menos de ellos. Eliminar un registro es una
+ * búsqueda binaria de su identificador en cada uno de sus trigramas.
+ */
+public class IndiceSubcadenas implements Indice {
+
+    /** La longitud de los n-gramas del índice. */
+    public static final int N = 3;
+
+    /* La función que calcula el texto de un registro. */
+    private Function<Registro, String> texto;
+    /* Los registros, por trigrama. */
+    private HashMap<String, Entradas> trigramas;
+
+    /**
+     * Construye un índice vacío con la función de texto recibida. Los registros
+     * para los que la función regrese <code>null</code> no se indexan.
+     * @param texto la función que calcula el texto de un registro.
+     */
+    public IndiceSubcadenas(Function<Registro, String> texto) {
+        this.texto = texto;
+        trigramas = new HashMap<String, Entradas>();
+    }
+
+    /* Regresa los trigramas distintos de una cadena. */
+    private static HashSet<String> trigramas(String s) {
+        HashSet<String> conjunto = new HashSet<String>();
+        for (int i = 0; i + N <= s.length(); i++)
+            conjunto.add(s.substring(i, i + N));
+        return conjunto;
+    }
+
+    /**
+     * Agrega un registro al índice.
+     * @param registro el registro a agregar.
+     * @param id el identificador del registro.
+     */
+    @Override public void agrega(Registro registro, long id) {
+        String s = texto.apply(registro);
+        if (s == null)
+            return;
+        for (String t : trigramas(s)) {
+            Entradas entradas = trigramas.get(t);
+            if (entradas == null) {
+                entradas = new Entradas();
+                trigramas.put(t, entradas);
+            }
+            entradas.agrega(id, registro);
+        }
+    }
+
+    /**
+     * Elimina del índice el registro con el identificador recibido.
+     * @param registro el registro a eliminar.
+     * @param id el identificador del registro.
+     */
+    @Override public void elimina(Registro registro, long id) {
+        String s = texto.apply(registro);
+        if (s == null)
+            return;
+        for (String t : trigramas(s)) {
+            Entradas entradas = trigramas.get(t);
+            if (entradas == null)
+                continue;
+            entradas.elimina(id);
+            if (entradas.esVacio())
+                trigramas.remove(t);
+        }
+    }
+
+    /**
+     * Limpia el índice.
+     */
+    @Override public void limpia() {
+        trigramas.clear();
+    }
+
+    /**
+     * Regresa una lista con los registros candidatos a contener la subcadena
+     * recibida que además cumplen la condición dada, ordenados por su
+     * identificador. La condición es la revisión final de cada
+     * candidato; el índice sólo descarta registros que no pueden contener la
+     * subcadena.
+     * @param subcadena la subcadena a buscar.
+     * @param condicion la condición que deben cumplir los candidatos.
+     * @return una lista con los candidatos que cumplen la condición, o
+     *         <code>null</code> si la subcadena es demasiado corta para que el
+     *         índice pueda descartar registros.
+     */
+    public Lista busca(String subcadena, Predicate<Registro> condicion) {
+        Lista lista = new Lista();
+        return recorre(subcadena, condicion, lista::agregaFinal) ? lista : null;
+    }
+
+    /**
+     * Entrega a la acción recibida, ordenados por su identificador, los
+     * candidatos a contener la subcadena recibida que además cumplen la
+     * condición dada, como {@link #busca}, sin crear una lista.
+     * @param subcadena la subcadena a buscar.
+     * @param condicion la condición que deben cumplir los candidatos.
+     * @param accion la acción que recibe los candidatos.
+     * @return <code>true</code> si se recorrieron los candidatos, o
+     *         <code>false</code> si la subcadena es demasiado corta para que
+     *         el índice pueda descartar registros.
+     */
+    public boolean recorre(String subcadena, Predicate<Registro> condicion,
+                           Consumer<Registro> accion) {
+        if (subcadena == null || subcadena.length() < N)
+            return false;
+        Entradas menor = menor(subcadena);
+        if (menor != null)
+            menor.recorre(condicion, accion);
+        return true;
+    }
+
+    /**
+     * Regresa el número de candidatos que revisaría {@link #busca} para la
+     * subcadena recibida, sin revisarlos: el número de registros del trigrama
+     * de la subcadena con menos de ellos.
+     * @param subcadena la subcadena a buscar.
+     * @return el número de candidatos, o -1 si la subcadena es demasiado
+     *         corta para que el índice pueda descartar registros.
+     */
+    public int estima(String subcadena) {
+        if (subcadena == null || subcadena.length() < N)
+            return -1;
+        Entradas menor = menor(subcadena);
+        return menor == null ? 0 : menor.getLongitud();
+    }
+
+    /* Regresa los registros del trigrama de la subcadena con menos de ellos,
+       o null si algún trigrama no tiene registros. */
+    private Entradas menor(String subcadena) {
+        Entradas menor = null;
+        for (String t : trigramas(subcadena)) {
+            Entradas entradas = trigramas.get(t);
+            if (entradas == null)
+                return null;
+            if (menor == null || entradas.getLongitud() < menor.getLongitud())
+                menor = entradas;
+        }
+        return menor;
+    }
+}
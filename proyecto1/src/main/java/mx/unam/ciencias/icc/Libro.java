@@ -1,5 +1,10 @@
 package mx.unam.ciencias.icc;
 
+import java.io.IOException;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Objects;
+
 /**
  * Clase para representar libros. Un libro tiene título, autor, editorial,
  * año de publicación, número de edición, número de páginas y precio. La clase 
@@ -200,6 +205,23 @@ public class Libro implements Registro {
 	       precio == libro.precio;
     }
 
+    /**
+     * Regresa un código de dispersión para el libro, consistente con {@link
+     * #equals}: libros iguales tienen el mismo código. Como <code>equals</code>
+     * compara los precios con <code>==</code>, los precios 0.0 y -0.0 tienen el
+     * mismo código.
+     * @return un código de dispersión para el libro.
+     */
+    @Override public int hashCode() {
+        int h = Objects.hashCode(titulo);
+        h = 31 * h + Objects.hashCode(autor);
+        h = 31 * h + Objects.hashCode(editorial);
+        h = 31 * h + año;
+        h = 31 * h + edicion;
+        h = 31 * h + paginas;
+        return 31 * h + (precio == 0.0 ? 0 : Double.hashCode(precio));
+    }
+
     /**
      * Regresa el libro serializado en una línea de texto. La línea de
      * texto que este método regresa debe ser aceptada por el método {@link
@@ -207,9 +229,94 @@ public class Libro implements Registro {
      * @return la serialización del libro en una línea de texto.
      */
     @Override public String serializa() {
-        return String.format("%s\t%s\t%s\t%d\t%d\t%d\t%2.2f\n",
-                             titulo, autor, editorial, año, edicion, paginas,
-			     precio);
+        StringBuilder sb = new StringBuilder(64);
+        serializa(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Agrega la serialización del libro al final del constructor de cadenas
+     * recibido. La serialización es idéntica a la que regresa {@link
+     * Libro#serializa()}, pero se escribe sin usar {@link String#format}.
+     * @param sb el constructor de cadenas donde se agregará la serialización.
+     */
+    @Override public void serializa(StringBuilder sb) {
+        int inicio = sb.length();
+        sb.append(titulo).append('\t')
+          .append(autor).append('\t')
+          .append(editorial).append('\t')
+          .append(año).append('\t')
+          .append(edicion).append('\t')
+          .append(paginas).append('\t');
+        if (!agregaPrecio(sb, precio)) {
+            sb.setLength(inicio);
+            sb.append(String.format("%s\t%s\t%s\t%d\t%d\t%d\t%2.2f\n",
+                                    titulo, autor, editorial, año, edicion,
+                                    paginas, precio));
+            return;
+        }
+        sb.append('\n');
+    }
+
+    /* Clase interna privada para el separador decimal de un local; es
+     * inmutable, así que el local y su separador se publican juntos. */
+    private static class Separador {
+        /* El local revisado. */
+        private final Locale local;
+        /* El separador decimal del local, o el carácter nulo si el local no
+         * usa los dígitos ASCII. */
+        private final char separador;
+
+        /* Revisa los símbolos decimales del local recibido. */
+        private Separador(Locale local) {
+            DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(local);
+            this.local = local;
+            separador = dfs.getZeroDigit() == '0' ?
+                dfs.getDecimalSeparator() : '\0';
+        }
+    }
+
+    /* El separador del último local revisado. */
+    private static volatile Separador separadorRevisado;
+
+    /* Regresa el separador decimal del local por omisión, o el carácter nulo
+     * si el local no usa los dígitos ASCII y hay que usar String.format. */
+    private static char separadorDecimal() {
+        Locale local = Locale.getDefault(Locale.Category.FORMAT);
+        Separador revisado = separadorRevisado;
+        if (revisado == null || revisado.local != local) {
+            revisado = new Separador(local);
+            separadorRevisado = revisado;
+        }
+        return revisado.separador;
+    }
+
+    /* Agrega el precio con dos decimales, igual que "%2.2f", y regresa true;
+     * o regresa false sin agregar nada si el precio está muy cerca de la
+     * mitad de un centavo, es muy grande, no es un número o el local no usa
+     * los dígitos ASCII. Lejos de la mitad de un centavo, el redondeo de
+     * Formatter (que redondea la representación decimal más corta del doble
+     * hacia arriba) coincide con redondear el valor del doble. */
+    private static boolean agregaPrecio(StringBuilder sb, double precio) {
+        char separador = separadorDecimal();
+        if (separador == '\0')
+            return false;
+        boolean negativo = (Double.doubleToRawLongBits(precio) < 0);
+        double v = Math.abs(precio);
+        if (!(v < 1e9))
+            return false;
+        double x = v * 100.0;
+        double piso = Math.floor(x);
+        double fraccion = x - piso;
+        if (Math.abs(fraccion - 0.5) < 1e-4)
+            return false;
+        long centavos = (long)piso + (fraccion > 0.5 ? 1 : 0);
+        if (negativo)
+            sb.append('-');
+        long c = centavos % 100;
+        sb.append(centavos / 100).append(separador)
+          .append((char)('0' + c / 10)).append((char)('0' + c % 10));
+        return true;
     }
 
     /**
@@ -221,25 +328,123 @@ public class Libro implements Registro {
      *         es una serialización válida de un libro.
      */
     @Override public void deserializa (String linea) {
-	if (linea == null)
-	    throw new ExcepcionLineaInvalida();
-	linea = linea.replace("\n", "");
-        String[] prop = linea.split("\t");
-	if (prop.length != 7 || prop[0] == "" || prop[0] == " "
-	    || prop[1] == "" || prop[1] == " " || prop[2] == ""
-	    || prop[2] == " ")
-	    throw new ExcepcionLineaInvalida();
-	try {
-	    titulo = prop[0];
-	    autor = prop[1];
-	    editorial = prop[2];
-	    año = Integer.parseInt(prop[3]);
-            edicion = Integer.parseInt(prop[4]);
-	    paginas = Integer.parseInt(prop[5]);
-	    precio = Double.parseDouble(prop[6]);
-	} catch (NumberFormatException e) {
-	    throw new ExcepcionLineaInvalida();
-	} 
+        AnalizadorLibro.analiza(this, linea);
+    }
+
+    /**
+     * Deserializa una línea de texto en las propiedades del libro, tomando el
+     * autor y la editorial del diccionario recibido sin crear cadenas nuevas
+     * para los valores que ya tiene.
+     * @param linea la línea a deserializar.
+     * @param diccionario el diccionario de valores; puede ser
+     *        <code>null</code>.
+     * @throws ExcepcionLineaInvalida si la línea recibida es nula, vacía o no
+     *         es una serialización válida de un libro.
+     */
+    @Override public void deserializa(String linea,
+                                      DiccionarioCampos diccionario) {
+        AnalizadorLibro.analiza(this, linea, diccionario);
+    }
+
+    /**
+     * Deserializa una línea de texto codificada en UTF-8 en las propiedades
+     * del libro. Sólo se decodifican el título, el autor y la editorial.
+     * @param bytes el arreglo con la línea a deserializar.
+     * @param inicio el índice del primer byte de la línea.
+     * @param fin el índice siguiente al último byte de la línea.
+     * @throws ExcepcionLineaInvalida si la línea no es una serialización
+     *         válida de un libro.
+     */
+    @Override public void deserializa(byte[] bytes, int inicio, int fin) {
+        AnalizadorLibro.analiza(this, bytes, inicio, fin);
+    }
+
+    /**
+     * Deserializa una línea de texto codificada en UTF-8 en las propiedades
+     * del libro, tomando el autor y la editorial del diccionario recibido sin
+     * crear cadenas nuevas para los valores que ya tiene.
+     * @param bytes el arreglo con la línea a deserializar.
+     * @param inicio el índice del primer byte de la línea.
+     * @param fin el índice siguiente al último byte de la línea.
+     * @param diccionario el diccionario de valores; puede ser
+     *        <code>null</code>.
+     * @throws ExcepcionLineaInvalida si la línea no es una serialización
+     *         válida de un libro.
+     */
+    @Override public void deserializa(byte[] bytes, int inicio, int fin,
+                                      DiccionarioCampos diccionario) {
+        AnalizadorLibro.analiza(this, bytes, inicio, fin, diccionario);
+    }
+
+    /**
+     * Codifica el libro en binario al final de la salida recibida: sus tres
+     * cadenas, el año, la edición y las páginas como enteros variables, y el
+     * precio en ocho bytes.
+     * @param salida la salida donde se escribirá el libro.
+     */
+    @Override public void codifica(SalidaBinaria salida) {
+        salida.escribeCadena(titulo);
+        salida.escribeCadena(autor);
+        salida.escribeCadena(editorial);
+        salida.escribeEntero(año);
+        salida.escribeEntero(edicion);
+        salida.escribeEntero(paginas);
+        salida.escribeDouble(precio);
+    }
+
+    /**
+     * Decodifica las propiedades del libro de la entrada binaria recibida. Si
+     * la entrada no tiene un libro completo, el libro no se modifica.
+     * @param entrada la entrada de donde se leerá el libro.
+     * @throws IOException si ocurre un error de entrada/salida o la entrada
+     *         no tiene un libro válido.
+     */
+    @Override public void decodifica(EntradaBinaria entrada)
+        throws IOException {
+        decodifica(entrada, null);
+    }
+
+    /**
+     * Decodifica las propiedades del libro de la entrada binaria recibida,
+     * tomando el autor y la editorial del diccionario recibido sin crear
+     * cadenas nuevas para los valores que ya tiene. Si la entrada no tiene un
+     * libro completo, el libro no se modifica.
+     * @param entrada la entrada de donde se leerá el libro.
+     * @param diccionario el diccionario de valores; puede ser
+     *        <code>null</code>.
+     * @throws IOException si ocurre un error de entrada/salida o la entrada
+     *         no tiene un libro válido.
+     */
+    @Override public void decodifica(EntradaBinaria entrada,
+                                     DiccionarioCampos diccionario)
+        throws IOException {
+        String titulo = entrada.leeCadena();
+        String autor = entrada.leeCadena(CampoLibro.AUTOR, diccionario);
+        String editorial = entrada.leeCadena(CampoLibro.EDITORIAL,
+                                             diccionario);
+        int año = entrada.leeEntero();
+        int edicion = entrada.leeEntero();
+        int paginas = entrada.leeEntero();
+        double precio = entrada.leeDouble();
+        if (titulo == null || autor == null || editorial == null)
+            throw new IOException("Libro inválido");
+        this.titulo = titulo;
+        this.autor = autor;
+        this.editorial = editorial;
+        this.año = año;
+        this.edicion = edicion;
+        this.paginas = paginas;
+        this.precio = precio;
+    }
+
+    /**
+     * Reemplaza el autor y la editorial del libro por sus instancias
+     * canónicas en el diccionario recibido.
+     * @param diccionario el diccionario de valores.
+     */
+    @Override public void canoniza(DiccionarioCampos diccionario) {
+        autor = diccionario.canoniza(CampoLibro.AUTOR, autor);
+        editorial = diccionario.canoniza(CampoLibro.EDITORIAL, editorial);
     }
 
     /**
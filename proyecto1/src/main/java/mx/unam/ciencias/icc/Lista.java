@@ -1,6 +1,7 @@
 package mx.unam.ciencias.icc;
 
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>Clase para listas doblemente ligadas.</p>
@@ -11,6 +12,10 @@ import java.util.NoSuchElementException;
  *
  * <p>Las listas son iterables utilizando sus nodos. Las listas no aceptan a
  * <code>null</code> como elemento.</p>
+ *
+ * <p>Una lista puede compartir sus nodos con sus instantáneas (ver {@link
+ * #instantanea}); la primera vez que una de ellas se modifica, copia sus
+ * nodos para que las demás no vean el cambio.</p>
  */
 public class Lista {
 
@@ -62,6 +67,11 @@ public class Lista {
     private Nodo rabo;
     /* Número de elementos en la lista. */
     private int longitud;
+    /* El número de listas que comparten los nodos de la lista, o null si la
+       lista no los comparte. */
+    private AtomicInteger compartida;
+    /* La generación de los nodos de la lista. */
+    private int generacion;
 
     /**
      * Regresa la longitud de la lista.
@@ -72,29 +82,38 @@ public class Lista {
     }
 
     /**
-     * Regresa el nodo que contiene al elemento recibido en la lista.
+     * Regresa el primer nodo que contiene al elemento recibido en la lista.
      * @param elemento el elemento del que se busca el nodo que lo contiene.
-     * @param n el nodo en el que se revisa si está contenido el elemento
-     * recibido.
-     * @return el nodo que contiene al elemento recibido en la lista, o null 
+     * @return el nodo que contiene al elemento recibido en la lista, o null
      * si el elemento no está contenido en la lista.
      */
-    private Nodo getNodo(Object elemento, Nodo n) {
-	return n == null ? null : n.elemento.equals(elemento) ?
-	    n : getNodo (elemento, n.siguiente);
+    private Nodo getNodo(Object elemento) {
+        for (Nodo n = cabeza; n != null; n = n.siguiente)
+            if (n.elemento.equals(elemento))
+                return n;
+        return null;
     }
 
     /**
-     * Regresa el <em>i</em>-ésimo nodo de la lista.
-     * @param i el índice del nodo que queremos, siendo el índice recibido 
-     * siempre mayor que cero y menor que longitud - 1.
-     * @param c el contador que indica el índice del nodo actual.
-     * @param n el nodo a partir del cual recorremos la lista.
+     * Regresa el <em>i</em>-ésimo nodo de la lista. El recorrido empieza en
+     * la cabeza o en el rabo, dependiendo de cuál esté más cerca del índice.
+     * @param i el índice del nodo que queremos, siendo el índice recibido
+     * siempre mayor o igual que cero y menor que la longitud.
      * @return el <em>i</em>-ésimo nodo de la lista.
      */
-    private Nodo getNodo(int i, int c, Nodo n){
-	return c++ == i ? n : getNodo(i, c, n.siguiente);
-     }
+    private Nodo getNodo(int i) {
+        Nodo n;
+        if (i < longitud / 2) {
+            n = cabeza;
+            for (int c = 0; c < i; c++)
+                n = n.siguiente;
+        } else {
+            n = rabo;
+            for (int c = longitud - 1; c > i; c--)
+                n = n.anterior;
+        }
+        return n;
+    }
 
     /**
      * Nos dice si la lista es vacía.
@@ -115,6 +134,7 @@ public class Lista {
     public void agregaFinal(Object elemento) {
         if (elemento == null)
 	    throw new IllegalArgumentException();
+        separa();
 	Nodo n = new Nodo(elemento);
 	if (cabeza == null) {
 	    cabeza = rabo = n;
@@ -136,6 +156,7 @@ public class Lista {
     public void agregaInicio(Object elemento) {
         if (elemento == null)
 	    throw new IllegalArgumentException();
+        separa();
 	Nodo n = new Nodo(elemento);
 	if (cabeza == null) {
 	    cabeza = rabo = n;
@@ -165,6 +186,7 @@ public class Lista {
     public void inserta(int i, Object elemento) {
         if (elemento == null)
 	    throw new IllegalArgumentException();
+        separa();
 	if (i <= 0) {
 	    agregaInicio(elemento);
 	    return;
@@ -174,20 +196,53 @@ public class Lista {
 	    return;
 	} 
         Nodo e = new Nodo(elemento);
-        Nodo n = getNodo(i, 0, cabeza);
+        Nodo n = getNodo(i);
 	e.anterior = n.anterior;
         e.siguiente = n;
         e.anterior.siguiente = n.anterior = e;
         longitud++;
     }
 
+    /**
+     * Agrega al final de la lista los elementos de la lista recibida, en el
+     * mismo orden, y deja vacía a la lista recibida. Si la lista recibida no
+     * comparte sus nodos (ver {@link #instantanea}), sus nodos pasan a la
+     * lista en tiempo constante; si los comparte, sus elementos se copian.
+     * @param lista la lista cuyos elementos hay que agregar.
+     * @throws IllegalArgumentException si <code>lista</code> es
+     *         <code>null</code> o es la misma lista.
+     */
+    public void concatena(Lista lista) {
+        if (lista == null || lista == this)
+            throw new IllegalArgumentException();
+        if (lista.compartida != null) {
+            for (Nodo n = lista.cabeza; n != null; n = n.siguiente)
+                agregaFinal(n.elemento);
+            lista.limpia();
+            return;
+        }
+        if (lista.cabeza == null)
+            return;
+        separa();
+        if (cabeza == null) {
+            cabeza = lista.cabeza;
+        } else {
+            rabo.siguiente = lista.cabeza;
+            lista.cabeza.anterior = rabo;
+        }
+        rabo = lista.rabo;
+        longitud += lista.longitud;
+        lista.limpia();
+    }
+
     /**
      * Elimina un elemento de la lista. Si el elemento no está contenido en la
      * lista, el método no la modifica.
      * @param elemento el elemento a eliminar.
      */
     public void elimina(Object elemento) {
-        Nodo n = getNodo(elemento, cabeza);
+        separa();
+        Nodo n = getNodo(elemento);
 	if (n == null)
 	    return;
 	if (n == cabeza) {
@@ -203,6 +258,52 @@ public class Lista {
 	longitud--;
     }
 
+    /**
+     * Elimina un nodo de la lista en tiempo constante, sin buscarlo. El nodo
+     * debe ser de la lista, y haberse obtenido después del último cambio en
+     * su generación (ver {@link #getGeneracion}).
+     * @param nodo el nodo a eliminar.
+     * @return el elemento del nodo.
+     * @throws IllegalArgumentException si el nodo es <code>null</code>.
+     */
+    public Object eliminaNodo(Nodo nodo) {
+        if (nodo == null)
+            throw new IllegalArgumentException("El nodo no puede ser nulo");
+        Nodo n = separa(nodo);
+        if (n.anterior == null)
+            cabeza = n.siguiente;
+        else
+            n.anterior.siguiente = n.siguiente;
+        if (n.siguiente == null)
+            rabo = n.anterior;
+        else
+            n.siguiente.anterior = n.anterior;
+        longitud--;
+        return n.elemento;
+    }
+
+    /**
+     * Reemplaza en tiempo constante el elemento de un nodo de la lista, sin
+     * buscarlo. El nodo debe ser de la lista, y haberse obtenido después del
+     * último cambio en su generación (ver {@link #getGeneracion}). Si la
+     * lista comparte sus nodos con una instantánea, primero los copia, así que
+     * la instantánea conserva el elemento anterior.
+     * @param nodo el nodo cuyo elemento se reemplaza.
+     * @param elemento el nuevo elemento del nodo.
+     * @return el elemento anterior del nodo.
+     * @throws IllegalArgumentException si el nodo o el elemento son
+     *         <code>null</code>.
+     */
+    public Object reemplazaNodo(Nodo nodo, Object elemento) {
+        if (nodo == null || elemento == null)
+            throw new IllegalArgumentException("El nodo y el elemento no " +
+                                               "pueden ser nulos");
+        Nodo n = separa(nodo);
+        Object anterior = n.elemento;
+        n.elemento = elemento;
+        return anterior;
+    }
+
     /**
      * Elimina el primer elemento de la lista y lo regresa.
      * @return el primer elemento de la lista antes de eliminarlo.
@@ -211,6 +312,7 @@ public class Lista {
     public Object eliminaPrimero() {
         if (cabeza == null)
 	    throw new NoSuchElementException();
+        separa();
         Object elemento = cabeza.elemento;
 	if (cabeza.equals(rabo)) {
 	    cabeza = rabo = null;
@@ -230,6 +332,7 @@ public class Lista {
     public Object eliminaUltimo() {
         if (cabeza == null)
 	    throw new NoSuchElementException();
+        separa();
 	Object elemento = rabo.elemento;
 	if (cabeza.equals(rabo)) {
 	    cabeza = rabo = null;
@@ -248,40 +351,18 @@ public class Lista {
      *         <code>false</code> en otro caso.
      */
     public boolean contiene(Object elemento) {
-        return getNodo(elemento, cabeza) != null;
-    }
-
-    /**
-     * Regresa la reversa de una lista.
-     * @param n el nodo que se agrega a la nueva lista.
-     * @return una nueva lista que es la reversa de la lista a la que pertenece
-     * el nodo.
-     */
-    private Lista reversa(Nodo n) {
-	Lista lista =
-	   n == rabo ? new Lista() : reversa(n.siguiente);
-	lista.agregaFinal(n.elemento);
-	return lista;
+        return getNodo(elemento) != null;
     }
 
-    /**
-     * Regresa la copia de una lista.
-     * @param n el nodo que se agrega a la nueva lista.
-     * @return una copia de la lista a la que pertenece el nodo. La copia tiene 
-     * los mismos elementos que la lista, en el mismo orden.
-     */
-    private Lista copia(Nodo n) {
-	Lista lista = n == rabo ? new Lista() : copia(n.siguiente);
-	lista.agregaInicio(n.elemento);
-	return lista;
-     }
-
     /**
      * Regresa la reversa de la lista.
      * @return una nueva lista que es la reversa la que manda llamar el método.
      */
     public Lista reversa() {
-       return cabeza == null ? new Lista() : reversa(cabeza);
+        Lista lista = new Lista();
+        for (Nodo n = cabeza; n != null; n = n.siguiente)
+            lista.agregaInicio(n.elemento);
+        return lista;
     }
 
     /**
@@ -290,17 +371,98 @@ public class Lista {
      * @return una copiad de la lista.
      */
     public Lista copia() {
-        return cabeza == null ? new Lista() : copia(cabeza);
+        Lista lista = new Lista();
+        for (Nodo n = cabeza; n != null; n = n.siguiente)
+            lista.agregaFinal(n.elemento);
+        return lista;
     }
 
     /**
-     * Limpia la lista de elementos, dejándola vacía.
+     * Limpia la lista de elementos, dejándola vacía. Si la lista compartía
+     * sus nodos con otras (ver {@link #instantanea}), deja de compartirlos sin
+     * copiarlos.
      */
     public void limpia() {
+        if (compartida != null)
+            compartida.decrementAndGet();
+        compartida = null;
+        generacion++;
         cabeza = rabo = null;
 	longitud = 0;
     }
 
+    /**
+     * Regresa una instantánea de la lista. La instantánea tiene los mismos
+     * elementos que la lista, en el mismo orden, y como la copia es
+     * independiente: modificar una no cambia a la otra. A diferencia de la
+     * copia, la instantánea se crea en tiempo constante, porque comparte los
+     * nodos de la lista; la primera modificación de cualquiera de las dos
+     * copia los nodos de la que se modifica, a menos que sea la única que
+     * sigue compartiéndolos. Por eso una instantánea que ya no se usa debe
+     * limpiarse (ver {@link #limpia}): si no, la siguiente modificación de la
+     * lista copia todos sus nodos aunque nadie vaya a verlos.
+     * @return una instantánea de la lista.
+     */
+    public synchronized Lista instantanea() {
+        if (compartida == null)
+            compartida = new AtomicInteger(1);
+        compartida.incrementAndGet();
+        Lista lista = new Lista();
+        lista.cabeza = cabeza;
+        lista.rabo = rabo;
+        lista.longitud = longitud;
+        lista.compartida = compartida;
+        return lista;
+    }
+
+    /**
+     * Regresa la generación de los nodos de la lista. La generación cambia
+     * cada vez que la lista se limpia o deja de compartir sus nodos con una
+     * instantánea copiándolos; los nodos obtenidos antes del cambio ya no son
+     * de la lista.
+     * @return la generación de los nodos de la lista.
+     */
+    public int getGeneracion() {
+        return generacion;
+    }
+
+    /* Si la lista comparte sus nodos con otras, deja de compartirlos
+       copiándolos; si es la última que los comparte, se queda con ellos. */
+    private void separa() {
+        separa(null);
+    }
+
+    /* Separa la lista y regresa el nodo que, después de separarla, ocupa el
+       lugar del nodo recibido. La lista deja de contarse entre las que
+       comparten los nodos hasta después de copiarlos, para que ninguna otra
+       se quede con ellos y los modifique mientras se copian. */
+    private Nodo separa(Nodo nodo) {
+        if (compartida == null)
+            return nodo;
+        AtomicInteger c = compartida;
+        compartida = null;
+        if (c.get() == 1)
+            return nodo;
+        generacion++;
+        Nodo n = cabeza;
+        Nodo reemplazo = null;
+        cabeza = rabo = null;
+        for (; n != null; n = n.siguiente) {
+            Nodo m = new Nodo(n.elemento);
+            if (cabeza == null) {
+                cabeza = m;
+            } else {
+                rabo.siguiente = m;
+                m.anterior = rabo;
+            }
+            rabo = m;
+            if (n == nodo)
+                reemplazo = m;
+        }
+        c.decrementAndGet();
+        return reemplazo;
+    }
+
     /**
      * Regresa el primer elemento de la lista.
      * @return el primer elemento de la lista.
@@ -333,22 +495,9 @@ public class Lista {
     public Object get(int i) {
         if (i < 0 || i >= longitud)
 	    throw new ExcepcionIndiceInvalido();
-	return getNodo(i, 0, cabeza).elemento;
+	return getNodo(i).elemento;
     }
 
-    /**
-     * Regresa el índice del elemento recibido en la lista.
-     * @param elemento el elemento del que se busca el índice.
-     * @param n el nodo en el que se revisa si está contenido el elemento 
-     * recibido.
-     * @return el índice del elemento recibido en la lista, o -1 si el elemento
-     *         no está contenido en la lista.
-     */
-    private int indiceDe(Object elemento, Nodo n) {
-	return n.elemento.equals(elemento) ?
-	    0 : indiceDe(elemento, n.siguiente)+1;
-     }
-
     /**
      * Regresa el índice del elemento recibido en la lista.
      * @param elemento el elemento del que se busca el índice.
@@ -356,46 +505,27 @@ public class Lista {
      *         no está contenido en la lista.
      */
     public int indiceDe(Object elemento) {
-        return !contiene(elemento) ? -1 : indiceDe(elemento, cabeza);
+        int i = 0;
+        for (Nodo n = cabeza; n != null; n = n.siguiente, i++)
+            if (n.elemento.equals(elemento))
+                return i;
+        return -1;
     }
 
-    /**
-     * Regresa una representación en cadena de una lista.
-     * @param n el nodo del que se regresara una representación en cadena.
-     * @return una representación en cadena de la lista.
-     */
-    private String toString(Nodo n) {
-	if(n.anterior != null) 
-	    return toString(n.anterior) + String.format(", %s", n.elemento);
-        return String.format("[%s", n.elemento);
-     }
-
     /**
      * Regresa una representación en cadena de la lista.
      * @return una representación en cadena de la lista.
      */
     @Override public String toString() {
         if (cabeza == null)
-	    return "[]";
-	return toString(rabo) + "]";
+            return "[]";
+        StringBuilder sb = new StringBuilder("[");
+        sb.append(cabeza.elemento);
+        for (Nodo n = cabeza.siguiente; n != null; n = n.siguiente)
+            sb.append(", ").append(n.elemento);
+        return sb.append("]").toString();
     }
 
-    /**
-     * Nos dice si la lista de un nodo es igual a la lista de otro nodo
-     * recibido.
-     * @param n1 nodo de la lista original.
-     * @param n2 nodo de la lista con la que hay que comparar.
-     * @return <code>true</code> si la lista es igual a la recibida;
-     *         <code>false</code> en otro caso.
-     */
-    private boolean equals(Nodo n1, Nodo n2) {
-	if (n1 == null)
-	    return true;
-	if (!n1.elemento.equals(n2.elemento))
-	    return false;
-	return equals(n1.siguiente, n2.siguiente); 
-     }
-
     /**
      * Nos dice si la lista es igual al objeto recibido.
      * @param objeto el objeto con el que hay que comparar.
@@ -408,7 +538,15 @@ public class Lista {
         Lista lista = (Lista)objeto;
         if (lista.longitud != longitud)
 	    return false;
-	return equals(cabeza, lista.cabeza);
+        Nodo n1 = cabeza;
+        Nodo n2 = lista.cabeza;
+        while (n1 != null) {
+            if (!n1.elemento.equals(n2.elemento))
+                return false;
+            n1 = n1.siguiente;
+            n2 = n2.siguiente;
+        }
+        return true;
     }
 
     /**
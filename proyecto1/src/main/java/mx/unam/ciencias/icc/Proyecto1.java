@@ -3,13 +3,8 @@ package mx.unam.ciencias.icc;
 import java.util.InputMismatchException;
 import java.util.Scanner;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.InputStreamReader;
-import java.io.BufferedWriter;
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Proyecto 1: Excepciones, entrada/salida y enumeraciones.
@@ -136,11 +131,7 @@ public class Proyecto1 {
             System.out.printf("\nSe agregaron %d estudiantes.\n", n);
 
         try {
-            FileOutputStream fileOut = new FileOutputStream(nombreArchivo);
-            OutputStreamWriter osOut = new OutputStreamWriter(fileOut);
-            BufferedWriter out = new BufferedWriter(osOut);
-            bdd.guarda(out);
-            out.close();
+            bdd.guarda(Paths.get(nombreArchivo));
         } catch (IOException ioe) {
             System.out.printf("No pude guardar en el archivo \"%s\".\n",
                               nombreArchivo);
@@ -159,11 +150,7 @@ public class Proyecto1 {
         BaseDeDatosLibros bdd = new BaseDeDatosLibros();
 
         try {
-            FileInputStream fileIn = new FileInputStream(nombreArchivo);
-            InputStreamReader isIn = new InputStreamReader(fileIn);
-            BufferedReader in = new BufferedReader(isIn);
-            bdd.carga(in);
-            in.close();
+            bdd.carga(Paths.get(nombreArchivo));
         } catch (IOException ioe) {
             System.out.printf("No pude cargar del archivo \"%s\".\n",
                               nombreArchivo);
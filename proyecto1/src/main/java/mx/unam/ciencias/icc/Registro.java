@@ -1,5 +1,8 @@
 package mx.unam.ciencias.icc;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Interfaz para registros. Los registros deben de poder serializarse a y
  * deserializarse de una línea de texto. También deben poder determinar si sus
@@ -16,6 +19,17 @@ public interface Registro {
      */
     public String serializa();
 
+    /**
+     * Agrega la serialización del registro al final del constructor de
+     * cadenas recibido. Por omisión agrega lo que regresa {@link
+     * Registro#serializa()}; los registros pueden sobrecargar el método para
+     * escribir sus campos sin crear cadenas intermedias.
+     * @param sb el constructor de cadenas donde se agregará la serialización.
+     */
+    public default void serializa(StringBuilder sb) {
+        sb.append(serializa());
+    }
+
     /**
      * Deserializa una línea de texto en las propiedades del registro. La
      * serialización producida por el método {@link Registro#serializa} debe
@@ -26,6 +40,121 @@ public interface Registro {
      */
     public void deserializa(String linea);
 
+    /**
+     * Deserializa una línea de texto codificada en UTF-8 en las propiedades
+     * del registro. La línea es el segmento del arreglo entre los índices
+     * recibidos, sin el fin de línea. Por omisión decodifica la línea y llama
+     * {@link Registro#deserializa(String)}; los registros pueden sobrecargar
+     * el método para decodificar sólo los campos que lo necesiten.
+     * @param bytes el arreglo con la línea a deserializar.
+     * @param inicio el índice del primer byte de la línea.
+     * @param fin el índice siguiente al último byte de la línea.
+     * @throws ExcepcionLineaInvalida si la línea no es una serialización
+     *         válida de un registro.
+     */
+    public default void deserializa(byte[] bytes, int inicio, int fin) {
+        deserializa(new String(bytes, inicio, fin - inicio,
+                               StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deserializa una línea de texto en las propiedades del registro, con
+     * sus campos muy repetidos canonizados en el diccionario recibido (ver
+     * {@link Registro#canoniza}). Por omisión deserializa la línea y luego la
+     * canoniza; los registros pueden sobrecargar el método para tomar los
+     * valores del diccionario sin crear cadenas nuevas.
+     * @param linea la línea a deserializar.
+     * @param diccionario el diccionario de valores; si es <code>null</code>
+     *        no se canoniza nada.
+     * @throws ExcepcionLineaInvalida si la línea recibida es nula, vacía o no
+     *         es una serialización válida de un registro.
+     */
+    public default void deserializa(String linea,
+                                    DiccionarioCampos diccionario) {
+        deserializa(linea);
+        if (diccionario != null)
+            canoniza(diccionario);
+    }
+
+    /**
+     * Deserializa una línea de texto codificada en UTF-8 en las propiedades
+     * del registro, con sus campos muy repetidos canonizados en el
+     * diccionario recibido, como {@link Registro#deserializa(String,
+     * DiccionarioCampos)}.
+     * @param bytes el arreglo con la línea a deserializar.
+     * @param inicio el índice del primer byte de la línea.
+     * @param fin el índice siguiente al último byte de la línea.
+     * @param diccionario el diccionario de valores; si es <code>null</code>
+     *        no se canoniza nada.
+     * @throws ExcepcionLineaInvalida si la línea no es una serialización
+     *         válida de un registro.
+     */
+    public default void deserializa(byte[] bytes, int inicio, int fin,
+                                    DiccionarioCampos diccionario) {
+        deserializa(bytes, inicio, fin);
+        if (diccionario != null)
+            canoniza(diccionario);
+    }
+
+    /**
+     * Codifica el registro en binario al final de la salida recibida. Por
+     * omisión escribe lo que regresa {@link Registro#serializa()} como una
+     * cadena; los registros pueden sobrecargar el método para escribir sus
+     * campos en una codificación más compacta, que debe aceptar {@link
+     * Registro#decodifica}.
+     * @param salida la salida donde se escribirá el registro.
+     */
+    public default void codifica(SalidaBinaria salida) {
+        salida.escribeCadena(serializa());
+    }
+
+    /**
+     * Decodifica las propiedades del registro de la entrada binaria recibida.
+     * La codificación producida por el método {@link Registro#codifica} debe
+     * ser aceptada por este método. Por omisión lee una cadena y la
+     * deserializa con {@link Registro#deserializa(String)}.
+     * @param entrada la entrada de donde se leerá el registro.
+     * @throws IOException si ocurre un error de entrada/salida o la entrada
+     *         no tiene un registro válido.
+     */
+    public default void decodifica(EntradaBinaria entrada) throws IOException {
+        String linea = entrada.leeCadena();
+        if (linea == null)
+            throw new IOException("Registro inválido");
+        try {
+            deserializa(linea);
+        } catch (ExcepcionLineaInvalida eli) {
+            throw new IOException("Registro inválido", eli);
+        }
+    }
+
+    /**
+     * Decodifica las propiedades del registro de la entrada binaria recibida,
+     * con sus campos muy repetidos canonizados en el diccionario recibido,
+     * como {@link Registro#deserializa(String, DiccionarioCampos)}.
+     * @param entrada la entrada de donde se leerá el registro.
+     * @param diccionario el diccionario de valores; si es <code>null</code>
+     *        no se canoniza nada.
+     * @throws IOException si ocurre un error de entrada/salida o la entrada
+     *         no tiene un registro válido.
+     */
+    public default void decodifica(EntradaBinaria entrada,
+                                   DiccionarioCampos diccionario)
+        throws IOException {
+        decodifica(entrada);
+        if (diccionario != null)
+            canoniza(diccionario);
+    }
+
+    /**
+     * Reemplaza los campos de texto muy repetidos del registro por sus
+     * instancias canónicas en el diccionario recibido (ver {@link
+     * DiccionarioCampos#canoniza}), para que los registros con el mismo valor
+     * lo compartan. Por omisión no hace nada.
+     * @param diccionario el diccionario de valores.
+     */
+    public default void canoniza(DiccionarioCampos diccionario) {}
+
     /**
      * Actualiza los valores del registro con los del registro recibido.
      * @param registro el registro con el cual actualizar los valores.
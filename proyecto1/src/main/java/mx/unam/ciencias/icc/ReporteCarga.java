@@ -0,0 +1,167 @@
+package mx.unam.ciencias.icc;
+
+/**
+ * Clase para reportes de cargas tolerantes. Una carga tolerante salta las
+ * líneas inválidas en lugar de detenerse en la primera; el reporte cuenta las
+ * líneas leídas, los registros cargados y las líneas rechazadas, y guarda el
+ * número y la razón de a lo más {@link #MAX_DETALLES} de estas últimas.
+ */
+public class ReporteCarga {
+
+    /** Número máximo de líneas rechazadas de las que se guarda el detalle. */
+    public static final int MAX_DETALLES = 100;
+
+    /**
+     * Clase para el detalle de una línea rechazada.
+     */
+    public static class Falla {
+
+        /* El número de línea, empezando en 1. */
+        private long linea;
+        /* La razón por la que se rechazó. */
+        private String razon;
+
+        /* Construye el detalle de una línea rechazada. */
+        private Falla(long linea, String razon) {
+            this.linea = linea;
+            this.razon = razon;
+        }
+
+        /**
+         * Regresa el número de la línea rechazada, empezando en 1.
+         * @return el número de la línea rechazada.
+         */
+        public long getLinea() {
+            return linea;
+        }
+
+        /**
+         * Regresa la razón por la que se rechazó la línea.
+         * @return la razón por la que se rechazó la línea.
+         */
+        public String getRazon() {
+            return razon;
+        }
+
+        /**
+         * Regresa una representación en cadena de la falla.
+         * @return una representación en cadena de la falla.
+         */
+        @Override public String toString() {
+            return "Línea " + linea + ": " + razon;
+        }
+    }
+
+    /* El número máximo de líneas rechazadas antes de interrumpir la carga. */
+    private int maxErrores;
+    /* El número de líneas leídas. */
+    private long lineas;
+    /* El número de registros cargados. */
+    private long registros;
+    /* El número de líneas rechazadas. */
+    private long errores;
+    /* Si la carga se interrumpió por exceder el número de errores. */
+    private boolean interrumpida;
+    /* Los detalles de las líneas rechazadas. */
+    private Lista fallas;
+
+    /**
+     * Construye un reporte vacío.
+     * @param maxErrores el número máximo de líneas rechazadas que tolera la
+     *        carga; la siguiente línea rechazada la interrumpe.
+     * @throws IllegalArgumentException si el número máximo es negativo.
+     */
+    public ReporteCarga(int maxErrores) {
+        if (maxErrores < 0)
+            throw new IllegalArgumentException("El número máximo de " +
+                                               "errores no puede ser negativo");
+        this.maxErrores = maxErrores;
+        fallas = new Lista();
+    }
+
+    /**
+     * Regresa el número máximo de líneas rechazadas que tolera la carga.
+     * @return el número máximo de líneas rechazadas que tolera la carga.
+     */
+    public int getMaxErrores() {
+        return maxErrores;
+    }
+
+    /**
+     * Regresa el número de líneas leídas, incluyendo las rechazadas.
+     * @return el número de líneas leídas.
+     */
+    public long getNumLineas() {
+        return lineas;
+    }
+
+    /**
+     * Regresa el número de registros cargados.
+     * @return el número de registros cargados.
+     */
+    public long getNumRegistros() {
+        return registros;
+    }
+
+    /**
+     * Regresa el número de líneas rechazadas.
+     * @return el número de líneas rechazadas.
+     */
+    public long getNumErrores() {
+        return errores;
+    }
+
+    /**
+     * Regresa una lista con el detalle de las primeras {@link #MAX_DETALLES}
+     * líneas rechazadas, en el orden del archivo. Cada elemento es una {@link
+     * Falla}.
+     * @return una lista con el detalle de las líneas rechazadas.
+     */
+    public Lista getFallas() {
+        return fallas.copia();
+    }
+
+    /**
+     * Nos dice si la carga se interrumpió por exceder el número máximo de
+     * líneas rechazadas.
+     * @return <code>true</code> si la carga se interrumpió,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean fueInterrumpida() {
+        return interrumpida;
+    }
+
+    /* Registra una línea cargada. */
+    void registraCargada() {
+        lineas++;
+        registros++;
+    }
+
+    /* Registra una línea rechazada; regresa false si con ella se excede el
+     * número máximo de errores y la carga debe interrumpirse. */
+    boolean registraRechazada(String razon) {
+        lineas++;
+        errores++;
+        if (fallas.getLongitud() < MAX_DETALLES)
+            fallas.agregaFinal(new Falla(lineas, razon == null ?
+                                         "Línea inválida" : razon));
+        if (errores > maxErrores)
+            interrumpida = true;
+        return !interrumpida;
+    }
+
+    /**
+     * Regresa una representación en cadena del reporte.
+     * @return una representación en cadena del reporte.
+     */
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Líneas: %d, registros: %d, errores: %d%s\n",
+                                lineas, registros, errores,
+                                interrumpida ? " (carga interrumpida)" : ""));
+        for (Lista.Nodo n = fallas.getCabeza(); n != null;
+             n = n.getSiguiente())
+            sb.append(n.get()).append('\n');
+        return sb.toString();
+    }
+}
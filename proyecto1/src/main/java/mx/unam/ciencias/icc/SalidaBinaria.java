@@ -0,0 +1,167 @@
+package mx.unam.ciencias.icc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>Clase para salidas binarias. La salida acumula bytes en un arreglo que
+ * crece cuando hace falta, como un {@link StringBuilder}, y los escribe en un
+ * canal cuando se le pide.</p>
+ *
+ * <p>Los enteros se codifican como enteros variables: siete bits por byte,
+ * empezando por los menos significativos, con el bit más significativo de cada
+ * byte encendido si siguen más bytes. Los enteros con signo se codifican en
+ * zigzag (0, -1, 1, -2, ... se vuelven 0, 1, 2, 3, ...), para que los
+ * negativos pequeños también ocupen pocos bytes. Los dobles y los enteros
+ * largos fijos ocupan ocho bytes, empezando por el más significativo, y las
+ * cadenas son su longitud en bytes más uno como entero variable (cero es
+ * <code>null</code>) seguida de sus bytes en UTF-8. {@link EntradaBinaria}
+ * lee lo que escribe esta clase.</p>
+ */
+public class SalidaBinaria {
+
+    /* Los bytes de la salida. */
+    private byte[] bytes;
+    /* El número de bytes en la salida. */
+    private int n;
+
+    /**
+     * Construye una salida vacía.
+     */
+    public SalidaBinaria() {
+        this(256);
+    }
+
+    /**
+     * Construye una salida vacía con la capacidad inicial recibida.
+     * @param capacidad la capacidad inicial en bytes.
+     * @throws IllegalArgumentException si la capacidad no es positiva.
+     */
+    public SalidaBinaria(int capacidad) {
+        if (capacidad <= 0)
+            throw new IllegalArgumentException("La capacidad debe ser " +
+                                               "positiva");
+        bytes = new byte[capacidad];
+    }
+
+    /* Se asegura de que quepan m bytes más. */
+    private void asegura(int m) {
+        if (n + m > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, n + m));
+    }
+
+    /**
+     * Escribe un byte.
+     * @param b el byte a escribir; sólo se usan sus ocho bits menos
+     *        significativos.
+     */
+    public void escribeByte(int b) {
+        asegura(1);
+        bytes[n++] = (byte) b;
+    }
+
+    /**
+     * Escribe un entero sin signo como entero variable.
+     * @param v el entero a escribir, que se interpreta sin signo.
+     */
+    public void escribeVarint(long v) {
+        asegura(10);
+        while ((v & ~0x7FL) != 0) {
+            bytes[n++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        bytes[n++] = (byte) v;
+    }
+
+    /**
+     * Escribe un entero con signo como entero variable en zigzag.
+     * @param v el entero a escribir.
+     */
+    public void escribeEntero(int v) {
+        escribeVarint(((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Escribe un entero largo en ocho bytes.
+     * @param v el entero largo a escribir.
+     */
+    public void escribeLargo(long v) {
+        asegura(8);
+        for (int i = 56; i >= 0; i -= 8)
+            bytes[n++] = (byte) (v >>> i);
+    }
+
+    /**
+     * Escribe un doble en ocho bytes, con todos sus bits: el cero negativo y
+     * los NaN se leen tal cual.
+     * @param d el doble a escribir.
+     */
+    public void escribeDouble(double d) {
+        escribeLargo(Double.doubleToRawLongBits(d));
+    }
+
+    /**
+     * Escribe una cadena, precedida de su longitud en bytes.
+     * @param s la cadena a escribir; puede ser <code>null</code>.
+     */
+    public void escribeCadena(String s) {
+        if (s == null) {
+            escribeVarint(0);
+            return;
+        }
+        int m = s.length();
+        int i = 0;
+        while (i < m && s.charAt(i) < 0x80)
+            i++;
+        if (i < m) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            escribeVarint(utf8.length + 1L);
+            asegura(utf8.length);
+            System.arraycopy(utf8, 0, bytes, n, utf8.length);
+            n += utf8.length;
+            return;
+        }
+        escribeVarint(m + 1L);
+        asegura(m);
+        for (i = 0; i < m; i++)
+            bytes[n++] = (byte) s.charAt(i);
+    }
+
+    /**
+     * Regresa el número de bytes en la salida.
+     * @return el número de bytes en la salida.
+     */
+    public int getLongitud() {
+        return n;
+    }
+
+    /**
+     * Regresa una copia de los bytes en la salida.
+     * @return una copia de los bytes en la salida.
+     */
+    public byte[] getBytes() {
+        return Arrays.copyOf(bytes, n);
+    }
+
+    /**
+     * Limpia la salida, dejándola vacía.
+     */
+    public void limpia() {
+        n = 0;
+    }
+
+    /**
+     * Escribe los bytes de la salida en el canal recibido y la deja vacía.
+     * @param canal el canal donde hay que escribir.
+     * @throws IOException si ocurre un error de entrada/salida.
+     */
+    public void vuelca(WritableByteChannel canal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, n);
+        while (buffer.hasRemaining())
+            canal.write(buffer);
+        n = 0;
+    }
+}
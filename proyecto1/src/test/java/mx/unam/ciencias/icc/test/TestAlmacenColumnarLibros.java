@@ -0,0 +1,323 @@
+package mx.unam.ciencias.icc.test;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import mx.unam.ciencias.icc.AlmacenColumnarLibros;
+import mx.unam.ciencias.icc.CampoLibro;
+import mx.unam.ciencias.icc.Libro;
+import mx.unam.ciencias.icc.Lista;
+import mx.unam.ciencias.icc.Registro;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link AlmacenColumnarLibros}.
+ */
+public class TestAlmacenColumnarLibros {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+    /* Número total de libros. */
+    private int total;
+    /* El almacén. */
+    private AlmacenColumnarLibros almacen;
+    /* Los libros en el almacén. */
+    private Lista libros;
+
+    /* Enumeración espuria. */
+    private enum X {
+        /* Campo espurio. */
+        A;
+    }
+
+    /* Llena el almacén y la lista de libros. */
+    private void llena() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            almacen.agrega(libro);
+            libros.agregaFinal(libro);
+        }
+    }
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba y un almacén
+     * vacío.
+     */
+    public TestAlmacenColumnarLibros() {
+        random = new Random();
+        total = 10 + random.nextInt(90);
+        almacen = new AlmacenColumnarLibros();
+        libros = new Lista();
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#agrega}.
+     */
+    @Test public void testAgrega() {
+        Assert.assertTrue(almacen.getLongitud() == 0);
+        llena();
+        Assert.assertTrue(almacen.getLongitud() == total);
+        Assert.assertTrue(almacen.copia().equals(libros));
+        Libro blanco = new Libro(null, null, null, 0, 0, 0, 0.0);
+        almacen.agrega(blanco);
+        Libro vista = (Libro)almacen.copia().getUltimo();
+        Assert.assertTrue(vista.getTitulo() == null);
+        Assert.assertTrue(vista.getPrecio() == 0.0);
+        try {
+            almacen.agrega(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#elimina}.
+     */
+    @Test public void testElimina() {
+        llena();
+        almacen.elimina(new Libro("xxx-titulo", "xxx-autor", "xxx-editorial",
+                                  1, 1, 1, 1.0));
+        Assert.assertTrue(almacen.getLongitud() == total);
+        while (!libros.esVacia()) {
+            Libro libro = (Libro)libros.get(random.nextInt(
+                                                libros.getLongitud()));
+            almacen.elimina(libro);
+            libros.elimina(libro);
+            Assert.assertTrue(almacen.getLongitud() == libros.getLongitud());
+            Assert.assertTrue(almacen.copia().equals(libros));
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#elimina(long)}.
+     */
+    @Test public void testEliminaId() {
+        long[] ids = new long[total];
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            ids[i] = almacen.agrega(libro);
+            libros.agregaFinal(libro);
+            Assert.assertTrue(i == 0 || ids[i] > ids[i - 1]);
+        }
+        Assert.assertTrue(almacen.elimina(ids[total - 1] + 1) == null);
+        for (int i = 0; i < total; i += 2) {
+            Libro libro = (Libro)almacen.elimina(ids[i]);
+            Assert.assertTrue(libro.equals(libros.get(i / 2)));
+            Assert.assertTrue(almacen.elimina(ids[i]) == null);
+            libros.elimina(libro);
+            Assert.assertTrue(almacen.copia().equals(libros));
+        }
+        for (int i = 1; i < total; i += 2) {
+            Assert.assertTrue(almacen.ids()[0] == ids[i]);
+            Assert.assertTrue(almacen.get(ids[i]).equals(libros.getPrimero()));
+            almacen.elimina(ids[i]);
+            libros.eliminaPrimero();
+            Assert.assertTrue(almacen.get(ids[i]) == null);
+            Assert.assertTrue(almacen.getLongitud() == libros.getLongitud());
+            Assert.assertTrue(almacen.copia().equals(libros));
+        }
+        almacen.limpia();
+        Assert.assertTrue(almacen.elimina(ids[1]) == null);
+        Assert.assertTrue(almacen.agrega(TestLibro.libroAleatorio()) >
+                          ids[total - 1]);
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#limpia}.
+     */
+    @Test public void testLimpia() {
+        llena();
+        almacen.limpia();
+        Assert.assertTrue(almacen.getLongitud() == 0);
+        Assert.assertTrue(almacen.copia().esVacia());
+        Assert.assertFalse(almacen.iterator().hasNext());
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#copia}.
+     */
+    @Test public void testCopia() {
+        llena();
+        Lista copia = almacen.copia();
+        Libro libro = (Libro)copia.getPrimero();
+        libro.setTitulo("xxx-titulo");
+        Assert.assertFalse(almacen.copia().equals(copia));
+        Assert.assertTrue(almacen.copia().equals(libros));
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#busca(Enum,Object)}.
+     */
+    @Test public void testBusca() {
+        llena();
+        for (int i = 0; i < 10; i++) {
+            Libro libro = (Libro)libros.get(random.nextInt(total));
+            Object[][] consultas = {
+                { CampoLibro.TITULO, libro.getTitulo().substring(2) },
+                { CampoLibro.AUTOR, libro.getAutor() },
+                { CampoLibro.EDITORIAL, "" },
+                { CampoLibro.EDITORIAL, libro.getEditorial() },
+                { CampoLibro.AÑO, Integer.valueOf(libro.getAño()) },
+                { CampoLibro.EDICION, Integer.valueOf(libro.getEdicion()) },
+                { CampoLibro.PAGINAS, Integer.valueOf(libro.getPaginas()) },
+                { CampoLibro.PRECIO, Double.valueOf(libro.getPrecio()) },
+                { CampoLibro.PRECIO, Integer.valueOf(1) },
+                { CampoLibro.TITULO, null },
+            };
+            for (Object[] c : consultas) {
+                CampoLibro campo = (CampoLibro)c[0];
+                Lista esperada = new Lista();
+                Lista.Nodo nodo = libros.getCabeza();
+                while (nodo != null) {
+                    Libro l = (Libro)nodo.get();
+                    if (l.caza(campo, c[1]))
+                        esperada.agregaFinal(l);
+                    nodo = nodo.getSiguiente();
+                }
+                Assert.assertTrue(almacen.busca(campo, c[1]).equals(esperada));
+            }
+        }
+        try {
+            almacen.busca(X.A, null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            almacen.busca(null, null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link
+     * AlmacenColumnarLibros#busca(java.util.function.Predicate)}.
+     */
+    @Test public void testBuscaCondicion() {
+        llena();
+        int año = TestLibro.añoAleatorio();
+        Lista ll = almacen.busca(r -> ((Libro)r).getAño() < año);
+        Lista esperada = new Lista();
+        Lista.Nodo nodo = libros.getCabeza();
+        while (nodo != null) {
+            Libro l = (Libro)nodo.get();
+            if (l.getAño() < año)
+                esperada.agregaFinal(l);
+            nodo = nodo.getSiguiente();
+        }
+        Assert.assertTrue(ll.equals(esperada));
+    }
+
+    /**
+     * Prueba unitaria para {@link
+     * AlmacenColumnarLibros#buscaEnParalelo(Enum,Object,ForkJoinPool)} y
+     * {@link AlmacenColumnarLibros#buscaEnParalelo(
+     * java.util.function.Predicate,ForkJoinPool)}.
+     */
+    @Test public void testBuscaEnParalelo() {
+        total = 3000 + random.nextInt(1000);
+        llena();
+        ForkJoinPool ejecutor = new ForkJoinPool(2);
+        try {
+            for (int i = 0; i < 5; i++) {
+                Libro libro = (Libro)libros.get(random.nextInt(total));
+                Object[][] consultas = {
+                    { CampoLibro.TITULO, libro.getTitulo().substring(2) },
+                    { CampoLibro.AUTOR, libro.getAutor() },
+                    { CampoLibro.AÑO, Integer.valueOf(libro.getAño()) },
+                    { CampoLibro.PRECIO, Double.valueOf(libro.getPrecio()) },
+                };
+                for (Object[] c : consultas) {
+                    CampoLibro campo = (CampoLibro)c[0];
+                    Lista ll = almacen.buscaEnParalelo(campo, c[1], ejecutor);
+                    Assert.assertTrue(ll.equals(almacen.busca(campo, c[1])));
+                    Assert.assertFalse(ll.esVacia());
+                }
+                int año = libro.getAño();
+                Assert.assertTrue(
+                    almacen.buscaEnParalelo(r -> ((Libro)r).getAño() <= año,
+                                            ejecutor)
+                    .equals(almacen.busca(r -> ((Libro)r).getAño() <= año)));
+            }
+            try {
+                almacen.buscaEnParalelo(X.A, null, ejecutor);
+                Assert.fail();
+            } catch (IllegalArgumentException iae) {}
+        } finally {
+            ejecutor.shutdown();
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#iterator}.
+     */
+    @Test public void testIterator() {
+        llena();
+        Iterator<Registro> iterador = almacen.iterator();
+        Lista.Nodo nodo = libros.getCabeza();
+        while (nodo != null) {
+            Assert.assertTrue(iterador.hasNext());
+            Assert.assertTrue(iterador.next().equals(nodo.get()));
+            nodo = nodo.getSiguiente();
+        }
+        Assert.assertFalse(iterador.hasNext());
+        try {
+            iterador.next();
+            Assert.fail();
+        } catch (NoSuchElementException nsee) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#spliterator}.
+     */
+    @Test public void testSpliterator() {
+        llena();
+        Spliterator<Registro> divisor = almacen.spliterator();
+        Assert.assertTrue(divisor.estimateSize() == total);
+        Assert.assertTrue(divisor.hasCharacteristics(Spliterator.SIZED));
+        Spliterator<Registro> izquierdo = divisor.trySplit();
+        Lista recorridos = new Lista();
+        if (izquierdo != null) {
+            Assert.assertTrue(izquierdo.estimateSize() +
+                              divisor.estimateSize() == total);
+            while (izquierdo.tryAdvance(r -> recorridos.agregaFinal(r)))
+                ;
+        }
+        divisor.forEachRemaining(r -> recorridos.agregaFinal(r));
+        Assert.assertFalse(divisor.tryAdvance(r -> Assert.fail()));
+        Assert.assertTrue(recorridos.equals(libros));
+    }
+
+    /**
+     * Prueba unitaria para {@link AlmacenColumnarLibros#streamInstantanea}.
+     */
+    @Test public void testStreamInstantanea() {
+        llena();
+        long[] ids = almacen.ids();
+        Stream<Registro> flujo = almacen.streamInstantanea();
+        Stream<Registro> paralelo = almacen.streamInstantanea().parallel();
+        almacen.elimina(ids[0]);
+        almacen.actualiza(ids[total - 1], TestLibro.libroAleatorio());
+        almacen.agrega(TestLibro.libroAleatorio());
+        Lista recorridos = new Lista();
+        flujo.forEach(r -> recorridos.agregaFinal(r));
+        Assert.assertTrue(recorridos.equals(libros));
+        Assert.assertTrue(paralelo.count() == total);
+        Lista otros = new Lista();
+        try (Stream<Registro> otro = almacen.streamInstantanea()) {
+            almacen.limpia();
+            otro.forEachOrdered(r -> otros.agregaFinal(r));
+        }
+        Assert.assertTrue(otros.getLongitud() == total);
+        Assert.assertTrue(otros.getPrimero().equals(libros.get(1)));
+        Assert.assertTrue(almacen.getLongitud() == 0);
+        llena();
+        Assert.assertTrue(almacen.streamInstantanea().count() == total);
+    }
+}
@@ -0,0 +1,179 @@
+package mx.unam.ciencias.icc.test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import mx.unam.ciencias.icc.AnalizadorLibro;
+import mx.unam.ciencias.icc.ExcepcionLineaInvalida;
+import mx.unam.ciencias.icc.Libro;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link AnalizadorLibro}.
+ */
+public class TestAnalizadorLibro {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba.
+     */
+    public TestAnalizadorLibro() {
+        random = new Random();
+    }
+
+    /* Analiza la línea con la división por tabuladores original; regresa
+     * null si la línea es inválida. */
+    private static Libro referencia(String linea) {
+        linea = linea.replace("\n", "");
+        String[] p = linea.split("\t");
+        if (p.length != 7 || p[0].isEmpty() || p[1].isEmpty() ||
+            p[2].isEmpty())
+            return null;
+        try {
+            return new Libro(p[0], p[1], p[2],
+                             Integer.parseInt(p[3]), Integer.parseInt(p[4]),
+                             Integer.parseInt(p[5]), Double.parseDouble(p[6]));
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /* Analiza la línea con el analizador; regresa null si es inválida. */
+    private static Libro analiza(String linea) {
+        Libro libro = new Libro(null, null, null, 0, 0, 0, 0.0);
+        try {
+            AnalizadorLibro.analiza(libro, linea);
+        } catch (ExcepcionLineaInvalida eli) {
+            return null;
+        }
+        return libro;
+    }
+
+    /* Analiza la línea codificada en UTF-8 con el analizador; regresa null
+     * si es inválida. */
+    private static Libro analizaBytes(String linea) {
+        byte[] b = ("xx" + linea + "yy").getBytes(StandardCharsets.UTF_8);
+        Libro libro = new Libro(null, null, null, 0, 0, 0, 0.0);
+        try {
+            AnalizadorLibro.analiza(libro, b, 2, b.length - 2);
+        } catch (ExcepcionLineaInvalida eli) {
+            return null;
+        }
+        return libro;
+    }
+
+    /* Compara el analizador con la referencia. */
+    private static void compara(String linea) {
+        compara(linea, analiza(linea));
+        if (linea.indexOf('\n') < 0)
+            compara(linea, analizaBytes(linea));
+    }
+
+    /* Compara el libro analizado con la referencia. */
+    private static void compara(String linea, Libro a) {
+        Libro r = referencia(linea);
+        if (r == null) {
+            Assert.assertTrue(a == null);
+            return;
+        }
+        Assert.assertTrue(a != null);
+        Assert.assertTrue(a.getTitulo().equals(r.getTitulo()));
+        Assert.assertTrue(a.getAutor().equals(r.getAutor()));
+        Assert.assertTrue(a.getEditorial().equals(r.getEditorial()));
+        Assert.assertTrue(a.getAño() == r.getAño());
+        Assert.assertTrue(a.getEdicion() == r.getEdicion());
+        Assert.assertTrue(a.getPaginas() == r.getPaginas());
+        Assert.assertTrue(Double.doubleToLongBits(a.getPrecio()) ==
+                          Double.doubleToLongBits(r.getPrecio()));
+    }
+
+    /**
+     * Prueba unitaria para {@link AnalizadorLibro#analiza} con líneas
+     * válidas.
+     */
+    @Test public void testAnaliza() {
+        for (int i = 0; i < 1000; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            String linea = libro.serializa();
+            compara(linea);
+            Libro l = analiza(linea);
+            Assert.assertTrue(l.equals(libro));
+        }
+        compara("a\tb\tc\t-1\t0\t2147483647\t0.1");
+        compara("a\tb\tc\t-2147483648\t1\t2\t-0");
+        compara("a\tb\tc\t1\t2\t3\t123456789012345.6");
+        compara("a\tb\tc\t1\t2\t3\t0.000000000000001");
+        compara(" \t \t \t1\t2\t3\t4\t\t\t");
+        compara("a\tb\nc\tc\t1\t2\t3\t4.5\n");
+        compara("a\tb\tc\t+1\t2\t3\t4.5");
+        compara("a\tb\tc\t0001\t2\t3\t.5");
+        compara("a\tb\tc\t1\t2\t3\t5.");
+        compara("a\tb\tc\t1\t2\t3\t1e3");
+        compara("a\tb\tc\t1\t2\t3\tNaN");
+        compara("a\tb\tc\t1\t2\t3\t-Infinity");
+        compara("a\tb\tc\t1\t2\t3\t 4.5 ");
+        compara("a\tb\tc\t١\t2\t3\t4.5");
+    }
+
+    /**
+     * Prueba unitaria para {@link AnalizadorLibro#analiza} con números
+     * aleatorios.
+     */
+    @Test public void testAnalizaNumeros() {
+        for (int i = 0; i < 5000; i++) {
+            long m = random.nextLong() % 10000000000000000L;
+            String s = String.valueOf(m);
+            int p = random.nextInt(s.length() + 1);
+            String d = s.substring(0, p) + "." + s.substring(p);
+            compara("a\tb\tc\t" + (random.nextInt() >> random.nextInt(32)) +
+                    "\t" + random.nextInt(100) + "\t" + random.nextInt(1000) +
+                    "\t" + d);
+        }
+        compara("a\tb\tc\t2147483648\t2\t3\t4.5");
+        compara("a\tb\tc\t99999999999\t2\t3\t4.5");
+        compara("a\tb\tc\t-\t2\t3\t4.5");
+        compara("a\tb\tc\t1\t2\t3\t-");
+        compara("a\tb\tc\t1\t2\t3\t.");
+        compara("a\tb\tc\t1\t2\t3\t1.2.3");
+    }
+
+    /**
+     * Prueba unitaria para {@link AnalizadorLibro#analiza} con líneas
+     * inválidas.
+     */
+    @Test public void testAnalizaInvalidas() {
+        String[] invalidas = { "", " ", "\t", "  ", "\t\t", " \t", "\t ",
+                               "\n", "a\ta\ta", "a\ta\ta\ta\ta\ta\ta",
+                               "a\tb\tc\t1\t2\t3\t4\t5",
+                               "\tb\tc\t1\t2\t3\t4",
+                               "a\t\tc\t1\t2\t3\t4",
+                               "a\tb\t\t1\t2\t3\t4",
+                               "a\tb\tc\t1\t\t3\t4",
+                               "a\tb\tc\t1\t2\t3\t" };
+        for (String linea : invalidas) {
+            compara(linea);
+            Assert.assertTrue(analiza(linea) == null);
+        }
+        Libro libro = TestLibro.libroAleatorio();
+        Libro copia = new Libro(libro.getTitulo(), libro.getAutor(),
+                                libro.getEditorial(), libro.getAño(),
+                                libro.getEdicion(), libro.getPaginas(),
+                                libro.getPrecio());
+        try {
+            AnalizadorLibro.analiza(libro, "a\tb\tc\t1\t2\t3\tx");
+            Assert.fail();
+        } catch (ExcepcionLineaInvalida eli) {}
+        Assert.assertTrue(libro.equals(copia));
+        try {
+            AnalizadorLibro.analiza(libro, null);
+            Assert.fail();
+        } catch (ExcepcionLineaInvalida eli) {}
+    }
+}
@@ -5,12 +5,35 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import mx.unam.ciencias.icc.AlmacenColumnarLibros;
+import mx.unam.ciencias.icc.ArchivoComprimido;
 import mx.unam.ciencias.icc.BaseDeDatos;
 import mx.unam.ciencias.icc.BaseDeDatosLibros;
 import mx.unam.ciencias.icc.CampoLibro;
+import mx.unam.ciencias.icc.Consulta;
+import mx.unam.ciencias.icc.DiccionarioCampos;
+import mx.unam.ciencias.icc.ExcepcionIndiceInvalido;
 import mx.unam.ciencias.icc.Libro;
 import mx.unam.ciencias.icc.Lista;
+import mx.unam.ciencias.icc.Registro;
+import mx.unam.ciencias.icc.ReporteCarga;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -96,6 +119,25 @@ public class TestBaseDeDatosLibros {
         Assert.assertFalse(l.getLongitud() == bdd.getNumRegistros());
     }
 
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#getRegistros} con
+     * modificaciones posteriores a la base de datos.
+     */
+    @Test public void testGetRegistrosInstantanea() {
+        for (int i = 0; i < total; i++)
+            bdd.agregaRegistro(TestLibro.libroAleatorio());
+        Lista l = bdd.getRegistros();
+        Lista copia = l.copia();
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        bdd.eliminaRegistro((Libro)copia.getPrimero());
+        Assert.assertTrue(l.equals(copia));
+        Assert.assertTrue(bdd.getNumRegistros() == total);
+        Lista m = bdd.getRegistros();
+        bdd.limpia();
+        Assert.assertTrue(m.getLongitud() == total);
+        Assert.assertTrue(bdd.getRegistros().esVacia());
+    }
+
     /**
      * Prueba unitaria para {@link BaseDeDatos#agregaRegistro}.
      */
@@ -128,6 +170,110 @@ public class TestBaseDeDatosLibros {
         }
     }
 
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#eliminaRegistro(long)}.
+     */
+    @Test public void testEliminaRegistroId() {
+        bdd.indexa(CampoLibro.TITULO);
+        long[] ids = new long[total];
+        Lista libros = new Lista();
+        for (int i = 0; i < total; i++) {
+            Libro l = TestLibro.libroAleatorio();
+            ids[i] = bdd.agregaRegistro(l);
+            libros.agregaFinal(l);
+        }
+        Assert.assertFalse(bdd.eliminaRegistro(ids[total - 1] + 1));
+        Lista.Nodo n = libros.getCabeza();
+        for (int i = 0; i < total; i++) {
+            Libro l = (Libro)n.get();
+            n = n.getSiguiente();
+            Lista anterior = bdd.getRegistros();
+            if (random.nextBoolean())
+                continue;
+            Assert.assertTrue(bdd.eliminaRegistro(ids[i]));
+            Assert.assertFalse(bdd.eliminaRegistro(ids[i]));
+            libros.elimina(l);
+            Assert.assertTrue(bdd.getRegistros().equals(libros));
+            Assert.assertTrue(anterior.contiene(l));
+            Assert.assertFalse(bdd.buscaRegistrosExactos(CampoLibro.TITULO,
+                                                         l.getTitulo())
+                               .contiene(l));
+        }
+        bdd.limpia();
+        Assert.assertFalse(bdd.eliminaRegistro(ids[0]));
+        Assert.assertTrue(bdd.agregaRegistro(TestLibro.libroAleatorio()) >
+                          ids[total - 1]);
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#agregaOActualiza}.
+     */
+    @Test public void testAgregaOActualiza() {
+        verificaAgregaOActualiza(bdd);
+        verificaAgregaOActualiza(
+            new BaseDeDatosLibros(new AlmacenColumnarLibros()));
+    }
+
+    /* Verifica agregaOActualiza en la base de datos recibida. */
+    private void verificaAgregaOActualiza(BaseDeDatosLibros bdd) {
+        bdd.indexa(CampoLibro.EDITORIAL);
+        Lista libros = new Lista();
+        long[] ids = new long[total];
+        for (int i = 0; i < total; i++) {
+            Libro r = TestLibro.libroAleatorio();
+            Libro l = new Libro(r.getTitulo() + " " + i, r.getAutor(),
+                                r.getEditorial(), r.getAño(), r.getEdicion(),
+                                r.getPaginas(), r.getPrecio());
+            ids[i] = bdd.agregaOActualiza(l);
+            libros.agregaFinal(l);
+        }
+        Assert.assertTrue(bdd.getRegistros().equals(libros));
+        int i = random.nextInt(total);
+        Libro viejo = (Libro)libros.get(i);
+        Libro copia = new Libro(viejo.getTitulo(), viejo.getAutor(),
+                                viejo.getEditorial(), viejo.getAño(),
+                                viejo.getEdicion(), viejo.getPaginas(),
+                                viejo.getPrecio());
+        Libro nuevo = new Libro(" " +
+                                viejo.getTitulo().toUpperCase(Locale.ROOT),
+                                viejo.getAutor(), "Nueva editorial",
+                                viejo.getAño() + 1, viejo.getEdicion(),
+                                viejo.getPaginas() + 1, viejo.getPrecio());
+        Lista antes = bdd.getRegistros();
+        Assert.assertTrue(bdd.agregaOActualiza(nuevo) == ids[i]);
+        Assert.assertTrue(bdd.getNumRegistros() == total);
+        Assert.assertTrue(bdd.getRegistros().get(i).equals(nuevo));
+        Assert.assertTrue(antes.get(i).equals(copia));
+        Assert.assertTrue(viejo.equals(copia));
+        antes.limpia();
+        Assert.assertTrue(bdd.buscaRegistrosExactos(CampoLibro.EDITORIAL,
+                                                    "Nueva editorial")
+                          .getLongitud() == 1);
+        Assert.assertFalse(bdd.buscaRegistrosExactos(CampoLibro.EDITORIAL,
+                                                     copia.getEditorial())
+                           .contiene(nuevo));
+        Libro otro = new Libro(copia.getTitulo(), copia.getAutor(),
+                               copia.getEditorial(), copia.getAño(),
+                               copia.getEdicion() + 1, copia.getPaginas(),
+                               copia.getPrecio());
+        long id = bdd.agregaOActualiza(otro);
+        Assert.assertTrue(id > ids[total - 1]);
+        Assert.assertTrue(bdd.getNumRegistros() == total + 1);
+        Assert.assertTrue(bdd.eliminaRegistro(ids[i]));
+        Assert.assertTrue(bdd.agregaOActualiza(nuevo) > id);
+        Assert.assertTrue(bdd.getNumRegistros() == total + 1);
+        bdd.setLlaveNatural(r -> ((Libro)r).getTitulo());
+        Assert.assertTrue(bdd.agregaOActualiza(otro) == id);
+        Assert.assertTrue(bdd.getNumRegistros() == total + 1);
+        try {
+            bdd.setLlaveNatural(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        bdd.limpia();
+        Assert.assertTrue(bdd.agregaOActualiza(otro) > id);
+        Assert.assertTrue(bdd.getNumRegistros() == 1);
+    }
+
     /**
      * Prueba unitaria para {@link BaseDeDatos#limpia}.
      */
@@ -256,6 +402,830 @@ public class TestBaseDeDatosLibros {
         Assert.assertTrue(bdd.getNumRegistros() == 0);
     }
 
+    /* Escribe el contenido en un archivo temporal, lo carga en la base de
+     * datos con BaseDeDatos#carga(Path) y con BaseDeDatos#cargaParalela, y
+     * verifica que el resultado sea el mismo que cargarlo con un
+     * BufferedReader. */
+    private void verificaCargaRuta(String contenido) {
+        BaseDeDatosLibros esperada = new BaseDeDatosLibros();
+        try {
+            BufferedReader in =
+                new BufferedReader(new StringReader(contenido));
+            esperada.carga(in);
+            in.close();
+            Path ruta = Files.createTempFile("libros", ".bd");
+            try {
+                Files.write(ruta, contenido.getBytes(StandardCharsets.UTF_8));
+                BaseDeDatosLibros paralela = new BaseDeDatosLibros();
+                ForkJoinPool ejecutor = new ForkJoinPool(3);
+                try {
+                    paralela.cargaParalela(ruta, ejecutor,
+                                           1 + random.nextInt(200));
+                } finally {
+                    ejecutor.shutdown();
+                }
+                Assert.assertTrue(paralela.getRegistros()
+                                  .equals(esperada.getRegistros()));
+                bdd.carga(ruta);
+            } finally {
+                Files.delete(ruta);
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        Assert.assertTrue(bdd.getRegistros().equals(esperada.getRegistros()));
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#carga(Path)} y {@link
+     * BaseDeDatos#cargaParalela}.
+     */
+    @Test public void testCargaRuta() {
+        String entrada = "";
+        String[] fines = { "\n", "\r", "\r\n" };
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            if (i % 3 == 0)
+                libro.setTitulo("Ñandú, café y pingüinos ✓ " + i);
+            String linea = libro.serializa();
+            entrada += linea.substring(0, linea.length() - 1) +
+                fines[random.nextInt(fines.length)];
+        }
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        verificaCargaRuta(entrada);
+        Assert.assertTrue(bdd.getNumRegistros() == total);
+        verificaCargaRuta(entrada.trim());
+        Assert.assertTrue(bdd.getNumRegistros() == total);
+        verificaCargaRuta(entrada + " \n" + entrada);
+        Assert.assertTrue(bdd.getNumRegistros() == total);
+        verificaCargaRuta(entrada + "\n\n" + entrada);
+        Assert.assertTrue(bdd.getNumRegistros() == total);
+        verificaCargaRuta(entrada + "a\tb\tc\t1\t2\t3\t4\t\t\r\n");
+        Assert.assertTrue(bdd.getNumRegistros() == total + 1);
+        verificaCargaRuta("a\tb\tc\t١\t2\t3\t4.5");
+        Assert.assertTrue(bdd.getNumRegistros() == 1);
+        verificaCargaRuta("");
+        Assert.assertTrue(bdd.getNumRegistros() == 0);
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#getDiccionario}.
+     */
+    @Test public void testDiccionario() {
+        String entrada = "";
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            libro.setAutor("Autor " + (i % 3));
+            libro.setEditorial("Editorial " + (i % 2));
+            entrada += libro.serializa();
+        }
+        try {
+            bdd.carga(new BufferedReader(new StringReader(entrada)));
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        Assert.assertTrue(bdd.getNumRegistros() == total);
+        DiccionarioCampos diccionario = bdd.getDiccionario();
+        Lista libros = bdd.getRegistros();
+        for (int i = 0; i < total; i++) {
+            Libro libro = (Libro)libros.get(i);
+            Libro primero = (Libro)libros.get(i % 3);
+            Assert.assertTrue(libro.getAutor() == primero.getAutor());
+            primero = (Libro)libros.get(i % 2);
+            Assert.assertTrue(libro.getEditorial() ==
+                              primero.getEditorial());
+            Assert.assertTrue(diccionario.getIdentificador(
+                                  CampoLibro.AUTOR, libro.getAutor()) ==
+                              i % 3);
+            Assert.assertTrue(diccionario.getValor(CampoLibro.EDITORIAL,
+                                                   i % 2) ==
+                              libro.getEditorial());
+        }
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.AUTOR) ==
+                          Math.min(total, 3));
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.TITULO) == 0);
+
+        Libro libro = TestLibro.libroAleatorio();
+        libro.setAutor(new String("Autor 0"));
+        bdd.agregaRegistro(libro);
+        Assert.assertTrue(libro.getAutor() !=
+                          diccionario.getValor(CampoLibro.AUTOR, 0));
+        bdd.limpia();
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.AUTOR) == 0);
+
+        BaseDeDatosLibros columnar =
+            new BaseDeDatosLibros(new AlmacenColumnarLibros());
+        try {
+            columnar.carga(new BufferedReader(new StringReader(entrada)));
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        Assert.assertTrue(columnar.getNumRegistros() == total);
+        Assert.assertTrue(columnar.getDiccionario()
+                          .getNumValores(CampoLibro.AUTOR) == 0);
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#guarda(Path)}.
+     */
+    @Test public void testGuardaRuta() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            if (i % 3 == 0)
+                libro.setTitulo("Ñandú, café y pingüinos ✓ " + i);
+            bdd.agregaRegistro(libro);
+        }
+        try {
+            Path directorio = Files.createTempDirectory("libros");
+            Path ruta = directorio.resolve("libros.txt");
+            try {
+                Files.write(ruta, "basura".getBytes(StandardCharsets.UTF_8));
+                boolean posix = Files.getFileAttributeView(
+                    ruta, PosixFileAttributeView.class) != null;
+                Set<PosixFilePermission> permisos =
+                    PosixFilePermissions.fromString("rw-r-----");
+                if (posix)
+                    Files.setPosixFilePermissions(ruta, permisos);
+                bdd.guarda(ruta);
+                try (Stream<Path> archivos = Files.list(directorio)) {
+                    Assert.assertTrue(archivos.count() == 1);
+                }
+                if (posix)
+                    Assert.assertTrue(Files.getPosixFilePermissions(ruta)
+                                      .equals(permisos));
+                StringWriter sw = new StringWriter();
+                BufferedWriter out = new BufferedWriter(sw);
+                bdd.guarda(out);
+                out.close();
+                String texto = new String(Files.readAllBytes(ruta),
+                                          StandardCharsets.UTF_8);
+                Assert.assertTrue(texto.startsWith(sw.toString()));
+                String pie = texto.substring(sw.toString().length());
+                Assert.assertTrue(pie.startsWith(BaseDeDatos.MARCA_CRC));
+                Assert.assertTrue(pie.length() ==
+                                  BaseDeDatos.MARCA_CRC.length() + 9);
+
+                BaseDeDatosLibros otra = new BaseDeDatosLibros();
+                otra.carga(ruta);
+                Assert.assertTrue(otra.getRegistros()
+                                  .equals(bdd.getRegistros()));
+                otra.cargaParalela(ruta, ForkJoinPool.commonPool(), 1);
+                Assert.assertTrue(otra.getRegistros()
+                                  .equals(bdd.getRegistros()));
+                ReporteCarga reporte = otra.cargaTolerante(ruta, 0);
+                Assert.assertTrue(reporte.getNumErrores() == 0);
+                Assert.assertTrue(reporte.getNumRegistros() == total);
+                reporte = otra.cargaTolerante(
+                    Files.newBufferedReader(ruta, StandardCharsets.UTF_8), 0);
+                Assert.assertTrue(reporte.getNumErrores() == 0);
+                Assert.assertTrue(reporte.getNumRegistros() == total);
+
+                byte[] bytes = Files.readAllBytes(ruta);
+                bytes[random.nextInt(sw.toString().length())] ^= 0x01;
+                Files.write(ruta, bytes);
+                try {
+                    otra.carga(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+                Assert.assertTrue(otra.getRegistros()
+                                  .equals(bdd.getRegistros()));
+                try {
+                    otra.cargaParalela(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+                Assert.assertTrue(otra.getNumRegistros() == total);
+
+                bdd.limpia();
+                bdd.guarda(ruta);
+                Assert.assertTrue(Files.size(ruta) ==
+                                  BaseDeDatos.MARCA_CRC.length() + 9);
+                otra.carga(ruta);
+                Assert.assertTrue(otra.getNumRegistros() == 0);
+            } finally {
+                Files.deleteIfExists(ruta);
+                Files.delete(directorio);
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#guardaBinario} y {@link
+     * BaseDeDatos#cargaBinaria}.
+     */
+    @Test public void testGuardaBinario() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            if (i % 3 == 0)
+                libro.setTitulo("Ñandú, café y pingüinos ✓ " + i);
+            bdd.agregaRegistro(libro);
+        }
+        try {
+            Path ruta = Files.createTempFile("libros", ".bin");
+            try {
+                bdd.guardaBinario(ruta);
+                BaseDeDatosLibros otra = new BaseDeDatosLibros();
+                otra.agregaRegistro(TestLibro.libroAleatorio());
+                otra.cargaBinaria(ruta);
+                Assert.assertTrue(otra.getRegistros()
+                                  .equals(bdd.getRegistros()));
+                StringWriter sw = new StringWriter();
+                BufferedWriter out = new BufferedWriter(sw);
+                bdd.guarda(out);
+                out.close();
+                Assert.assertTrue(Files.size(ruta) <
+                                  sw.toString().getBytes(
+                                      StandardCharsets.UTF_8).length);
+                BaseDeDatosLibros columnar =
+                    new BaseDeDatosLibros(new AlmacenColumnarLibros());
+                columnar.cargaBinaria(ruta);
+                Assert.assertTrue(columnar.getRegistros()
+                                  .equals(bdd.getRegistros()));
+
+                byte[] bytes = Files.readAllBytes(ruta);
+                Files.write(ruta, Arrays.copyOf(bytes, bytes.length - 1));
+                try {
+                    otra.cargaBinaria(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+                Assert.assertTrue(otra.getNumRegistros() == total - 1);
+                Files.write(ruta, Arrays.copyOf(bytes, bytes.length + 1));
+                try {
+                    otra.cargaBinaria(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+                Assert.assertTrue(otra.getNumRegistros() == total);
+                bytes[0] = 'X';
+                Files.write(ruta, bytes);
+                try {
+                    otra.cargaBinaria(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+                Assert.assertTrue(otra.getNumRegistros() == total);
+
+                bdd.limpia();
+                bdd.guardaBinario(ruta);
+                Assert.assertTrue(Files.size(ruta) == 13);
+                otra.cargaBinaria(ruta);
+                Assert.assertTrue(otra.getNumRegistros() == 0);
+            } finally {
+                Files.delete(ruta);
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+    }
+
+    /* Verifica que el autor y la editorial de cada libro sean las
+       instancias canónicas del diccionario de la base de datos. */
+    private void verificaCanonicos(BaseDeDatosLibros bdd) {
+        DiccionarioCampos diccionario = bdd.getDiccionario();
+        Lista.Nodo nodo = bdd.getRegistros().getCabeza();
+        while (nodo != null) {
+            Libro libro = (Libro)nodo.get();
+            int autor = diccionario.getIdentificador(CampoLibro.AUTOR,
+                                                     libro.getAutor());
+            Assert.assertTrue(autor >= 0);
+            Assert.assertTrue(diccionario.getValor(CampoLibro.AUTOR, autor) ==
+                              libro.getAutor());
+            int editorial =
+                diccionario.getIdentificador(CampoLibro.EDITORIAL,
+                                             libro.getEditorial());
+            Assert.assertTrue(editorial >= 0);
+            Assert.assertTrue(diccionario.getValor(CampoLibro.EDITORIAL,
+                                                   editorial) ==
+                              libro.getEditorial());
+            nodo = nodo.getSiguiente();
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#guardaComprimido}, {@link
+     * BaseDeDatos#cargaComprimida} y {@link BaseDeDatos#abreComprimido}.
+     */
+    @Test public void testGuardaComprimido() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            if (i % 3 == 0)
+                libro.setTitulo("Ñandú, café y pingüinos ✓ " + i);
+            libro.setAutor("Autor " + (i % 3));
+            bdd.agregaRegistro(libro);
+        }
+        int porBloque = 1 + random.nextInt(10);
+        try {
+            Path ruta = Files.createTempFile("libros", ".icz");
+            try {
+                bdd.guardaComprimido(ruta, porBloque);
+                BaseDeDatosLibros otra = new BaseDeDatosLibros();
+                otra.agregaRegistro(TestLibro.libroAleatorio());
+                otra.setEjecutor(new ForkJoinPool(2));
+                otra.cargaComprimida(ruta);
+                Lista libros = bdd.getRegistros();
+                Assert.assertTrue(otra.getRegistros().equals(libros));
+                verificaCanonicos(otra);
+                Assert.assertTrue(otra.getDiccionario()
+                                  .getNumValores(CampoLibro.AUTOR) ==
+                                  Math.min(total, 3));
+                BaseDeDatosLibros columnar =
+                    new BaseDeDatosLibros(new AlmacenColumnarLibros());
+                columnar.cargaComprimida(ruta);
+                Assert.assertTrue(columnar.getRegistros().equals(libros));
+
+                try (ArchivoComprimido archivo = bdd.abreComprimido(ruta)) {
+                    Assert.assertTrue(archivo.getNumRegistros() == total);
+                    Assert.assertTrue(archivo.getNumBloques() ==
+                                      (total + porBloque - 1) / porBloque);
+                    for (int i = 0; i < total; i++)
+                        Assert.assertTrue(archivo.lee(i)
+                                          .equals(libros.get(i)));
+                    int b = random.nextInt(archivo.getNumBloques());
+                    Lista bloque = archivo.leeBloque(b);
+                    for (int i = 0; i < bloque.getLongitud(); i++)
+                        Assert.assertTrue(bloque.get(i).equals(
+                                              libros.get(b * porBloque + i)));
+                    try {
+                        archivo.lee(total);
+                        Assert.fail();
+                    } catch (ExcepcionIndiceInvalido eii) {}
+                    try {
+                        archivo.leeBloque(-1);
+                        Assert.fail();
+                    } catch (ExcepcionIndiceInvalido eii) {}
+                }
+
+                byte[] bytes = Files.readAllBytes(ruta);
+                Files.write(ruta, Arrays.copyOf(bytes, bytes.length - 1));
+                try {
+                    otra.cargaComprimida(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+                Assert.assertTrue(otra.getNumRegistros() == total);
+                byte[] corrupto = bytes.clone();
+                corrupto[5] ^= 0x55;
+                corrupto[6] ^= 0x55;
+                Files.write(ruta, corrupto);
+                try {
+                    otra.cargaComprimida(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+                Assert.assertTrue(otra.getNumRegistros() == 0);
+                bytes[0] = 'X';
+                Files.write(ruta, bytes);
+                try {
+                    otra.cargaComprimida(ruta);
+                    Assert.fail();
+                } catch (IOException ioe) {}
+
+                bdd.limpia();
+                bdd.guardaComprimido(ruta);
+                otra.cargaComprimida(ruta);
+                Assert.assertTrue(otra.getNumRegistros() == 0);
+                try {
+                    bdd.guardaComprimido(ruta, 0);
+                    Assert.fail();
+                } catch (IllegalArgumentException iae) {}
+            } finally {
+                Files.delete(ruta);
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#abreBitacora}, {@link
+     * BaseDeDatos#compacta} y {@link BaseDeDatos#cierraBitacora}.
+     */
+    @Test public void testBitacora() {
+        try {
+            Path directorio = Files.createTempDirectory("libros");
+            try {
+                verificaBitacora(directorio.resolve("libros.bd"),
+                                 directorio.resolve("libros.log"));
+            } finally {
+                Path[] archivos;
+                try (Stream<Path> s = Files.list(directorio)) {
+                    archivos = s.toArray(Path[]::new);
+                }
+                for (Path archivo : archivos)
+                    Files.delete(archivo);
+                Files.delete(directorio);
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+    }
+
+    /* Verifica la bitácora con las rutas recibidas. */
+    private void verificaBitacora(Path instantanea, Path bitacora)
+        throws IOException {
+        try {
+            bdd.compacta();
+            Assert.fail();
+        } catch (IllegalStateException ise) {}
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        bdd.abreBitacora(instantanea, bitacora);
+        Assert.assertTrue(bdd.getNumRegistros() == 0);
+        try {
+            bdd.abreBitacora(instantanea, bitacora);
+            Assert.fail();
+        } catch (IllegalStateException ise) {}
+        long[] ids = new long[total];
+        for (int i = 0; i < total; i++)
+            ids[i] = bdd.agregaRegistro(TestLibro.libroAleatorio());
+        bdd.eliminaRegistro(ids[random.nextInt(total)]);
+        if (bdd.getNumRegistros() > 0)
+            bdd.eliminaRegistro((Libro)bdd.getRegistros().get(0));
+        Libro repetido = TestLibro.libroAleatorio();
+        bdd.agregaRegistro(repetido);
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        long id = bdd.agregaRegistro(
+            new Libro(repetido.getTitulo(), repetido.getAutor(),
+                      repetido.getEditorial(), repetido.getAño(),
+                      repetido.getEdicion(), repetido.getPaginas(),
+                      repetido.getPrecio()));
+        bdd.eliminaRegistro(id);
+        Libro libro = TestLibro.libroAleatorio();
+        bdd.agregaOActualiza(libro);
+        bdd.agregaOActualiza(new Libro(libro.getTitulo(), libro.getAutor(),
+                                       libro.getEditorial(), libro.getAño(),
+                                       libro.getEdicion(), libro.getPaginas(),
+                                       libro.getPrecio() + 1.0));
+        Assert.assertFalse(Files.exists(instantanea));
+        BaseDeDatosLibros otra = new BaseDeDatosLibros();
+        otra.abreBitacora(instantanea, bitacora);
+        Assert.assertTrue(otra.getRegistros().equals(bdd.getRegistros()));
+        otra.cierraBitacora();
+
+        bdd.compacta();
+        Assert.assertTrue(Files.size(bitacora) == 0);
+        otra.carga(instantanea);
+        Assert.assertTrue(otra.getRegistros().equals(bdd.getRegistros()));
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        bdd.limpia();
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        bdd.cierraBitacora();
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        Files.write(bitacora, "A\t99".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+        otra.abreBitacora(instantanea, bitacora);
+        Assert.assertTrue(otra.getNumRegistros() == 1);
+        Assert.assertTrue(otra.getRegistros().getPrimero()
+                          .equals(bdd.getRegistros().getPrimero()));
+        otra.agregaRegistro(TestLibro.libroAleatorio());
+        otra.cierraBitacora();
+        BaseDeDatosLibros tercera = new BaseDeDatosLibros();
+        tercera.abreBitacora(instantanea, bitacora);
+        Assert.assertTrue(tercera.getRegistros().equals(otra.getRegistros()));
+
+        String entrada = "";
+        for (int i = 0; i < total; i++)
+            entrada += TestLibro.libroAleatorio().serializa();
+        tercera.carga(new BufferedReader(new StringReader(entrada)));
+        Assert.assertTrue(Files.size(bitacora) == 0);
+        ForkJoinPool ejecutor = new ForkJoinPool(1);
+        tercera.setEjecutor(ejecutor);
+        tercera.setUmbralCompactacion(3);
+        try {
+            for (int i = 0; i < 20; i++)
+                tercera.agregaRegistro(TestLibro.libroAleatorio());
+            ejecutor.awaitQuiescence(4, TimeUnit.SECONDS);
+        } finally {
+            ejecutor.shutdown();
+        }
+        tercera.cierraBitacora();
+        Assert.assertTrue(Files.size(bitacora) < Files.size(instantanea));
+        otra.abreBitacora(instantanea, bitacora);
+        Assert.assertTrue(otra.getRegistros().equals(tercera.getRegistros()));
+        Path binario = instantanea.resolveSibling("libros.bin");
+        otra.guardaBinario(binario);
+        byte[] bytes = Files.readAllBytes(binario);
+        Files.write(binario, Arrays.copyOf(bytes, bytes.length - 1));
+        try {
+            otra.cargaBinaria(binario);
+            Assert.fail();
+        } catch (IOException ioe) {}
+        Assert.assertTrue(otra.getRegistros().equals(tercera.getRegistros()));
+        verificaCanonicos(otra);
+        Path comprimido = instantanea.resolveSibling("libros.icz");
+        otra.guardaComprimido(comprimido, 2);
+        bytes = Files.readAllBytes(comprimido);
+        bytes[5] ^= 0x55;
+        bytes[6] ^= 0x55;
+        Files.write(comprimido, bytes);
+        try {
+            otra.cargaComprimida(comprimido);
+            Assert.fail();
+        } catch (IOException ioe) {}
+        Assert.assertTrue(otra.getRegistros().equals(tercera.getRegistros()));
+        verificaCanonicos(otra);
+        otra.cierraBitacora();
+        otra.abreBitacora(instantanea, bitacora);
+        Assert.assertTrue(otra.getRegistros().equals(tercera.getRegistros()));
+        otra.cierraBitacora();
+        try {
+            otra.setUmbralCompactacion(0);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#cargaTolerante(BufferedReader,
+     * int)} y {@link BaseDeDatos#cargaTolerante(Path, int)}.
+     */
+    @Test public void testCargaTolerante() {
+        String entrada = "";
+        Lista validos = new Lista();
+        int invalidas = 0;
+        int primera = -1;
+        for (int i = 0; i < total; i++) {
+            if (random.nextInt(4) == 0) {
+                entrada += i % 2 == 0 ? " \n" : "a\tb\tc\tx\t1\t2\t3\r\n";
+                if (primera < 0)
+                    primera = i + 1;
+                invalidas++;
+                continue;
+            }
+            Libro libro = TestLibro.libroAleatorio();
+            validos.agregaFinal(libro);
+            entrada += libro.serializa();
+        }
+        try {
+            Path ruta = Files.createTempFile("libros", ".bd");
+            try {
+                Files.write(ruta, entrada.getBytes(StandardCharsets.UTF_8));
+                for (int k = 0; k < 2; k++) {
+                    ReporteCarga reporte;
+                    if (k == 0) {
+                        BufferedReader in =
+                            new BufferedReader(new StringReader(entrada));
+                        reporte = bdd.cargaTolerante(in, invalidas);
+                        in.close();
+                    } else {
+                        reporte = bdd.cargaTolerante(ruta, invalidas);
+                    }
+                    Assert.assertFalse(reporte.fueInterrumpida());
+                    Assert.assertTrue(reporte.getNumLineas() == total);
+                    Assert.assertTrue(reporte.getNumErrores() == invalidas);
+                    Assert.assertTrue(reporte.getNumRegistros() ==
+                                      validos.getLongitud());
+                    Assert.assertTrue(bdd.getRegistros().equals(validos));
+                    Lista fallas = reporte.getFallas();
+                    Assert.assertTrue(fallas.getLongitud() == invalidas);
+                    if (invalidas > 0) {
+                        ReporteCarga.Falla f =
+                            (ReporteCarga.Falla)fallas.getCabeza().get();
+                        Assert.assertTrue(f.getLinea() == primera);
+                        Assert.assertTrue(f.getRazon() != null);
+                    }
+                }
+                if (invalidas > 0) {
+                    ReporteCarga reporte = bdd.cargaTolerante(ruta, 0);
+                    Assert.assertTrue(reporte.fueInterrumpida());
+                    Assert.assertTrue(reporte.getNumErrores() == 1);
+                    Assert.assertTrue(bdd.getNumRegistros() == primera - 1);
+                }
+            } finally {
+                Files.delete(ruta);
+            }
+            BufferedReader in = new BufferedReader(new StringReader(""));
+            try {
+                bdd.cargaTolerante(in, -1);
+                Assert.fail();
+            } catch (IllegalArgumentException iae) {}
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#setUmbralParalelo} y {@link
+     * BaseDeDatos#buscaRegistros} con búsquedas en paralelo.
+     */
+    @Test public void testBuscaRegistrosParalela() {
+        BaseDeDatosLibros columnar =
+            new BaseDeDatosLibros(new AlmacenColumnarLibros());
+        int n = 5000 + random.nextInt(1000);
+        for (int i = 0; i < n; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libro);
+            columnar.agregaRegistro(libro);
+        }
+        Object[][] busquedas = {
+            { CampoLibro.TITULO, "a" }, { CampoLibro.AUTOR, "e" },
+            { CampoLibro.EDITORIAL, "Ed" }, { CampoLibro.AÑO, 1950 },
+            { CampoLibro.EDICION, 5 }, { CampoLibro.PAGINAS, 300 },
+            { CampoLibro.PRECIO, 300.0 }, { CampoLibro.PRECIO, "x" }
+        };
+        Lista[] esperadas = new Lista[busquedas.length];
+        for (int i = 0; i < busquedas.length; i++)
+            esperadas[i] = bdd.buscaRegistros((CampoLibro)busquedas[i][0],
+                                              busquedas[i][1]);
+        Lista exactos = bdd.buscaRegistrosExactos(CampoLibro.EDICION, 3);
+        ForkJoinPool ejecutor = new ForkJoinPool(4);
+        try {
+            for (BaseDeDatosLibros b : new BaseDeDatosLibros[] { bdd,
+                                                                 columnar }) {
+                b.setEjecutor(ejecutor);
+                b.setUmbralParalelo(1 + random.nextInt(n));
+                for (int i = 0; i < busquedas.length; i++) {
+                    Lista ll = b.buscaRegistros((CampoLibro)busquedas[i][0],
+                                                busquedas[i][1]);
+                    Assert.assertTrue(ll.equals(esperadas[i]));
+                }
+                Assert.assertTrue(b.buscaRegistrosExactos(CampoLibro.EDICION,
+                                                          3).equals(exactos));
+                try {
+                    b.buscaRegistros(CampoLibro.AÑO, null);
+                } catch (Exception e) {
+                    Assert.fail();
+                }
+            }
+        } finally {
+            ejecutor.shutdown();
+        }
+        Assert.assertTrue(bdd.getEjecutor() == ejecutor);
+        try {
+            bdd.setUmbralParalelo(0);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            bdd.setEjecutor(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#buscaRegistros(Consulta)}.
+     */
+    @Test public void testBuscaRegistrosConsulta() {
+        BaseDeDatosLibros indexada = new BaseDeDatosLibros();
+        indexada.indexaSubcadenas(CampoLibro.AUTOR);
+        indexada.indexaRango(CampoLibro.AÑO);
+        indexada.indexaRango(CampoLibro.PRECIO);
+        for (int i = 0; i < 10 * total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libro);
+            indexada.agregaRegistro(libro);
+        }
+        for (int k = 0; k < 50; k++) {
+            Libro libro = TestLibro.libroAleatorio();
+            String autor = libro.getAutor();
+            int a = random.nextInt(autor.length() - 3);
+            String subcadena = autor.substring(a, a + 3);
+            int año = 1900 + random.nextInt(120);
+            double precio = random.nextInt(5000) / 10.0 + 50.0;
+            Consulta consulta =
+                Consulta.y(Consulta.caza(CampoLibro.AUTOR, subcadena),
+                           Consulta.caza(CampoLibro.AÑO, año),
+                           Consulta.no(Consulta.caza(CampoLibro.PRECIO,
+                                                     precio)));
+            Consulta otra =
+                Consulta.o(Consulta.caza(CampoLibro.EDITORIAL, subcadena),
+                           Consulta.y(Consulta.caza(CampoLibro.PRECIO, precio),
+                                      Consulta.caza(CampoLibro.EDICION, 5)));
+            for (Consulta c : new Consulta[] { consulta, otra }) {
+                Lista esperada = new Lista();
+                for (Lista.Nodo n = bdd.getRegistros().getCabeza(); n != null;
+                     n = n.getSiguiente())
+                    if (c.evalua((Libro)n.get()))
+                        esperada.agregaFinal(n.get());
+                Assert.assertTrue(bdd.buscaRegistros(c).equals(esperada));
+                Assert.assertTrue(indexada.buscaRegistros(c)
+                                  .equals(esperada));
+            }
+        }
+        try {
+            bdd.buscaRegistros((Consulta)null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /* Regresa una lista con los registros ordenados de manera estable. */
+    private static Lista ordena(Lista lista, Comparator<Registro> orden) {
+        Registro[] arreglo = new Registro[lista.getLongitud()];
+        int i = 0;
+        for (Lista.Nodo n = lista.getCabeza(); n != null; n = n.getSiguiente())
+            arreglo[i++] = (Registro)n.get();
+        Arrays.sort(arreglo, orden);
+        Lista ordenada = new Lista();
+        for (Registro registro : arreglo)
+            ordenada.agregaFinal(registro);
+        return ordenada;
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#buscaRegistros(Consulta,
+     * Comparator, int)}, {@link BaseDeDatos#buscaRegistros(Enum, Object,
+     * Comparator, int)} y {@link BaseDeDatos#getRegistros(Comparator, int)}.
+     */
+    @Test public void testBuscaRegistrosOrdenados() {
+        BaseDeDatosLibros indexada = new BaseDeDatosLibros();
+        indexada.indexaRango(CampoLibro.AÑO);
+        for (int i = 0; i < 10 * total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libro);
+            indexada.agregaRegistro(libro);
+        }
+        Comparator<Registro> porPrecio = (a, b) ->
+            Double.compare(((Libro)a).getPrecio(), ((Libro)b).getPrecio());
+        Comparator<Registro> porEdicion = (a, b) ->
+            ((Libro)b).getEdicion() - ((Libro)a).getEdicion();
+        for (int k = 0; k < 20; k++) {
+            int año = 1900 + random.nextInt(120);
+            int limite = random.nextInt(30);
+            for (Comparator<Registro> orden : List.of(porPrecio, porEdicion)) {
+                Lista todos = bdd.buscaRegistros(CampoLibro.AÑO, año);
+                Lista esperada = new Lista();
+                Lista ordenados = ordena(todos, orden);
+                for (Lista.Nodo n = ordenados.getCabeza();
+                     n != null && esperada.getLongitud() < limite;
+                     n = n.getSiguiente())
+                    esperada.agregaFinal(n.get());
+                Assert.assertTrue(bdd.buscaRegistros(CampoLibro.AÑO, año,
+                                                     orden, limite)
+                                  .equals(esperada));
+                Lista ll = indexada.buscaRegistros(CampoLibro.AÑO, año, orden,
+                                                   limite);
+                Assert.assertTrue(ll.getLongitud() == esperada.getLongitud());
+                for (Lista.Nodo n = ll.getCabeza(), m = esperada.getCabeza();
+                     n != null; n = n.getSiguiente(), m = m.getSiguiente())
+                    Assert.assertTrue(n.get() == m.get());
+                Consulta consulta = Consulta.y(
+                    Consulta.caza(CampoLibro.AÑO, año),
+                    Consulta.no(Consulta.caza(CampoLibro.EDICION, 5)));
+                Assert.assertTrue(bdd.buscaRegistros(consulta, orden, limite)
+                                  .equals(indexada.buscaRegistros(consulta,
+                                                                  orden,
+                                                                  limite)));
+            }
+        }
+        Lista primeros = bdd.getRegistros(porPrecio, 5);
+        Lista ordenados = ordena(bdd.getRegistros(), porPrecio);
+        Lista.Nodo m = ordenados.getCabeza();
+        for (Lista.Nodo n = primeros.getCabeza(); n != null;
+             n = n.getSiguiente(), m = m.getSiguiente())
+            Assert.assertTrue(n.get() == m.get());
+        Assert.assertTrue(bdd.getRegistros(porPrecio, 0).esVacia());
+        try {
+            bdd.getRegistros(porPrecio, -1);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            bdd.buscaRegistros(CampoLibro.AÑO, 1, null, 1);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#streamRegistros} y {@link
+     * BaseDeDatos#streamBusqueda}.
+     */
+    @Test public void testStreams() {
+        BaseDeDatosLibros columnar =
+            new BaseDeDatosLibros(new AlmacenColumnarLibros());
+        BaseDeDatosLibros indexada = new BaseDeDatosLibros();
+        indexada.indexaRango(CampoLibro.PAGINAS);
+        for (int i = 0; i < 10 * total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libro);
+            columnar.agregaRegistro(libro);
+            indexada.agregaRegistro(libro);
+        }
+        Lista todos = bdd.getRegistros();
+        for (BaseDeDatosLibros b : new BaseDeDatosLibros[] { bdd, columnar,
+                                                             indexada }) {
+            Assert.assertTrue(b.streamRegistros().count() == 10 * total);
+            Lista recorridos = new Lista();
+            b.streamRegistros().forEachOrdered(r -> recorridos.agregaFinal(r));
+            Assert.assertTrue(recorridos.equals(todos));
+            Assert.assertTrue(b.streamRegistros().parallel()
+                              .collect(Collectors.toList()).size() ==
+                              10 * total);
+            for (int k = 0; k < 10; k++) {
+                int paginas = 100 + random.nextInt(500);
+                Lista esperada = bdd.buscaRegistros(CampoLibro.PAGINAS,
+                                                    paginas);
+                Lista ll = new Lista();
+                b.streamBusqueda(CampoLibro.PAGINAS, paginas)
+                    .forEachOrdered(r -> ll.agregaFinal(r));
+                Assert.assertTrue(ll.equals(esperada));
+                Assert.assertTrue(b.streamBusqueda(CampoLibro.PAGINAS, paginas)
+                                  .findFirst().isPresent() ==
+                                  !esperada.esVacia());
+            }
+        }
+        int[] evaluados = { 0 };
+        bdd.streamBusqueda(Consulta.caza(CampoLibro.PAGINAS, 0))
+            .peek(r -> evaluados[0]++).limit(3).count();
+        Assert.assertTrue(evaluados[0] == Math.min(3, 10 * total));
+        try {
+            bdd.streamBusqueda((Consulta)null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
     /**
      * Prueba unitaria para {@link BaseDeDatosLibros#creaRegistro}.
      */
@@ -514,4 +1484,421 @@ public class TestBaseDeDatosLibros {
             Assert.fail();
 	    } catch (IllegalArgumentException iae) {}
     }
+
+    /* Valida que la búsqueda exacta regrese lo mismo que un recorrido. */
+    private void validaBusquedaExacta(CampoLibro campo, Object valor,
+                                      Object llave) {
+        Lista ll = bdd.buscaRegistrosExactos(campo, valor);
+        Lista esperada = new Lista();
+        Lista.Nodo nodo = bdd.getRegistros().getCabeza();
+        while (nodo != null) {
+            Libro l = (Libro)nodo.get();
+            Object v = null;
+            switch (campo) {
+            case AUTOR:
+                v = l.getAutor().toLowerCase(Locale.ROOT);
+                break;
+            case EDITORIAL:
+                v = l.getEditorial().toLowerCase(Locale.ROOT);
+                break;
+            case AÑO:
+                v = Integer.valueOf(l.getAño());
+                break;
+            default:
+                break;
+            }
+            if (llave.equals(v))
+                esperada.agregaFinal(l);
+            nodo = nodo.getSiguiente();
+        }
+        Assert.assertTrue(ll.equals(esperada));
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatosLibros#indexa}.
+     */
+    @Test public void testIndexa() {
+        Assert.assertFalse(bdd.estaIndexado(CampoLibro.AUTOR));
+        for (int i = 0; i < total; i++)
+            bdd.agregaRegistro(TestLibro.libroAleatorio());
+        bdd.indexa(CampoLibro.AUTOR);
+        Assert.assertTrue(bdd.estaIndexado(CampoLibro.AUTOR));
+        Assert.assertFalse(bdd.estaIndexado(CampoLibro.EDITORIAL));
+        bdd.desindexa(CampoLibro.AUTOR);
+        Assert.assertFalse(bdd.estaIndexado(CampoLibro.AUTOR));
+        try {
+            bdd.indexa(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatosLibros#buscaRegistrosExactos}.
+     */
+    @Test public void testBuscaRegistrosExactos() {
+        for (int i = 0; i < total; i++)
+            bdd.agregaRegistro(TestLibro.libroAleatorio());
+        bdd.indexa(CampoLibro.AUTOR);
+        bdd.indexa(CampoLibro.AÑO);
+        for (int i = 0; i < total; i++)
+            bdd.agregaRegistro(TestLibro.libroAleatorio());
+        Libro libro = (Libro)bdd.getRegistros().get(random.nextInt(total));
+        String autor = libro.getAutor();
+        Lista ll = bdd.buscaRegistrosExactos(CampoLibro.AUTOR, " " +
+                                             autor.toUpperCase(Locale.ROOT) +
+                                             " ");
+        Assert.assertTrue(ll.contiene(libro));
+        validaBusquedaExacta(CampoLibro.AUTOR, autor,
+                             autor.toLowerCase(Locale.ROOT));
+        String editorial = libro.getEditorial();
+        validaBusquedaExacta(CampoLibro.EDITORIAL, editorial,
+                             editorial.toLowerCase(Locale.ROOT));
+        Integer año = Integer.valueOf(libro.getAño());
+        validaBusquedaExacta(CampoLibro.AÑO, año, año);
+
+        bdd.eliminaRegistro(libro);
+        validaBusquedaExacta(CampoLibro.AUTOR, autor,
+                             autor.toLowerCase(Locale.ROOT));
+        validaBusquedaExacta(CampoLibro.AÑO, año, año);
+
+        String guardado = "";
+        try {
+            StringWriter swOut = new StringWriter();
+            BufferedWriter out = new BufferedWriter(swOut);
+            bdd.guarda(out);
+            out.close();
+            guardado = swOut.toString();
+            bdd.limpia();
+            Assert.assertTrue(bdd.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                                        autor).esVacia());
+            BufferedReader in = new BufferedReader(new StringReader(guardado));
+            bdd.carga(in);
+            in.close();
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        validaBusquedaExacta(CampoLibro.AUTOR, autor,
+                             autor.toLowerCase(Locale.ROOT));
+        validaBusquedaExacta(CampoLibro.AÑO, año, año);
+
+        Assert.assertTrue(bdd.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                                    "xxx-autor").esVacia());
+        Assert.assertTrue(bdd.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                                    año).esVacia());
+        Assert.assertTrue(bdd.buscaRegistrosExactos(CampoLibro.AÑO,
+                                                    autor).esVacia());
+        Assert.assertTrue(bdd.buscaRegistrosExactos(CampoLibro.AÑO,
+                                                    null).esVacia());
+        try {
+            bdd.buscaRegistrosExactos(null, autor);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatosLibros#indexaRango}.
+     */
+    @Test public void testIndexaRango() {
+        bdd.indexaRango(CampoLibro.PRECIO);
+        Assert.assertTrue(bdd.estaIndexadoPorRango(CampoLibro.PRECIO));
+        Assert.assertFalse(bdd.estaIndexadoPorRango(CampoLibro.AÑO));
+        bdd.desindexaRango(CampoLibro.PRECIO);
+        Assert.assertFalse(bdd.estaIndexadoPorRango(CampoLibro.PRECIO));
+        try {
+            bdd.indexaRango(CampoLibro.TITULO);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            bdd.indexaRango(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba que {@link BaseDeDatos#buscaRegistros} regrese lo mismo, en el
+     * mismo orden, con y sin índices de rangos.
+     */
+    @Test public void testBuscaRegistrosIndexados() {
+        BaseDeDatosLibros sinIndices = new BaseDeDatosLibros();
+        bdd.indexaRango(CampoLibro.AÑO);
+        bdd.indexaRango(CampoLibro.PRECIO);
+        Libro[] libros = new Libro[total];
+        for (int i = 0; i < total; i++) {
+            libros[i] = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libros[i]);
+            sinIndices.agregaRegistro(libros[i]);
+        }
+        bdd.indexaRango(CampoLibro.PAGINAS);
+        for (int k = 0; k < 3; k++) {
+            for (int i = 0; i < 10; i++) {
+                Libro libro = libros[random.nextInt(total)];
+                Object[][] consultas = {
+                    { CampoLibro.AÑO, Integer.valueOf(libro.getAño()) },
+                    { CampoLibro.AÑO, Integer.valueOf(libro.getAño() - 5) },
+                    { CampoLibro.PAGINAS, Integer.valueOf(libro.getPaginas()) },
+                    { CampoLibro.PRECIO, Double.valueOf(libro.getPrecio()) },
+                    { CampoLibro.PRECIO, Double.valueOf(libro.getPrecio() + .5) },
+                    { CampoLibro.PRECIO, Double.valueOf(Double.NaN) },
+                    { CampoLibro.PRECIO, Integer.valueOf(1) },
+                    { CampoLibro.AÑO, Double.valueOf(1.0) },
+                    { CampoLibro.AÑO, null },
+                    { CampoLibro.AÑO, Integer.valueOf(Integer.MIN_VALUE) },
+                };
+                for (Object[] c : consultas) {
+                    CampoLibro campo = (CampoLibro)c[0];
+                    Lista esperada = sinIndices.buscaRegistros(campo, c[1]);
+                    Lista ll = bdd.buscaRegistros(campo, c[1]);
+                    Assert.assertTrue(ll.equals(esperada));
+                }
+            }
+            Libro libro = libros[random.nextInt(total)];
+            bdd.eliminaRegistro(libro);
+            sinIndices.eliminaRegistro(libro);
+            libro = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libro);
+            sinIndices.agregaRegistro(libro);
+        }
+        bdd.limpia();
+        Assert.assertTrue(bdd.buscaRegistros(CampoLibro.AÑO,
+                                             Integer.valueOf(0)).esVacia());
+        try {
+            bdd.buscaRegistros(X.A, null);
+        } catch (IllegalArgumentException iae) {
+            Assert.fail();
+        }
+        bdd.agregaRegistro(TestLibro.libroAleatorio());
+        try {
+            bdd.buscaRegistros(X.A, null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatosLibros#indexaSubcadenas}.
+     */
+    @Test public void testIndexaSubcadenas() {
+        bdd.indexaSubcadenas(CampoLibro.TITULO);
+        Assert.assertTrue(bdd.estaIndexadoPorSubcadenas(CampoLibro.TITULO));
+        Assert.assertFalse(bdd.estaIndexadoPorSubcadenas(CampoLibro.AUTOR));
+        bdd.desindexaSubcadenas(CampoLibro.TITULO);
+        Assert.assertFalse(bdd.estaIndexadoPorSubcadenas(CampoLibro.TITULO));
+        try {
+            bdd.indexaSubcadenas(CampoLibro.PRECIO);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            bdd.indexaSubcadenas(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba que {@link BaseDeDatos#buscaRegistros} regrese lo mismo, en el
+     * mismo orden, con y sin índices de subcadenas.
+     */
+    @Test public void testBuscaRegistrosSubcadenas() {
+        BaseDeDatosLibros sinIndices = new BaseDeDatosLibros();
+        bdd.indexaSubcadenas(CampoLibro.TITULO);
+        bdd.indexaSubcadenas(CampoLibro.AUTOR);
+        Libro[] libros = new Libro[total];
+        for (int i = 0; i < total; i++) {
+            libros[i] = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libros[i]);
+            sinIndices.agregaRegistro(libros[i]);
+        }
+        bdd.indexaSubcadenas(CampoLibro.EDITORIAL);
+        CampoLibro[] campos = { CampoLibro.TITULO, CampoLibro.AUTOR,
+                                CampoLibro.EDITORIAL };
+        for (int k = 0; k < 3; k++) {
+            for (int i = 0; i < 10; i++) {
+                Libro libro = libros[random.nextInt(total)];
+                for (CampoLibro campo : campos) {
+                    String s = campo == CampoLibro.TITULO ? libro.getTitulo() :
+                        campo == CampoLibro.AUTOR ? libro.getAutor() :
+                        libro.getEditorial();
+                    int a = random.nextInt(s.length());
+                    int b = a + random.nextInt(s.length() - a + 1);
+                    Object[] valores = { s, s.substring(a, b), s + "x",
+                                         s.substring(a), "", null,
+                                         Integer.valueOf(1) };
+                    for (Object valor : valores) {
+                        Lista esperada = sinIndices.buscaRegistros(campo,
+                                                                   valor);
+                        Lista ll = bdd.buscaRegistros(campo, valor);
+                        Assert.assertTrue(ll.equals(esperada));
+                    }
+                }
+            }
+            Libro libro = libros[random.nextInt(total)];
+            bdd.eliminaRegistro(libro);
+            sinIndices.eliminaRegistro(libro);
+            libro = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(libro);
+            sinIndices.agregaRegistro(libro);
+        }
+    }
+
+    /**
+     * Prueba que una base de datos con un {@link AlmacenColumnarLibros} se
+     * comporte igual que una con el almacén por omisión.
+     */
+    @Test public void testAlmacenColumnar() {
+        BaseDeDatosLibros columnar =
+            new BaseDeDatosLibros(new AlmacenColumnarLibros());
+        columnar.indexa(CampoLibro.AUTOR);
+        for (int i = 0; i < total; i++) {
+            Libro l = TestLibro.libroAleatorio();
+            bdd.agregaRegistro(l);
+            columnar.agregaRegistro(l);
+        }
+        Assert.assertTrue(columnar.getNumRegistros() == total);
+        Assert.assertTrue(columnar.getRegistros().equals(bdd.getRegistros()));
+        Libro libro = (Libro)bdd.getRegistros().get(random.nextInt(total));
+        Assert.assertTrue(columnar.buscaRegistros(CampoLibro.TITULO,
+                                                  libro.getTitulo())
+                          .equals(bdd.buscaRegistros(CampoLibro.TITULO,
+                                                     libro.getTitulo())));
+        Integer año = Integer.valueOf(libro.getAño());
+        Assert.assertTrue(columnar.buscaRegistros(CampoLibro.AÑO, año)
+                          .equals(bdd.buscaRegistros(CampoLibro.AÑO, año)));
+        Assert.assertTrue(columnar.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                                         libro.getAutor())
+                          .equals(bdd.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                                            libro.getAutor())));
+        bdd.eliminaRegistro(libro);
+        columnar.eliminaRegistro(libro);
+        Assert.assertTrue(columnar.getRegistros().equals(bdd.getRegistros()));
+        try {
+            StringWriter sw1 = new StringWriter();
+            BufferedWriter out = new BufferedWriter(sw1);
+            bdd.guarda(out);
+            out.close();
+            StringWriter sw2 = new StringWriter();
+            out = new BufferedWriter(sw2);
+            columnar.guarda(out);
+            out.close();
+            Assert.assertTrue(sw1.toString().equals(sw2.toString()));
+            BufferedReader in =
+                new BufferedReader(new StringReader(sw1.toString()));
+            columnar.carga(in);
+            in.close();
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        Assert.assertTrue(columnar.getNumRegistros() == total - 1);
+        try {
+            new BaseDeDatosLibros(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba que varios hilos pueden agregar y buscar registros en la base de
+     * datos a la vez.
+     */
+    @Test public void testConcurrencia() {
+        bdd.indexa(CampoLibro.AUTOR);
+        bdd.indexaRango(CampoLibro.AÑO);
+        int hilos = 4;
+        int porHilo = 200;
+        Throwable[] errores = new Throwable[hilos];
+        Thread[] t = new Thread[hilos];
+        for (int i = 0; i < hilos; i++) {
+            final int h = i;
+            t[i] = new Thread(() -> {
+                    try {
+                        for (int j = 0; j < porHilo; j++) {
+                            Libro l = TestLibro.libroAleatorio();
+                            bdd.agregaRegistro(l);
+                            Lista r = bdd.buscaRegistros(CampoLibro.AÑO,
+                                                         l.getAño());
+                            if (!r.contiene(l))
+                                throw new AssertionError();
+                            r = bdd.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                                          l.getAutor());
+                            if (!r.contiene(l))
+                                throw new AssertionError();
+                            if (bdd.getRegistros().getLongitud() >
+                                bdd.getNumRegistros())
+                                throw new AssertionError();
+                        }
+                    } catch (Throwable e) {
+                        errores[h] = e;
+                    }
+            });
+            t[i].start();
+        }
+        try {
+            for (int i = 0; i < hilos; i++)
+                t[i].join();
+        } catch (InterruptedException ie) {
+            Assert.fail();
+        }
+        for (int i = 0; i < hilos; i++)
+            Assert.assertTrue(errores[i] == null);
+        Assert.assertTrue(bdd.getNumRegistros() == hilos * porHilo);
+        Assert.assertTrue(bdd.getRegistros().getLongitud() ==
+                          hilos * porHilo);
+        Libro libro = (Libro)bdd.getRegistros().get(random.nextInt(hilos *
+                                                                   porHilo));
+        Lista r = bdd.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                            libro.getAutor());
+        bdd.desindexa(CampoLibro.AUTOR);
+        Assert.assertTrue(r.equals(bdd.buscaRegistrosExactos(CampoLibro.AUTOR,
+                                                             libro.getAutor())));
+    }
+
+    /**
+     * Prueba unitaria para {@link BaseDeDatos#guarda} y {@link
+     * BaseDeDatos#buscaRegistros} con cientos de miles de registros, en la
+     * pila por omisión.
+     */
+    @Test public void testBaseDeDatosGrande() {
+        int n = 300000;
+        int esperados = 0;
+        for (int i = 0; i < n; i++) {
+            bdd.agregaRegistro(new Libro("Título " + i,
+                                         "Autor " + (i % 1000),
+                                         "Editorial " + (i % 100),
+                                         1900 + i % 120, 1 + i % 10,
+                                         100 + i % 900, i % 1000));
+            if (i % 1000 == 999 && i % 120 >= 110)
+                esperados++;
+        }
+        String guardado = "";
+        try {
+            StringWriter swOut = new StringWriter(n * 64);
+            BufferedWriter out = new BufferedWriter(swOut);
+            bdd.guarda(out);
+            out.close();
+            guardado = swOut.toString();
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        int lineas = 0;
+        for (int i = 0; i < guardado.length(); i++)
+            if (guardado.charAt(i) == '\n')
+                lineas++;
+        Assert.assertTrue(lineas == n);
+        BaseDeDatosLibros otra = new BaseDeDatosLibros();
+        try {
+            otra.carga(new BufferedReader(new StringReader(guardado)));
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        Assert.assertTrue(otra.getNumRegistros() == n);
+        Consulta consulta =
+            Consulta.y(Consulta.caza(CampoLibro.AUTOR, "Autor 999"),
+                       Consulta.caza(CampoLibro.AÑO, 2010));
+        for (BaseDeDatosLibros b : new BaseDeDatosLibros[] { bdd, otra }) {
+            Lista r = b.buscaRegistros(CampoLibro.AUTOR, "Autor 999");
+            Assert.assertTrue(r.getLongitud() == n / 1000);
+            r = b.buscaRegistros(CampoLibro.TITULO, "Título " + (n - 1));
+            Assert.assertTrue(r.getLongitud() == 1);
+            Assert.assertTrue(((Libro)r.getPrimero()).getAutor()
+                              .equals("Autor " + ((n - 1) % 1000)));
+            r = b.buscaRegistros(consulta);
+            Assert.assertTrue(r.getLongitud() == esperados);
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package mx.unam.ciencias.icc.test;
+
+import java.util.Random;
+import mx.unam.ciencias.icc.CampoLibro;
+import mx.unam.ciencias.icc.Consulta;
+import mx.unam.ciencias.icc.Libro;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link Consulta}.
+ */
+public class TestConsulta {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba.
+     */
+    public TestConsulta() {
+        random = new Random();
+    }
+
+    /**
+     * Prueba unitaria para {@link Consulta#caza}.
+     */
+    @Test public void testCaza() {
+        for (int i = 0; i < 100; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            int año = 1900 + random.nextInt(120);
+            Assert.assertTrue(Consulta.caza(CampoLibro.AÑO, año).evalua(libro)
+                              == libro.caza(CampoLibro.AÑO, año));
+            String s = libro.getAutor().substring(1);
+            Assert.assertTrue(Consulta.caza(CampoLibro.AUTOR, s)
+                              .evalua(libro));
+        }
+        try {
+            Consulta.caza(null, 1);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link Consulta#y}, {@link Consulta#o} y {@link
+     * Consulta#no}.
+     */
+    @Test public void testCombinaciones() {
+        for (int i = 0; i < 100; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            int año = 1900 + random.nextInt(120);
+            double precio = random.nextInt(5000) / 10.0 + 50.0;
+            boolean a = libro.caza(CampoLibro.AÑO, año);
+            boolean p = libro.caza(CampoLibro.PRECIO, precio);
+            Consulta ca = Consulta.caza(CampoLibro.AÑO, año);
+            Consulta cp = Consulta.caza(CampoLibro.PRECIO, precio);
+            Assert.assertTrue(Consulta.y(ca, cp).evalua(libro) == (a && p));
+            Assert.assertTrue(Consulta.o(ca, cp).evalua(libro) == (a || p));
+            Assert.assertTrue(Consulta.no(ca).evalua(libro) == !a);
+            Assert.assertTrue(Consulta.y(ca, Consulta.no(cp)).evalua(libro) ==
+                              (a && !p));
+            Assert.assertTrue(Consulta.y(Consulta.y(ca, cp), ca)
+                              .evalua(libro) == (a && p));
+            Assert.assertTrue(Consulta.y(ca) == ca);
+            Assert.assertTrue(Consulta.o(cp) == cp);
+        }
+        try {
+            Consulta.y();
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            Consulta.o(Consulta.caza(CampoLibro.AÑO, 1), null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            Consulta.no(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+}
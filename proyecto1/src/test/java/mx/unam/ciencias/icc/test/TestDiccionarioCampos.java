@@ -0,0 +1,175 @@
+package mx.unam.ciencias.icc.test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import mx.unam.ciencias.icc.CampoLibro;
+import mx.unam.ciencias.icc.DiccionarioCampos;
+import mx.unam.ciencias.icc.ExcepcionIndiceInvalido;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link DiccionarioCampos}.
+ */
+public class TestDiccionarioCampos {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+    /* Número total de valores. */
+    private int total;
+    /* El diccionario. */
+    private DiccionarioCampos diccionario;
+
+    /**
+     * Crea un generador de números aleatorios y un diccionario para cada
+     * prueba.
+     */
+    public TestDiccionarioCampos() {
+        random = new Random();
+        total = 10 + random.nextInt(90);
+        diccionario = new DiccionarioCampos();
+    }
+
+    /**
+     * Prueba unitaria para {@link DiccionarioCampos#canoniza}.
+     */
+    @Test public void testCanoniza() {
+        Assert.assertTrue(diccionario.canoniza(CampoLibro.AUTOR, null) == null);
+        String[] canonicos = new String[total];
+        for (int i = 0; i < total; i++) {
+            String valor = new String("Autor " + i);
+            canonicos[i] = diccionario.canoniza(CampoLibro.AUTOR, valor);
+            Assert.assertTrue(canonicos[i] == valor);
+        }
+        for (int i = 0; i < total; i++) {
+            int j = random.nextInt(total);
+            String valor = new String("Autor " + j);
+            String c = diccionario.canoniza(CampoLibro.AUTOR, valor);
+            Assert.assertTrue(c == canonicos[j]);
+            Assert.assertTrue(c != valor);
+            c = diccionario.canoniza(CampoLibro.EDITORIAL, valor);
+            Assert.assertTrue(c.equals(valor));
+        }
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.AUTOR) == total);
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.EDITORIAL) <=
+                          total);
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.TITULO) == 0);
+        try {
+            diccionario.canoniza(null, "Autor");
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link DiccionarioCampos#canoniza(Enum,
+     * CharSequence, int, int)} y {@link DiccionarioCampos#canoniza(Enum,
+     * byte[], int, int)}.
+     */
+    @Test public void testCanonizaSegmento() {
+        String[] canonicos = new String[total];
+        for (int i = 0; i < total; i++) {
+            String linea = "\tAutor " + i + "\t";
+            canonicos[i] = diccionario.canoniza(CampoLibro.AUTOR, linea, 1,
+                                                linea.length() - 1);
+            Assert.assertTrue(canonicos[i].equals("Autor " + i));
+        }
+        for (int i = 0; i < total; i++) {
+            int j = random.nextInt(total);
+            String linea = "x Autor " + j;
+            Assert.assertTrue(diccionario.canoniza(CampoLibro.AUTOR, linea, 2,
+                                                   linea.length()) ==
+                              canonicos[j]);
+            byte[] bytes = linea.getBytes(StandardCharsets.UTF_8);
+            Assert.assertTrue(diccionario.canoniza(CampoLibro.AUTOR, bytes, 2,
+                                                   bytes.length) ==
+                              canonicos[j]);
+            Assert.assertTrue(diccionario.canoniza(CampoLibro.AUTOR,
+                                                   "Autor " + j) ==
+                              canonicos[j]);
+        }
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.AUTOR) == total);
+        byte[] bytes = "Ñandú".getBytes(StandardCharsets.UTF_8);
+        String s = diccionario.canoniza(CampoLibro.AUTOR, bytes, 0,
+                                        bytes.length);
+        Assert.assertTrue(s.equals("Ñandú"));
+        Assert.assertTrue(diccionario.canoniza(CampoLibro.AUTOR, bytes, 0,
+                                               bytes.length) == s);
+        Assert.assertTrue(diccionario.canoniza(CampoLibro.AUTOR, "Ñandú", 0,
+                                               5) == s);
+        try {
+            diccionario.canoniza(null, bytes, 0, bytes.length);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link DiccionarioCampos#getIdentificador} y
+     * {@link DiccionarioCampos#getValor}.
+     */
+    @Test public void testIdentificadores() {
+        for (int i = 0; i < total; i++)
+            diccionario.canoniza(CampoLibro.EDITORIAL, "Editorial " + i);
+        for (int i = 0; i < total; i++) {
+            String valor = "Editorial " + i;
+            int id = diccionario.getIdentificador(CampoLibro.EDITORIAL,
+                                                  valor);
+            Assert.assertTrue(id == i);
+            Assert.assertTrue(diccionario.getValor(CampoLibro.EDITORIAL, id)
+                              .equals(valor));
+        }
+        Assert.assertTrue(diccionario.getIdentificador(CampoLibro.EDITORIAL,
+                                                       "Otra") == -1);
+        Assert.assertTrue(diccionario.getIdentificador(CampoLibro.AUTOR,
+                                                       "Editorial 0") == -1);
+        try {
+            diccionario.getValor(CampoLibro.EDITORIAL, total);
+            Assert.fail();
+        } catch (ExcepcionIndiceInvalido eii) {}
+        try {
+            diccionario.getValor(CampoLibro.AUTOR, 0);
+            Assert.fail();
+        } catch (ExcepcionIndiceInvalido eii) {}
+        diccionario.limpia();
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.EDITORIAL) ==
+                          0);
+        Assert.assertTrue(diccionario.getIdentificador(CampoLibro.EDITORIAL,
+                                                       "Editorial 0") == -1);
+    }
+
+    /**
+     * Prueba unitaria para {@link DiccionarioCampos#canoniza} desde varios
+     * hilos.
+     */
+    @Test public void testConcurrencia() {
+        Thread[] hilos = new Thread[4];
+        for (int h = 0; h < hilos.length; h++) {
+            hilos[h] = new Thread(() -> {
+                    for (int i = 0; i < 10 * total; i++)
+                        diccionario.canoniza(CampoLibro.AUTOR,
+                                             "Autor " + (i % total));
+                });
+            hilos[h].start();
+        }
+        try {
+            for (Thread hilo : hilos)
+                hilo.join();
+        } catch (InterruptedException ie) {
+            Assert.fail();
+        }
+        Assert.assertTrue(diccionario.getNumValores(CampoLibro.AUTOR) == total);
+        boolean[] vistos = new boolean[total];
+        for (int i = 0; i < total; i++) {
+            int id = diccionario.getIdentificador(CampoLibro.AUTOR,
+                                                  "Autor " + i);
+            Assert.assertTrue(id >= 0 && id < total && !vistos[id]);
+            vistos[id] = true;
+            Assert.assertTrue(diccionario.getValor(CampoLibro.AUTOR, id)
+                              .equals("Autor " + i));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package mx.unam.ciencias.icc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+import mx.unam.ciencias.icc.EntradaBinaria;
+import mx.unam.ciencias.icc.SalidaBinaria;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de las clases {@link EntradaBinaria} y {@link
+ * SalidaBinaria}.
+ */
+public class TestEntradaBinaria {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+    /* Número total de valores. */
+    private int total;
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba.
+     */
+    public TestEntradaBinaria() {
+        random = new Random();
+        total = 10 + random.nextInt(90);
+    }
+
+    /* Regresa una entrada que lee los bytes del arreglo o de un canal. */
+    private EntradaBinaria entrada(byte[] bytes, boolean canal) {
+        if (!canal)
+            return new EntradaBinaria(bytes);
+        return new EntradaBinaria(
+            Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Prueba unitaria para {@link SalidaBinaria#escribeVarint} y {@link
+     * EntradaBinaria#leeVarint}.
+     */
+    @Test public void testVarint() {
+        SalidaBinaria salida = new SalidaBinaria(1);
+        long[] valores = new long[total + 4];
+        valores[0] = 0;
+        valores[1] = 127;
+        valores[2] = 128;
+        valores[3] = -1;
+        for (int i = 4; i < valores.length; i++)
+            valores[i] = random.nextLong() >>> random.nextInt(64);
+        for (long v : valores)
+            salida.escribeVarint(v);
+        byte[] bytes = salida.getBytes();
+        Assert.assertTrue(bytes[0] == 0 && bytes[1] == 127);
+        Assert.assertTrue(salida.getLongitud() == bytes.length);
+        try {
+            for (boolean canal : new boolean[] { false, true }) {
+                EntradaBinaria entrada = entrada(bytes, canal);
+                for (long v : valores)
+                    Assert.assertTrue(entrada.leeVarint() == v);
+                Assert.assertTrue(entrada.esFin());
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        byte[] invalido = new byte[11];
+        Arrays.fill(invalido, (byte)0x80);
+        try {
+            new EntradaBinaria(invalido).leeVarint();
+            Assert.fail();
+        } catch (IOException ioe) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link SalidaBinaria#escribeEntero}, {@link
+     * SalidaBinaria#escribeLargo} y {@link SalidaBinaria#escribeDouble}.
+     */
+    @Test public void testNumeros() {
+        SalidaBinaria salida = new SalidaBinaria();
+        salida.escribeEntero(-1);
+        Assert.assertTrue(salida.getLongitud() == 1);
+        salida.limpia();
+        Assert.assertTrue(salida.getLongitud() == 0);
+        int[] enteros = new int[total];
+        long[] largos = new long[total];
+        double[] dobles = new double[total];
+        for (int i = 0; i < total; i++) {
+            enteros[i] = random.nextInt() >> random.nextInt(32);
+            largos[i] = random.nextLong();
+            dobles[i] = random.nextGaussian() * 1000;
+        }
+        enteros[0] = Integer.MIN_VALUE;
+        enteros[1] = Integer.MAX_VALUE;
+        dobles[0] = -0.0;
+        dobles[1] = Double.NaN;
+        for (int i = 0; i < total; i++) {
+            salida.escribeEntero(enteros[i]);
+            salida.escribeLargo(largos[i]);
+            salida.escribeDouble(dobles[i]);
+        }
+        try {
+            for (boolean canal : new boolean[] { false, true }) {
+                EntradaBinaria entrada = entrada(salida.getBytes(), canal);
+                for (int i = 0; i < total; i++) {
+                    Assert.assertTrue(entrada.leeEntero() == enteros[i]);
+                    Assert.assertTrue(entrada.leeLargo() == largos[i]);
+                    double d = entrada.leeDouble();
+                    Assert.assertTrue(Double.doubleToRawLongBits(d) ==
+                                      Double.doubleToRawLongBits(dobles[i]));
+                }
+                Assert.assertTrue(entrada.esFin());
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        salida.limpia();
+        salida.escribeVarint(1L << 32);
+        try {
+            new EntradaBinaria(salida.getBytes()).leeEntero();
+            Assert.fail();
+        } catch (IOException ioe) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link SalidaBinaria#escribeCadena} y {@link
+     * EntradaBinaria#leeCadena}.
+     */
+    @Test public void testCadenas() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            sb.append((char)('a' + random.nextInt(26)));
+        String[] cadenas = { null, "", "abc", "Ñandú, café ✓", sb.toString(),
+                             sb.toString() + "ü" };
+        SalidaBinaria salida = new SalidaBinaria();
+        for (String s : cadenas)
+            salida.escribeCadena(s);
+        Assert.assertTrue(salida.getBytes()[0] == 0);
+        Assert.assertTrue(salida.getBytes()[1] == 1);
+        try {
+            for (boolean canal : new boolean[] { false, true }) {
+                EntradaBinaria entrada = entrada(salida.getBytes(), canal);
+                for (String s : cadenas) {
+                    String t = entrada.leeCadena();
+                    Assert.assertTrue(s == null ? t == null : s.equals(t));
+                }
+                Assert.assertTrue(entrada.esFin());
+            }
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        byte[] bytes = salida.getBytes();
+        for (boolean canal : new boolean[] { false, true }) {
+            try {
+                EntradaBinaria entrada =
+                    entrada(Arrays.copyOf(bytes, bytes.length - 1), canal);
+                for (String s : cadenas)
+                    entrada.leeCadena();
+                Assert.fail();
+            } catch (EOFException eofe) {
+            } catch (IOException ioe) {
+                Assert.fail();
+            }
+        }
+        try {
+            new SalidaBinaria(0);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+}
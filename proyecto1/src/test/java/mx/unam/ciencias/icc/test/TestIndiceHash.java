@@ -0,0 +1,121 @@
+package mx.unam.ciencias.icc.test;
+
+import java.util.Random;
+import mx.unam.ciencias.icc.IndiceHash;
+import mx.unam.ciencias.icc.Libro;
+import mx.unam.ciencias.icc.Lista;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link IndiceHash}.
+ */
+public class TestIndiceHash {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+    /* Número total de libros. */
+    private int total;
+    /* El índice, por editorial. */
+    private IndiceHash indice;
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba y un índice por
+     * editorial.
+     */
+    public TestIndiceHash() {
+        random = new Random();
+        total = 10 + random.nextInt(90);
+        indice = new IndiceHash(r -> ((Libro)r).getEditorial());
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceHash#agrega} y {@link
+     * IndiceHash#busca}.
+     */
+    @Test public void testAgrega() {
+        Libro[] libros = new Libro[total];
+        for (int i = 0; i < total; i++) {
+            libros[i] = TestLibro.libroAleatorio();
+            indice.agrega(libros[i], i);
+        }
+        for (int i = 0; i < total; i++) {
+            String editorial = libros[i].getEditorial();
+            Lista ll = indice.busca(editorial);
+            Lista esperada = new Lista();
+            for (int j = 0; j < total; j++)
+                if (libros[j].getEditorial().equals(editorial))
+                    esperada.agregaFinal(libros[j]);
+            Assert.assertTrue(ll.equals(esperada));
+        }
+        Assert.assertTrue(indice.busca("xxx-editorial").esVacia());
+        Assert.assertTrue(indice.busca(null).esVacia());
+        indice.agrega(new Libro("t", "a", null, 2000, 1, 100, 100.0), total);
+        Assert.assertTrue(indice.busca(null).esVacia());
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceHash#elimina}.
+     */
+    @Test public void testElimina() {
+        Libro[] libros = new Libro[total];
+        for (int i = 0; i < total; i++) {
+            libros[i] = TestLibro.libroAleatorio();
+            indice.agrega(libros[i], i);
+        }
+        for (int i = 0; i < total; i++) {
+            String editorial = libros[i].getEditorial();
+            int antes = indice.busca(editorial).getLongitud();
+            indice.elimina(libros[i], i);
+            Lista ll = indice.busca(editorial);
+            Assert.assertTrue(ll.getLongitud() == antes - 1);
+        }
+        for (int i = 0; i < total; i++)
+            Assert.assertTrue(indice.busca(libros[i].getEditorial()).esVacia());
+        indice.elimina(libros[0], 0);
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceHash#elimina} con registros iguales,
+     * y para {@link IndiceHash#agrega} con el identificador de un registro
+     * eliminado.
+     */
+    @Test public void testEliminaPorIdentificador() {
+        Libro a = TestLibro.libroAleatorio();
+        Libro b = new Libro(a.getTitulo(), a.getAutor(), a.getEditorial(),
+                            a.getAño(), a.getEdicion(), a.getPaginas(),
+                            a.getPrecio());
+        Libro c = new Libro(a.getTitulo(), a.getAutor(), a.getEditorial(),
+                            a.getAño(), a.getEdicion(), a.getPaginas(),
+                            a.getPrecio());
+        indice.agrega(a, 0);
+        indice.agrega(b, 1);
+        indice.agrega(c, 2);
+        indice.elimina(a, 1);
+        Lista ll = indice.busca(a.getEditorial());
+        Assert.assertTrue(ll.getLongitud() == 2);
+        Assert.assertTrue(ll.getPrimero() == a);
+        Assert.assertTrue(ll.getUltimo() == c);
+        indice.agrega(b, 1);
+        ll = indice.busca(a.getEditorial());
+        Assert.assertTrue(ll.getLongitud() == 3);
+        Assert.assertTrue(ll.get(1) == b);
+        Assert.assertTrue(ll.getUltimo() == c);
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceHash#limpia}.
+     */
+    @Test public void testLimpia() {
+        Libro libro = TestLibro.libroAleatorio();
+        indice.agrega(libro, 0);
+        Assert.assertFalse(indice.busca(libro.getEditorial()).esVacia());
+        indice.limpia();
+        Assert.assertTrue(indice.busca(libro.getEditorial()).esVacia());
+    }
+}
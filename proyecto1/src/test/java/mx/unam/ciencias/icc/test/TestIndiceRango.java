@@ -0,0 +1,184 @@
+package mx.unam.ciencias.icc.test;
+
+import java.util.Random;
+import mx.unam.ciencias.icc.IndiceRango;
+import mx.unam.ciencias.icc.Libro;
+import mx.unam.ciencias.icc.Lista;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link IndiceRango}.
+ */
+public class TestIndiceRango {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+    /* Número total de libros. */
+    private int total;
+    /* El índice, por precio. */
+    private IndiceRango indice;
+    /* Los libros en el índice. */
+    private Lista libros;
+
+    /* Regresa los libros con precio mayor o igual al recibido. */
+    private Lista mayoresOIguales(double minimo) {
+        Lista lista = new Lista();
+        Lista.Nodo nodo = libros.getCabeza();
+        while (nodo != null) {
+            Libro l = (Libro)nodo.get();
+            if (minimo <= l.getPrecio())
+                lista.agregaFinal(l);
+            nodo = nodo.getSiguiente();
+        }
+        return lista;
+    }
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba y un índice por
+     * precio.
+     */
+    public TestIndiceRango() {
+        random = new Random();
+        total = 10 + random.nextInt(90);
+        indice = new IndiceRango(r -> ((Libro)r).getPrecio());
+        libros = new Lista();
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceRango#agrega} y {@link
+     * IndiceRango#buscaMayoresOIguales}.
+     */
+    @Test public void testAgrega() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            indice.agrega(libro, i);
+            libros.agregaFinal(libro);
+            double minimo = TestLibro.precioAleatorio();
+            Assert.assertTrue(indice.buscaMayoresOIguales(minimo)
+                              .equals(mayoresOIguales(minimo)));
+        }
+        Libro libro = TestLibro.libroAleatorio();
+        libro.setPrecio(Double.NaN);
+        indice.agrega(libro, total);
+        libros.agregaFinal(libro);
+        libro = TestLibro.libroAleatorio();
+        libro.setPrecio(-0.0);
+        indice.agrega(libro, total + 1);
+        libros.agregaFinal(libro);
+        double[] minimos = { 0.0, -0.0, Double.NEGATIVE_INFINITY,
+                             Double.POSITIVE_INFINITY, Double.NaN, 50.0 };
+        for (double minimo : minimos)
+            Assert.assertTrue(indice.buscaMayoresOIguales(minimo)
+                              .equals(mayoresOIguales(minimo)));
+        Assert.assertTrue(indice.buscaMayoresOIguales(0.0).getLongitud() ==
+                          total + 1);
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceRango#elimina}.
+     */
+    @Test public void testElimina() {
+        Libro[] arreglo = new Libro[total];
+        int[] ids = new int[total];
+        for (int i = 0; i < total; i++) {
+            arreglo[i] = TestLibro.libroAleatorio();
+            ids[i] = i;
+            indice.agrega(arreglo[i], i);
+            libros.agregaFinal(arreglo[i]);
+        }
+        for (int k = total; k > 0; k--) {
+            int j = random.nextInt(k);
+            int id = ids[j];
+            ids[j] = ids[k - 1];
+            indice.elimina(arreglo[id], id);
+            libros.elimina(arreglo[id]);
+            double minimo = TestLibro.precioAleatorio();
+            Assert.assertTrue(indice.buscaMayoresOIguales(minimo)
+                              .equals(mayoresOIguales(minimo)));
+        }
+        Assert.assertTrue(indice.buscaMayoresOIguales(0.0).esVacia());
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceRango#elimina} y {@link
+     * IndiceRango#agrega} con el identificador de un registro eliminado, como
+     * cuando la base de datos lo actualiza.
+     */
+    @Test public void testActualiza() {
+        Libro[] arreglo = new Libro[total];
+        for (int i = 0; i < total; i++) {
+            arreglo[i] = TestLibro.libroAleatorio();
+            indice.agrega(arreglo[i], i);
+        }
+        for (int k = 0; k < 3 * total; k++) {
+            int id = random.nextInt(total);
+            indice.elimina(arreglo[id], id);
+            arreglo[id] = TestLibro.libroAleatorio();
+            indice.agrega(arreglo[id], id);
+            libros = new Lista();
+            for (Libro libro : arreglo)
+                libros.agregaFinal(libro);
+            double minimo = TestLibro.precioAleatorio();
+            Assert.assertTrue(indice.buscaMayoresOIguales(minimo)
+                              .equals(mayoresOIguales(minimo)));
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceRango#cuentaMayoresOIguales}.
+     */
+    @Test public void testCuentaMayoresOIguales() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            indice.agrega(libro, i);
+            libros.agregaFinal(libro);
+        }
+        for (int i = 0; i < total; i++) {
+            double minimo = TestLibro.precioAleatorio();
+            int k = mayoresOIguales(minimo).getLongitud();
+            Assert.assertTrue(indice.cuentaMayoresOIguales(minimo, total) == k);
+            int limite = random.nextInt(total);
+            int c = indice.cuentaMayoresOIguales(minimo, limite);
+            Assert.assertTrue(k <= limite ? c == k : c > limite && c <= k);
+        }
+        Assert.assertTrue(indice.cuentaMayoresOIguales(Double.NaN, total) ==
+                          0);
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceRango#recorreMayoresOIguales}.
+     */
+    @Test public void testRecorreMayoresOIguales() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            indice.agrega(libro, i);
+            libros.agregaFinal(libro);
+        }
+        for (int i = 0; i < total; i++) {
+            double minimo = TestLibro.precioAleatorio();
+            Lista lista = new Lista();
+            indice.recorreMayoresOIguales(minimo, lista::agregaFinal);
+            Assert.assertTrue(lista.equals(mayoresOIguales(minimo)));
+        }
+        Lista lista = new Lista();
+        indice.recorreMayoresOIguales(Double.NaN, lista::agregaFinal);
+        Assert.assertTrue(lista.esVacia());
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceRango#limpia}.
+     */
+    @Test public void testLimpia() {
+        for (int i = 0; i < total; i++)
+            indice.agrega(TestLibro.libroAleatorio(), i);
+        Assert.assertFalse(indice.buscaMayoresOIguales(0.0).esVacia());
+        indice.limpia();
+        Assert.assertTrue(indice.buscaMayoresOIguales(0.0).esVacia());
+    }
+}
@@ -0,0 +1,191 @@
+package mx.unam.ciencias.icc.test;
+
+import java.util.Random;
+import mx.unam.ciencias.icc.IndiceSubcadenas;
+import mx.unam.ciencias.icc.Libro;
+import mx.unam.ciencias.icc.Lista;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link IndiceSubcadenas}.
+ */
+public class TestIndiceSubcadenas {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+    /* Número total de libros. */
+    private int total;
+    /* El índice, por título. */
+    private IndiceSubcadenas indice;
+    /* Los libros en el índice. */
+    private Lista libros;
+
+    /* Regresa los libros cuyo título contiene la subcadena recibida. */
+    private Lista contienen(String subcadena) {
+        Lista lista = new Lista();
+        Lista.Nodo nodo = libros.getCabeza();
+        while (nodo != null) {
+            Libro l = (Libro)nodo.get();
+            if (l.getTitulo().indexOf(subcadena) != -1)
+                lista.agregaFinal(l);
+            nodo = nodo.getSiguiente();
+        }
+        return lista;
+    }
+
+    /* Regresa una subcadena aleatoria de al menos tres caracteres de un
+       título aleatorio. */
+    private String subcadenaAleatoria() {
+        String titulo = TestLibro.datosAleatorios()[0];
+        int a = random.nextInt(titulo.length() - IndiceSubcadenas.N + 1);
+        int b = a + IndiceSubcadenas.N +
+            random.nextInt(titulo.length() - a - IndiceSubcadenas.N + 1);
+        return titulo.substring(a, b);
+    }
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba y un índice por
+     * título.
+     */
+    public TestIndiceSubcadenas() {
+        random = new Random();
+        total = 10 + random.nextInt(90);
+        indice = new IndiceSubcadenas(r -> ((Libro)r).getTitulo());
+        libros = new Lista();
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceSubcadenas#agrega} y {@link
+     * IndiceSubcadenas#busca}.
+     */
+    @Test public void testAgrega() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            indice.agrega(libro, i);
+            libros.agregaFinal(libro);
+            String s = subcadenaAleatoria();
+            Lista ll = indice.busca(s, r -> ((Libro)r).getTitulo()
+                                    .indexOf(s) != -1);
+            Assert.assertTrue(ll.equals(contienen(s)));
+        }
+        Assert.assertTrue(indice.busca("xxx-titulo", r -> true).esVacia());
+        Assert.assertTrue(indice.busca("ab", r -> true) == null);
+        Assert.assertTrue(indice.busca(null, r -> true) == null);
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceSubcadenas#elimina}.
+     */
+    @Test public void testElimina() {
+        Libro[] arreglo = new Libro[total];
+        int[] ids = new int[total];
+        for (int i = 0; i < total; i++) {
+            arreglo[i] = TestLibro.libroAleatorio();
+            ids[i] = i;
+            indice.agrega(arreglo[i], i);
+            libros.agregaFinal(arreglo[i]);
+        }
+        for (int k = total; k > 0; k--) {
+            int j = random.nextInt(k);
+            int id = ids[j];
+            ids[j] = ids[k - 1];
+            indice.elimina(arreglo[id], id);
+            libros.elimina(arreglo[id]);
+            String s = subcadenaAleatoria();
+            Lista ll = indice.busca(s, r -> ((Libro)r).getTitulo()
+                                    .indexOf(s) != -1);
+            Assert.assertTrue(ll.equals(contienen(s)));
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceSubcadenas#elimina} y {@link
+     * IndiceSubcadenas#agrega} con el identificador de un registro eliminado,
+     * como cuando la base de datos lo actualiza.
+     */
+    @Test public void testActualiza() {
+        Libro[] arreglo = new Libro[total];
+        for (int i = 0; i < total; i++) {
+            arreglo[i] = TestLibro.libroAleatorio();
+            indice.agrega(arreglo[i], i);
+        }
+        for (int k = 0; k < 3 * total; k++) {
+            int id = random.nextInt(total);
+            indice.elimina(arreglo[id], id);
+            arreglo[id] = TestLibro.libroAleatorio();
+            indice.agrega(arreglo[id], id);
+            libros = new Lista();
+            for (Libro libro : arreglo)
+                libros.agregaFinal(libro);
+            String s = subcadenaAleatoria();
+            Lista ll = indice.busca(s, r -> ((Libro)r).getTitulo()
+                                    .indexOf(s) != -1);
+            Assert.assertTrue(ll.equals(contienen(s)));
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceSubcadenas#estima}.
+     */
+    @Test public void testEstima() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            indice.agrega(libro, i);
+            libros.agregaFinal(libro);
+        }
+        for (int i = 0; i < total; i++) {
+            String s = subcadenaAleatoria();
+            int e = indice.estima(s);
+            Assert.assertTrue(e >= contienen(s).getLongitud());
+            Assert.assertTrue(e == indice.busca(s, r -> true).getLongitud());
+        }
+        Assert.assertTrue(indice.estima("xxx-titulo") == 0);
+        Assert.assertTrue(indice.estima("ab") == -1);
+        Assert.assertTrue(indice.estima(null) == -1);
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceSubcadenas#recorre}.
+     */
+    @Test public void testRecorre() {
+        for (int i = 0; i < total; i++) {
+            Libro libro = TestLibro.libroAleatorio();
+            indice.agrega(libro, i);
+            libros.agregaFinal(libro);
+        }
+        for (int i = 0; i < total; i++) {
+            String s = subcadenaAleatoria();
+            Lista lista = new Lista();
+            Assert.assertTrue(indice.recorre(s, r -> ((Libro)r).getTitulo()
+                                             .indexOf(s) != -1,
+                                             lista::agregaFinal));
+            Assert.assertTrue(lista.equals(contienen(s)));
+        }
+        Lista lista = new Lista();
+        Assert.assertTrue(indice.recorre("xxx-titulo", r -> true,
+                                         lista::agregaFinal));
+        Assert.assertFalse(indice.recorre("ab", r -> true,
+                                          lista::agregaFinal));
+        Assert.assertFalse(indice.recorre(null, r -> true,
+                                          lista::agregaFinal));
+        Assert.assertTrue(lista.esVacia());
+    }
+
+    /**
+     * Prueba unitaria para {@link IndiceSubcadenas#limpia}.
+     */
+    @Test public void testLimpia() {
+        Libro libro = TestLibro.libroAleatorio();
+        indice.agrega(libro, 0);
+        String titulo = libro.getTitulo();
+        Assert.assertFalse(indice.busca(titulo, r -> true).esVacia());
+        indice.limpia();
+        Assert.assertTrue(indice.busca(titulo, r -> true).esVacia());
+    }
+}
@@ -1,10 +1,16 @@
 package mx.unam.ciencias.icc.test;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Random;
 import mx.unam.ciencias.icc.CampoLibro;
+import mx.unam.ciencias.icc.EntradaBinaria;
 import mx.unam.ciencias.icc.Libro;
 import mx.unam.ciencias.icc.ExcepcionLineaInvalida;
 import mx.unam.ciencias.icc.Registro;
+import mx.unam.ciencias.icc.SalidaBinaria;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -433,6 +439,75 @@ public class TestLibro {
         Assert.assertFalse(libro.equals(null));
     }
 
+    /**
+     * Prueba unitaria para {@link Libro#hashCode}.
+     */
+    @Test public void testHashCode() {
+        actualiza();
+        libro = new Libro(titulo, autor, editorial, año, edicion, paginas,
+			  precio);
+        Libro igual = new Libro(new String(titulo), new String(autor),
+                                new String(editorial), año, edicion, paginas,
+                                precio);
+        Assert.assertTrue(libro.hashCode() == igual.hashCode());
+        libro = new Libro(titulo, autor, editorial, año, edicion, paginas,
+			  0.0);
+        igual = new Libro(titulo, autor, editorial, año, edicion, paginas,
+			  -0.0);
+        Assert.assertTrue(libro.equals(igual));
+        Assert.assertTrue(libro.hashCode() == igual.hashCode());
+        HashSet<Libro> conjunto = new HashSet<Libro>();
+        for (int i = 0; i < 100; i++)
+            conjunto.add(libroAleatorio(i));
+        Libro[] libros = conjunto.toArray(new Libro[0]);
+        for (Libro l : libros)
+            Assert.assertTrue(conjunto.contains(new Libro(l.getTitulo(),
+                                                          l.getAutor(),
+                                                          l.getEditorial(),
+                                                          l.getAño(),
+                                                          l.getEdicion(),
+                                                          l.getPaginas(),
+                                                          l.getPrecio())));
+        new Libro(null, null, null, 0, 0, 0, 0.0).hashCode();
+    }
+
+    /**
+     * Prueba unitaria para {@link Libro#codifica} y {@link Libro#decodifica}.
+     */
+    @Test public void testCodifica() {
+        SalidaBinaria salida = new SalidaBinaria();
+        int total = 10 + random.nextInt(90);
+        Libro[] libros = new Libro[total];
+        for (int i = 0; i < total; i++) {
+            libros[i] = libroAleatorio();
+            if (i % 2 == 0)
+                libros[i].setTitulo("Ñandú " + i);
+            libros[i].codifica(salida);
+        }
+        byte[] bytes = salida.getBytes();
+        EntradaBinaria entrada = new EntradaBinaria(bytes);
+        try {
+            for (int i = 0; i < total; i++) {
+                Libro l = new Libro(null, null, null, 0, 0, 0, 0.0);
+                l.decodifica(entrada);
+                Assert.assertTrue(l.equals(libros[i]));
+            }
+            Assert.assertTrue(entrada.esFin());
+        } catch (IOException ioe) {
+            Assert.fail();
+        }
+        actualiza();
+        libro = new Libro(titulo, autor, editorial, año, edicion, paginas,
+			  precio);
+        entrada = new EntradaBinaria(Arrays.copyOf(bytes, 10));
+        try {
+            libro.decodifica(entrada);
+            Assert.fail();
+        } catch (IOException ioe) {}
+        Assert.assertTrue(libro.getTitulo().equals(titulo));
+        Assert.assertTrue(libro.getPrecio() == precio);
+    }
+
     /**
      * Prueba unitaria para {@link Libro#serializa}.
      */
@@ -446,6 +521,54 @@ public class TestLibro {
         Assert.assertTrue(libro.serializa().equals(linea));
     }
 
+    /**
+     * Prueba unitaria para {@link Libro#serializa(StringBuilder)}.
+     */
+    @Test public void testSerializaConstructor() {
+        double[] precios = { 0.0, -0.0, 0.005, 0.015, 1.005, 2.675, -2.675,
+                             0.125, 99.995, 999999999.99, 1e9, 1e20, -0.001,
+                             Double.NaN, Double.POSITIVE_INFINITY,
+                             Double.NEGATIVE_INFINITY, Double.MIN_VALUE };
+        StringBuilder sb = new StringBuilder("x");
+        for (int i = 0; i < precios.length + 2000; i++) {
+            actualiza();
+            if (i < precios.length)
+                precio = precios[i];
+            else if (i % 2 == 0)
+                precio = random.nextInt(100000) / 100.0 +
+                    (random.nextInt(3) - 1) * 0.005;
+            else
+                precio = (random.nextDouble() - 0.5) * 1e6;
+            libro = new Libro(titulo, autor, editorial, año, edicion, paginas,
+                              precio);
+            String linea = String.format("%s\t%s\t%s\t%d\t%d\t%d\t%2.2f\n",
+                                         titulo, autor, editorial, año,
+                                         edicion, paginas, precio);
+            Assert.assertTrue(libro.serializa().equals(linea));
+            sb.setLength(1);
+            libro.serializa(sb);
+            Assert.assertTrue(sb.toString().equals("x" + linea));
+        }
+        Locale local = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            for (Locale l : new Locale[] { Locale.GERMANY,
+                                           new Locale("ar", "EG"),
+                                           new Locale("hi", "IN") }) {
+                Locale.setDefault(Locale.Category.FORMAT, l);
+                actualiza();
+                libro = new Libro(titulo, autor, editorial, año, edicion,
+                                  paginas, precio);
+                String linea =
+                    String.format("%s\t%s\t%s\t%d\t%d\t%d\t%2.2f\n",
+                                  titulo, autor, editorial, año, edicion,
+                                  paginas, precio);
+                Assert.assertTrue(libro.serializa().equals(linea));
+            }
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, local);
+        }
+    }
+
     /**
      * Prueba unitaria para {@link Libro#deserializa}.
      */
@@ -416,6 +416,53 @@ public class TestLista {
         validaLista(reversa);
     }
 
+    /**
+     * Prueba unitaria para {@link Lista#concatena}.
+     */
+    @Test public void testConcatena() {
+        try {
+            lista.concatena(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            lista.concatena(lista);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        Lista esperada = new Lista();
+        Lista otra = new Lista();
+        for (int i = 0; i < total; i++) {
+            Integer e = Integer.valueOf(random.nextInt(total));
+            if (i % 2 == 0)
+                lista.agregaFinal(e);
+            else
+                otra.agregaFinal(e);
+        }
+        for (Lista.Nodo n = lista.getCabeza(); n != null; n = n.getSiguiente())
+            esperada.agregaFinal(n.get());
+        for (Lista.Nodo n = otra.getCabeza(); n != null; n = n.getSiguiente())
+            esperada.agregaFinal(n.get());
+        Lista.Nodo rabo = otra.getRabo();
+        lista.concatena(otra);
+        Assert.assertTrue(lista.equals(esperada));
+        Assert.assertTrue(lista.getRabo() == rabo);
+        Assert.assertTrue(otra.esVacia());
+        validaLista(lista);
+        validaLista(otra);
+        lista.concatena(new Lista());
+        Assert.assertTrue(lista.equals(esperada));
+        otra.agregaFinal(Integer.valueOf(-1));
+        Lista instantanea = otra.instantanea();
+        lista.concatena(otra);
+        esperada.agregaFinal(Integer.valueOf(-1));
+        Assert.assertTrue(lista.equals(esperada));
+        Assert.assertTrue(instantanea.getLongitud() == 1);
+        Assert.assertFalse(lista.getRabo() == instantanea.getRabo());
+        validaLista(lista);
+        otra.concatena(lista);
+        Assert.assertTrue(otra.equals(esperada));
+        Assert.assertTrue(lista.esVacia());
+    }
+
     /**
      * Prueba unitaria para {@link Lista#copia}.
      */
@@ -440,6 +487,174 @@ public class TestLista {
         validaLista(copia);
     }
 
+    /**
+     * Prueba unitaria para {@link Lista#instantanea}.
+     */
+    @Test public void testInstantanea() {
+        Lista instantanea = lista.instantanea();
+        Assert.assertTrue(instantanea.esVacia());
+        Assert.assertFalse(instantanea == lista);
+        for (int i = 0; i < total; i++)
+            lista.agregaFinal(Integer.valueOf(random.nextInt(total)));
+        Assert.assertTrue(instantanea.esVacia());
+        Lista copia = lista.copia();
+        instantanea = lista.instantanea();
+        Lista otra = instantanea.instantanea();
+        Assert.assertTrue(instantanea.equals(copia));
+        Assert.assertTrue(instantanea.getCabeza() == lista.getCabeza());
+        lista.agregaFinal(Integer.valueOf(-1));
+        lista.eliminaPrimero();
+        Assert.assertTrue(instantanea.equals(copia));
+        Assert.assertTrue(otra.equals(copia));
+        validaLista(lista);
+        Integer x = (Integer)instantanea.getUltimo();
+        instantanea.elimina(x);
+        instantanea.inserta(1, Integer.valueOf(-2));
+        Assert.assertTrue(otra.equals(copia));
+        Assert.assertFalse(instantanea.equals(copia));
+        validaLista(instantanea);
+        otra.agregaInicio(Integer.valueOf(-3));
+        otra.eliminaUltimo();
+        validaLista(otra);
+        Assert.assertTrue(otra.getLongitud() == copia.getLongitud());
+        Lista ultima = otra.instantanea();
+        otra.limpia();
+        Assert.assertTrue(otra.esVacia());
+        Assert.assertTrue(ultima.getLongitud() == copia.getLongitud());
+        ultima.agregaFinal(Integer.valueOf(-4));
+        validaLista(ultima);
+        Assert.assertTrue(ultima.getLongitud() == copia.getLongitud() + 1);
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#limpia} sobre instantáneas.
+     */
+    @Test public void testLimpiaInstantanea() {
+        for (int i = 0; i < total; i++)
+            lista.agregaFinal(Integer.valueOf(i));
+        Lista.Nodo cabeza = lista.getCabeza();
+        int generacion = lista.getGeneracion();
+        Lista instantanea = lista.instantanea();
+        Lista otra = instantanea.instantanea();
+        instantanea.limpia();
+        otra.limpia();
+        Assert.assertTrue(instantanea.esVacia());
+        lista.agregaFinal(Integer.valueOf(total));
+        Assert.assertTrue(lista.getCabeza() == cabeza);
+        Assert.assertTrue(lista.getGeneracion() == generacion);
+        Assert.assertTrue(lista.getLongitud() == total + 1);
+        validaLista(lista);
+        instantanea = lista.instantanea();
+        lista.eliminaPrimero();
+        Assert.assertFalse(lista.getGeneracion() == generacion);
+        Assert.assertTrue(instantanea.getCabeza() == cabeza);
+        Assert.assertTrue(instantanea.getLongitud() == total + 1);
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#instantanea} modificando la lista y
+     * su instantánea desde dos hilos a la vez.
+     */
+    @Test public void testInstantaneaConcurrente() {
+        for (int i = 0; i < total; i++)
+            lista.agregaFinal(Integer.valueOf(i));
+        Lista copia = lista.copia();
+        for (int k = 0; k < 100; k++) {
+            Lista instantanea = lista.instantanea();
+            Thread hilo = new Thread(() -> {
+                    instantanea.agregaFinal(Integer.valueOf(-1));
+                    instantanea.eliminaUltimo();
+                });
+            hilo.start();
+            lista.eliminaPrimero();
+            lista.agregaInicio(Integer.valueOf(0));
+            try {
+                hilo.join();
+            } catch (InterruptedException ie) {
+                Assert.fail();
+            }
+            Assert.assertTrue(lista.equals(copia));
+            Assert.assertTrue(instantanea.equals(copia));
+            validaLista(lista);
+            validaLista(instantanea);
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#eliminaNodo}.
+     */
+    @Test public void testEliminaNodo() {
+        try {
+            lista.eliminaNodo(null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        for (int i = 0; i < total; i++)
+            lista.agregaFinal(Integer.valueOf(i));
+        Lista copia = lista.copia();
+        int generacion = lista.getGeneracion();
+        Lista.Nodo n = lista.getCabeza();
+        for (int i = 0; i < total / 2; i++)
+            n = n.getSiguiente();
+        Assert.assertTrue(lista.eliminaNodo(n).equals(total / 2));
+        copia.elimina(Integer.valueOf(total / 2));
+        Assert.assertTrue(lista.equals(copia));
+        Assert.assertTrue(lista.getGeneracion() == generacion);
+        validaLista(lista);
+        lista.eliminaNodo(lista.getCabeza());
+        copia.eliminaPrimero();
+        lista.eliminaNodo(lista.getRabo());
+        copia.eliminaUltimo();
+        Assert.assertTrue(lista.equals(copia));
+        validaLista(lista);
+        Lista instantanea = lista.instantanea();
+        Lista otra = instantanea.copia();
+        n = lista.getRabo().getAnterior();
+        Object e = lista.eliminaNodo(n);
+        Assert.assertTrue(e.equals(n.get()));
+        Assert.assertFalse(lista.getGeneracion() == generacion);
+        copia.elimina(e);
+        Assert.assertTrue(lista.equals(copia));
+        Assert.assertTrue(instantanea.equals(otra));
+        validaLista(lista);
+        validaLista(instantanea);
+        while (!lista.esVacia())
+            lista.eliminaNodo(lista.getRabo());
+        validaLista(lista);
+        Assert.assertTrue(lista.getCabeza() == null);
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#reemplazaNodo}.
+     */
+    @Test public void testReemplazaNodo() {
+        for (int i = 0; i < total; i++)
+            lista.agregaFinal(Integer.valueOf(i));
+        try {
+            lista.reemplazaNodo(null, Integer.valueOf(0));
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        try {
+            lista.reemplazaNodo(lista.getCabeza(), null);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+        int generacion = lista.getGeneracion();
+        Assert.assertTrue(lista.reemplazaNodo(lista.getCabeza(), -1)
+                          .equals(0));
+        Assert.assertTrue(lista.getPrimero().equals(-1));
+        Assert.assertTrue(lista.getGeneracion() == generacion);
+        Lista instantanea = lista.instantanea();
+        Lista otra = instantanea.copia();
+        Lista.Nodo n = lista.getRabo();
+        Assert.assertTrue(lista.reemplazaNodo(n, -2).equals(total - 1));
+        Assert.assertFalse(lista.getGeneracion() == generacion);
+        Assert.assertTrue(lista.getUltimo().equals(-2));
+        Assert.assertTrue(lista.getLongitud() == total);
+        Assert.assertTrue(instantanea.equals(otra));
+        Assert.assertTrue(n.get().equals(total - 1));
+        validaLista(lista);
+        validaLista(instantanea);
+    }
+
     /**
      * Prueba unitaria para {@link Lista#limpia}.
      */
@@ -627,4 +842,25 @@ public class TestLista {
             Assert.assertTrue(lista.getRabo().get().equals(r));
         }
     }
+
+    /**
+     * Prueba que los recorridos de la lista no usan recursión proporcional a
+     * su longitud, con una lista de diez millones de elementos.
+     */
+    @Test public void testListaGrande() {
+        int n = 10000000;
+        Integer uno = Integer.valueOf(1);
+        for (int i = 0; i < n - 1; i++)
+            lista.agregaFinal(uno);
+        lista.agregaFinal(Integer.valueOf(2));
+        Assert.assertTrue(lista.getLongitud() == n);
+        Assert.assertTrue(lista.get(n - 1).equals(Integer.valueOf(2)));
+        Assert.assertTrue(lista.get(n / 2).equals(uno));
+        Assert.assertTrue(lista.indiceDe(Integer.valueOf(2)) == n - 1);
+        Assert.assertFalse(lista.contiene(Integer.valueOf(3)));
+        Assert.assertTrue(lista.equals(lista));
+        lista.elimina(Integer.valueOf(2));
+        Assert.assertTrue(lista.getLongitud() == n - 1);
+        Assert.assertTrue(lista.indiceDe(Integer.valueOf(2)) == -1);
+    }
 }
@@ -0,0 +1,87 @@
+package mx.unam.ciencias.icc.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import mx.unam.ciencias.icc.BaseDeDatosLibros;
+import mx.unam.ciencias.icc.ReporteCarga;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link ReporteCarga}.
+ */
+public class TestReporteCarga {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Carga la entrada de manera tolerante y regresa el reporte. */
+    private static ReporteCarga carga(String entrada, int maxErrores) {
+        try {
+            BufferedReader in = new BufferedReader(new StringReader(entrada));
+            ReporteCarga reporte =
+                new BaseDeDatosLibros().cargaTolerante(in, maxErrores);
+            in.close();
+            return reporte;
+        } catch (IOException ioe) {
+            Assert.fail();
+            return null;
+        }
+    }
+
+    /**
+     * Prueba unitaria para {@link ReporteCarga#ReporteCarga}.
+     */
+    @Test public void testConstructor() {
+        ReporteCarga reporte = new ReporteCarga(5);
+        Assert.assertTrue(reporte.getMaxErrores() == 5);
+        Assert.assertTrue(reporte.getNumLineas() == 0);
+        Assert.assertTrue(reporte.getNumRegistros() == 0);
+        Assert.assertTrue(reporte.getNumErrores() == 0);
+        Assert.assertTrue(reporte.getFallas().esVacia());
+        Assert.assertFalse(reporte.fueInterrumpida());
+        try {
+            new ReporteCarga(-1);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    /**
+     * Prueba unitaria para {@link ReporteCarga#getFallas}.
+     */
+    @Test public void testGetFallas() {
+        String entrada = "";
+        int n = ReporteCarga.MAX_DETALLES + 10;
+        for (int i = 0; i < n; i++)
+            entrada += TestLibro.libroAleatorio().serializa() + "x\n";
+        ReporteCarga reporte = carga(entrada, Integer.MAX_VALUE);
+        Assert.assertTrue(reporte.getNumLineas() == 2 * n);
+        Assert.assertTrue(reporte.getNumRegistros() == n);
+        Assert.assertTrue(reporte.getNumErrores() == n);
+        Assert.assertTrue(reporte.getFallas().getLongitud() ==
+                          ReporteCarga.MAX_DETALLES);
+        ReporteCarga.Falla f =
+            (ReporteCarga.Falla)reporte.getFallas().getUltimo();
+        Assert.assertTrue(f.getLinea() == 2 * ReporteCarga.MAX_DETALLES);
+        Assert.assertTrue(f.toString().startsWith("Línea " + f.getLinea()));
+    }
+
+    /**
+     * Prueba unitaria para {@link ReporteCarga#fueInterrumpida}.
+     */
+    @Test public void testFueInterrumpida() {
+        String entrada = "x\n" + TestLibro.libroAleatorio().serializa() +
+            "y\n" + TestLibro.libroAleatorio().serializa();
+        ReporteCarga reporte = carga(entrada, 1);
+        Assert.assertTrue(reporte.fueInterrumpida());
+        Assert.assertTrue(reporte.getNumErrores() == 2);
+        Assert.assertTrue(reporte.getNumRegistros() == 1);
+        Assert.assertTrue(reporte.getNumLineas() == 3);
+        reporte = carga(entrada, 2);
+        Assert.assertFalse(reporte.fueInterrumpida());
+        Assert.assertTrue(reporte.getNumRegistros() == 2);
+    }
+}
@@ -104,29 +104,38 @@ public class Lista<T> implements Iterable<T> {
     }
 
     /**
-     * Regresa el nodo que contiene al elemento recibido en la lista.
+     * Regresa el primer nodo que contiene al elemento recibido en la lista.
      * @param elemento el elemento del que se busca el nodo que lo contiene.
-     * @param n el nodo en el que se revisa si está contenido el elemento
-     * recibido.
-     * @return el nodo que contiene al elemento recibido en la lista, o null 
+     * @return el nodo que contiene al elemento recibido en la lista, o null
      * si el elemento no está contenido en la lista.
      */
-    private Nodo getNodo(T elemento, Nodo n) {
-	return n == null ? null : n.elemento.equals(elemento) ?
-	    n : getNodo (elemento, n.siguiente);
+    private Nodo getNodo(T elemento) {
+        for (Nodo n = cabeza; n != null; n = n.siguiente)
+            if (n.elemento.equals(elemento))
+                return n;
+        return null;
     }
 
     /**
-     * Regresa el <em>i</em>-ésimo nodo de la lista.
-     * @param i el índice del nodo que queremos, siendo el índice recibido 
-     * siempre mayor que cero y menor que longitud - 1.
-     * @param c el contador que indica el índice del nodo actual.
-     * @param n el nodo a partir del cual recorremos la lista.
+     * Regresa el <em>i</em>-ésimo nodo de la lista. El recorrido empieza en
+     * la cabeza o en el rabo, dependiendo de cuál esté más cerca del índice.
+     * @param i el índice del nodo que queremos, siendo el índice recibido
+     * siempre mayor o igual que cero y menor que la longitud.
      * @return el <em>i</em>-ésimo nodo de la lista.
      */
-    private Nodo getNodo(int i, int c, Nodo n){
-	return c++ == i ? n : getNodo(i, c, n.siguiente);
-     }
+    private Nodo getNodo(int i) {
+        Nodo n;
+        if (i < longitud / 2) {
+            n = cabeza;
+            for (int c = 0; c < i; c++)
+                n = n.siguiente;
+        } else {
+            n = rabo;
+            for (int c = longitud - 1; c > i; c--)
+                n = n.anterior;
+        }
+        return n;
+    }
 
     /**
      * Nos dice si la lista es vacía.
@@ -206,7 +215,7 @@ public class Lista<T> implements Iterable<T> {
 	    return;
 	} 
         Nodo e = new Nodo(elemento);
-        Nodo n = getNodo(i, 0, cabeza);
+        Nodo n = getNodo(i);
 	e.anterior = n.anterior;
         e.siguiente = n;
         e.anterior.siguiente = n.anterior = e;
@@ -219,7 +228,7 @@ public class Lista<T> implements Iterable<T> {
      * @param elemento el elemento a eliminar.
      */
     public void elimina(T elemento) {
-        Nodo n = getNodo(elemento, cabeza);
+        Nodo n = getNodo(elemento);
 	if (n == null)
 	    return;
 	if (n == cabeza) {
@@ -280,20 +289,7 @@ public class Lista<T> implements Iterable<T> {
      *         <code>false</code> en otro caso.
      */
     public boolean contiene(T elemento) {
-        return getNodo(elemento, cabeza) != null;
-    }
-
-    /**
-     * Regresa la reversa de una lista.
-     * @param n el nodo que se agrega a la nueva lista.
-     * @return una nueva lista que es la reversa de la lista a la que pertenece
-     * el nodo.
-     */
-    private Lista<T> reversa(Nodo n) {
-	Lista<T> lista =
-	   n == rabo ? new Lista<T>() : reversa(n.siguiente);
-	lista.agregaFinal(n.elemento);
-	return lista;
+        return getNodo(elemento) != null;
     }
 
     /**
@@ -301,28 +297,22 @@ public class Lista<T> implements Iterable<T> {
      * @return una nueva lista que es la reversa la que manda llamar el método.
      */
     public Lista<T> reversa() {
-        return cabeza == null ? new Lista<T>() : reversa(cabeza);
+        Lista<T> lista = new Lista<T>();
+        for (Nodo n = cabeza; n != null; n = n.siguiente)
+            lista.agregaInicio(n.elemento);
+        return lista;
     }
 
-    /**
-     * Regresa la copia de una lista.
-     * @param n el nodo que se agrega a la nueva lista.
-     * @return una copia de la lista a la que pertenece el nodo. La copia tiene 
-     * los mismos elementos que la lista, en el mismo orden.
-     */
-    private Lista<T> copia(Nodo n) {
-	Lista<T> lista = n == rabo ? new Lista<T>() : copia(n.siguiente);
-	lista.agregaInicio(n.elemento);
-	return lista;
-     }
-
     /**
      * Regresa una copia de la lista. La copia tiene los mismos elementos que la
      * lista que manda llamar el método, en el mismo orden.
      * @return una copiad de la lista.
      */
     public Lista<T> copia() {
-        return cabeza == null ? new Lista<T>() : copia(cabeza);
+        Lista<T> lista = new Lista<T>();
+        for (Nodo n = cabeza; n != null; n = n.siguiente)
+            lista.agregaFinal(n.elemento);
+        return lista;
     }
 
     /**
@@ -365,22 +355,9 @@ public class Lista<T> implements Iterable<T> {
     public T get(int i) {
         if (i < 0 || i >= longitud)
 	    throw new ExcepcionIndiceInvalido();
-	return getNodo(i, 0, cabeza).elemento;
+	return getNodo(i).elemento;
     }
 
-    /**
-     * Regresa el índice del elemento recibido en la lista.
-     * @param elemento el elemento del que se busca el índice.
-     * @param n el nodo en el que se revisa si está contenido el elemento 
-     * recibido.
-     * @return el índice del elemento recibido en la lista, o -1 si el elemento
-     *         no está contenido en la lista.
-     */
-    private int indiceDe(T elemento, Nodo n) {
-	return n.elemento.equals(elemento) ?
-	    0 : indiceDe(elemento, n.siguiente)+1;
-     }
-
     /**
      * Regresa el índice del elemento recibido en la lista.
      * @param elemento el elemento del que se busca el índice.
@@ -388,46 +365,27 @@ public class Lista<T> implements Iterable<T> {
      *         no está contenido en la lista.
      */
     public int indiceDe(T elemento) {
-        return !contiene(elemento) ? -1 : indiceDe(elemento, cabeza);
+        int i = 0;
+        for (Nodo n = cabeza; n != null; n = n.siguiente, i++)
+            if (n.elemento.equals(elemento))
+                return i;
+        return -1;
     }
 
-    /**
-     * Regresa una representación en cadena de una lista.
-     * @param n el nodo del que se regresara una representación en cadena.
-     * @return una representación en cadena de la lista.
-     */
-    private String toString(Nodo n) {
-	if(n.anterior != null) 
-	    return toString(n.anterior) + String.format(", %s", n.elemento);
-        return String.format("[%s", n.elemento);
-     }
-
     /**
      * Regresa una representación en cadena de la lista.
      * @return una representación en cadena de la lista.
      */
     @Override public String toString() {
         if (cabeza == null)
-	    return "[]";
-	return toString(rabo) + "]";
+            return "[]";
+        StringBuilder sb = new StringBuilder("[");
+        sb.append(cabeza.elemento);
+        for (Nodo n = cabeza.siguiente; n != null; n = n.siguiente)
+            sb.append(", ").append(n.elemento);
+        return sb.append("]").toString();
     }
 
-    /**
-     * Nos dice si la lista de un nodo es igual a la lista de otro nodo
-     * recibido.
-     * @param n1 nodo de la lista original.
-     * @param n2 nodo de la lista con la que hay que comparar.
-     * @return <code>true</code> si la lista es igual a la recibida;
-     *         <code>false</code> en otro caso.
-     */
-    private boolean equals(Nodo n1, Nodo n2) {
-	if (n1 == null)
-	    return true;
-	if (!n1.elemento.equals(n2.elemento))
-	    return false;
-	return equals(n1.siguiente, n2.siguiente); 
-     }
-
     /**
      * Nos dice si la lista es igual al objeto recibido.
      * @param objeto el objeto con el que hay que comparar.
@@ -440,7 +398,15 @@ public class Lista<T> implements Iterable<T> {
         @SuppressWarnings("unchecked") Lista<T> lista = (Lista<T>)objeto;
         if (lista.longitud != longitud)
 	    return false;
-	return equals(cabeza, lista.cabeza);
+        Nodo n1 = cabeza;
+        Nodo n2 = lista.cabeza;
+        while (n1 != null) {
+            if (!n1.elemento.equals(n2.elemento))
+                return false;
+            n1 = n1.siguiente;
+            n2 = n2.siguiente;
+        }
+        return true;
     }
 
     /**
@@ -459,26 +425,57 @@ public class Lista<T> implements Iterable<T> {
         return new Iterador();
     }
 
-    private Lista<T> mezcla(Lista<T> l2, Comparator<T> comparador){
-	Lista<T> lista = new Lista<T>();
-        Nodo i = cabeza;
-	Nodo j = l2.cabeza;
-	while (i != null && j != null) {
-	    if (comparador.compare(i.elemento, j.elemento) <= 0) {
-		lista.agregaFinal(i.elemento);
-		i = i.siguiente;
-	    } else {
-		lista.agregaFinal(j.elemento);
-		j = j.siguiente;
-	    }
-	}
-	if (i == null)
-	    i = j;
-	while (i != null) {
-	    lista.agregaFinal(i.elemento);
-	    i = i.siguiente;
-	}
-	return lista;
+    /**
+     * Ordena la lista en su lugar, usando el comparador recibido. El
+     * ordenamiento es <em>MergeSort</em> de abajo hacia arriba: en cada pasada
+     * se mezclan sublistas adyacentes del doble del tamaño de la anterior,
+     * reenlazando los nodos existentes, por lo que toma tiempo <em>O(n log
+     * n)</em>, no crea nodos nuevos y no usa recursión. El ordenamiento es
+     * estable.
+     * @param comparador el comparador que la lista usará para hacer el
+     *                   ordenamiento.
+     */
+    public void ordena(Comparator<T> comparador) {
+        if (longitud < 2)
+            return;
+        for (long tamaño = 1; tamaño < longitud; tamaño *= 2) {
+            Nodo p = cabeza;
+            Nodo nuevaCabeza = null;
+            Nodo cola = null;
+            while (p != null) {
+                Nodo q = p;
+                long tp = 0;
+                while (tp < tamaño && q != null) {
+                    q = q.siguiente;
+                    tp++;
+                }
+                long tq = tamaño;
+                while (tp > 0 || (tq > 0 && q != null)) {
+                    Nodo n;
+                    if (tp > 0 && (tq == 0 || q == null ||
+                                   comparador.compare(p.elemento,
+                                                      q.elemento) <= 0)) {
+                        n = p;
+                        p = p.siguiente;
+                        tp--;
+                    } else {
+                        n = q;
+                        q = q.siguiente;
+                        tq--;
+                    }
+                    if (cola == null)
+                        nuevaCabeza = n;
+                    else
+                        cola.siguiente = n;
+                    n.anterior = cola;
+                    cola = n;
+                }
+                p = q;
+            }
+            cola.siguiente = null;
+            cabeza = nuevaCabeza;
+            rabo = cola;
+        }
     }
 
     /**
@@ -490,18 +487,9 @@ public class Lista<T> implements Iterable<T> {
      * @return una copia de la lista, pero ordenada.
      */
     public Lista<T> mergeSort(Comparator<T> comparador) {
-	if (longitud == 0 || longitud == 1)
-	    return copia();
-	int l = longitud % 2 == 0 ? longitud/2 : (longitud - 1)/2;
-        Lista<T> l1 = new Lista<T>();
-	Lista<T> l2 = new Lista<T>();
-	for (int i=0; i<l; i++) 
-	    l1.agregaFinal(get(i));
-        for (int i=l; i<longitud; i++)
-	    l2.agregaFinal(get(i));
-	l1 = l1.mergeSort(comparador);
-	l2 = l2.mergeSort(comparador);
-	return l1.mezcla(l2, comparador);
+        Lista<T> lista = copia();
+        lista.ordena(comparador);
+        return lista;
     }
 
     /**
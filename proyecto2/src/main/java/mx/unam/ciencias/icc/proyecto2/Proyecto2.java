@@ -9,7 +9,9 @@ import java.io.InputStreamReader;
 import java.io.BufferedWriter;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.text.CollationKey;
 import java.text.Collator;
+import java.util.regex.Pattern;
 import mx.unam.ciencias.icc.Lista;
 
 /**
@@ -17,6 +19,25 @@ import mx.unam.ciencias.icc.Lista;
  */
 public class Proyecto2 {
 
+    /* Patrón de los caracteres que se ignoran al comparar líneas. */
+    private static final Pattern IGNORADOS = Pattern.compile("[^\\p{L}\\p{Z}]");
+
+    /* Clase privada para líneas con su llave de ordenamiento. */
+    private static class Linea {
+        /* La línea original. */
+        private String linea;
+        /* La llave de la línea normalizada. */
+        private CollationKey llave;
+
+        /* Construye una línea, normalizándola y calculando su llave una sola
+           vez. */
+        private Linea(String linea, Collator comparador) {
+            this.linea = linea;
+            String normalizada = IGNORADOS.matcher(linea).replaceAll("");
+            llave = comparador.getCollationKey(normalizada);
+        }
+    }
+
     /* Guarda la salida del programa en un archivo llamado como el identificador. */
     private static void escritura(Lista<String> lineas, String identificador) {
 	File archivo = new File(identificador);
@@ -104,24 +125,19 @@ public class Proyecto2 {
 	Collator comparador = Collator.getInstance();
 	comparador.setStrength(Collator.PRIMARY);
 
-	if(banderaR) 
-	    lineas = lineas.mergeSort((l1, l2) -> {
-		    l1= l1.replaceAll("[^\\p{L}\\p{Z}]", "");
-		    l2= l2.replaceAll("[^\\p{L}\\p{Z}]", "");
-		    if(comparador.compare(l1, l2) < 0)
-			return 1;
-		    else if (comparador.compare(l1, l2) > 0)
-			return -1;
-		    else
-			return 0;
-	    });
-	 else 
-	    lineas = lineas.mergeSort((l1, l2) -> {
-		    l1= l1.replaceAll("[^\\p{L}\\p{Z}]", "");
-		    l2= l2.replaceAll("[^\\p{L}\\p{Z}]", "");
-		    return comparador.compare(l1, l2);
-	    });
-	
+	Lista<Linea> llaves = new Lista<Linea>();
+	for (String linea : lineas)
+	    llaves.agregaFinal(new Linea(linea, comparador));
+
+	if(banderaR)
+	    llaves = llaves.mergeSort((l1, l2) -> l2.llave.compareTo(l1.llave));
+	else
+	    llaves = llaves.mergeSort((l1, l2) -> l1.llave.compareTo(l2.llave));
+
+	lineas = new Lista<String>();
+	for (Linea linea : llaves)
+	    lineas.agregaFinal(linea.linea);
+
         for (String linea : lineas)
             System.out.println(linea);
 
@@ -0,0 +1,199 @@
+package mx.unam.ciencias.icc.test;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import mx.unam.ciencias.icc.IteradorLista;
+import mx.unam.ciencias.icc.Lista;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Clase para pruebas unitarias de la clase {@link Lista}.
+ */
+public class TestLista {
+
+    /** Expiración para que ninguna prueba tarde más de 5 segundos. */
+    @Rule public Timeout expiracion = Timeout.seconds(5);
+
+    /* Generador de números aleatorios. */
+    private Random random;
+    /* Número total de elementos. */
+    private int total;
+    /* La lista. */
+    private Lista<Integer> lista;
+
+    /* Valida una lista: el recorrido hacia adelante y hacia atrás tienen los
+       mismos elementos, y el primero y el último son los de los extremos. */
+    private void validaLista(Lista<Integer> lista) {
+        int longitud = lista.getLongitud();
+        Integer[] arreglo = new Integer[longitud];
+        int c = 0;
+        for (Integer e : lista)
+            arreglo[c++] = e;
+        Assert.assertTrue(c == longitud);
+        IteradorLista<Integer> iterador = lista.iteradorLista();
+        iterador.end();
+        while (iterador.hasPrevious())
+            Assert.assertTrue(arreglo[--c] == iterador.previous());
+        Assert.assertTrue(c == 0);
+        if (longitud == 0) {
+            Assert.assertTrue(lista.esVacia());
+            return;
+        }
+        Assert.assertTrue(lista.getPrimero() == arreglo[0]);
+        Assert.assertTrue(lista.getUltimo() == arreglo[longitud - 1]);
+    }
+
+    /* Llena la lista con los enteros de 0 a n - 1, en orden, y regresa
+       claves aleatorias entre 0 y m - 1 para cada uno. */
+    private int[] llena(int n, int m) {
+        int[] claves = new int[n];
+        for (int i = 0; i < n; i++) {
+            lista.agregaFinal(i);
+            claves[i] = random.nextInt(m);
+        }
+        return claves;
+    }
+
+    /* Ordena la lista por las claves y verifica que quede ordenada, que el
+       ordenamiento sea estable y que tenga los mismos elementos. */
+    private void verificaOrdena(int[] claves) {
+        int n = claves.length;
+        lista.ordena((a, b) -> Integer.compare(claves[a], claves[b]));
+        Assert.assertTrue(lista.getLongitud() == n);
+        boolean[] vistos = new boolean[n];
+        Iterator<Integer> iterador = lista.iterator();
+        int anterior = -1;
+        while (iterador.hasNext()) {
+            int e = iterador.next();
+            Assert.assertFalse(vistos[e]);
+            vistos[e] = true;
+            if (anterior != -1)
+                Assert.assertTrue(claves[anterior] < claves[e] ||
+                                  (claves[anterior] == claves[e] &&
+                                   anterior < e));
+            anterior = e;
+        }
+        for (boolean visto : vistos)
+            Assert.assertTrue(visto);
+        validaLista(lista);
+    }
+
+    /**
+     * Crea un generador de números aleatorios para cada prueba, un número total
+     * de elementos para nuestra lista, y una lista.
+     */
+    public TestLista() {
+        random = new Random();
+        total = 10 + random.nextInt(90);
+        lista = new Lista<Integer>();
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#ordena} con una lista vacía y con una
+     * lista de un elemento.
+     */
+    @Test public void testOrdenaChica() {
+        lista.ordena((a, b) -> a - b);
+        Assert.assertTrue(lista.getLongitud() == 0);
+        validaLista(lista);
+        try {
+            lista.getPrimero();
+            Assert.fail();
+        } catch (NoSuchElementException nsee) {}
+        lista.agregaFinal(total);
+        lista.ordena((a, b) -> a - b);
+        Assert.assertTrue(lista.getLongitud() == 1);
+        Assert.assertTrue(lista.getPrimero() == total);
+        validaLista(lista);
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#ordena} con una lista de longitud
+     * impar, con claves repetidas.
+     */
+    @Test public void testOrdena() {
+        int n = total | 1;
+        verificaOrdena(llena(n, 1 + n / 4));
+        lista.limpia();
+        verificaOrdena(llena(n, 1));
+        lista.limpia();
+        int[] claves = llena(n, n);
+        lista = lista.reversa();
+        lista.ordena((a, b) -> Integer.compare(claves[a], claves[b]));
+        Integer anterior = null;
+        for (Integer e : lista) {
+            if (anterior != null)
+                Assert.assertTrue(claves[anterior] <= claves[e]);
+            anterior = e;
+        }
+        validaLista(lista);
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#ordena} con una lista de un millón de
+     * elementos, cuyas claves van de mayor a menor y se repiten de cuatro en
+     * cuatro, así que el ordenamiento tiene que voltear la lista sin voltear
+     * los elementos con la misma clave.
+     */
+    @Test public void testOrdenaGrande() {
+        int n = 1000000;
+        int[] claves = new int[n];
+        for (int i = 0; i < n; i++) {
+            lista.agregaFinal(i);
+            claves[i] = (n - 1 - i) / 4;
+        }
+        verificaOrdena(claves);
+        Assert.assertTrue(lista.getPrimero() == n - 4);
+        Assert.assertTrue(lista.getUltimo() == 3);
+    }
+
+    /**
+     * Prueba unitaria con una lista de diez millones de elementos, en la pila
+     * por omisión.
+     */
+    @Test public void testListaGrande() {
+        int n = 10000000;
+        Integer uno = Integer.valueOf(1);
+        for (int i = 0; i < n - 1; i++)
+            lista.agregaFinal(uno);
+        lista.agregaFinal(Integer.valueOf(2));
+        Assert.assertTrue(lista.getLongitud() == n);
+        Assert.assertTrue(lista.get(n - 1).equals(Integer.valueOf(2)));
+        Assert.assertTrue(lista.get(n / 2).equals(uno));
+        Assert.assertTrue(lista.indiceDe(Integer.valueOf(2)) == n - 1);
+        Assert.assertFalse(lista.contiene(Integer.valueOf(3)));
+        Assert.assertTrue(lista.equals(lista));
+        lista.elimina(Integer.valueOf(2));
+        Assert.assertTrue(lista.getLongitud() == n - 1);
+        Assert.assertTrue(lista.indiceDe(Integer.valueOf(2)) == -1);
+    }
+
+    /**
+     * Prueba unitaria para {@link Lista#mergeSort(Comparator)} y {@link
+     * Lista#mergeSort(Lista)}.
+     */
+    @Test public void testMergeSort() {
+        for (int i = 0; i < total; i++)
+            lista.agregaFinal(random.nextInt(total));
+        Lista<Integer> copia = lista.copia();
+        Lista<Integer> ordenada = Lista.mergeSort(lista);
+        Assert.assertTrue(lista.equals(copia));
+        Assert.assertTrue(ordenada.getLongitud() == total);
+        Integer anterior = null;
+        for (Integer e : ordenada) {
+            if (anterior != null)
+                Assert.assertTrue(anterior <= e);
+            anterior = e;
+        }
+        validaLista(ordenada);
+        Comparator<Integer> inverso = (a, b) -> b - a;
+        Assert.assertTrue(lista.mergeSort(inverso)
+                          .equals(ordenada.reversa()));
+        Assert.assertTrue(lista.equals(copia));
+    }
+}